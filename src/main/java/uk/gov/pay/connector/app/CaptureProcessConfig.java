@@ -4,6 +4,8 @@ import io.dropwizard.Configuration;
 
 import javax.validation.Valid;
 import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Positive;
+import java.util.Map;
 
 public class CaptureProcessConfig extends Configuration {
 
@@ -15,8 +17,20 @@ public class CaptureProcessConfig extends Configuration {
     private Boolean backgroundProcessingEnabled;
 
     private int failedCaptureRetryDelayInSeconds;
+    private int initialCaptureRetryDelayInSeconds = 60;
+    private int captureRetryJitterWindowInSeconds = 300;
     private int queueSchedulerThreadDelayInSeconds;
     private int queueSchedulerNumberOfThreads;
+    private int captureNumberOfThreads = 10;
+    private int maximumConcurrentCapturesPerGateway = 5;
+    @Positive
+    private double defaultGatewayAccountCapturesPerSecond = 10;
+    // overrides the default for particular gateway accounts, keyed by gateway account ID
+    @NotNull
+    private Map<Long, Double> gatewayAccountCapturesPerSecond = Map.of();
+    @Positive
+    private double paymentProviderCapturesPerSecond = 50;
+    private int throttledCaptureRetryDelayInSeconds = 10;
 
     public int getChargesConsideredOverdueForCaptureAfter() {
         return chargesConsideredOverdueForCaptureAfter;
@@ -32,6 +46,14 @@ public class CaptureProcessConfig extends Configuration {
         return failedCaptureRetryDelayInSeconds;
     }
 
+    public int getInitialCaptureRetryDelayInSeconds() {
+        return initialCaptureRetryDelayInSeconds;
+    }
+
+    public int getCaptureRetryJitterWindowInSeconds() {
+        return captureRetryJitterWindowInSeconds;
+    }
+
     public int getQueueSchedulerThreadDelayInSeconds() {
         return queueSchedulerThreadDelayInSeconds;
     }
@@ -39,4 +61,28 @@ public class CaptureProcessConfig extends Configuration {
     public int getQueueSchedulerNumberOfThreads() {
         return queueSchedulerNumberOfThreads;
     }
+
+    public int getCaptureNumberOfThreads() {
+        return captureNumberOfThreads;
+    }
+
+    public int getMaximumConcurrentCapturesPerGateway() {
+        return maximumConcurrentCapturesPerGateway;
+    }
+
+    public double getDefaultGatewayAccountCapturesPerSecond() {
+        return defaultGatewayAccountCapturesPerSecond;
+    }
+
+    public Map<Long, Double> getGatewayAccountCapturesPerSecond() {
+        return gatewayAccountCapturesPerSecond;
+    }
+
+    public double getPaymentProviderCapturesPerSecond() {
+        return paymentProviderCapturesPerSecond;
+    }
+
+    public int getThrottledCaptureRetryDelayInSeconds() {
+        return throttledCaptureRetryDelayInSeconds;
+    }
 }
@@ -2,11 +2,19 @@ package uk.gov.pay.connector.app;
 
 import io.dropwizard.Configuration;
 
+import javax.validation.constraints.Min;
+
 public class ChargeSweepConfig extends Configuration {
 
     private int defaultChargeExpiryThreshold;
     private int awaitingCaptureExpiryThreshold;
 
+    private boolean expiryWheelEnabled = false;
+    @Min(1)
+    private long expiryWheelTickInMilliseconds = 1000;
+    @Min(1)
+    private int expiryWheelBatchSize = 100;
+
     public int getDefaultChargeExpiryThreshold() {
         return defaultChargeExpiryThreshold;
     }
@@ -14,4 +22,16 @@ public class ChargeSweepConfig extends Configuration {
     public int getAwaitingCaptureExpiryThreshold() {
         return awaitingCaptureExpiryThreshold;
     }
+
+    public boolean isExpiryWheelEnabled() {
+        return expiryWheelEnabled;
+    }
+
+    public long getExpiryWheelTickInMilliseconds() {
+        return expiryWheelTickInMilliseconds;
+    }
+
+    public int getExpiryWheelBatchSize() {
+        return expiryWheelBatchSize;
+    }
 }
@@ -31,12 +31,15 @@ import uk.gov.pay.connector.charge.exception.MotoPaymentNotAllowedForGatewayAcco
 import uk.gov.pay.connector.charge.exception.ZeroAmountNotAllowedForGatewayAccountExceptionMapper;
 import uk.gov.pay.connector.charge.resource.ChargesApiResource;
 import uk.gov.pay.connector.charge.resource.ChargesFrontendResource;
+import uk.gov.pay.connector.charge.service.ChargeExpiryWheel;
+import uk.gov.pay.connector.charge.service.ChargeExpiryWheelProcess;
 import uk.gov.pay.connector.chargeevent.resource.ChargeEventsResource;
 import uk.gov.pay.connector.command.RenderStateTransitionGraphCommand;
 import uk.gov.pay.connector.common.exception.ConstraintViolationExceptionMapper;
 import uk.gov.pay.connector.common.exception.UnsupportedOperationExceptionMapper;
 import uk.gov.pay.connector.common.exception.ValidationExceptionMapper;
 import uk.gov.pay.connector.events.resource.EmittedEventResource;
+import uk.gov.pay.connector.expunge.resource.ChargeArchiveResource;
 import uk.gov.pay.connector.expunge.resource.ExpungeResource;
 import uk.gov.pay.connector.filters.LoggingMDCRequestFilter;
 import uk.gov.pay.connector.filters.LoggingMDCResponseFilter;
@@ -60,10 +63,15 @@ import uk.gov.pay.connector.tasks.HistoricalEventEmitterByDateRangeTask;
 import uk.gov.pay.connector.tasks.HistoricalEventEmitterTask;
 import uk.gov.pay.connector.tasks.ParityCheckTask;
 import uk.gov.pay.connector.token.resource.SecurityTokensResource;
+import uk.gov.pay.connector.token.resource.TokenReaperResource;
 import uk.gov.pay.connector.usernotification.resource.EmailNotificationResource;
+import uk.gov.pay.connector.usernotification.service.EmailNotificationDispatchProcess;
 import uk.gov.pay.connector.util.DependentResourceWaitCommand;
 import uk.gov.pay.connector.util.JsonMappingExceptionMapper;
 import uk.gov.pay.connector.webhook.resource.NotificationResource;
+import uk.gov.pay.connector.webhook.service.NotificationDeduplicator;
+import uk.gov.pay.connector.webhook.service.NotificationInboxProcess;
+import uk.gov.pay.connector.workpartition.service.WorkPartitionService;
 import uk.gov.pay.logging.GovUkPayDropwizardRequestJsonLogLayoutFactory;
 import uk.gov.pay.logging.LoggingFilter;
 import uk.gov.pay.logging.LogstashConsoleAppenderFactory;
@@ -127,8 +135,10 @@ public class ConnectorApp extends Application<ConnectorConfiguration> {
         environment.jersey().register(injector.getInstance(StripeAccountResource.class));
         environment.jersey().register(injector.getInstance(ChargeEventsResource.class));
         environment.jersey().register(injector.getInstance(SecurityTokensResource.class));
+        environment.jersey().register(injector.getInstance(TokenReaperResource.class));
         environment.jersey().register(injector.getInstance(ChargesApiResource.class));
         environment.jersey().register(injector.getInstance(ExpungeResource.class));
+        environment.jersey().register(injector.getInstance(ChargeArchiveResource.class));
         environment.jersey().register(injector.getInstance(ChargesFrontendResource.class));
         environment.jersey().register(injector.getInstance(ChargeRefundsResource.class));
         environment.jersey().register(injector.getInstance(NotificationResource.class));
@@ -148,6 +158,17 @@ public class ConnectorApp extends Application<ConnectorConfiguration> {
             setupSchedulers(environment, injector);
         }
 
+        if (configuration.getNotifyConfiguration().isEmailNotifyEnabled()) {
+            environment.lifecycle().manage(injector.getInstance(EmailNotificationDispatchProcess.class));
+        }
+
+        if (configuration.getNotificationInboxConfig().isEnabled()) {
+            environment.lifecycle().manage(injector.getInstance(NotificationInboxProcess.class));
+        }
+
+        environment.lifecycle().manage(injector.getInstance(NotificationDeduplicator.class));
+        environment.lifecycle().manage(injector.getInstance(WorkPartitionService.class));
+
         setupSmartpayBasicAuth(environment, injector.getInstance(SmartpayAccountSpecificAuthenticator.class));
 
         environment.servlets().addFilter("LoggingFilter", injector.getInstance(LoggingFilter.class))
@@ -211,5 +232,8 @@ public class ConnectorApp extends Application<ConnectorConfiguration> {
 
     private void setupSchedulers(Environment environment, Injector injector) {
         environment.lifecycle().manage(injector.getInstance(QueueMessageReceiver.class));
+        if (injector.getInstance(ChargeExpiryWheel.class).isEnabled()) {
+            environment.lifecycle().manage(injector.getInstance(ChargeExpiryWheelProcess.class));
+        }
     }
 }
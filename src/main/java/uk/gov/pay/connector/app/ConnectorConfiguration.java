@@ -4,10 +4,19 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 import io.dropwizard.Configuration;
 import io.dropwizard.client.JerseyClientConfiguration;
 import io.dropwizard.db.DataSourceFactory;
+import uk.gov.pay.connector.app.config.EmailDispatchConfig;
+import uk.gov.pay.connector.app.config.LedgerClientConfig;
+import uk.gov.pay.connector.app.config.LedgerTransactionCacheConfig;
+import uk.gov.pay.connector.app.config.NotificationDeduplicationConfig;
+import uk.gov.pay.connector.app.config.NotificationInboxConfig;
+import uk.gov.pay.connector.app.config.SmartpayNotificationConfig;
 import uk.gov.pay.connector.app.config.EmittedEventSweepConfig;
 import uk.gov.pay.connector.app.config.EventEmitterConfig;
 import uk.gov.pay.connector.app.config.ExpungeConfig;
+import uk.gov.pay.connector.app.config.NotificationCredentialsCacheConfig;
 import uk.gov.pay.connector.app.config.RestClientConfig;
+import uk.gov.pay.connector.app.config.TokenReaperConfig;
+import uk.gov.pay.connector.app.config.WorkPartitionConfig;
 import uk.gov.pay.connector.gateway.PaymentGatewayName;
 
 import javax.validation.Valid;
@@ -82,6 +91,42 @@ public class ConnectorConfiguration extends Configuration {
     @JsonProperty("expungeConfig")
     private ExpungeConfig expungeConfig;
 
+    @Valid
+    @NotNull
+    private TokenReaperConfig tokenReaperConfig = new TokenReaperConfig();
+
+    @Valid
+    @NotNull
+    private WorkPartitionConfig workPartitionConfig = new WorkPartitionConfig();
+
+    @Valid
+    @NotNull
+    private NotificationCredentialsCacheConfig notificationCredentialsCacheConfig = new NotificationCredentialsCacheConfig();
+
+    @Valid
+    @NotNull
+    private EmailDispatchConfig emailDispatchConfig = new EmailDispatchConfig();
+
+    @Valid
+    @NotNull
+    private NotificationInboxConfig notificationInboxConfig = new NotificationInboxConfig();
+
+    @Valid
+    @NotNull
+    private SmartpayNotificationConfig smartpayNotificationConfig = new SmartpayNotificationConfig();
+
+    @Valid
+    @NotNull
+    private NotificationDeduplicationConfig notificationDeduplicationConfig = new NotificationDeduplicationConfig();
+
+    @Valid
+    @NotNull
+    private LedgerTransactionCacheConfig ledgerTransactionCacheConfig = new LedgerTransactionCacheConfig();
+
+    @Valid
+    @NotNull
+    private LedgerClientConfig ledgerClientConfig = new LedgerClientConfig();
+
     @NotNull
     private String graphiteHost;
 
@@ -226,4 +271,40 @@ public class ConnectorConfiguration extends Configuration {
     public ExpungeConfig getExpungeConfig() {
         return expungeConfig;
     }
+
+    public TokenReaperConfig getTokenReaperConfig() {
+        return tokenReaperConfig;
+    }
+
+    public WorkPartitionConfig getWorkPartitionConfig() {
+        return workPartitionConfig;
+    }
+
+    public NotificationCredentialsCacheConfig getNotificationCredentialsCacheConfig() {
+        return notificationCredentialsCacheConfig;
+    }
+
+    public EmailDispatchConfig getEmailDispatchConfig() {
+        return emailDispatchConfig;
+    }
+
+    public NotificationInboxConfig getNotificationInboxConfig() {
+        return notificationInboxConfig;
+    }
+
+    public SmartpayNotificationConfig getSmartpayNotificationConfig() {
+        return smartpayNotificationConfig;
+    }
+
+    public NotificationDeduplicationConfig getNotificationDeduplicationConfig() {
+        return notificationDeduplicationConfig;
+    }
+
+    public LedgerTransactionCacheConfig getLedgerTransactionCacheConfig() {
+        return ledgerTransactionCacheConfig;
+    }
+
+    public LedgerClientConfig getLedgerClientConfig() {
+        return ledgerClientConfig;
+    }
 }
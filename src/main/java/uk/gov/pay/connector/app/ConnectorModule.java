@@ -1,10 +1,12 @@
 package uk.gov.pay.connector.app;
 
+import com.amazonaws.ClientConfiguration;
 import com.amazonaws.auth.AWSStaticCredentialsProvider;
 import com.amazonaws.auth.BasicAWSCredentials;
 import com.amazonaws.client.builder.AwsClientBuilder;
 import com.amazonaws.services.sqs.AmazonSQS;
-import com.amazonaws.services.sqs.AmazonSQSClientBuilder;
+import com.amazonaws.services.sqs.AmazonSQSAsync;
+import com.amazonaws.services.sqs.AmazonSQSAsyncClientBuilder;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.inject.AbstractModule;
 import com.google.inject.Provides;
@@ -12,6 +14,7 @@ import com.google.inject.Singleton;
 import com.google.inject.assistedinject.FactoryModuleBuilder;
 import com.google.inject.persist.jpa.JpaPersistModule;
 import io.dropwizard.db.DataSourceFactory;
+import io.dropwizard.lifecycle.Managed;
 import io.dropwizard.setup.Environment;
 import uk.gov.pay.connector.charge.service.Worldpay3dsFlexJwtService;
 import uk.gov.pay.connector.charge.util.JwtGenerator;
@@ -22,7 +25,8 @@ import uk.gov.pay.connector.gateway.epdq.SignatureGenerator;
 import uk.gov.pay.connector.gatewayaccount.resource.GatewayAccountRequestValidator;
 import uk.gov.pay.connector.gatewayaccount.service.GatewayAccountServicesFactory;
 import uk.gov.pay.connector.paymentprocessor.service.CardExecutorService;
-import uk.gov.pay.connector.queue.StateTransitionQueue;
+import uk.gov.pay.connector.queue.QueueBackend;
+import uk.gov.pay.connector.queue.inmemory.InMemorySqsClient;
 import uk.gov.pay.connector.usernotification.govuknotify.NotifyClientFactory;
 import uk.gov.pay.connector.util.HashUtil;
 import uk.gov.pay.connector.util.JsonObjectMapper;
@@ -30,7 +34,11 @@ import uk.gov.pay.connector.util.XrayUtils;
 import uk.gov.pay.connector.wallets.applepay.ApplePayDecrypter;
 
 import javax.ws.rs.client.Client;
+import java.time.Clock;
 import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 public class ConnectorModule extends AbstractModule {
     final ConnectorConfiguration configuration;
@@ -116,10 +124,13 @@ public class ConnectorModule extends AbstractModule {
         return new JsonObjectMapper(provideObjectMapper());
     }
 
+    /**
+     * The client {@link uk.gov.pay.connector.paritycheck.LedgerService} talks to ledger with.
+     */
     @Provides
     @Singleton
     public Client provideClient() {
-        return RestClientFactory.buildClient(configuration.getRestClientConfig());
+        return RestClientFactory.buildPooledClient(configuration.getRestClientConfig(), configuration.getLedgerClientConfig());
     }
 
     @Provides
@@ -133,39 +144,71 @@ public class ConnectorModule extends AbstractModule {
     }
 
     @Provides
-    @Singleton
-    public StateTransitionQueue stateTransitionQueue() {
-        return getStateTransitionQueue();
+    public AmazonSQS sqsClient(AmazonSQSAsync sqsAsyncClient) {
+        return sqsAsyncClient;
     }
 
-    protected StateTransitionQueue getStateTransitionQueue() {
-        return new StateTransitionQueue();
-    }
-    
+    /**
+     * One SQS client per process, shared by every queue. It serves both blocking and asynchronous calls, so it
+     * owns one connection pool and one callback thread pool, both shut down with the application. Once the callback
+     * pool's queue is full the calling thread makes the call itself, so callers are slowed down rather than calls
+     * piling up in memory. With the {@code IN_MEMORY} queue backend the queues are kept in this process instead.
+     */
     @Provides
-    public AmazonSQS sqsClient(ConnectorConfiguration connectorConfiguration) {
+    @Singleton
+    public AmazonSQSAsync sqsAsyncClient(ConnectorConfiguration connectorConfiguration) {
+        SqsConfig sqsConfig = connectorConfiguration.getSqsConfig();
 
-        AmazonSQSClientBuilder clientBuilder = AmazonSQSClientBuilder
-                .standard();
+        if (sqsConfig.getQueueBackend() == QueueBackend.IN_MEMORY) {
+            return new InMemorySqsClient(Clock.systemUTC(), sqsConfig.getInMemoryMaximumReceiveCount());
+        }
 
-        if (connectorConfiguration.getSqsConfig().isNonStandardServiceEndpoint()) {
+        ClientConfiguration clientConfiguration = new ClientConfiguration()
+                .withMaxConnections(sqsConfig.getMaxConnections())
+                .withConnectionTimeout(sqsConfig.getConnectionTimeoutInMilliseconds())
+                .withSocketTimeout(sqsConfig.getSocketTimeoutInMilliseconds())
+                .withConnectionMaxIdleMillis(sqsConfig.getConnectionMaxIdleInMilliseconds())
+                .withTcpKeepAlive(sqsConfig.isTcpKeepAlive());
+
+        AmazonSQSAsyncClientBuilder clientBuilder = AmazonSQSAsyncClientBuilder
+                .standard()
+                .withClientConfiguration(clientConfiguration)
+                .withExecutorFactory(() -> new ThreadPoolExecutor(
+                        sqsConfig.getAsyncNumberOfThreads(),
+                        sqsConfig.getAsyncNumberOfThreads(),
+                        0L, TimeUnit.MILLISECONDS,
+                        new ArrayBlockingQueue<>(sqsConfig.getAsyncQueueCapacity()),
+                        new ThreadPoolExecutor.CallerRunsPolicy()));
+
+        if (sqsConfig.isNonStandardServiceEndpoint()) {
 
             BasicAWSCredentials basicAWSCredentials = new BasicAWSCredentials(
-                    connectorConfiguration.getSqsConfig().getAccessKey(),
-                    connectorConfiguration.getSqsConfig().getSecretKey());
+                    sqsConfig.getAccessKey(),
+                    sqsConfig.getSecretKey());
 
             clientBuilder
                     .withCredentials(new AWSStaticCredentialsProvider(basicAWSCredentials))
                     .withEndpointConfiguration(
                             new AwsClientBuilder.EndpointConfiguration(
-                                    connectorConfiguration.getSqsConfig().getEndpoint(),
-                                    connectorConfiguration.getSqsConfig().getRegion())
+                                    sqsConfig.getEndpoint(),
+                                    sqsConfig.getRegion())
                     );
         } else {
             // uses AWS SDK's DefaultAWSCredentialsProviderChain to obtain credentials
-            clientBuilder.withRegion(connectorConfiguration.getSqsConfig().getRegion());
+            clientBuilder.withRegion(sqsConfig.getRegion());
         }
 
-        return clientBuilder.build();
+        AmazonSQSAsync sqsAsyncClient = clientBuilder.build();
+        environment.lifecycle().manage(new Managed() {
+            @Override
+            public void start() {
+            }
+
+            @Override
+            public void stop() {
+                sqsAsyncClient.shutdown();
+            }
+        });
+        return sqsAsyncClient;
     }
 }
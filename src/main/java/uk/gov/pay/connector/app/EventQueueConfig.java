@@ -5,6 +5,9 @@ import io.dropwizard.Configuration;
 public class EventQueueConfig extends Configuration {
     private Boolean eventQueueEnabled;
     private int paymentStateTransitionPollerNumberOfThreads;
+    private int stateTransitionOutboxBatchSize = 100;
+    private int stateTransitionOutboxLeaseInSeconds = 60;
+    private int eventPublisherNumberOfThreads = 4;
 
     public Boolean getEventQueueEnabled() {
         return eventQueueEnabled;
@@ -13,4 +16,16 @@ public class EventQueueConfig extends Configuration {
     public int getPaymentStateTransitionPollerNumberOfThreads() {
         return paymentStateTransitionPollerNumberOfThreads;
     }
+
+    public int getStateTransitionOutboxBatchSize() {
+        return stateTransitionOutboxBatchSize;
+    }
+
+    public int getStateTransitionOutboxLeaseInSeconds() {
+        return stateTransitionOutboxLeaseInSeconds;
+    }
+
+    public int getEventPublisherNumberOfThreads() {
+        return eventPublisherNumberOfThreads;
+    }
 }
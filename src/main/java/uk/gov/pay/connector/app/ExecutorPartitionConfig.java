@@ -0,0 +1,29 @@
+package uk.gov.pay.connector.app;
+
+import io.dropwizard.Configuration;
+
+import javax.validation.constraints.Min;
+
+public class ExecutorPartitionConfig extends Configuration {
+
+    @Min(1)
+    private int threadsPerCpu = 25;
+
+    @Min(1)
+    private int virtualThreadPoolSize = 500;
+
+    @Min(1)
+    private int maximumQueueSize = 250;
+
+    public int getThreadsPerCpu() {
+        return threadsPerCpu;
+    }
+
+    public int getVirtualThreadPoolSize() {
+        return virtualThreadPoolSize;
+    }
+
+    public int getMaximumQueueSize() {
+        return maximumQueueSize;
+    }
+}
@@ -1,12 +1,39 @@
 package uk.gov.pay.connector.app;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import io.dropwizard.Configuration;
+import io.dropwizard.validation.ValidationMethod;
+import uk.gov.pay.connector.paymentprocessor.service.ExecutorOverflowPolicy;
+import uk.gov.pay.connector.util.ExecutionMode;
+
+import javax.validation.Valid;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+import java.util.Map;
 
 public class ExecutorServiceConfig extends Configuration {
 
     private int threadsPerCpu;
     private int timeoutInSeconds;
 
+    @Min(1)
+    private int maximumQueueSize = 1000;
+
+    @Min(0)
+    private int queueDeadlineInSeconds = 0;
+
+    private ExecutionMode executionMode = ExecutionMode.PLATFORM_THREADS;
+
+    @Min(1)
+    private int virtualThreadPoolSize = 2000;
+
+    @Valid
+    @NotNull
+    private Map<String, ExecutorPartitionConfig> partitions = Map.of();
+
+    @NotNull
+    private ExecutorOverflowPolicy overflowPolicy = ExecutorOverflowPolicy.REJECT;
+
     public int getThreadsPerCpu() {
         return threadsPerCpu;
     }
@@ -14,4 +41,58 @@ public class ExecutorServiceConfig extends Configuration {
     public int getTimeoutInSeconds() {
         return timeoutInSeconds;
     }
+
+    public int getMaximumQueueSize() {
+        return maximumQueueSize;
+    }
+
+    /**
+     * How long a task may wait in the queue before it is dropped rather than started, because the user it was
+     * submitted for will have given up on it. Zero means tasks are never dropped.
+     */
+    public int getQueueDeadlineInSeconds() {
+        return queueDeadlineInSeconds;
+    }
+
+    /**
+     * A dropped task is only reported as expired to a caller that is still waiting for it, so the queue deadline must
+     * be shorter than the time callers wait.
+     */
+    @ValidationMethod(message = "queueDeadlineInSeconds must be less than timeoutInSeconds, or 0 to never drop tasks")
+    @JsonIgnore
+    public boolean isQueueDeadlineWithinTimeout() {
+        return queueDeadlineInSeconds == 0 || queueDeadlineInSeconds < timeoutInSeconds;
+    }
+
+    /**
+     * Whether the card executor, the Notify email pool and the SQS message receivers run on platform or virtual
+     * threads.
+     */
+    public ExecutionMode getExecutionMode() {
+        return executionMode;
+    }
+
+    /**
+     * The number of threads in the card executor and the Notify email pool when they run on virtual threads, in place
+     * of threadsPerCpu.
+     */
+    public int getVirtualThreadPoolSize() {
+        return virtualThreadPoolSize;
+    }
+
+    /**
+     * Card executor partitions, keyed by payment provider name, each with threads and a queue of its own so that a
+     * slow provider cannot hold up authorisations for the others. Providers without a partition use the shared pool.
+     */
+    public Map<String, ExecutorPartitionConfig> getPartitions() {
+        return partitions;
+    }
+
+    /**
+     * What happens to an authorisation when its provider's partition is full. Defaults to REJECT, so that a degraded
+     * provider cannot spill into the shared pool and take the threads of the providers without a partition.
+     */
+    public ExecutorOverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
 }
@@ -1,5 +1,13 @@
 package uk.gov.pay.connector.app;
 
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.glassfish.jersey.apache.connector.ApacheConnectorProvider;
+import org.glassfish.jersey.client.ClientConfig;
+import uk.gov.pay.connector.app.config.LedgerClientConfig;
 import uk.gov.pay.connector.app.config.RestClientConfig;
 import uk.gov.pay.connector.filters.RestClientLoggingFilter;
 
@@ -10,6 +18,9 @@ import java.security.KeyManagementException;
 import java.security.NoSuchAlgorithmException;
 
 import static java.lang.String.format;
+import static org.glassfish.jersey.apache.connector.ApacheClientProperties.CONNECTION_MANAGER;
+import static org.glassfish.jersey.client.ClientProperties.CONNECT_TIMEOUT;
+import static org.glassfish.jersey.client.ClientProperties.READ_TIMEOUT;
 
 public class RestClientFactory {
     private static final String TLSV1_2 = "TLSv1.2";
@@ -18,13 +29,7 @@ public class RestClientFactory {
         ClientBuilder clientBuilder = ClientBuilder.newBuilder();
 
         if (!clientConfig.isDisabledSecureConnection()) {
-            try {
-                SSLContext sslContext = SSLContext.getInstance(TLSV1_2);
-                sslContext.init(null, null, null);
-                clientBuilder = clientBuilder.sslContext(sslContext);
-            } catch (NoSuchAlgorithmException | KeyManagementException e) {
-                throw new RuntimeException(format("Unable to find an SSL context for %s", TLSV1_2), e);
-            }
+            clientBuilder = clientBuilder.sslContext(tlsV12Context());
         }
 
         Client client = clientBuilder.build();
@@ -33,6 +38,50 @@ public class RestClientFactory {
         return client;
     }
 
+    /**
+     * As {@link #buildClient(RestClientConfig)}, but keeping connections open for reuse, so that several requests
+     * can be in flight at once without each opening a new connection, and giving up on requests that take longer
+     * than the configured timeouts.
+     */
+    public static Client buildPooledClient(RestClientConfig clientConfig, LedgerClientConfig poolConfig) {
+        ClientBuilder clientBuilder = ClientBuilder.newBuilder()
+                .withConfig(new ClientConfig().connectorProvider(new ApacheConnectorProvider()));
+        SSLConnectionSocketFactory sslConnectionSocketFactory = SSLConnectionSocketFactory.getSocketFactory();
+
+        if (!clientConfig.isDisabledSecureConnection()) {
+            SSLContext sslContext = tlsV12Context();
+            clientBuilder = clientBuilder.sslContext(sslContext);
+            sslConnectionSocketFactory = new SSLConnectionSocketFactory(sslContext);
+        }
+
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager(
+                RegistryBuilder.<ConnectionSocketFactory>create()
+                        .register("http", PlainConnectionSocketFactory.getSocketFactory())
+                        .register("https", sslConnectionSocketFactory)
+                        .build());
+        connectionManager.setMaxTotal(poolConfig.getMaximumConnections());
+        connectionManager.setDefaultMaxPerRoute(poolConfig.getMaximumConnections());
+
+        Client client = clientBuilder
+                .property(CONNECTION_MANAGER, connectionManager)
+                .property(CONNECT_TIMEOUT, poolConfig.getConnectTimeoutInMillis())
+                .property(READ_TIMEOUT, poolConfig.getReadTimeoutInMillis())
+                .build();
+        client.register(RestClientLoggingFilter.class);
+
+        return client;
+    }
+
+    private static SSLContext tlsV12Context() {
+        try {
+            SSLContext sslContext = SSLContext.getInstance(TLSV1_2);
+            sslContext.init(null, null, null);
+            return sslContext;
+        } catch (NoSuchAlgorithmException | KeyManagementException e) {
+            throw new RuntimeException(format("Unable to find an SSL context for %s", TLSV1_2), e);
+        }
+    }
+
     private RestClientFactory() {
     }
 }
@@ -2,8 +2,10 @@ package uk.gov.pay.connector.app;
 
 import io.dropwizard.Configuration;
 import uk.gov.pay.connector.app.validator.ValidSqsConfig;
+import uk.gov.pay.connector.queue.QueueBackend;
 
 import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
 import javax.validation.constraints.NotNull;
 
 @ValidSqsConfig
@@ -25,6 +27,21 @@ public class SqsConfig extends Configuration {
     private int messageMaximumBatchSize;
     private String eventQueueUrl;
 
+    private int maxConnections = 50;
+    private int connectionTimeoutInMilliseconds = 10000;
+    // must be longer than the receive long-poll wait
+    private int socketTimeoutInMilliseconds = 30000;
+    private long connectionMaxIdleInMilliseconds = 60000;
+    private boolean tcpKeepAlive = true;
+    private int asyncNumberOfThreads = 10;
+    @Min(1)
+    private int asyncQueueCapacity = 1000;
+
+    @NotNull
+    private QueueBackend queueBackend = QueueBackend.SQS;
+    // 0 means messages on an in-memory queue are never dead-lettered
+    private int inMemoryMaximumReceiveCount = 0;
+
     public String getEndpoint() {
         return endpoint;
     }
@@ -60,4 +77,40 @@ public class SqsConfig extends Configuration {
     public String getEventQueueUrl() {
         return eventQueueUrl;
     }
+
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    public int getConnectionTimeoutInMilliseconds() {
+        return connectionTimeoutInMilliseconds;
+    }
+
+    public int getSocketTimeoutInMilliseconds() {
+        return socketTimeoutInMilliseconds;
+    }
+
+    public long getConnectionMaxIdleInMilliseconds() {
+        return connectionMaxIdleInMilliseconds;
+    }
+
+    public boolean isTcpKeepAlive() {
+        return tcpKeepAlive;
+    }
+
+    public int getAsyncNumberOfThreads() {
+        return asyncNumberOfThreads;
+    }
+
+    public int getAsyncQueueCapacity() {
+        return asyncQueueCapacity;
+    }
+
+    public QueueBackend getQueueBackend() {
+        return queueBackend;
+    }
+
+    public int getInMemoryMaximumReceiveCount() {
+        return inMemoryMaximumReceiveCount;
+    }
 }
@@ -0,0 +1,50 @@
+package uk.gov.pay.connector.app.config;
+
+import io.dropwizard.Configuration;
+
+import javax.validation.constraints.Min;
+
+public class EmailDispatchConfig extends Configuration {
+
+    @Min(1)
+    private int batchSize = 50;
+
+    @Min(1)
+    private long pollIntervalInMilliseconds = 1000;
+
+    @Min(1)
+    private int leaseInSeconds = 120;
+
+    @Min(1)
+    private int maximumAttempts = 10;
+
+    @Min(1)
+    private int initialRetryDelayInSeconds = 30;
+
+    @Min(1)
+    private int maximumRetryDelayInSeconds = 3600;
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public long getPollIntervalInMilliseconds() {
+        return pollIntervalInMilliseconds;
+    }
+
+    public int getLeaseInSeconds() {
+        return leaseInSeconds;
+    }
+
+    public int getMaximumAttempts() {
+        return maximumAttempts;
+    }
+
+    public int getInitialRetryDelayInSeconds() {
+        return initialRetryDelayInSeconds;
+    }
+
+    public int getMaximumRetryDelayInSeconds() {
+        return maximumRetryDelayInSeconds;
+    }
+}
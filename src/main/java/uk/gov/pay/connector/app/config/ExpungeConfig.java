@@ -28,6 +28,8 @@ public class ExpungeConfig extends Configuration {
 
     private boolean expungeChargesEnabled;
 
+    private boolean archiveExpungedChargesEnabled;
+
     public int getMinimumAgeOfChargeInDays() {
         return minimumAgeOfChargeInDays;
     }
@@ -44,6 +46,10 @@ public class ExpungeConfig extends Configuration {
         return expungeChargesEnabled;
     }
 
+    public boolean isArchiveExpungedChargesEnabled() {
+        return archiveExpungedChargesEnabled;
+    }
+
     public int getMinimumAgeForHistoricChargeExceptions() {
         return minimumAgeForHistoricChargeExceptions;
     }
@@ -0,0 +1,62 @@
+package uk.gov.pay.connector.app.config;
+
+import io.dropwizard.Configuration;
+
+import javax.validation.constraints.Min;
+
+public class LedgerClientConfig extends Configuration {
+
+    @Min(1)
+    private int maximumConnections = 16;
+
+    @Min(1)
+    private int concurrency = 8;
+
+    @Min(1)
+    private int connectTimeoutInMillis = 2000;
+
+    @Min(1)
+    private int readTimeoutInMillis = 10000;
+
+    @Min(1)
+    private int maximumAttempts = 3;
+
+    @Min(0)
+    private long retryDelayInMillis = 100;
+
+    /**
+     * The number of connections to ledger kept open for reuse.
+     */
+    public int getMaximumConnections() {
+        return maximumConnections;
+    }
+
+    /**
+     * The number of lookups in a batch sent to ledger at the same time.
+     */
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    public int getConnectTimeoutInMillis() {
+        return connectTimeoutInMillis;
+    }
+
+    public int getReadTimeoutInMillis() {
+        return readTimeoutInMillis;
+    }
+
+    /**
+     * The number of times a request that fails to connect, times out or gets a server error is sent before giving up.
+     */
+    public int getMaximumAttempts() {
+        return maximumAttempts;
+    }
+
+    /**
+     * The wait before the first retry, doubled for each retry after it.
+     */
+    public long getRetryDelayInMillis() {
+        return retryDelayInMillis;
+    }
+}
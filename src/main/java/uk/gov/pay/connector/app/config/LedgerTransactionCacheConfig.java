@@ -0,0 +1,35 @@
+package uk.gov.pay.connector.app.config;
+
+import io.dropwizard.Configuration;
+
+import javax.validation.constraints.Min;
+
+public class LedgerTransactionCacheConfig extends Configuration {
+
+    private boolean enabled = false;
+
+    @Min(1)
+    private long foundTtlInSeconds = 60;
+
+    @Min(1)
+    private long notFoundTtlInSeconds = 60;
+
+    @Min(1)
+    private long maximumSize = 10000;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public long getFoundTtlInSeconds() {
+        return foundTtlInSeconds;
+    }
+
+    public long getNotFoundTtlInSeconds() {
+        return notFoundTtlInSeconds;
+    }
+
+    public long getMaximumSize() {
+        return maximumSize;
+    }
+}
@@ -0,0 +1,22 @@
+package uk.gov.pay.connector.app.config;
+
+import io.dropwizard.Configuration;
+
+import javax.validation.constraints.Min;
+
+public class NotificationCredentialsCacheConfig extends Configuration {
+
+    @Min(0)
+    private long verifiedCredentialsTtlInSeconds = 300;
+
+    @Min(1)
+    private long maximumSize = 1000;
+
+    public long getVerifiedCredentialsTtlInSeconds() {
+        return verifiedCredentialsTtlInSeconds;
+    }
+
+    public long getMaximumSize() {
+        return maximumSize;
+    }
+}
@@ -0,0 +1,41 @@
+package uk.gov.pay.connector.app.config;
+
+import io.dropwizard.Configuration;
+
+import javax.validation.constraints.Min;
+
+public class NotificationDeduplicationConfig extends Configuration {
+
+    private boolean enabled = false;
+
+    private boolean shared = false;
+
+    @Min(1)
+    private long windowInSeconds = 600;
+
+    @Min(1)
+    private long maximumSize = 10000;
+
+    @Min(1)
+    private long pruneIntervalInSeconds = 300;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public boolean isShared() {
+        return shared;
+    }
+
+    public long getWindowInSeconds() {
+        return windowInSeconds;
+    }
+
+    public long getMaximumSize() {
+        return maximumSize;
+    }
+
+    public long getPruneIntervalInSeconds() {
+        return pruneIntervalInSeconds;
+    }
+}
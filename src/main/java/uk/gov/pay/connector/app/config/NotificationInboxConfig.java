@@ -0,0 +1,63 @@
+package uk.gov.pay.connector.app.config;
+
+import io.dropwizard.Configuration;
+
+import javax.validation.constraints.Min;
+
+public class NotificationInboxConfig extends Configuration {
+
+    private boolean enabled = false;
+
+    @Min(1)
+    private int batchSize = 50;
+
+    @Min(1)
+    private int workerThreads = 10;
+
+    @Min(1)
+    private long pollIntervalInMilliseconds = 500;
+
+    @Min(1)
+    private int leaseInSeconds = 300;
+
+    @Min(1)
+    private int maximumAttempts = 10;
+
+    @Min(1)
+    private int initialRetryDelayInSeconds = 30;
+
+    @Min(1)
+    private int maximumRetryDelayInSeconds = 3600;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public int getWorkerThreads() {
+        return workerThreads;
+    }
+
+    public long getPollIntervalInMilliseconds() {
+        return pollIntervalInMilliseconds;
+    }
+
+    public int getLeaseInSeconds() {
+        return leaseInSeconds;
+    }
+
+    public int getMaximumAttempts() {
+        return maximumAttempts;
+    }
+
+    public int getInitialRetryDelayInSeconds() {
+        return initialRetryDelayInSeconds;
+    }
+
+    public int getMaximumRetryDelayInSeconds() {
+        return maximumRetryDelayInSeconds;
+    }
+}
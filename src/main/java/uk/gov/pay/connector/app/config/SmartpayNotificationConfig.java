@@ -0,0 +1,19 @@
+package uk.gov.pay.connector.app.config;
+
+import io.dropwizard.Configuration;
+
+import javax.validation.constraints.Min;
+
+public class SmartpayNotificationConfig extends Configuration {
+
+    @Min(1)
+    private int batchProcessingThreads = 8;
+
+    /**
+     * The number of charges whose notifications, from one Smartpay notification request, are processed at the same
+     * time.
+     */
+    public int getBatchProcessingThreads() {
+        return batchProcessingThreads;
+    }
+}
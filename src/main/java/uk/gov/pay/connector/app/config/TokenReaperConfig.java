@@ -0,0 +1,42 @@
+package uk.gov.pay.connector.app.config;
+
+import io.dropwizard.Configuration;
+
+import javax.validation.constraints.Min;
+
+public class TokenReaperConfig extends Configuration {
+
+    @Min(1)
+    private int tokenExpiryInDays = 7;
+
+    @Min(1)
+    private int batchSize = 1000;
+
+    @Min(0)
+    private long pauseBetweenBatchesInMillis = 100;
+
+    @Min(1)
+    private int maximumBatchesPerRun = 1000;
+
+    private boolean runWithChargeExpirySweep = true;
+
+    public int getTokenExpiryInDays() {
+        return tokenExpiryInDays;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public long getPauseBetweenBatchesInMillis() {
+        return pauseBetweenBatchesInMillis;
+    }
+
+    public int getMaximumBatchesPerRun() {
+        return maximumBatchesPerRun;
+    }
+
+    public boolean isRunWithChargeExpirySweep() {
+        return runWithChargeExpirySweep;
+    }
+}
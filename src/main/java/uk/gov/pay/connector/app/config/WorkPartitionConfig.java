@@ -0,0 +1,29 @@
+package uk.gov.pay.connector.app.config;
+
+import io.dropwizard.Configuration;
+
+import javax.validation.constraints.Min;
+
+public class WorkPartitionConfig extends Configuration {
+
+    @Min(1)
+    private long leaseDurationInSeconds = 300;
+
+    @Min(1)
+    private long shardSize = 10000;
+
+    @Min(1)
+    private long completedJobRetentionInDays = 7;
+
+    public long getLeaseDurationInSeconds() {
+        return leaseDurationInSeconds;
+    }
+
+    public long getShardSize() {
+        return shardSize;
+    }
+
+    public long getCompletedJobRetentionInDays() {
+        return completedJobRetentionInDays;
+    }
+}
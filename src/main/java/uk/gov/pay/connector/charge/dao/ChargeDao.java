@@ -2,10 +2,19 @@ package uk.gov.pay.connector.charge.dao;
 
 import com.google.inject.Provider;
 import com.google.inject.persist.Transactional;
+import uk.gov.pay.commons.model.SupportedLanguageJpaConverter;
+import uk.gov.pay.connector.charge.model.CardDetailsEntity;
+import uk.gov.pay.connector.charge.model.ExpirableChargeSummary;
+import uk.gov.pay.connector.charge.model.FirstDigitsCardNumberConverter;
+import uk.gov.pay.connector.charge.model.LastDigitsCardNumberConverter;
 import uk.gov.pay.connector.charge.model.domain.ChargeEntity;
 import uk.gov.pay.connector.charge.model.domain.ChargeStatus;
 import uk.gov.pay.connector.charge.model.domain.ParityCheckStatus;
+import uk.gov.pay.connector.charge.model.domain.ServicePaymentReferenceConverter;
+import uk.gov.pay.connector.charge.util.ExternalMetadataConverter;
 import uk.gov.pay.connector.common.dao.JpaDao;
+import uk.gov.pay.connector.common.model.domain.UTCDateTimeConverter;
+import uk.gov.pay.connector.gateway.PaymentGatewayName;
 
 import javax.inject.Inject;
 import javax.persistence.EntityManager;
@@ -18,11 +27,14 @@ import java.time.Duration;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 import static uk.gov.pay.connector.charge.model.domain.ChargeStatus.CAPTURE_APPROVED;
 import static uk.gov.pay.connector.charge.model.domain.ChargeStatus.CAPTURE_APPROVED_RETRY;
+import static uk.gov.pay.connector.charge.model.domain.ChargeStatus.PAYMENT_NOTIFICATION_CREATED;
 
 @Transactional
 public class ChargeDao extends JpaDao<ChargeEntity> {
@@ -38,6 +50,23 @@ public class ChargeDao extends JpaDao<ChargeEntity> {
                     "    ce.updated >= :cutoffDate " +
                     ") ";
 
+    private static final String INSERT_TELEPHONE_CHARGE_IF_ABSENT =
+            "WITH inserted_charge AS (" +
+                    "  INSERT INTO charges (external_id, amount, status, gateway_transaction_id, gateway_account_id, " +
+                    "    description, reference, email, created_date, language, external_metadata, source, " +
+                    "    first_digits_card_number, last_digits_card_number, cardholder_name, expiry_date, card_brand, card_type, " +
+                    "    delayed_capture, moto, version) " +
+                    "  VALUES (?1, ?2, ?3, ?4, ?5, ?6, ?7, ?8, ?9, ?10, ?11, ?12, ?13, ?14, ?15, ?16, ?17, ?18, false, false, 1) " +
+                    "  ON CONFLICT (gateway_account_id, gateway_transaction_id) WHERE source = 'CARD_EXTERNAL_TELEPHONE' DO NOTHING " +
+                    "  RETURNING id, status" +
+                    "), inserted_events AS (" +
+                    "  INSERT INTO charge_events (charge_id, status, updated) " +
+                    "  SELECT id, ?19, (now() at time zone 'utc') FROM inserted_charge " +
+                    "  UNION ALL " +
+                    "  SELECT id, status, (now() at time zone 'utc') + interval '1 microsecond' FROM inserted_charge" +
+                    ") " +
+                    "SELECT id FROM inserted_charge";
+
     @Inject
     public ChargeDao(final Provider<EntityManager> entityManager) {
         super(entityManager);
@@ -58,6 +87,34 @@ public class ChargeDao extends JpaDao<ChargeEntity> {
                 .getResultList().stream().findFirst();
     }
 
+    /**
+     * Looks up just the payment provider of a charge, without loading the charge into the persistence context.
+     */
+    public Optional<PaymentGatewayName> findPaymentGatewayNameByExternalId(String externalId) {
+        String query = "SELECT c.gatewayAccount.gatewayName FROM ChargeEntity c " +
+                "WHERE c.externalId = :externalId";
+
+        return entityManager.get()
+                .createQuery(query, String.class)
+                .setParameter("externalId", externalId)
+                .getResultList().stream().findFirst()
+                .filter(PaymentGatewayName::isValidPaymentGateway)
+                .map(PaymentGatewayName::valueFrom);
+    }
+
+    public List<ChargeEntity> findByExternalIds(Collection<String> externalIds) {
+        if (externalIds.isEmpty()) {
+            return List.of();
+        }
+        String query = "SELECT c FROM ChargeEntity c " +
+                "WHERE c.externalId IN :externalIds";
+
+        return entityManager.get()
+                .createQuery(query, ChargeEntity.class)
+                .setParameter("externalIds", externalIds)
+                .getResultList();
+    }
+
     public Optional<ChargeEntity> findByTokenId(String tokenId) {
         String query = "SELECT te.chargeEntity FROM TokenEntity te WHERE te.token=:tokenId AND te.used=false";
 
@@ -80,6 +137,20 @@ public class ChargeDao extends JpaDao<ChargeEntity> {
                 .findFirst();
     }
 
+    public Optional<ChargeEntity> findByGatewayTransactionIdAndAccount(Long accountId, String gatewayTransactionId) {
+        String query = "SELECT c FROM ChargeEntity c " +
+                "WHERE c.gatewayTransactionId = :gatewayTransactionId " +
+                "AND c.gatewayAccount.id = :accountId";
+
+        return entityManager.get()
+                .createQuery(query, ChargeEntity.class)
+                .setParameter("gatewayTransactionId", gatewayTransactionId)
+                .setParameter("accountId", accountId)
+                .getResultList()
+                .stream()
+                .findFirst();
+    }
+
     public Optional<ChargeEntity> findByExternalIdAndGatewayAccount(String chargeExternalId, Long accountId) {
 
         String query = "SELECT c FROM ChargeEntity c " +
@@ -105,6 +176,21 @@ public class ChargeDao extends JpaDao<ChargeEntity> {
                 .setParameter("provider", provider).getResultList().stream().findFirst();
     }
 
+    public List<ChargeEntity> findByProviderAndTransactionIds(String provider, Collection<String> transactionIds) {
+        if (transactionIds.isEmpty()) {
+            return List.of();
+        }
+
+        String query = "SELECT c FROM ChargeEntity c " +
+                "WHERE c.gatewayTransactionId IN :gatewayTransactionIds " +
+                "AND c.gatewayAccount.gatewayName = :provider";
+
+        return entityManager.get()
+                .createQuery(query, ChargeEntity.class)
+                .setParameter("gatewayTransactionIds", transactionIds)
+                .setParameter("provider", provider).getResultList();
+    }
+
     public List<ChargeEntity> findBeforeDateWithStatusIn(ZonedDateTime date, List<ChargeStatus> statuses) {
         CriteriaBuilder cb = entityManager.get().getCriteriaBuilder();
         CriteriaQuery<ChargeEntity> cq = cb.createQuery(ChargeEntity.class);
@@ -119,6 +205,27 @@ public class ChargeDao extends JpaDao<ChargeEntity> {
         return query.getResultList();
     }
 
+    /**
+     * Pages through the charges with the given statuses in ID order, so that the caller can carry on from the last
+     * ID of each page without holding every matching charge at once.
+     */
+    public List<ExpirableChargeSummary> findSummariesWithStatusInAfterId(List<ChargeStatus> statuses, long afterId,
+                                                                        int limit) {
+        String query = "SELECT NEW uk.gov.pay.connector.charge.model.ExpirableChargeSummary(" +
+                "c.id, c.externalId, c.status, c.createdDate)" +
+                " FROM ChargeEntity c" +
+                " WHERE c.status IN :statuses" +
+                " AND c.id > :afterId" +
+                " ORDER BY c.id";
+
+        return entityManager.get()
+                .createQuery(query, ExpirableChargeSummary.class)
+                .setParameter("statuses", statuses.stream().map(ChargeStatus::getValue).collect(Collectors.toList()))
+                .setParameter("afterId", afterId)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
     private List<Predicate> buildParamPredicates(CriteriaBuilder cb, Root<ChargeEntity> charge,
                                                  ZonedDateTime toDate, List<ChargeStatus> internalStates) {
         List<Predicate> predicates = new ArrayList<>();
@@ -191,6 +298,15 @@ public class ChargeDao extends JpaDao<ChargeEntity> {
 
     public Optional<ChargeEntity> findChargeToExpunge(int minimumAgeOfChargeInDays,
                                                       int excludeChargesParityCheckedWithInDays) {
+        return findChargesToExpunge(minimumAgeOfChargeInDays, excludeChargesParityCheckedWithInDays, 1)
+                .stream().findFirst();
+    }
+
+    /**
+     * @return up to the given number of charges ready for expunging, oldest first
+     */
+    public List<ChargeEntity> findChargesToExpunge(int minimumAgeOfChargeInDays,
+                                                   int excludeChargesParityCheckedWithInDays, int maximumNumberOfCharges) {
         String query = "SELECT c FROM ChargeEntity c " +
                 "WHERE (c.parityCheckDate is null or c.parityCheckDate < :parityCheckedBeforeDate)" +
                 " AND c.createdDate < :createdBeforeDate " +
@@ -208,8 +324,8 @@ public class ChargeDao extends JpaDao<ChargeEntity> {
                 .createQuery(query, ChargeEntity.class)
                 .setParameter("parityCheckedBeforeDate", parityCheckedBeforeDate)
                 .setParameter("createdBeforeDate", createdBeforeDate)
-                .setMaxResults(1)
-                .getResultList().stream().findFirst();
+                .setMaxResults(maximumNumberOfCharges)
+                .getResultList();
     }
 
     public void expungeCharge(Long id, String externalId) {
@@ -248,4 +364,43 @@ public class ChargeDao extends JpaDao<ChargeEntity> {
                 .setParameter("statuses", statuses)
                 .getResultList();
     }
+
+    /**
+     * Inserts a telephone payment notification charge together with its PAYMENT NOTIFICATION CREATED and
+     * current status charge events in a single statement. Relies on the partial unique index over
+     * (gateway_account_id, gateway_transaction_id) for telephone charges, so a concurrent or retried
+     * notification for the same provider id writes nothing and an empty Optional is returned.
+     *
+     * @return the id of the inserted charge, or empty if the account already has a charge for this provider id
+     */
+    public Optional<Long> insertTelephoneChargeIfAbsent(ChargeEntity charge) {
+        CardDetailsEntity cardDetails = Optional.ofNullable(charge.getCardDetails()).orElseGet(CardDetailsEntity::new);
+
+        List<?> insertedIds = entityManager.get()
+                .createNativeQuery(INSERT_TELEPHONE_CHARGE_IF_ABSENT)
+                .setParameter(1, charge.getExternalId())
+                .setParameter(2, charge.getAmount())
+                .setParameter(3, charge.getStatus())
+                .setParameter(4, charge.getGatewayTransactionId())
+                .setParameter(5, charge.getGatewayAccount().getId())
+                .setParameter(6, charge.getDescription())
+                .setParameter(7, new ServicePaymentReferenceConverter().convertToDatabaseColumn(charge.getReference()))
+                .setParameter(8, charge.getEmail())
+                .setParameter(9, new UTCDateTimeConverter().convertToDatabaseColumn(charge.getCreatedDate()))
+                .setParameter(10, new SupportedLanguageJpaConverter().convertToDatabaseColumn(charge.getLanguage()))
+                .setParameter(11, new ExternalMetadataConverter().convertToDatabaseColumn(charge.getExternalMetadata().orElse(null)))
+                .setParameter(12, charge.getSource().name())
+                .setParameter(13, new FirstDigitsCardNumberConverter().convertToDatabaseColumn(cardDetails.getFirstDigitsCardNumber()))
+                .setParameter(14, new LastDigitsCardNumberConverter().convertToDatabaseColumn(cardDetails.getLastDigitsCardNumber()))
+                .setParameter(15, cardDetails.getCardHolderName())
+                .setParameter(16, cardDetails.getExpiryDate())
+                .setParameter(17, cardDetails.getCardBrand())
+                .setParameter(18, cardDetails.getCardType() == null ? null : cardDetails.getCardType().name())
+                .setParameter(19, PAYMENT_NOTIFICATION_CREATED.getValue())
+                .getResultList();
+
+        return insertedIds.stream()
+                .findFirst()
+                .map(id -> ((Number) id).longValue());
+    }
 }
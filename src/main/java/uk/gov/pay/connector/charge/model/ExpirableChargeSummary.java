@@ -0,0 +1,38 @@
+package uk.gov.pay.connector.charge.model;
+
+import java.time.ZonedDateTime;
+
+/**
+ * The columns of a charge needed to schedule its expiry. Populated directly from a JPQL constructor expression so
+ * that filling the charge expiry wheel at startup does not load every expirable charge with its associations.
+ */
+public class ExpirableChargeSummary {
+
+    private final Long id;
+    private final String externalId;
+    private final String status;
+    private final ZonedDateTime createdDate;
+
+    public ExpirableChargeSummary(Long id, String externalId, String status, ZonedDateTime createdDate) {
+        this.id = id;
+        this.externalId = externalId;
+        this.status = status;
+        this.createdDate = createdDate;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getExternalId() {
+        return externalId;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public ZonedDateTime getCreatedDate() {
+        return createdDate;
+    }
+}
@@ -0,0 +1,34 @@
+package uk.gov.pay.connector.charge.model.telephone;
+
+import uk.gov.pay.connector.charge.model.ChargeResponse;
+
+/**
+ * The charge for a telephone payment notification, and whether this request created it or found it already
+ * recorded by an earlier or concurrent notification for the same provider id.
+ */
+public class TelephoneChargeCreateResult {
+
+    private final ChargeResponse chargeResponse;
+    private final boolean created;
+
+    private TelephoneChargeCreateResult(ChargeResponse chargeResponse, boolean created) {
+        this.chargeResponse = chargeResponse;
+        this.created = created;
+    }
+
+    public static TelephoneChargeCreateResult created(ChargeResponse chargeResponse) {
+        return new TelephoneChargeCreateResult(chargeResponse, true);
+    }
+
+    public static TelephoneChargeCreateResult alreadyRecorded(ChargeResponse chargeResponse) {
+        return new TelephoneChargeCreateResult(chargeResponse, false);
+    }
+
+    public ChargeResponse getChargeResponse() {
+        return chargeResponse;
+    }
+
+    public boolean isCreated() {
+        return created;
+    }
+}
@@ -86,10 +86,11 @@ public class ChargesApiResource {
             @NotNull @Valid TelephoneChargeCreateRequest telephoneChargeCreateRequest,
             @Context UriInfo uriInfo
     ) {
-        return chargeService.findCharge(telephoneChargeCreateRequest)
+        return chargeService.findCharge(accountId, telephoneChargeCreateRequest)
                 .map(response -> Response.status(200).entity(response).build())
-                .orElse(Response.status(201).entity(chargeService.create(telephoneChargeCreateRequest, accountId).get())
-                .build());
+                .orElseGet(() -> chargeService.create(telephoneChargeCreateRequest, accountId)
+                        .map(result -> Response.status(result.isCreated() ? 201 : 200).entity(result.getChargeResponse()).build())
+                        .orElseGet(() -> notFoundResponse("Unknown gateway account: " + accountId)));
     }
 
     @POST
@@ -8,8 +8,10 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import uk.gov.pay.connector.app.ChargeSweepConfig;
 import uk.gov.pay.connector.app.ConnectorConfiguration;
+import uk.gov.pay.connector.app.config.TokenReaperConfig;
 import uk.gov.pay.connector.charge.dao.ChargeDao;
 import uk.gov.pay.connector.charge.exception.ChargeNotFoundRuntimeException;
+import uk.gov.pay.connector.charge.model.ExpirableChargeSummary;
 import uk.gov.pay.connector.charge.model.domain.ChargeEntity;
 import uk.gov.pay.connector.charge.model.domain.ChargeStatus;
 import uk.gov.pay.connector.charge.model.domain.ExpirableChargeStatus;
@@ -27,13 +29,14 @@ import uk.gov.pay.connector.gateway.model.response.GatewayResponse;
 import uk.gov.pay.connector.gatewayaccount.model.GatewayAccountEntity;
 import uk.gov.pay.connector.paymentprocessor.model.OperationType;
 import uk.gov.pay.connector.paymentprocessor.service.QueryService;
-import uk.gov.pay.connector.token.dao.TokenDao;
+import uk.gov.pay.connector.token.service.TokenReaperService;
+import uk.gov.pay.connector.workpartition.service.WorkPartitionService;
 
 import javax.inject.Inject;
 import javax.ws.rs.WebApplicationException;
-import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
@@ -60,29 +63,39 @@ public class ChargeExpiryService {
 
     private static final String EXPIRY_SUCCESS = "expiry-success";
     private static final String EXPIRY_FAILED = "expiry-failed";
-    private static final long TOKEN_EXPIRY_DAYS = 7;
+    private static final String SWEEP_JOB_NAME = "expired-charges-sweep";
+    static final int EXPIRY_WHEEL_LOAD_PAGE_SIZE = 1000;
 
     private final ChargeDao chargeDao;
     private final ChargeService chargeService;
-    private final TokenDao tokenDao;
+    private final TokenReaperService tokenReaperService;
     private final PaymentProviders providers;
     private final QueryService queryService;
 
+    private final ChargeExpiryWheel chargeExpiryWheel;
+    private final WorkPartitionService workPartitionService;
+
     private final ChargeSweepConfig chargeSweepConfig;
+    private final TokenReaperConfig tokenReaperConfig;
 
     @Inject
     public ChargeExpiryService(ChargeDao chargeDao,
                                ChargeService chargeService,
-                               TokenDao tokenDao,
+                               TokenReaperService tokenReaperService,
                                PaymentProviders providers,
                                QueryService queryService,
+                               ChargeExpiryWheel chargeExpiryWheel,
+                               WorkPartitionService workPartitionService,
                                ConnectorConfiguration config) {
         this.chargeDao = chargeDao;
         this.chargeService = chargeService;
-        this.tokenDao = tokenDao;
+        this.tokenReaperService = tokenReaperService;
         this.providers = providers;
         this.chargeSweepConfig = config.getChargeSweepConfig();
+        this.tokenReaperConfig = config.getTokenReaperConfig();
         this.queryService = queryService;
+        this.chargeExpiryWheel = chargeExpiryWheel;
+        this.workPartitionService = workPartitionService;
     }
 
     private enum expiryMethod {
@@ -127,7 +140,16 @@ public class ChargeExpiryService {
         return ExpirableChargeStatus.of(ChargeStatus.fromString(chargeEntity.getStatus())).getAuthorisationStage();
     }
 
+    /**
+     * Expires every charge past its expiry threshold, unless another node is already sweeping, in which case
+     * nothing is expired by this call.
+     */
     public Map<String, Integer> sweepAndExpireChargesAndTokens() {
+        return workPartitionService.callExclusively(SWEEP_JOB_NAME, this::sweepAndExpire)
+                .orElse(ImmutableMap.of(EXPIRY_SUCCESS, 0, EXPIRY_FAILED, 0));
+    }
+
+    private Map<String, Integer> sweepAndExpire() {
         List<ChargeEntity> chargesToExpire = new ImmutableList.Builder<ChargeEntity>()
                 .addAll(getChargesToExpireWithRegularExpiryThreshold())
                 .addAll(getChargesToExpireWithDelayedExpiryThreshold())
@@ -140,9 +162,45 @@ public class ChargeExpiryService {
         return expire(chargesToExpire);
     }
 
-    private int deleteTokensOlderThanSpecifiedDate() {
-        ZonedDateTime cutOffDate = ZonedDateTime.now(ZoneId.of("UTC")).minusDays(TOKEN_EXPIRY_DAYS);
-        return tokenDao.deleteTokensOlderThanSpecifiedDate(cutOffDate);
+    /**
+     * Expires those of the given charges that are still past their expiry deadline. The charges may have moved on
+     * since their deadlines were scheduled, so anything no longer due is left alone.
+     */
+    public Map<String, Integer> expireChargesIfDue(Collection<String> chargeExternalIds) {
+        List<ChargeEntity> chargesToExpire = chargeDao.findByExternalIds(chargeExternalIds)
+                .stream()
+                .filter(chargeExpiryWheel::isDue)
+                .collect(Collectors.toList());
+
+        logger.info("Charges due for expiry - number_of_charges={}, number_scheduled={}",
+                chargesToExpire.size(), chargeExternalIds.size());
+
+        return expire(chargesToExpire);
+    }
+
+    /**
+     * Schedules every charge that can still expire on the expiry wheel, reading them a page at a time.
+     */
+    public void scheduleExpirableCharges() {
+        List<ChargeStatus> expirableStatuses = ExpirableChargeStatus.getValuesAsStream()
+                .map(ExpirableChargeStatus::getChargeStatus)
+                .collect(Collectors.toList());
+
+        long afterId = 0;
+        List<ExpirableChargeSummary> page;
+        do {
+            page = chargeDao.findSummariesWithStatusInAfterId(expirableStatuses, afterId, EXPIRY_WHEEL_LOAD_PAGE_SIZE);
+            chargeExpiryWheel.trackAll(page);
+            if (!page.isEmpty()) {
+                afterId = page.get(page.size() - 1).getId();
+            }
+        } while (page.size() == EXPIRY_WHEEL_LOAD_PAGE_SIZE);
+    }
+
+    private void deleteTokensOlderThanSpecifiedDate() {
+        if (tokenReaperConfig.isRunWithChargeExpirySweep()) {
+            tokenReaperService.deleteExpiredTokens();
+        }
     }
 
 
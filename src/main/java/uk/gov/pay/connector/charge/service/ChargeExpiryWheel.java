@@ -0,0 +1,113 @@
+package uk.gov.pay.connector.charge.service;
+
+import uk.gov.pay.connector.app.ChargeSweepConfig;
+import uk.gov.pay.connector.app.ConnectorConfiguration;
+import uk.gov.pay.connector.charge.model.ExpirableChargeSummary;
+import uk.gov.pay.connector.charge.model.domain.ChargeEntity;
+import uk.gov.pay.connector.charge.model.domain.ChargeStatus;
+import uk.gov.pay.connector.charge.model.domain.ExpirableChargeStatus;
+import uk.gov.pay.connector.util.HierarchicalTimingWheel;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.time.Clock;
+import java.time.ZonedDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * The expiry deadlines of the charges this node has created or transitioned, so that they can be expired close to
+ * their deadlines instead of waiting for the next sweep. Charges are keyed by external ID; a charge leaving the
+ * expirable states is dropped.
+ *
+ * <p>A charge can be transitioned on another node after this one has seen it, so a due charge must be checked
+ * against the database before it is expired.</p>
+ */
+@Singleton
+public class ChargeExpiryWheel {
+
+    private static final int SLOTS_PER_WHEEL = 64;
+    // with one second ticks the top wheel spans about 194 days, comfortably beyond any expiry threshold
+    private static final int NUMBER_OF_WHEELS = 4;
+
+    private final ChargeSweepConfig chargeSweepConfig;
+    private final boolean enabled;
+    private final Clock clock;
+    private final HierarchicalTimingWheel<String> wheel;
+
+    @Inject
+    public ChargeExpiryWheel(ConnectorConfiguration connectorConfiguration) {
+        this(connectorConfiguration.getChargeSweepConfig(),
+                connectorConfiguration.getChargeSweepConfig().isExpiryWheelEnabled()
+                        && Boolean.TRUE.equals(connectorConfiguration.getCaptureProcessConfig().getBackgroundProcessingEnabled()),
+                Clock.systemUTC());
+    }
+
+    ChargeExpiryWheel(ChargeSweepConfig chargeSweepConfig, boolean enabled, Clock clock) {
+        this.chargeSweepConfig = chargeSweepConfig;
+        this.enabled = enabled;
+        this.clock = clock;
+        this.wheel = new HierarchicalTimingWheel<>(chargeSweepConfig.getExpiryWheelTickInMilliseconds(),
+                SLOTS_PER_WHEEL, NUMBER_OF_WHEELS, clock.millis());
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Schedules the charge to be expired at the deadline for its current status, or stops tracking it if its status
+     * cannot expire.
+     */
+    public void track(ChargeEntity charge) {
+        track(charge.getExternalId(), charge.getStatus(), charge.getCreatedDate());
+    }
+
+    public void trackAll(Collection<ExpirableChargeSummary> charges) {
+        charges.forEach(charge -> track(charge.getExternalId(), charge.getStatus(), charge.getCreatedDate()));
+    }
+
+    private void track(String externalId, String status, ZonedDateTime createdDate) {
+        if (!enabled) {
+            return;
+        }
+        getExpiryDeadline(status, createdDate).ifPresentOrElse(
+                deadline -> wheel.schedule(externalId, deadline.toInstant().toEpochMilli()),
+                () -> wheel.cancel(externalId));
+    }
+
+    /**
+     * @return the external IDs of the charges whose deadlines have passed since the last call
+     */
+    public List<String> takeDue() {
+        return wheel.advance(clock.millis());
+    }
+
+    public int size() {
+        return wheel.size();
+    }
+
+    public Optional<ZonedDateTime> getExpiryDeadline(ChargeEntity charge) {
+        return getExpiryDeadline(charge.getStatus(), charge.getCreatedDate());
+    }
+
+    private Optional<ZonedDateTime> getExpiryDeadline(String status, ZonedDateTime createdDate) {
+        if (status == null || createdDate == null) {
+            return Optional.empty();
+        }
+        ChargeStatus chargeStatus = ChargeStatus.fromString(status);
+        return ExpirableChargeStatus.getValuesAsStream()
+                .filter(expirableChargeStatus -> expirableChargeStatus.getChargeStatus() == chargeStatus)
+                .findFirst()
+                .map(expirableChargeStatus -> createdDate.plusSeconds(expirableChargeStatus.isDelayedThresholdType()
+                        ? chargeSweepConfig.getAwaitingCaptureExpiryThreshold()
+                        : chargeSweepConfig.getDefaultChargeExpiryThreshold()));
+    }
+
+    public boolean isDue(ChargeEntity charge) {
+        return getExpiryDeadline(charge)
+                .map(deadline -> !deadline.toInstant().isAfter(clock.instant()))
+                .orElse(false);
+    }
+}
@@ -0,0 +1,117 @@
+package uk.gov.pay.connector.charge.service;
+
+import com.codahale.metrics.Gauge;
+import com.google.common.collect.Lists;
+import io.dropwizard.lifecycle.Managed;
+import io.dropwizard.setup.Environment;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.gov.pay.connector.app.ChargeSweepConfig;
+import uk.gov.pay.connector.app.ConnectorConfiguration;
+import uk.gov.pay.connector.workpartition.service.WorkPartitionService;
+
+import javax.inject.Inject;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Expires the charges on the {@link ChargeExpiryWheel} as their deadlines pass. At startup the wheel is filled with
+ * every charge that can still expire, so that charges created before a restart or on other nodes are covered too.
+ *
+ * <p>As every node loads the same charges, due charges are only expired while holding the lease on the
+ * {@value #JOB_NAME} job, so that no two nodes expire charges at the same time. A node that cannot get the lease keeps
+ * its due charges for the next tick, by which time those expired elsewhere are no longer due. The lease is released
+ * after every tick, as charges created since startup are only on the wheel of the node that created them.</p>
+ */
+public class ChargeExpiryWheelProcess implements Managed {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ChargeExpiryWheelProcess.class);
+    static final String JOB_NAME = "charge-expiry-wheel";
+
+    private final ChargeExpiryWheel chargeExpiryWheel;
+    private final ChargeExpiryService chargeExpiryService;
+    private final WorkPartitionService workPartitionService;
+    private final ScheduledExecutorService expiryExecutorService;
+    private final long tickInMilliseconds;
+    private final int batchSize;
+    // only touched from the single expiry thread
+    private final List<String> dueChargeExternalIds = new ArrayList<>();
+
+    @Inject
+    public ChargeExpiryWheelProcess(ChargeExpiryWheel chargeExpiryWheel,
+                                    ChargeExpiryService chargeExpiryService,
+                                    WorkPartitionService workPartitionService,
+                                    Environment environment,
+                                    ConnectorConfiguration connectorConfiguration) {
+        this(chargeExpiryWheel, chargeExpiryService, workPartitionService,
+                environment.lifecycle().scheduledExecutorService("charge-expiry-wheel").threads(1).build(),
+                connectorConfiguration.getChargeSweepConfig());
+        environment.metrics().<Gauge<Integer>>register("charge-expiry.wheel.size", chargeExpiryWheel::size);
+    }
+
+    ChargeExpiryWheelProcess(ChargeExpiryWheel chargeExpiryWheel,
+                             ChargeExpiryService chargeExpiryService,
+                             WorkPartitionService workPartitionService,
+                             ScheduledExecutorService expiryExecutorService,
+                             ChargeSweepConfig chargeSweepConfig) {
+        this.chargeExpiryWheel = chargeExpiryWheel;
+        this.chargeExpiryService = chargeExpiryService;
+        this.workPartitionService = workPartitionService;
+        this.expiryExecutorService = expiryExecutorService;
+        this.tickInMilliseconds = chargeSweepConfig.getExpiryWheelTickInMilliseconds();
+        this.batchSize = chargeSweepConfig.getExpiryWheelBatchSize();
+    }
+
+    @Override
+    public void start() {
+        expiryExecutorService.execute(this::scheduleExpirableCharges);
+        expiryExecutorService.scheduleWithFixedDelay(this::expireDueCharges, tickInMilliseconds, tickInMilliseconds,
+                TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void stop() {
+        expiryExecutorService.shutdown();
+    }
+
+    private void scheduleExpirableCharges() {
+        try {
+            chargeExpiryService.scheduleExpirableCharges();
+            LOGGER.info("Charge expiry wheel loaded - number_of_charges={}", chargeExpiryWheel.size());
+        } catch (Exception e) {
+            // charges missed here are still expired by the sweep
+            LOGGER.error("Failed to load charges onto the charge expiry wheel [message={}]", e.getMessage());
+        }
+    }
+
+    void expireDueCharges() {
+        dueChargeExternalIds.addAll(chargeExpiryWheel.takeDue());
+        if (dueChargeExternalIds.isEmpty()) {
+            return;
+        }
+
+        try {
+            if (workPartitionService.runInTurn(JOB_NAME, () -> expireInBatches(List.copyOf(dueChargeExternalIds)))) {
+                dueChargeExternalIds.clear();
+            }
+        } catch (Exception e) {
+            // the due charges are kept, so they are tried again at the next tick
+            LOGGER.error("Failed to take the lease to expire due charges [number_of_charges={}] [message={}]",
+                    dueChargeExternalIds.size(), e.getMessage());
+        }
+    }
+
+    private void expireInBatches(List<String> chargeExternalIds) {
+        for (List<String> batch : Lists.partition(chargeExternalIds, batchSize)) {
+            try {
+                chargeExpiryService.expireChargesIfDue(batch);
+            } catch (Exception e) {
+                // charges in a failed batch are left to the sweep
+                LOGGER.error("Failed to expire batch of due charges [number_of_charges={}] [message={}]",
+                        batch.size(), e.getMessage());
+            }
+        }
+    }
+}
@@ -2,6 +2,7 @@ package uk.gov.pay.connector.charge.service;
 
 import com.google.inject.persist.Transactional;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.tuple.Pair;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import uk.gov.pay.commons.model.SupportedLanguage;
@@ -33,6 +34,7 @@ import uk.gov.pay.connector.charge.model.domain.PersistedCard;
 import uk.gov.pay.connector.charge.model.telephone.PaymentOutcome;
 import uk.gov.pay.connector.charge.model.telephone.Supplemental;
 import uk.gov.pay.connector.charge.model.telephone.TelephoneChargeCreateRequest;
+import uk.gov.pay.connector.charge.model.telephone.TelephoneChargeCreateResult;
 import uk.gov.pay.connector.charge.resource.ChargesApiResource;
 import uk.gov.pay.connector.charge.util.CorporateCardSurchargeCalculator;
 import uk.gov.pay.connector.charge.util.RefundCalculator;
@@ -71,6 +73,7 @@ import javax.ws.rs.core.UriInfo;
 import java.net.URI;
 import java.time.Duration;
 import java.time.ZonedDateTime;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -97,6 +100,7 @@ import static uk.gov.pay.connector.charge.model.domain.ChargeStatus.CAPTURE_SUBM
 import static uk.gov.pay.connector.charge.model.domain.ChargeStatus.CREATED;
 import static uk.gov.pay.connector.charge.model.domain.ChargeStatus.ENTERING_CARD_DETAILS;
 import static uk.gov.pay.connector.charge.model.domain.ChargeStatus.PAYMENT_NOTIFICATION_CREATED;
+import static uk.gov.pay.connector.charge.model.domain.ChargeStatus.UNDEFINED;
 import static uk.gov.pay.connector.charge.model.domain.ChargeStatus.fromString;
 import static uk.gov.pay.connector.common.model.domain.NumbersInStringsSanitizer.sanitize;
 
@@ -119,13 +123,14 @@ public class ChargeService {
     private final Boolean shouldEmitPaymentStateTransitionEvents;
     private final RefundDao refundDao;
     private EventService eventService;
+    private final ChargeExpiryWheel chargeExpiryWheel;
 
     @Inject
     public ChargeService(TokenDao tokenDao, ChargeDao chargeDao, ChargeEventDao chargeEventDao,
                          CardTypeDao cardTypeDao, GatewayAccountDao gatewayAccountDao,
                          ConnectorConfiguration config, PaymentProviders providers,
                          StateTransitionService stateTransitionService, LedgerService ledgerService, EventService eventService,
-                         RefundDao refundDao) {
+                         RefundDao refundDao, ChargeExpiryWheel chargeExpiryWheel) {
         this.tokenDao = tokenDao;
         this.chargeDao = chargeDao;
         this.chargeEventDao = chargeEventDao;
@@ -139,23 +144,32 @@ public class ChargeService {
         this.ledgerService = ledgerService;
         this.eventService = eventService;
         this.refundDao = refundDao;
+        this.chargeExpiryWheel = chargeExpiryWheel;
     }
 
     @Transactional
-    public Optional<ChargeResponse> findCharge(TelephoneChargeCreateRequest telephoneChargeRequest) {
-        return chargeDao.findByGatewayTransactionId(telephoneChargeRequest.getProviderId())
+    public Optional<ChargeResponse> findCharge(Long accountId, TelephoneChargeCreateRequest telephoneChargeRequest) {
+        return chargeDao.findByGatewayTransactionIdAndAccount(accountId, telephoneChargeRequest.getProviderId())
                 .map(charge -> populateResponseBuilderWith(aChargeResponseBuilder(), charge).build());
     }
 
-    public Optional<ChargeResponse> create(TelephoneChargeCreateRequest telephoneChargeCreateRequest, Long accountId) {
+    /**
+     * @return the charge, and whether it was created by this call rather than already recorded for the provider id,
+     * or empty if the gateway account does not exist
+     */
+    public Optional<TelephoneChargeCreateResult> create(TelephoneChargeCreateRequest telephoneChargeCreateRequest, Long accountId) {
 
         return createCharge(telephoneChargeCreateRequest, accountId)
-                .map(charge ->
-                        populateResponseBuilderWith(aChargeResponseBuilder(), charge).build());
+                .map(chargeAndCreated -> {
+                    ChargeResponse chargeResponse = populateResponseBuilderWith(aChargeResponseBuilder(), chargeAndCreated.getLeft()).build();
+                    return chargeAndCreated.getRight()
+                            ? TelephoneChargeCreateResult.created(chargeResponse)
+                            : TelephoneChargeCreateResult.alreadyRecorded(chargeResponse);
+                });
     }
 
     @Transactional
-    private Optional<ChargeEntity> createCharge(TelephoneChargeCreateRequest telephoneChargeRequest, Long accountId) {
+    private Optional<Pair<ChargeEntity, Boolean>> createCharge(TelephoneChargeCreateRequest telephoneChargeRequest, Long accountId) {
         return gatewayAccountDao.findById(accountId).map(gatewayAccount -> {
 
             checkIfZeroAmountAllowed(telephoneChargeRequest.getAmount(), gatewayAccount);
@@ -180,14 +194,44 @@ public class ChargeService {
                     .withCardDetails(cardDetails)
                     .build();
 
-            chargeDao.persist(chargeEntity);
-            transitionChargeState(chargeEntity, PAYMENT_NOTIFICATION_CREATED);
-            transitionChargeState(chargeEntity, internalChargeStatus(telephoneChargeRequest.getPaymentOutcome().getCode().orElse(null)));
-            chargeDao.merge(chargeEntity);
-            return chargeEntity;
+            ChargeStatus targetChargeState = internalChargeStatus(telephoneChargeRequest.getPaymentOutcome().getCode().orElse(null));
+            chargeEntity.setStatus(PAYMENT_NOTIFICATION_CREATED);
+            chargeEntity.setStatus(targetChargeState);
+
+            return chargeDao.insertTelephoneChargeIfAbsent(chargeEntity)
+                    .flatMap(chargeDao::findById)
+                    .map(insertedCharge -> {
+                        offerTelephonePaymentStateTransitions(insertedCharge, targetChargeState);
+                        return Pair.of(insertedCharge, true);
+                    })
+                    .orElseGet(() -> {
+                        logger.info("Telephone payment notification for provider id [{}] already recorded for gateway account [{}]",
+                                telephoneChargeRequest.getProviderId(), accountId);
+                        return chargeDao.findByGatewayTransactionIdAndAccount(accountId, telephoneChargeRequest.getProviderId())
+                                .map(existingCharge -> Pair.of(existingCharge, false))
+                                .orElseThrow(() -> new ChargeNotFoundRuntimeException(telephoneChargeRequest.getProviderId()));
+                    });
         });
     }
 
+    private void offerTelephonePaymentStateTransitions(ChargeEntity charge, ChargeStatus targetChargeState) {
+        if (!shouldEmitPaymentStateTransitionEvents) {
+            return;
+        }
+
+        List<ChargeEventEntity> events = charge.getEvents();
+        findEventWithStatus(events, PAYMENT_NOTIFICATION_CREATED).ifPresent(chargeEventEntity ->
+                stateTransitionService.offerPaymentStateTransition(charge.getExternalId(), UNDEFINED, PAYMENT_NOTIFICATION_CREATED, chargeEventEntity));
+        findEventWithStatus(events, targetChargeState).ifPresent(chargeEventEntity ->
+                stateTransitionService.offerPaymentStateTransition(charge.getExternalId(), PAYMENT_NOTIFICATION_CREATED, targetChargeState, chargeEventEntity));
+    }
+
+    private Optional<ChargeEventEntity> findEventWithStatus(List<ChargeEventEntity> events, ChargeStatus status) {
+        return events.stream()
+                .filter(chargeEventEntity -> chargeEventEntity.getStatus() == status)
+                .findFirst();
+    }
+
     private ChargeStatus internalChargeStatus(String code) {
         if (code == null) {
             return CAPTURE_SUBMITTED;
@@ -287,6 +331,25 @@ public class ChargeService {
         }
     }
 
+    /**
+     * Looks up several charges with one query, falling back to ledger only for the ones not found in connector, which
+     * are looked up concurrently.
+     */
+    public Map<String, Charge> findCharges(Collection<String> chargeExternalIds) {
+        Map<String, Charge> charges = chargeDao.findByExternalIds(chargeExternalIds).stream()
+                .collect(Collectors.toMap(ChargeEntity::getExternalId, Charge::from, (first, second) -> first, HashMap::new));
+
+        List<String> notInConnector = chargeExternalIds.stream()
+                .filter(chargeExternalId -> !charges.containsKey(chargeExternalId))
+                .collect(Collectors.toList());
+        if (!notInConnector.isEmpty()) {
+            ledgerService.getTransactions(notInConnector)
+                    .forEach((chargeExternalId, transaction) -> charges.put(chargeExternalId, Charge.from(transaction)));
+        }
+
+        return charges;
+    }
+
     public Optional<Charge> findCharge(String chargeExternalId, Long gatewayAccountId) {
         Optional<ChargeEntity> maybeChargeEntity = chargeDao.findByExternalIdAndGatewayAccount(chargeExternalId, gatewayAccountId);
 
@@ -304,6 +367,25 @@ public class ChargeService {
                 .orElseGet(() -> findChargeFromLedger(paymentGatewayName, gatewayTransactionId).orElse(null)));
     }
 
+    /**
+     * Finds the charges for several gateway transaction IDs, loading those still in the database in one query and
+     * looking the rest up in ledger concurrently. Transaction IDs with no charge are left out of the result.
+     */
+    public Map<String, Charge> findByProviderAndTransactionIdsFromDbOrLedger(String paymentGatewayName,
+                                                                            Collection<String> gatewayTransactionIds) {
+        Map<String, Charge> charges = new HashMap<>();
+        chargeDao.findByProviderAndTransactionIds(paymentGatewayName, gatewayTransactionIds)
+                .forEach(chargeEntity -> charges.putIfAbsent(chargeEntity.getGatewayTransactionId(), Charge.from(chargeEntity)));
+        List<String> notInConnector = gatewayTransactionIds.stream()
+                .filter(gatewayTransactionId -> !charges.containsKey(gatewayTransactionId))
+                .collect(Collectors.toList());
+        if (!notInConnector.isEmpty()) {
+            ledgerService.getTransactionsForProviderAndGatewayTransactionIds(paymentGatewayName, notInConnector)
+                    .forEach((gatewayTransactionId, transaction) -> charges.put(gatewayTransactionId, Charge.from(transaction)));
+        }
+        return charges;
+    }
+
     private Optional<Charge> findChargeFromLedger(String paymentGatewayName, String gatewayTransactionId) {
         return ledgerService.getTransactionForProviderAndGatewayTransactionId(paymentGatewayName,gatewayTransactionId).map(Charge::from);
     }
@@ -600,6 +682,7 @@ public class ChargeService {
                         operationType.getLockingStatus());
 
                 chargeEntity.setStatus(operationType.getLockingStatus());
+                chargeExpiryWheel.track(chargeEntity);
 
             } catch (InvalidStateTransitionException e) {
                 if (chargeIsInLockedStatus(operationType, chargeEntity)) {
@@ -632,6 +715,7 @@ public class ChargeService {
     ) {
         ChargeStatus fromChargeState = ChargeStatus.fromString(charge.getStatus());
         charge.setStatus(targetChargeState);
+        chargeExpiryWheel.track(charge);
         ChargeEventEntity chargeEventEntity = chargeEventDao.persistChargeEventOf(charge, gatewayEventTime);
 
         if (shouldEmitPaymentStateTransitionEvents) {
@@ -654,6 +738,7 @@ public class ChargeService {
 
         return PaymentGatewayStateTransitions.getEventForForceUpdate(targetChargeState).map(eventClass -> {
             charge.setStatusIgnoringValidTransitions(targetChargeState);
+            chargeExpiryWheel.track(charge);
             ChargeEventEntity chargeEventEntity = chargeEventDao.persistChargeEventOf(charge);
 
             if (shouldEmitPaymentStateTransitionEvents) {
@@ -716,8 +801,11 @@ public class ChargeService {
     }
 
     public boolean isChargeRetriable(String externalId) {
-        int numberOfChargeRetries = chargeDao.countCaptureRetriesForChargeExternalId(externalId);
-        return numberOfChargeRetries <= captureProcessConfig.getMaximumRetries();
+        return countCaptureAttempts(externalId) <= captureProcessConfig.getMaximumRetries();
+    }
+
+    public int countCaptureAttempts(String externalId) {
+        return chargeDao.countCaptureRetriesForChargeExternalId(externalId);
     }
 
     public boolean isChargeCaptureSuccess(String externalId) {
@@ -10,6 +10,7 @@ import uk.gov.pay.connector.common.dao.JpaDao;
 import javax.inject.Inject;
 import javax.persistence.EntityManager;
 import java.time.ZonedDateTime;
+import java.util.Collection;
 import java.util.List;
 
 import static uk.gov.pay.connector.chargeevent.model.domain.ChargeEventEntity.ChargeEventEntityBuilder.aChargeEventEntity;
@@ -53,4 +54,16 @@ public class ChargeEventDao extends JpaDao<ChargeEventEntity> {
                 .setMaxResults(size)
                 .getResultList();
     }
+
+    public List<ChargeEventEntity> findByIdsWithCharge(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        String query = "SELECT ce FROM ChargeEventEntity ce JOIN FETCH ce.chargeEntity WHERE ce.id IN :ids";
+
+        return entityManager.get()
+                .createQuery(query, ChargeEventEntity.class)
+                .setParameter("ids", ids)
+                .getResultList();
+    }
 }
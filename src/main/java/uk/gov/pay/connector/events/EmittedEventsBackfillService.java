@@ -15,6 +15,7 @@ import uk.gov.pay.connector.queue.StateTransitionService;
 import uk.gov.pay.connector.refund.dao.RefundDao;
 import uk.gov.pay.connector.refund.model.domain.RefundEntity;
 import uk.gov.pay.connector.tasks.HistoricalEventEmitter;
+import uk.gov.pay.connector.workpartition.service.WorkPartitionService;
 
 import javax.inject.Inject;
 import java.time.ZoneId;
@@ -27,6 +28,7 @@ import static java.time.ZonedDateTime.now;
 
 public class EmittedEventsBackfillService {
     private static final int PAGE_SIZE = 100;
+    private static final String BACKFILL_JOB_NAME = "emitted-events-sweep";
     private final Logger logger = LoggerFactory.getLogger(getClass());
 
     private final EmittedEventDao emittedEventDao;
@@ -34,22 +36,32 @@ public class EmittedEventsBackfillService {
     private final HistoricalEventEmitter historicalEventEmitter;
     private RefundDao refundDao;
     private final EmittedEventSweepConfig sweepConfig;
+    private final WorkPartitionService workPartitionService;
     private static final boolean shouldForceEmission = true;
 
     @Inject
     public EmittedEventsBackfillService(EmittedEventDao emittedEventDao, ChargeService chargeService, RefundDao refundDao,
                                         ChargeDao chargeDao, EventService eventService,
                                         StateTransitionService stateTransitionService,
+                                        WorkPartitionService workPartitionService,
                                         ConnectorConfiguration configuration) {
         this.emittedEventDao = emittedEventDao;
         this.chargeService = chargeService;
         this.refundDao = refundDao;
         this.sweepConfig = configuration.getEmittedEventSweepConfig();
+        this.workPartitionService = workPartitionService;
         this.historicalEventEmitter = new HistoricalEventEmitter(emittedEventDao, refundDao, chargeService, shouldForceEmission,
                 eventService, stateTransitionService);
     }
 
+    /**
+     * Emits the events that have not been emitted, unless another node is already doing so.
+     */
     public void backfillNotEmittedEvents() {
+        workPartitionService.runExclusively(BACKFILL_JOB_NAME, this::backfill);
+    }
+
+    private void backfill() {
         Long lastProcessedId = 0L;
         ZonedDateTime cutoffDate = getCutoffDateForProcessingNotEmittedEvents();
         ZonedDateTime now = now(UTC);
@@ -1,27 +1,67 @@
 package uk.gov.pay.connector.events;
 
+import com.amazonaws.services.sqs.model.BatchResultErrorEntry;
+import com.amazonaws.services.sqs.model.SendMessageBatchRequestEntry;
+import com.amazonaws.services.sqs.model.SendMessageBatchResult;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import io.dropwizard.setup.Environment;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import uk.gov.pay.connector.app.ConnectorConfiguration;
 import uk.gov.pay.connector.events.model.Event;
 import uk.gov.pay.connector.queue.QueueException;
 import uk.gov.pay.connector.queue.sqs.SqsQueueService;
 
 import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
+@Singleton
 public class EventQueue {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(EventQueue.class);
+
+    // SendMessageBatch accepts at most 10 entries with a combined payload of at most 256KB
+    static final int MAXIMUM_BATCH_SIZE = 10;
+    static final int MAXIMUM_BATCH_PAYLOAD_IN_BYTES = 256 * 1024;
+    static final int MAXIMUM_BATCH_ENTRY_ATTEMPTS = 3;
+
     private final SqsQueueService sqsQueueService;
     private final String eventQueueUrl;
     private final Boolean eventQueueEnabled;
+    private final ExecutorService publisherExecutor;
 
     @Inject
     public EventQueue (
             SqsQueueService sqsQueueService,
-            ConnectorConfiguration connectorConfiguration
+            ConnectorConfiguration connectorConfiguration,
+            Environment environment
+    ) {
+        this(sqsQueueService, connectorConfiguration, environment
+                .lifecycle()
+                .executorService("event-queue-publisher-%d")
+                .minThreads(connectorConfiguration.getEventQueueConfig().getEventPublisherNumberOfThreads())
+                .maxThreads(connectorConfiguration.getEventQueueConfig().getEventPublisherNumberOfThreads())
+                .build());
+    }
+
+    EventQueue(
+            SqsQueueService sqsQueueService,
+            ConnectorConfiguration connectorConfiguration,
+            ExecutorService publisherExecutor
     ) {
         this.sqsQueueService = sqsQueueService;
         this.eventQueueUrl = connectorConfiguration.getSqsConfig().getEventQueueUrl();
         this.eventQueueEnabled = connectorConfiguration.getEventQueueConfig().getEventQueueEnabled();
+        this.publisherExecutor = publisherExecutor;
     }
 
     public void emitEvent(Event event) throws QueueException {
@@ -33,4 +73,137 @@ public class EventQueue {
             }
         }
     }
+
+    /**
+     * Sends the event without blocking the calling thread. The future fails with a {@link QueueException} if the
+     * event cannot be serialised or sent.
+     */
+    public CompletableFuture<Void> emitEventAsync(Event event) {
+        if (!eventQueueEnabled) {
+            return CompletableFuture.completedFuture(null);
+        }
+        try {
+            return sqsQueueService.sendMessageAsync(eventQueueUrl, event.toJsonString()).thenApply(queueMessage -> null);
+        } catch (JsonProcessingException e) {
+            return CompletableFuture.failedFuture(
+                    new QueueException(String.format("Error serialising event to json: %s", e.getMessage())));
+        }
+    }
+
+    /**
+     * Sends events using as few SendMessageBatch calls as the SQS batch limits allow. Entries that fail on the
+     * SQS side are retried; entries rejected as the sender's fault, or still failing after
+     * {@value #MAXIMUM_BATCH_ENTRY_ATTEMPTS} attempts, are given back to the caller. When the events need more
+     * than one batch, the batches are sent concurrently on the publisher thread pool.
+     *
+     * @return the events that could not be sent
+     */
+    public List<Event> emitEvents(List<Event> events) {
+        List<Event> failedEvents = new ArrayList<>();
+        if (!eventQueueEnabled || events.isEmpty()) {
+            return failedEvents;
+        }
+
+        List<List<SerialisedEvent>> batches = new ArrayList<>();
+        List<SerialisedEvent> batch = new ArrayList<>();
+        int batchPayloadInBytes = 0;
+        for (Event event : events) {
+            SerialisedEvent serialisedEvent;
+            try {
+                serialisedEvent = new SerialisedEvent(event, event.toJsonString());
+            } catch (JsonProcessingException e) {
+                LOGGER.error("Error serialising event {} to json: {} [externalId={}]",
+                        event.getEventType(), e.getMessage(), event.getResourceExternalId());
+                failedEvents.add(event);
+                continue;
+            }
+
+            if (batch.size() == MAXIMUM_BATCH_SIZE ||
+                    (!batch.isEmpty() && batchPayloadInBytes + serialisedEvent.sizeInBytes > MAXIMUM_BATCH_PAYLOAD_IN_BYTES)) {
+                batches.add(batch);
+                batch = new ArrayList<>();
+                batchPayloadInBytes = 0;
+            }
+            batch.add(serialisedEvent);
+            batchPayloadInBytes += serialisedEvent.sizeInBytes;
+        }
+        if (!batch.isEmpty()) {
+            batches.add(batch);
+        }
+
+        if (batches.size() == 1) {
+            failedEvents.addAll(sendBatch(batches.get(0)));
+            return failedEvents;
+        }
+
+        List<Future<List<Event>>> futures = new ArrayList<>();
+        batches.forEach(eventBatch -> futures.add(publisherExecutor.submit(() -> sendBatch(eventBatch))));
+        for (int i = 0; i < futures.size(); i++) {
+            try {
+                failedEvents.addAll(futures.get(i).get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                addAllEvents(batches.get(i), failedEvents);
+            } catch (ExecutionException e) {
+                LOGGER.error("Failed to send event batch [size={}] [error={}]", batches.get(i).size(), e.getCause().getMessage());
+                addAllEvents(batches.get(i), failedEvents);
+            }
+        }
+
+        return failedEvents;
+    }
+
+    private static void addAllEvents(List<SerialisedEvent> batch, List<Event> events) {
+        batch.forEach(serialisedEvent -> events.add(serialisedEvent.event));
+    }
+
+    private List<Event> sendBatch(List<SerialisedEvent> batch) {
+        List<Event> failedEvents = new ArrayList<>();
+        Map<String, SerialisedEvent> pending = new LinkedHashMap<>();
+        for (int i = 0; i < batch.size(); i++) {
+            pending.put(String.valueOf(i), batch.get(i));
+        }
+
+        for (int attempt = 1; attempt <= MAXIMUM_BATCH_ENTRY_ATTEMPTS && !pending.isEmpty(); attempt++) {
+            List<SendMessageBatchRequestEntry> entries = new ArrayList<>();
+            pending.forEach((id, serialisedEvent) -> entries.add(new SendMessageBatchRequestEntry(id, serialisedEvent.json)));
+
+            SendMessageBatchResult result;
+            try {
+                result = sqsQueueService.sendMessageBatch(eventQueueUrl, entries);
+            } catch (QueueException e) {
+                LOGGER.warn("Failed to send event batch [attempt={}] [size={}] [error={}]", attempt, entries.size(), e.getMessage());
+                continue;
+            }
+
+            Map<String, SerialisedEvent> retryable = new LinkedHashMap<>();
+            for (BatchResultErrorEntry error : result.getFailed()) {
+                SerialisedEvent serialisedEvent = pending.get(error.getId());
+                if (error.isSenderFault()) {
+                    LOGGER.error("Event rejected by SQS {} [code={}] [message={}] [externalId={}]",
+                            serialisedEvent.event.getEventType(), error.getCode(), error.getMessage(),
+                            serialisedEvent.event.getResourceExternalId());
+                    failedEvents.add(serialisedEvent.event);
+                } else {
+                    retryable.put(error.getId(), serialisedEvent);
+                }
+            }
+            pending = retryable;
+        }
+
+        pending.values().forEach(serialisedEvent -> failedEvents.add(serialisedEvent.event));
+        return failedEvents;
+    }
+
+    private static class SerialisedEvent {
+        private final Event event;
+        private final String json;
+        private final int sizeInBytes;
+
+        private SerialisedEvent(Event event, String json) {
+            this.event = event;
+            this.json = json;
+            this.sizeInBytes = json.getBytes(StandardCharsets.UTF_8).length;
+        }
+    }
 }
@@ -9,6 +9,12 @@ import uk.gov.pay.connector.queue.QueueException;
 
 import javax.inject.Inject;
 import java.time.ZonedDateTime;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletionException;
+import java.util.stream.Collectors;
 
 public class EventService {
     private static final Logger logger = LoggerFactory.getLogger(EventService.class);
@@ -22,16 +28,32 @@ public class EventService {
         this.emittedEventDao = emittedEventDao;
     }
 
+    /**
+     * Records the event as not yet emitted, joining the caller's transaction if there is one, then sends it without
+     * waiting for SQS and marks it as emitted once the send completes, so callers on the request path do not pay for
+     * the round trip. If the send or the marking fails the event is left for the emitted events sweeper to send again.
+     */
     public void emitAndRecordEvent(Event event, ZonedDateTime doNotRetryEmitUntilDate) {
-        try {
-            eventQueue.emitEvent(event);
-            emittedEventDao.recordEmission(event, doNotRetryEmitUntilDate);
-        } catch (QueueException e) {
-            emittedEventDao.recordEmission(event.getResourceType(), event.getResourceExternalId(),
-                    event.getEventType(), event.getTimestamp(), doNotRetryEmitUntilDate);
-            logger.error("Failed to emit event {} due to {} [externalId={}]",
-                    event.getEventType(), e.getMessage(), event.getResourceExternalId());
-        }
+        recordOfferedEvent(event.getResourceType(), event.getResourceExternalId(), event.getEventType(),
+                event.getTimestamp(), doNotRetryEmitUntilDate);
+
+        eventQueue.emitEventAsync(event).whenComplete((result, e) -> {
+            if (e != null) {
+                logger.error("Failed to emit event {} due to {} [externalId={}]",
+                        event.getEventType(), rootCause(e).getMessage(), event.getResourceExternalId());
+                return;
+            }
+            try {
+                emittedEventDao.markEventAsEmitted(event);
+            } catch (RuntimeException markingFailure) {
+                logger.error("Failed to mark event {} as emitted due to {} [externalId={}]",
+                        event.getEventType(), markingFailure.getMessage(), event.getResourceExternalId());
+            }
+        });
+    }
+
+    private static Throwable rootCause(Throwable e) {
+        return e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
     }
 
     public void emitAndRecordEvent(Event event) {
@@ -43,6 +65,45 @@ public class EventService {
         emittedEventDao.markEventAsEmitted(event);
     }
 
+    /**
+     * Sends the events in as few queue requests as possible and marks the ones that were sent as emitted in a
+     * single transaction.
+     *
+     * @return the events that could not be sent
+     */
+    public List<Event> emitAndMarkEventsAsEmitted(List<Event> events) {
+        List<Event> failedEvents = eventQueue.emitEvents(events);
+
+        Set<Event> failed = Collections.newSetFromMap(new IdentityHashMap<>());
+        failed.addAll(failedEvents);
+        List<Event> emittedEvents = events.stream()
+                .filter(event -> !failed.contains(event))
+                .collect(Collectors.toList());
+        if (!emittedEvents.isEmpty()) {
+            emittedEventDao.markEventsAsEmitted(emittedEvents);
+        }
+
+        return failedEvents;
+    }
+
+    /**
+     * Records the events as not yet emitted, then sends them and marks the ones that were sent as emitted, as
+     * {@link #emitAndMarkEventsAsEmitted(List)} does. Events that could not be sent are left for the emitted events
+     * sweeper to send again.
+     *
+     * @return the events that could not be sent
+     */
+    public List<Event> emitAndRecordEvents(List<Event> events, ZonedDateTime doNotRetryEmitUntilDate) {
+        events.forEach(event -> recordOfferedEvent(event.getResourceType(), event.getResourceExternalId(),
+                event.getEventType(), event.getTimestamp(), doNotRetryEmitUntilDate));
+
+        List<Event> failedEvents = emitAndMarkEventsAsEmitted(events);
+        failedEvents.forEach(event -> logger.error("Failed to emit event {} [externalId={}]",
+                event.getEventType(), event.getResourceExternalId()));
+
+        return failedEvents;
+    }
+
     public void recordOfferedEvent(ResourceType resourceType, String externalId, String eventType, ZonedDateTime eventDate) {
         this.recordOfferedEvent(resourceType, externalId, eventType, eventDate, null);
     }
@@ -2,86 +2,149 @@ package uk.gov.pay.connector.events;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import uk.gov.pay.connector.events.exception.EventCreationException;
+import uk.gov.pay.connector.app.ConnectorConfiguration;
+import uk.gov.pay.connector.events.model.Event;
 import uk.gov.pay.connector.events.model.EventFactory;
-import uk.gov.pay.connector.queue.QueueException;
+import uk.gov.pay.connector.events.model.StateTransitionEvents;
 import uk.gov.pay.connector.queue.StateTransition;
-import uk.gov.pay.connector.queue.StateTransitionQueue;
+import uk.gov.pay.connector.queue.StateTransitionOutboxEntity;
+import uk.gov.pay.connector.queue.dao.StateTransitionOutboxDao;
 
 import javax.inject.Inject;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
+import static java.time.temporal.ChronoUnit.MILLIS;
+
+/**
+ * Relays state transitions from the outbox to the event queue. Rows are claimed in batches under a lease, the charges
+ * and refunds behind the whole batch are loaded with set-based queries and its events are sent with as few SQS
+ * requests as possible, concurrently where there is more than one. Rows are deleted once all their events
+ * have been emitted and rescheduled with an incremented attempt count if emitting fails, so every transition is
+ * emitted at least once even if a node goes away part way through.
+ */
 public class StateTransitionEmitterProcess {
     private static final Logger LOGGER = LoggerFactory.getLogger(StateTransitionEmitterProcess.class);
 
-    private final long STATE_TRANSITION_PROCESS_DELAY_IN_MILLISECONDS = 1000;
-    private final StateTransitionQueue stateTransitionQueue;
+    private static final long STATE_TRANSITION_PROCESS_DELAY_IN_MILLISECONDS = 1000;
+    private final StateTransitionOutboxDao stateTransitionOutboxDao;
     private final EventFactory eventFactory;
-    private EventService eventService;
+    private final EventService eventService;
+    private final StateTransitionQueueMetricEmitter stateTransitionQueueMetricEmitter;
+    private final int batchSize;
+    private final long leaseInMilliseconds;
 
     @Inject
     public StateTransitionEmitterProcess(
-            StateTransitionQueue stateTransitionQueue,
+            StateTransitionOutboxDao stateTransitionOutboxDao,
             EventFactory eventFactory,
             StateTransitionQueueMetricEmitter stateTransitionQueueMetricEmitter,
-            EventService eventService
+            EventService eventService,
+            ConnectorConfiguration connectorConfiguration
     ) {
-        this.stateTransitionQueue = stateTransitionQueue;
+        this.stateTransitionOutboxDao = stateTransitionOutboxDao;
         this.eventFactory = eventFactory;
         this.eventService = eventService;
+        this.stateTransitionQueueMetricEmitter = stateTransitionQueueMetricEmitter;
+        this.batchSize = connectorConfiguration.getEventQueueConfig().getStateTransitionOutboxBatchSize();
+        this.leaseInMilliseconds = TimeUnit.SECONDS.toMillis(
+                connectorConfiguration.getEventQueueConfig().getStateTransitionOutboxLeaseInSeconds());
 
         stateTransitionQueueMetricEmitter.register();
     }
 
-    public int getNumberOfNotProcessedMessages() {
-        return stateTransitionQueue.size();
-    }
-
-    public boolean isReadyForShutdown() {
-        return stateTransitionQueue.isEmpty();
+    public long getNumberOfNotProcessedMessages() {
+        return stateTransitionOutboxDao.count();
     }
 
     public void handleStateTransitionMessages() throws InterruptedException {
-        Optional.ofNullable(stateTransitionQueue.poll(STATE_TRANSITION_PROCESS_DELAY_IN_MILLISECONDS, TimeUnit.MILLISECONDS))
-                .ifPresent(this::emitEvents);
-    }
+        long drainStartTime = System.nanoTime();
+        List<StateTransitionOutboxEntity> claimed = stateTransitionOutboxDao.claimDue(batchSize, leaseInMilliseconds);
+        if (claimed.isEmpty()) {
+            TimeUnit.MILLISECONDS.sleep(STATE_TRANSITION_PROCESS_DELAY_IN_MILLISECONDS);
+            return;
+        }
+
+        List<Long> outboxIdsToDelete = new ArrayList<>();
+        Map<StateTransition, StateTransitionOutboxEntity> outboxEntries = new IdentityHashMap<>();
+        List<StateTransition> stateTransitions = new ArrayList<>();
+        claimed.forEach(outboxEntry -> toStateTransition(outboxEntry, outboxIdsToDelete).ifPresent(stateTransition -> {
+            outboxEntries.put(stateTransition, outboxEntry);
+            stateTransitions.add(stateTransition);
+        }));
+
+        StateTransitionEvents stateTransitionEvents = stateTransitions.isEmpty()
+                ? new StateTransitionEvents()
+                : eventFactory.createEvents(stateTransitions);
+
+        Set<Event> failedEvents = Collections.newSetFromMap(new IdentityHashMap<>());
+        failedEvents.addAll(eventService.emitAndMarkEventsAsEmitted(stateTransitionEvents.getAllEvents()));
 
-    private void emitEvents(StateTransition stateTransition) {
-        if (stateTransition.shouldAttempt()) {
-            try {
-                eventFactory.createEvents(stateTransition)
-                        .forEach(event -> {
-                            try {
-                                eventService.emitAndMarkEventAsEmitted(event);
-                            } catch (QueueException e) {
-                                handleException(e, stateTransition);
-                            }
-                        });
+        for (StateTransition stateTransition : stateTransitions) {
+            StateTransitionOutboxEntity outboxEntry = outboxEntries.get(stateTransition);
+            Optional<List<Event>> events = stateTransitionEvents.getEvents(stateTransition);
+            if (events.isEmpty()) {
+                handleFailure(stateTransitionEvents.getFailure(stateTransition)
+                        .map(Throwable::getMessage)
+                        .orElse("failed to create events"), outboxEntry, stateTransition);
+            } else if (events.get().stream().anyMatch(failedEvents::contains)) {
+                handleFailure("failed to send to event queue", outboxEntry, stateTransition);
+            } else {
+                outboxIdsToDelete.add(outboxEntry.getId());
+                stateTransitionQueueMetricEmitter.recordEmissionLag(outboxEntry.getCreatedDate());
                 LOGGER.info(
                         "Emitted new state transition event for [eventId={}] [eventType={}]",
                         stateTransition.getIdentifier(),
                         stateTransition.getStateTransitionEventClass().getSimpleName()
                 );
-            } catch (EventCreationException e) {
-                handleException(e, stateTransition);
             }
-        } else {
+        }
+
+        stateTransitionOutboxDao.delete(outboxIdsToDelete);
+        stateTransitionQueueMetricEmitter.recordDrain(claimed.size(), System.nanoTime() - drainStartTime);
+    }
+
+    private Optional<StateTransition> toStateTransition(StateTransitionOutboxEntity outboxEntry, List<Long> outboxIdsToDelete) {
+        StateTransition stateTransition;
+        try {
+            stateTransition = outboxEntry.toStateTransition();
+        } catch (ClassNotFoundException e) {
+            LOGGER.error("Discarding state transition with unknown event class [outboxId={}] [eventClass={}]",
+                    outboxEntry.getId(), outboxEntry.getEventClass());
+            outboxIdsToDelete.add(outboxEntry.getId());
+            return Optional.empty();
+        }
+
+        if (!stateTransition.shouldAttempt()) {
             LOGGER.error(
                     "State transition message failed to process beyond max retries [eventId={}] [eventType={}]:",
                     stateTransition.getIdentifier(),
                     stateTransition.getStateTransitionEventClass().getSimpleName()
             );
+            outboxIdsToDelete.add(outboxEntry.getId());
+            return Optional.empty();
         }
+
+        return Optional.of(stateTransition);
     }
 
-    private void handleException(Exception e, StateTransition stateTransition) {
+    private void handleFailure(String error, StateTransitionOutboxEntity outboxEntry, StateTransition stateTransition) {
         LOGGER.warn(
                 "Failed to emit new event for state transition [eventId={}] [eventType={}] [error={}]",
                 stateTransition.getIdentifier(),
                 stateTransition.getStateTransitionEventClass().getSimpleName(),
-                e.getMessage()
+                error
         );
-        stateTransitionQueue.offer(stateTransition.getNext());
+        StateTransition next = stateTransition.getNext();
+        stateTransitionOutboxDao.reschedule(outboxEntry.getId(), next.getAttempts(),
+                ZonedDateTime.now(ZoneId.of("UTC")).plus(next.getDelayDurationInMilliseconds(), MILLIS));
     }
 }
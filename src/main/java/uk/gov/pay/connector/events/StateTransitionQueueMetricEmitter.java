@@ -1,28 +1,59 @@
 package uk.gov.pay.connector.events;
 
-import com.codahale.metrics.Gauge;
+import com.codahale.metrics.CachedGauge;
+import com.codahale.metrics.Histogram;
 import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
 import io.dropwizard.setup.Environment;
-import uk.gov.pay.connector.queue.StateTransitionQueue;
+import uk.gov.pay.connector.queue.dao.StateTransitionOutboxDao;
 
 import javax.inject.Inject;
+import java.time.Duration;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.concurrent.TimeUnit;
 
 public class StateTransitionQueueMetricEmitter {
+    private static final long OUTBOX_SIZE_CACHE_DURATION_IN_SECONDS = 10;
+
     private final MetricRegistry metricRegistry;
-    private StateTransitionQueue stateTransitionQueue;
+    private StateTransitionOutboxDao stateTransitionOutboxDao;
 
     @Inject
     public StateTransitionQueueMetricEmitter(
             Environment environment,
-            StateTransitionQueue stateTransitionQueue) {
+            StateTransitionOutboxDao stateTransitionOutboxDao) {
         
-        this.stateTransitionQueue = stateTransitionQueue;
+        this.stateTransitionOutboxDao = stateTransitionOutboxDao;
         this.metricRegistry = environment.metrics();
     }
     
     public void register() {
-        final Gauge<Integer> gauge = () -> stateTransitionQueue.size();
+        final CachedGauge<Long> gauge = new CachedGauge<>(OUTBOX_SIZE_CACHE_DURATION_IN_SECONDS, TimeUnit.SECONDS) {
+            @Override
+            protected Long loadValue() {
+                return stateTransitionOutboxDao.count();
+            }
+        };
         
-        metricRegistry.register("state-transition.in-memory-queue.size", gauge);
+        metricRegistry.register("state-transition.outbox.size", gauge);
+    }
+
+    /**
+     * Records how long one claimed batch took to drain, from claiming it to deleting or rescheduling its rows.
+     */
+    public void recordDrain(int batchSize, long durationInNanos) {
+        Histogram batchSizeHistogram = metricRegistry.histogram("state-transition.outbox.drain-batch-size");
+        Timer drainTimer = metricRegistry.timer("state-transition.outbox.drain-duration");
+        batchSizeHistogram.update(batchSize);
+        drainTimer.update(durationInNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Records how long a state transition waited in the outbox before its events were emitted.
+     */
+    public void recordEmissionLag(ZonedDateTime createdDate) {
+        Duration lag = Duration.between(createdDate, ZonedDateTime.now(ZoneId.of("UTC")));
+        metricRegistry.timer("state-transition.outbox.emission-lag").update(lag.toMillis(), TimeUnit.MILLISECONDS);
     }
 }
@@ -1,25 +1,36 @@
 package uk.gov.pay.connector.events.dao;
 
+import com.google.common.collect.Lists;
 import com.google.inject.Inject;
 import com.google.inject.Provider;
 import com.google.inject.persist.Transactional;
 import uk.gov.pay.connector.common.dao.JpaDao;
+import uk.gov.pay.connector.common.model.domain.UTCDateTimeConverter;
 import uk.gov.pay.connector.events.EmittedEventEntity;
 import uk.gov.pay.connector.events.model.Event;
 import uk.gov.pay.connector.events.model.ResourceType;
 
 import javax.persistence.EntityManager;
 import javax.persistence.Query;
+import java.sql.Timestamp;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.stream.IntStream;
 
+import static java.lang.String.format;
 import static java.time.ZonedDateTime.now;
+import static java.util.stream.Collectors.joining;
 
 @Transactional
 public class EmittedEventDao extends JpaDao<EmittedEventEntity> {
 
+    private static final int MARK_AS_EMITTED_BATCH_SIZE = 500;
+
     @Inject
     protected EmittedEventDao(Provider<EntityManager> entityManager) {
         super(entityManager);
@@ -85,6 +96,50 @@ public class EmittedEventDao extends JpaDao<EmittedEventEntity> {
         query.executeUpdate();
     }
 
+    /**
+     * Marks the events as emitted with one UPDATE per {@value #MARK_AS_EMITTED_BATCH_SIZE} events rather than one per
+     * event. As with {@link #markEventAsEmitted(Event)}, only rows not yet marked are updated, so where the same
+     * resource and event type appear more than once the first event wins.
+     */
+    public void markEventsAsEmitted(List<Event> events) {
+        Map<List<String>, Event> firstEventByKey = new LinkedHashMap<>();
+        events.forEach(event -> firstEventByKey.putIfAbsent(
+                List.of(event.getResourceType().getLowercase(), event.getResourceExternalId(), event.getEventType()),
+                event));
+
+        Timestamp emittedDate = new UTCDateTimeConverter().convertToDatabaseColumn(ZonedDateTime.now(ZoneId.of("UTC")));
+        Lists.partition(new ArrayList<>(firstEventByKey.values()), MARK_AS_EMITTED_BATCH_SIZE)
+                .forEach(batch -> markBatchAsEmitted(batch, emittedDate));
+    }
+
+    private void markBatchAsEmitted(List<Event> events, Timestamp emittedDate) {
+        String values = IntStream.range(0, events.size())
+                .map(i -> 2 + i * 4)
+                .mapToObj(p -> format("(?%d, ?%d, ?%d, CAST(?%d AS timestamp))", p, p + 1, p + 2, p + 3))
+                .collect(joining(", "));
+
+        Query query = entityManager.get()
+                .createNativeQuery("UPDATE emitted_events e" +
+                        " SET emitted_date = ?1, event_date = v.event_date" +
+                        " FROM (VALUES " + values + ") AS v(resource_type, resource_external_id, event_type, event_date)" +
+                        " WHERE e.resource_type = v.resource_type" +
+                        " AND e.resource_external_id = v.resource_external_id" +
+                        " AND e.event_type = v.event_type" +
+                        " AND e.emitted_date IS NULL");
+        query.setParameter(1, emittedDate);
+
+        UTCDateTimeConverter dateTimeConverter = new UTCDateTimeConverter();
+        int position = 2;
+        for (Event event : events) {
+            query.setParameter(position++, event.getResourceType().getLowercase())
+                    .setParameter(position++, event.getResourceExternalId())
+                    .setParameter(position++, event.getEventType())
+                    .setParameter(position++, dateTimeConverter.convertToDatabaseColumn(event.getTimestamp()));
+        }
+
+        query.executeUpdate();
+    }
+
     public Optional<Long> findNotEmittedEventMaxIdOlderThan(ZonedDateTime cutOffDate, ZonedDateTime now) {
         String query = "SELECT MAX(e.id) from EmittedEventEntity e " +
                 "WHERE e.eventDate < :cutOffDate " +
@@ -28,12 +28,17 @@ import uk.gov.pay.connector.queue.StateTransition;
 import uk.gov.pay.connector.refund.dao.RefundDao;
 import uk.gov.pay.connector.refund.model.domain.RefundEntity;
 import uk.gov.pay.connector.refund.model.domain.RefundHistory;
+import uk.gov.pay.connector.refund.model.domain.RefundStatus;
 
 import javax.inject.Inject;
 import java.lang.reflect.InvocationTargetException;
 import java.time.ZonedDateTime;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -62,19 +67,43 @@ public class EventFactory {
     }
 
     public List<Event> createEvents(StateTransition stateTransition) throws EventCreationException {
+        return createEvents(stateTransition, new DirectLookup());
+    }
+
+    /**
+     * Creates the events for a batch of state transitions. Charge events, refund history, charges and refunds are
+     * each loaded with one query for the whole batch rather than one per transition.
+     *
+     * @return the events for each transition, in the order given, and the reason events could not be created for
+     * any transition, as {@link #createEvents(StateTransition)} would have thrown it
+     */
+    public StateTransitionEvents createEvents(List<StateTransition> stateTransitions) {
+        Lookup lookup = new PrefetchedLookup(stateTransitions);
+        StateTransitionEvents stateTransitionEvents = new StateTransitionEvents();
+        for (StateTransition stateTransition : stateTransitions) {
+            try {
+                stateTransitionEvents.add(stateTransition, createEvents(stateTransition, lookup));
+            } catch (EventCreationException e) {
+                stateTransitionEvents.addFailure(stateTransition, e);
+            }
+        }
+        return stateTransitionEvents;
+    }
+
+    private List<Event> createEvents(StateTransition stateTransition, Lookup lookup) throws EventCreationException {
         if (stateTransition instanceof PaymentStateTransition) {
             PaymentStateTransition paymentStateTransition = (PaymentStateTransition) stateTransition;
-            return createPaymentEvents(paymentStateTransition);
+            return createPaymentEvents(paymentStateTransition, lookup);
         } else if (stateTransition instanceof RefundStateTransition) {
             RefundStateTransition refundStateTransition = (RefundStateTransition) stateTransition;
-            return createRefundEvents(refundStateTransition);
+            return createRefundEvents(refundStateTransition, lookup);
         } else {
             throw new EventCreationException(stateTransition.getIdentifier());
         }
     }
 
-    private List<Event> createPaymentEvents(PaymentStateTransition paymentStateTransition) throws EventCreationException {
-        ChargeEventEntity chargeEvent = chargeEventDao.findById(ChargeEventEntity.class, paymentStateTransition.getChargeEventId())
+    private List<Event> createPaymentEvents(PaymentStateTransition paymentStateTransition, Lookup lookup) throws EventCreationException {
+        ChargeEventEntity chargeEvent = lookup.findChargeEvent(paymentStateTransition.getChargeEventId())
                 .orElseThrow(() -> new EventCreationException(String.valueOf(paymentStateTransition.getChargeEventId())));
 
          PaymentEvent paymentEvent = createPaymentEvent(chargeEvent, paymentStateTransition.getStateTransitionEventClass());
@@ -82,7 +111,8 @@ public class EventFactory {
         Optional<Event> refundAvailabilityEvent = createRefundAvailabilityUpdatedEvent(
                 Charge.from(chargeEvent.getChargeEntity()),
                 chargeEvent.getUpdated(),
-                paymentStateTransition.getStateTransitionEventClass()
+                paymentStateTransition.getStateTransitionEventClass(),
+                lookup
         );
 
         return Stream.of(Optional.of(paymentEvent), refundAvailabilityEvent)
@@ -90,19 +120,21 @@ public class EventFactory {
                 .collect(Collectors.toList());
     }
 
-    private List<Event> createRefundEvents(RefundStateTransition refundStateTransition) throws EventCreationException {
-        RefundHistory refundHistory = refundDao.getRefundHistoryByRefundExternalIdAndRefundStatus(
+    private List<Event> createRefundEvents(RefundStateTransition refundStateTransition, Lookup lookup) throws EventCreationException {
+        RefundHistory refundHistory = lookup.findRefundHistory(
                 refundStateTransition.getRefundExternalId(),
                 refundStateTransition.getRefundStatus())
                 .orElseThrow(() -> new EventCreationException(refundStateTransition.getIdentifier()));
-        Charge charge = chargeService.findCharge(refundHistory.getChargeExternalId()).get();
+        Charge charge = lookup.findCharge(refundHistory.getChargeExternalId())
+                .orElseThrow(() -> new EventCreationException(refundStateTransition.getIdentifier()));
 
         Event refundEvent = createRefundEvent(refundHistory, refundStateTransition.getStateTransitionEventClass(),
                 charge.getGatewayAccountId());
         Optional<Event> refundAvailabilityEvent = createRefundAvailabilityUpdatedEvent(
                 charge,
                 refundHistory.getHistoryStartDate(),
-                refundStateTransition.getStateTransitionEventClass()
+                refundStateTransition.getStateTransitionEventClass(),
+                lookup
         );
 
         return Stream.of(Optional.of(refundEvent), refundAvailabilityEvent)
@@ -153,12 +185,12 @@ public class EventFactory {
     }
 
     private Optional<Event> createRefundAvailabilityUpdatedEvent(
-            Charge charge, ZonedDateTime eventTimestamp, Class eventClass) throws EventCreationException {
+            Charge charge, ZonedDateTime eventTimestamp, Class eventClass, Lookup lookup) throws EventCreationException {
         if (EVENTS_AFFECTING_REFUNDABILITY.contains(eventClass) || EVENTS_LEADING_TO_TERMINAL_STATE.contains(eventClass)) {
             RefundAvailabilityUpdated refundAvailabilityUpdatedEvent =
                     Optional.ofNullable(charge)
                     .map(c -> {
-                        List<RefundEntity> refundEntityList = refundDao.findRefundsByChargeExternalId(c.getExternalId());
+                        List<RefundEntity> refundEntityList = lookup.findRefunds(c.getExternalId());
                         ExternalChargeRefundAvailability refundAvailability;
 
                         if(charge.isHistoric()) {
@@ -187,4 +219,99 @@ public class EventFactory {
 
         return Optional.empty();
     }
+
+    private interface Lookup {
+        Optional<ChargeEventEntity> findChargeEvent(long chargeEventId);
+
+        Optional<RefundHistory> findRefundHistory(String refundExternalId, RefundStatus refundStatus);
+
+        Optional<Charge> findCharge(String chargeExternalId);
+
+        List<RefundEntity> findRefunds(String chargeExternalId);
+    }
+
+    private class DirectLookup implements Lookup {
+
+        @Override
+        public Optional<ChargeEventEntity> findChargeEvent(long chargeEventId) {
+            return chargeEventDao.findById(ChargeEventEntity.class, chargeEventId);
+        }
+
+        @Override
+        public Optional<RefundHistory> findRefundHistory(String refundExternalId, RefundStatus refundStatus) {
+            return refundDao.getRefundHistoryByRefundExternalIdAndRefundStatus(refundExternalId, refundStatus);
+        }
+
+        @Override
+        public Optional<Charge> findCharge(String chargeExternalId) {
+            return chargeService.findCharge(chargeExternalId);
+        }
+
+        @Override
+        public List<RefundEntity> findRefunds(String chargeExternalId) {
+            return refundDao.findRefundsByChargeExternalId(chargeExternalId);
+        }
+    }
+
+    private class PrefetchedLookup implements Lookup {
+        private final Map<Long, ChargeEventEntity> chargeEventsById;
+        private final Map<String, RefundHistory> refundHistoryByExternalIdAndStatus;
+        private final Map<String, Charge> chargesByExternalId;
+        private final Map<String, List<RefundEntity>> refundsByChargeExternalId;
+
+        private PrefetchedLookup(List<StateTransition> stateTransitions) {
+            Set<Long> chargeEventIds = stateTransitions.stream()
+                    .filter(PaymentStateTransition.class::isInstance)
+                    .map(stateTransition -> ((PaymentStateTransition) stateTransition).getChargeEventId())
+                    .collect(Collectors.toSet());
+            Set<String> refundExternalIds = stateTransitions.stream()
+                    .filter(RefundStateTransition.class::isInstance)
+                    .map(stateTransition -> ((RefundStateTransition) stateTransition).getRefundExternalId())
+                    .collect(Collectors.toSet());
+
+            chargeEventsById = chargeEventDao.findByIdsWithCharge(chargeEventIds).stream()
+                    .collect(Collectors.toMap(ChargeEventEntity::getId, Function.identity()));
+
+            List<RefundHistory> refundHistories = refundDao.getRefundHistoryByRefundExternalIds(refundExternalIds);
+            refundHistoryByExternalIdAndStatus = refundHistories.stream()
+                    .collect(Collectors.toMap(
+                            refundHistory -> refundHistoryKey(refundHistory.getExternalId(), refundHistory.getStatus()),
+                            Function.identity(),
+                            (first, second) -> first));
+
+            Set<String> refundChargeExternalIds = refundHistories.stream()
+                    .map(RefundHistory::getChargeExternalId)
+                    .collect(Collectors.toSet());
+            chargesByExternalId = chargeService.findCharges(refundChargeExternalIds);
+
+            Set<String> chargeExternalIds = new HashSet<>(refundChargeExternalIds);
+            chargeEventsById.values().forEach(chargeEvent -> chargeExternalIds.add(chargeEvent.getChargeEntity().getExternalId()));
+            refundsByChargeExternalId = refundDao.findRefundsByChargeExternalIds(chargeExternalIds).stream()
+                    .collect(Collectors.groupingBy(RefundEntity::getChargeExternalId));
+        }
+
+        @Override
+        public Optional<ChargeEventEntity> findChargeEvent(long chargeEventId) {
+            return Optional.ofNullable(chargeEventsById.get(chargeEventId));
+        }
+
+        @Override
+        public Optional<RefundHistory> findRefundHistory(String refundExternalId, RefundStatus refundStatus) {
+            return Optional.ofNullable(refundHistoryByExternalIdAndStatus.get(refundHistoryKey(refundExternalId, refundStatus)));
+        }
+
+        @Override
+        public Optional<Charge> findCharge(String chargeExternalId) {
+            return Optional.ofNullable(chargesByExternalId.get(chargeExternalId));
+        }
+
+        @Override
+        public List<RefundEntity> findRefunds(String chargeExternalId) {
+            return refundsByChargeExternalId.getOrDefault(chargeExternalId, List.of());
+        }
+
+        private String refundHistoryKey(String refundExternalId, RefundStatus refundStatus) {
+            return refundExternalId + "_" + refundStatus;
+        }
+    }
 }
@@ -0,0 +1,46 @@
+package uk.gov.pay.connector.events.model;
+
+import uk.gov.pay.connector.events.exception.EventCreationException;
+import uk.gov.pay.connector.queue.StateTransition;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * The events created for a batch of state transitions, and why events could not be created for the others.
+ */
+public class StateTransitionEvents {
+
+    private final Map<StateTransition, List<Event>> eventsByStateTransition = new LinkedHashMap<>();
+    private final Map<StateTransition, EventCreationException> failuresByStateTransition = new LinkedHashMap<>();
+
+    public StateTransitionEvents add(StateTransition stateTransition, List<Event> events) {
+        eventsByStateTransition.put(stateTransition, events);
+        return this;
+    }
+
+    public StateTransitionEvents addFailure(StateTransition stateTransition, EventCreationException failure) {
+        failuresByStateTransition.put(stateTransition, failure);
+        return this;
+    }
+
+    public Optional<List<Event>> getEvents(StateTransition stateTransition) {
+        return Optional.ofNullable(eventsByStateTransition.get(stateTransition));
+    }
+
+    public Optional<EventCreationException> getFailure(StateTransition stateTransition) {
+        return Optional.ofNullable(failuresByStateTransition.get(stateTransition));
+    }
+
+    /**
+     * @return the events for every transition they could be created for, in the order the transitions were given
+     */
+    public List<Event> getAllEvents() {
+        return eventsByStateTransition.values().stream()
+                .flatMap(List::stream)
+                .collect(Collectors.toList());
+    }
+}
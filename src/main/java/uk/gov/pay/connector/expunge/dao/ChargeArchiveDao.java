@@ -0,0 +1,66 @@
+package uk.gov.pay.connector.expunge.dao;
+
+import com.google.inject.Provider;
+import com.google.inject.persist.Transactional;
+import uk.gov.pay.connector.common.dao.JpaDao;
+import uk.gov.pay.connector.expunge.model.domain.ChargeArchiveEntity;
+
+import javax.inject.Inject;
+import javax.persistence.EntityManager;
+import java.util.Optional;
+
+@Transactional
+public class ChargeArchiveDao extends JpaDao<ChargeArchiveEntity> {
+
+    // the archive is kept indefinitely, so the paying user's personal data is left out of it
+    private static final String WITHOUT_CHARGE_PERSONAL_DATA = " - 'email' - 'cardholder_name' - 'expiry_date'" +
+            " - 'first_digits_card_number' - 'last_digits_card_number' - 'address_line1' - 'address_line2'" +
+            " - 'address_postcode' - 'address_city' - 'address_county' - 'address_country'";
+    private static final String WITHOUT_REFUND_PERSONAL_DATA = " - 'user_email'";
+
+    private static final String CHARGE_AGGREGATE_QUERY = "SELECT json_build_object(" +
+            " 'charge', (SELECT to_jsonb(c)" + WITHOUT_CHARGE_PERSONAL_DATA + " FROM charges c WHERE c.id = ?1)," +
+            " 'charge_events', (SELECT coalesce(json_agg(ce ORDER BY ce.id), '[]'::json) FROM charge_events ce WHERE ce.charge_id = ?1)," +
+            " 'fees', (SELECT coalesce(json_agg(f ORDER BY f.id), '[]'::json) FROM fees f WHERE f.charge_id = ?1)," +
+            " 'refunds', (SELECT coalesce(json_agg(to_jsonb(r)" + WITHOUT_REFUND_PERSONAL_DATA + " ORDER BY r.id), '[]'::json)" +
+            " FROM refunds r WHERE r.charge_external_id = ?2)" +
+            ")::text";
+
+    @Inject
+    public ChargeArchiveDao(final Provider<EntityManager> entityManager) {
+        super(entityManager);
+    }
+
+    public Optional<ChargeArchiveEntity> findByChargeExternalId(String chargeExternalId) {
+        String query = "SELECT ca FROM ChargeArchiveEntity ca " +
+                "WHERE ca.chargeExternalId = :chargeExternalId";
+
+        return entityManager.get()
+                .createQuery(query, ChargeArchiveEntity.class)
+                .setParameter("chargeExternalId", chargeExternalId)
+                .getResultList().stream().findFirst();
+    }
+
+    public boolean existsForChargeExternalId(String chargeExternalId) {
+        String query = "SELECT count(ca.id) FROM ChargeArchiveEntity ca " +
+                "WHERE ca.chargeExternalId = :chargeExternalId";
+
+        return entityManager.get()
+                .createQuery(query, Long.class)
+                .setParameter("chargeExternalId", chargeExternalId)
+                .getSingleResult() > 0;
+    }
+
+    /**
+     * Builds the charge aggregate (charge, charge events, fees and refunds) as a single JSON document
+     * in one round trip to the database. The paying user's email address, card details and billing address, and
+     * the email address of the user who made each refund, are left out.
+     */
+    public String findChargeAggregateAsJson(Long chargeId, String chargeExternalId) {
+        return (String) entityManager.get()
+                .createNativeQuery(CHARGE_AGGREGATE_QUERY)
+                .setParameter(1, chargeId)
+                .setParameter(2, chargeExternalId)
+                .getSingleResult();
+    }
+}
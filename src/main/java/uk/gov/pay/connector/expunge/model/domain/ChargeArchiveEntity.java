@@ -0,0 +1,81 @@
+package uk.gov.pay.connector.expunge.model.domain;
+
+import uk.gov.pay.connector.common.model.domain.UTCDateTimeConverter;
+
+import javax.persistence.Column;
+import javax.persistence.Convert;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.SequenceGenerator;
+import javax.persistence.Table;
+import java.time.ZonedDateTime;
+
+@Entity
+@Table(name = "charge_archive")
+@SequenceGenerator(name = "charge_archive_id_seq",
+        sequenceName = "charge_archive_id_seq", allocationSize = 1)
+public class ChargeArchiveEntity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "charge_archive_id_seq")
+    private Long id;
+
+    @Column(name = "charge_external_id")
+    private String chargeExternalId;
+
+    @Column(name = "gateway_account_id")
+    private Long gatewayAccountId;
+
+    @Convert(converter = UTCDateTimeConverter.class)
+    @Column(name = "charge_created_date")
+    private ZonedDateTime chargeCreatedDate;
+
+    @Convert(converter = UTCDateTimeConverter.class)
+    @Column(name = "archived_date")
+    private ZonedDateTime archivedDate;
+
+    /**
+     * GZIP compressed JSON document holding the charge row together with its charge events,
+     * fees and refunds as they were at the time the charge was expunged.
+     */
+    @Column(name = "payload")
+    private byte[] payload;
+
+    protected ChargeArchiveEntity() {
+    }
+
+    public ChargeArchiveEntity(String chargeExternalId, Long gatewayAccountId, ZonedDateTime chargeCreatedDate,
+                               ZonedDateTime archivedDate, byte[] payload) {
+        this.chargeExternalId = chargeExternalId;
+        this.gatewayAccountId = gatewayAccountId;
+        this.chargeCreatedDate = chargeCreatedDate;
+        this.archivedDate = archivedDate;
+        this.payload = payload;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getChargeExternalId() {
+        return chargeExternalId;
+    }
+
+    public Long getGatewayAccountId() {
+        return gatewayAccountId;
+    }
+
+    public ZonedDateTime getChargeCreatedDate() {
+        return chargeCreatedDate;
+    }
+
+    public ZonedDateTime getArchivedDate() {
+        return archivedDate;
+    }
+
+    public byte[] getPayload() {
+        return payload;
+    }
+}
@@ -0,0 +1,34 @@
+package uk.gov.pay.connector.expunge.resource;
+
+import uk.gov.pay.connector.expunge.service.ChargeArchiveService;
+
+import javax.inject.Inject;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.Response;
+
+import static java.lang.String.format;
+import static javax.ws.rs.core.MediaType.APPLICATION_JSON;
+import static uk.gov.pay.connector.util.ResponseUtil.notFoundResponse;
+
+@Path("/")
+public class ChargeArchiveResource {
+
+    private final ChargeArchiveService chargeArchiveService;
+
+    @Inject
+    public ChargeArchiveResource(ChargeArchiveService chargeArchiveService) {
+        this.chargeArchiveService = chargeArchiveService;
+    }
+
+    @GET
+    @Path("/v1/api/archive/charges/{chargeExternalId}")
+    @Produces(APPLICATION_JSON)
+    public Response getArchivedCharge(@PathParam("chargeExternalId") String chargeExternalId) {
+        return chargeArchiveService.findArchivedCharge(chargeExternalId)
+                .map(archivedCharge -> Response.ok(archivedCharge).build())
+                .orElseGet(() -> notFoundResponse(format("Archived charge with id [%s] not found.", chargeExternalId)));
+    }
+}
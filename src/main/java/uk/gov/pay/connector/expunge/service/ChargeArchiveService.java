@@ -0,0 +1,92 @@
+package uk.gov.pay.connector.expunge.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.inject.persist.Transactional;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.gov.pay.connector.charge.model.domain.ChargeEntity;
+import uk.gov.pay.connector.expunge.dao.ChargeArchiveDao;
+import uk.gov.pay.connector.expunge.model.domain.ChargeArchiveEntity;
+
+import javax.inject.Inject;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.Optional;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static net.logstash.logback.argument.StructuredArguments.kv;
+import static uk.gov.pay.logging.LoggingKeys.PAYMENT_EXTERNAL_ID;
+
+public class ChargeArchiveService {
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+    private final ChargeArchiveDao chargeArchiveDao;
+    private final ObjectMapper objectMapper;
+
+    @Inject
+    public ChargeArchiveService(ChargeArchiveDao chargeArchiveDao, ObjectMapper objectMapper) {
+        this.chargeArchiveDao = chargeArchiveDao;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Writes the charge aggregate to the append-only archive. Joins the caller's transaction, so when called while
+     * expunging a charge the archive is committed together with the delete and rolled back with it. A charge that
+     * already has an archive is left alone rather than failing on the unique charge external ID.
+     */
+    @Transactional
+    public void archive(ChargeEntity chargeEntity) {
+        if (chargeArchiveDao.existsForChargeExternalId(chargeEntity.getExternalId())) {
+            logger.info("Charge already archived {}", kv(PAYMENT_EXTERNAL_ID, chargeEntity.getExternalId()));
+            return;
+        }
+
+        String aggregate = chargeArchiveDao.findChargeAggregateAsJson(chargeEntity.getId(), chargeEntity.getExternalId());
+
+        chargeArchiveDao.persist(new ChargeArchiveEntity(
+                chargeEntity.getExternalId(),
+                chargeEntity.getGatewayAccount().getId(),
+                chargeEntity.getCreatedDate(),
+                ZonedDateTime.now(ZoneOffset.UTC),
+                compress(aggregate)));
+    }
+
+    public Optional<JsonNode> findArchivedCharge(String chargeExternalId) {
+        return chargeArchiveDao.findByChargeExternalId(chargeExternalId)
+                .map(archive -> readTree(decompress(archive.getPayload())));
+    }
+
+    static byte[] compress(String payload) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(payload.getBytes(UTF_8));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    static String decompress(byte[] payload) {
+        try (InputStream gzip = new GZIPInputStream(new ByteArrayInputStream(payload))) {
+            return new String(gzip.readAllBytes(), UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private JsonNode readTree(String json) {
+        try {
+            return objectMapper.readTree(json);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -10,13 +10,17 @@ import uk.gov.pay.connector.charge.dao.ChargeDao;
 import uk.gov.pay.connector.charge.model.domain.ChargeEntity;
 import uk.gov.pay.connector.charge.model.domain.ChargeStatus;
 import uk.gov.pay.connector.charge.service.ChargeService;
+import uk.gov.pay.connector.paritycheck.LedgerTransaction;
 import uk.gov.pay.connector.tasks.ParityCheckService;
+import uk.gov.pay.connector.workpartition.service.WorkPartitionService;
 
 import javax.inject.Inject;
 import javax.persistence.OptimisticLockException;
 import java.time.ZonedDateTime;
 import java.time.temporal.ChronoUnit;
-import java.util.stream.IntStream;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 import static net.logstash.logback.argument.StructuredArguments.kv;
 import static uk.gov.pay.connector.charge.model.domain.ParityCheckStatus.SKIPPED;
@@ -25,20 +29,29 @@ import static uk.gov.pay.logging.LoggingKeys.PAYMENT_EXTERNAL_ID;
 
 public class ChargeExpungeService {
 
+    private static final String EXPUNGE_JOB_NAME = "expunge";
+    private static final int BATCH_SIZE = 100;
+
     private final Logger logger = LoggerFactory.getLogger(getClass());
     private final ChargeDao chargeDao;
     private final ExpungeConfig expungeConfig;
     private final ParityCheckService parityCheckService;
     private final ChargeService chargeService;
+    private final ChargeArchiveService chargeArchiveService;
+    private final WorkPartitionService workPartitionService;
 
     @Inject
     public ChargeExpungeService(ChargeDao chargeDao, ConnectorConfiguration connectorConfiguration,
                                 ParityCheckService parityCheckService,
-                                ChargeService chargeService) {
+                                ChargeService chargeService,
+                                ChargeArchiveService chargeArchiveService,
+                                WorkPartitionService workPartitionService) {
         this.chargeDao = chargeDao;
         expungeConfig = connectorConfiguration.getExpungeConfig();
         this.parityCheckService = parityCheckService;
         this.chargeService = chargeService;
+        this.chargeArchiveService = chargeArchiveService;
+        this.workPartitionService = workPartitionService;
     }
 
     private boolean inTerminalState(ChargeEntity chargeEntity) {
@@ -56,23 +69,40 @@ public class ChargeExpungeService {
             logger.info("Charge expunging feature is disabled. No charges have been expunged");
         } else {
             int noOfChargesToExpunge = getNumberOfChargesToExpunge(noOfChargesToExpungeQueryParam);
-            int minimumAgeOfChargeInDays = expungeConfig.getMinimumAgeOfChargeInDays();
-            int createdWithinLast = expungeConfig.getExcludeChargesParityCheckedWithInDays();
-
-            IntStream.range(0, noOfChargesToExpunge).forEach(number -> {
-                chargeDao.findChargeToExpunge(minimumAgeOfChargeInDays, createdWithinLast)
-                        .ifPresent(chargeEntity -> {
-                            MDC.put(PAYMENT_EXTERNAL_ID, chargeEntity.getExternalId());
-                            try {
-                                parityCheckAndExpungeIfMet(chargeEntity);
-                            } catch (OptimisticLockException error) {
-                                logger.info("Expunging process conflicted with an already running process, exit");
-                                MDC.remove(HEADER_REQUEST_ID);
-                                throw error;
-                            }
-                            MDC.remove(PAYMENT_EXTERNAL_ID);
-                        });
+            workPartitionService.runExclusively(EXPUNGE_JOB_NAME, () -> expungeCharges(noOfChargesToExpunge));
+        }
+    }
+
+    private void expungeCharges(int noOfChargesToExpunge) {
+        int minimumAgeOfChargeInDays = expungeConfig.getMinimumAgeOfChargeInDays();
+        int createdWithinLast = expungeConfig.getExcludeChargesParityCheckedWithInDays();
+
+        int remaining = noOfChargesToExpunge;
+        while (remaining > 0) {
+            int batchSize = Math.min(remaining, BATCH_SIZE);
+            List<ChargeEntity> charges = chargeDao.findChargesToExpunge(minimumAgeOfChargeInDays, createdWithinLast, batchSize);
+
+            // the ledger transactions of a batch are looked up together, rather than as each charge is checked
+            Map<String, LedgerTransaction> ledgerTransactions = parityCheckService.getLedgerTransactions(charges.stream()
+                    .filter(this::inTerminalState)
+                    .collect(Collectors.toList()));
+
+            charges.forEach(chargeEntity -> {
+                MDC.put(PAYMENT_EXTERNAL_ID, chargeEntity.getExternalId());
+                try {
+                    parityCheckAndExpungeIfMet(chargeEntity, ledgerTransactions);
+                } catch (OptimisticLockException error) {
+                    logger.info("Expunging process conflicted with an already running process, exit");
+                    MDC.remove(HEADER_REQUEST_ID);
+                    throw error;
+                }
+                MDC.remove(PAYMENT_EXTERNAL_ID);
             });
+
+            if (charges.size() < batchSize) {
+                break;
+            }
+            remaining -= batchSize;
         }
     }
 
@@ -83,14 +113,14 @@ public class ChargeExpungeService {
         return expungeConfig.getNumberOfChargesToExpunge();
     }
 
-    private void parityCheckAndExpungeIfMet(ChargeEntity chargeEntity) {
+    private void parityCheckAndExpungeIfMet(ChargeEntity chargeEntity, Map<String, LedgerTransaction> ledgerTransactions) {
         boolean hasChargeBeenParityCheckedBefore = chargeEntity.getParityCheckDate() != null;
 
         if (!inTerminalState(chargeEntity)) {
             chargeService.updateChargeParityStatus(chargeEntity.getExternalId(), SKIPPED);
             logger.info("Charge not expunged because it is not in a terminal state {}",
                     kv(PAYMENT_EXTERNAL_ID, chargeEntity.getExternalId()));
-        } else if (parityCheckService.parityCheckChargeForExpunger(chargeEntity)) {
+        } else if (parityCheckService.parityCheckChargeForExpunger(chargeEntity, ledgerTransactions)) {
             expungeCharge(chargeEntity);
             logger.info("Charge expunged from connector {}", kv(PAYMENT_EXTERNAL_ID, chargeEntity.getExternalId()));
         } else {
@@ -106,6 +136,9 @@ public class ChargeExpungeService {
 
     @Transactional
     public void expungeCharge(ChargeEntity chargeEntity) {
+        if (expungeConfig.isArchiveExpungedChargesEnabled()) {
+            chargeArchiveService.archive(chargeEntity);
+        }
         chargeDao.expungeCharge(chargeEntity.getId(), chargeEntity.getExternalId());
     }
 
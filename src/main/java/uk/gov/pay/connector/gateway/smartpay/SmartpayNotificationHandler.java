@@ -0,0 +1,99 @@
+package uk.gov.pay.connector.gateway.smartpay;
+
+import com.google.inject.persist.Transactional;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.gov.pay.connector.charge.model.domain.Charge;
+import uk.gov.pay.connector.gateway.model.status.InterpretedStatus;
+import uk.gov.pay.connector.gateway.model.status.MappedChargeStatus;
+import uk.gov.pay.connector.gateway.model.status.MappedRefundStatus;
+import uk.gov.pay.connector.gateway.processor.ChargeNotificationProcessor;
+import uk.gov.pay.connector.gateway.processor.RefundNotificationProcessor;
+import uk.gov.pay.connector.gatewayaccount.model.GatewayAccountEntity;
+import uk.gov.pay.connector.gatewayaccount.service.GatewayAccountService;
+
+import javax.inject.Inject;
+import java.util.List;
+import java.util.Optional;
+
+import static net.logstash.logback.argument.StructuredArguments.kv;
+import static uk.gov.pay.connector.gateway.PaymentGatewayName.SMARTPAY;
+import static uk.gov.pay.logging.LoggingKeys.GATEWAY_ACCOUNT_ID;
+import static uk.gov.pay.logging.LoggingKeys.PAYMENT_EXTERNAL_ID;
+
+/**
+ * Applies the Smartpay notifications for one charge, in order and in one transaction, so that
+ * {@link SmartpayNotificationService} can process the notifications for different charges concurrently.
+ */
+public class SmartpayNotificationHandler {
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private static final String PAYMENT_GATEWAY_NAME = SMARTPAY.getName();
+
+    private final ChargeNotificationProcessor chargeNotificationProcessor;
+    private final RefundNotificationProcessor refundNotificationProcessor;
+    private final GatewayAccountService gatewayAccountService;
+
+    @Inject
+    public SmartpayNotificationHandler(ChargeNotificationProcessor chargeNotificationProcessor,
+                                       RefundNotificationProcessor refundNotificationProcessor,
+                                       GatewayAccountService gatewayAccountService) {
+        this.chargeNotificationProcessor = chargeNotificationProcessor;
+        this.refundNotificationProcessor = refundNotificationProcessor;
+        this.gatewayAccountService = gatewayAccountService;
+    }
+
+    @Transactional
+    public void handle(List<SmartpayNotification> notifications, Charge charge) {
+        for (SmartpayNotification notification : notifications) {
+            handle(notification, charge);
+        }
+    }
+
+    private void handle(SmartpayNotification notification, Charge charge) {
+        Optional<GatewayAccountEntity> mayBeGatewayAccountEntity =
+                gatewayAccountService.getGatewayAccount(charge.getGatewayAccountId());
+
+        if (mayBeGatewayAccountEntity.isEmpty()) {
+            logger.error("{} notification {} could not be processed (associated gateway account [{}] not found for charge [{}] {}, {})",
+                    PAYMENT_GATEWAY_NAME, notification,
+                    charge.getGatewayAccountId(),
+                    charge.getExternalId(),
+                    kv(PAYMENT_EXTERNAL_ID, charge.getExternalId()),
+                    kv(GATEWAY_ACCOUNT_ID, charge.getGatewayAccountId()));
+            return;
+        }
+        GatewayAccountEntity gatewayAccountEntity = mayBeGatewayAccountEntity.get();
+
+        InterpretedStatus interpretedStatus = SmartpayStatusMapper.from(notification.getStatus());
+
+        if (interpretedStatus instanceof MappedChargeStatus) {
+            if(charge.isHistoric()){
+                logger.error("{} notification {} could not be processed as charge [{}] has been expunged from connector {} {}",
+                        PAYMENT_GATEWAY_NAME, notification,
+                        charge.getExternalId(),
+                        kv(PAYMENT_EXTERNAL_ID, charge.getExternalId()),
+                        kv(GATEWAY_ACCOUNT_ID, charge.getGatewayAccountId()));
+                return;
+            }
+            chargeNotificationProcessor.invoke(
+                    notification.getOriginalReference(),
+                    charge,
+                    interpretedStatus.getChargeStatus(),
+                    notification.getEventDate()
+            );
+        } else if (interpretedStatus instanceof MappedRefundStatus) {
+            refundNotificationProcessor.invoke(
+                    SMARTPAY,
+                    interpretedStatus.getRefundStatus(),
+                    gatewayAccountEntity,
+                    notification.getPspReference(),
+                    notification.getOriginalReference(),
+                    charge
+            );
+        } else {
+            logger.error("{} notification {} unknown", PAYMENT_GATEWAY_NAME, notification);
+        }
+    }
+}
@@ -1,134 +1,168 @@
 package uk.gov.pay.connector.gateway.smartpay;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.google.inject.persist.Transactional;
+import com.google.common.base.Throwables;
+import io.dropwizard.setup.Environment;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import uk.gov.pay.connector.app.ConnectorConfiguration;
 import uk.gov.pay.connector.charge.model.domain.Charge;
 import uk.gov.pay.connector.charge.service.ChargeService;
 import uk.gov.pay.connector.gateway.model.status.InterpretedStatus;
-import uk.gov.pay.connector.gateway.model.status.MappedChargeStatus;
-import uk.gov.pay.connector.gateway.model.status.MappedRefundStatus;
-import uk.gov.pay.connector.gateway.processor.ChargeNotificationProcessor;
-import uk.gov.pay.connector.gateway.processor.RefundNotificationProcessor;
-import uk.gov.pay.connector.gatewayaccount.model.GatewayAccountEntity;
-import uk.gov.pay.connector.gatewayaccount.service.GatewayAccountService;
+import uk.gov.pay.connector.util.BlockingTaskThreads;
+import uk.gov.pay.connector.webhook.service.NotificationDeduplicator;
+import uk.gov.pay.connector.webhook.service.NotificationKey;
 
 import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.stream.Collectors;
 
-import static net.logstash.logback.argument.StructuredArguments.kv;
 import static org.apache.commons.lang3.StringUtils.isBlank;
 import static uk.gov.pay.connector.gateway.PaymentGatewayName.SMARTPAY;
-import static uk.gov.pay.logging.LoggingKeys.GATEWAY_ACCOUNT_ID;
-import static uk.gov.pay.logging.LoggingKeys.PAYMENT_EXTERNAL_ID;
 
+/**
+ * Processes the notifications in a Smartpay notification request. The charges they refer to are loaded in one go and
+ * the notifications for each charge are handed to {@link SmartpayNotificationHandler} on a bounded pool, so a large
+ * request does not have to wait for each charge in turn. Notifications for the same charge are still applied in the
+ * order Smartpay sent them, and the method only returns once every notification has been processed. Notifications
+ * that have been processed recently are skipped, and a notification is only remembered once its charge's transaction
+ * has committed.
+ */
+@Singleton
 public class SmartpayNotificationService {
 
     private final Logger logger = LoggerFactory.getLogger(getClass());
 
     private final ChargeService chargeService;
-    private final GatewayAccountService gatewayAccountService;
-    private final ChargeNotificationProcessor chargeNotificationProcessor;
-    private final RefundNotificationProcessor refundNotificationProcessor;
+    private final SmartpayNotificationHandler smartpayNotificationHandler;
+    private final NotificationDeduplicator notificationDeduplicator;
+    private final ExecutorService executorService;
 
     private static final String PAYMENT_GATEWAY_NAME = SMARTPAY.getName();
 
     @Inject
     public SmartpayNotificationService(ChargeService chargeService,
-                                       ChargeNotificationProcessor chargeNotificationProcessor,
-                                       RefundNotificationProcessor refundNotificationProcessor,
-                                       GatewayAccountService gatewayAccountService) {
+                                       SmartpayNotificationHandler smartpayNotificationHandler,
+                                       NotificationDeduplicator notificationDeduplicator,
+                                       ConnectorConfiguration configuration,
+                                       Environment environment) {
+        this(chargeService, smartpayNotificationHandler, notificationDeduplicator, environment.lifecycle()
+                .executorService("smartpay-notification-%d")
+                .minThreads(configuration.getSmartpayNotificationConfig().getBatchProcessingThreads())
+                .maxThreads(configuration.getSmartpayNotificationConfig().getBatchProcessingThreads())
+                .threadFactory(BlockingTaskThreads.threadFactory(configuration.getExecutorServiceConfig().getExecutionMode(),
+                        "smartpay-notification-%d"))
+                .build());
+    }
+
+    SmartpayNotificationService(ChargeService chargeService,
+                                SmartpayNotificationHandler smartpayNotificationHandler,
+                                NotificationDeduplicator notificationDeduplicator,
+                                ExecutorService executorService) {
         this.chargeService = chargeService;
-        this.chargeNotificationProcessor = chargeNotificationProcessor;
-        this.refundNotificationProcessor = refundNotificationProcessor;
-        this.gatewayAccountService = gatewayAccountService;
+        this.smartpayNotificationHandler = smartpayNotificationHandler;
+        this.notificationDeduplicator = notificationDeduplicator;
+        this.executorService = executorService;
     }
 
-    @Transactional
     public boolean handleNotificationFor(String payload) {
-        List<SmartpayNotification> notifications = parse(payload);
-        for (SmartpayNotification notification : notifications) {
-            handle(notification);
+        Map<String, List<SmartpayNotification>> notificationsByOriginalReference = new LinkedHashMap<>();
+        for (SmartpayNotification notification : parse(payload)) {
+            if (shouldHandle(notification) && !isDuplicate(notification)) {
+                notificationsByOriginalReference
+                        .computeIfAbsent(notification.getOriginalReference(), originalReference -> new ArrayList<>())
+                        .add(notification);
+            }
         }
+        if (notificationsByOriginalReference.isEmpty()) {
+            return true;
+        }
+
+        Set<String> originalReferences = notificationsByOriginalReference.keySet().stream()
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        Map<String, Charge> charges = chargeService.findByProviderAndTransactionIdsFromDbOrLedger(PAYMENT_GATEWAY_NAME,
+                originalReferences);
+
+        List<Runnable> chargeTasks = new ArrayList<>();
+        notificationsByOriginalReference.forEach((originalReference, notifications) -> {
+            Charge charge = charges.get(originalReference);
+            if (charge == null) {
+                notifications.forEach(notification ->
+                        logger.warn("{} notification {} could not be evaluated (associated charge entity not found)",
+                                PAYMENT_GATEWAY_NAME, notification));
+                return;
+            }
+            chargeTasks.add(() -> {
+                smartpayNotificationHandler.handle(notifications, charge);
+                notifications.forEach(notification -> notificationDeduplicator.processed(notificationKey(notification)));
+            });
+        });
+
+        run(chargeTasks);
         return true;
     }
 
-    private void handle(SmartpayNotification notification) {
+    /**
+     * Runs the tasks and waits for all of them to finish before rethrowing any failure, so that Smartpay sends the
+     * request again.
+     */
+    private void run(List<Runnable> chargeTasks) {
+        if (chargeTasks.size() == 1) {
+            // not worth handing over to another thread
+            chargeTasks.get(0).run();
+            return;
+        }
+
+        CompletableFuture<?>[] results = chargeTasks.stream()
+                .map(chargeTask -> CompletableFuture.runAsync(chargeTask, executorService))
+                .toArray(CompletableFuture[]::new);
+        try {
+            CompletableFuture.allOf(results).join();
+        } catch (CompletionException e) {
+            Throwables.throwIfUnchecked(e.getCause());
+            throw e;
+        }
+    }
+
+    private boolean shouldHandle(SmartpayNotification notification) {
         if (shouldIgnore(notification)) {
             logger.info("{} notification {} ignored", PAYMENT_GATEWAY_NAME, notification);
-            return;
+            return false;
         }
 
         logger.info("Verifying {} notification {}", PAYMENT_GATEWAY_NAME, notification);
 
         if (isBlank(notification.getTransactionId())) {
             logger.error("{} notification {} failed verification because it has no transaction ID", PAYMENT_GATEWAY_NAME, notification);
-            return;
+            return false;
         }
 
         logger.info("Evaluating {} notification {}", PAYMENT_GATEWAY_NAME, notification);
+        return true;
+    }
 
-        Optional<Charge> maybeCharge = chargeService.findByProviderAndTransactionIdFromDbOrLedger(PAYMENT_GATEWAY_NAME,
-                notification.getOriginalReference());
-
-        if (maybeCharge.isEmpty()) {
-            logger.warn("{} notification {} could not be evaluated (associated charge entity not found)",
-                    PAYMENT_GATEWAY_NAME, notification);
-            return;
-        }
-
-        Charge charge = maybeCharge.get();
-
-        Optional<GatewayAccountEntity> mayBeGatewayAccountEntity =
-                gatewayAccountService.getGatewayAccount(charge.getGatewayAccountId());
-
-        if (mayBeGatewayAccountEntity.isEmpty()) {
-            logger.error("{} notification {} could not be processed (associated gateway account [{}] not found for charge [{}] {}, {})",
-                    PAYMENT_GATEWAY_NAME, notification,
-                    charge.getGatewayAccountId(),
-                    charge.getExternalId(),
-                    kv(PAYMENT_EXTERNAL_ID, charge.getExternalId()),
-                    kv(GATEWAY_ACCOUNT_ID, charge.getGatewayAccountId()));
-            return;
-        }
-        GatewayAccountEntity gatewayAccountEntity = mayBeGatewayAccountEntity.get();
-
-        InterpretedStatus interpretedStatus = interpretStatus(notification);
-
-        if (interpretedStatus instanceof MappedChargeStatus) {
-            if(charge.isHistoric()){
-                logger.error("{} notification {} could not be processed as charge [{}] has been expunged from connector {} {}",
-                        PAYMENT_GATEWAY_NAME, notification,
-                        charge.getExternalId(),
-                        kv(PAYMENT_EXTERNAL_ID, charge.getExternalId()),
-                        kv(GATEWAY_ACCOUNT_ID, charge.getGatewayAccountId()));
-                return;
-            }
-            chargeNotificationProcessor.invoke(
-                    notification.getOriginalReference(),
-                    charge,
-                    interpretedStatus.getChargeStatus(),
-                    notification.getEventDate()
-            );
-        } else if (interpretedStatus instanceof MappedRefundStatus) {
-            refundNotificationProcessor.invoke(
-                    SMARTPAY,
-                    interpretedStatus.getRefundStatus(),
-                    gatewayAccountEntity,
-                    notification.getPspReference(),
-                    notification.getOriginalReference(),
-                    charge
-            );
-        } else {
-            logger.error("{} notification {} unknown", PAYMENT_GATEWAY_NAME, notification);
+    private boolean isDuplicate(SmartpayNotification notification) {
+        if (notificationDeduplicator.isDuplicate(notificationKey(notification))) {
+            logger.info("{} notification {} ignored (already processed)", PAYMENT_GATEWAY_NAME, notification);
+            return true;
         }
+        return false;
     }
 
-    private InterpretedStatus interpretStatus(SmartpayNotification notification) {
-        return SmartpayStatusMapper.from(notification.getStatus());
+    private static NotificationKey notificationKey(SmartpayNotification notification) {
+        return NotificationKey.of(SMARTPAY, notification.getOriginalReference(), notification.getPspReference(),
+                notification.getEventCode() + ":" + notification.isSuccessFul(), notification.getEventDate());
     }
 
     private boolean shouldIgnore(SmartpayNotification notification) {
@@ -136,10 +170,6 @@ public class SmartpayNotificationService {
                 == InterpretedStatus.Type.IGNORED;
     }
 
-    private InterpretedStatus interpretedStatusFrom(SmartpayStatus status) {
-        return SmartpayStatusMapper.from(status);
-    }
-
     private List<SmartpayNotification> parse(String payload) {
         logger.info("Parsing {} notification", PAYMENT_GATEWAY_NAME);
 
@@ -16,13 +16,15 @@ import static java.lang.String.format;
 public class SmartpayAccountSpecificAuthenticator implements Authenticator<BasicCredentials, BasicAuthUser> {
     private GatewayAccountDao gatewayAccountDao;
     private HashUtil hashUtil;
+    private VerifiedNotificationCredentialsCache verifiedCredentialsCache;
     private static final Logger logger = LoggerFactory.getLogger(SmartpayAccountSpecificAuthenticator.class);
 
     @Inject
-    public SmartpayAccountSpecificAuthenticator(GatewayAccountDao gatewayAccountDao, HashUtil hashUtil) {
+    public SmartpayAccountSpecificAuthenticator(GatewayAccountDao gatewayAccountDao, HashUtil hashUtil,
+                                                VerifiedNotificationCredentialsCache verifiedCredentialsCache) {
         this.gatewayAccountDao = gatewayAccountDao;
         this.hashUtil = hashUtil;
-
+        this.verifiedCredentialsCache = verifiedCredentialsCache;
     }
 
     @Override
@@ -38,6 +40,18 @@ public class SmartpayAccountSpecificAuthenticator implements Authenticator<Basic
     }
 
     private boolean matchCredentials(BasicCredentials basicCredentials, GatewayAccountEntity gatewayAccountEntity) {
-        return hashUtil.check(basicCredentials.getPassword(), gatewayAccountEntity.getNotificationCredentials().getPassword());
+        String username = basicCredentials.getUsername();
+        String password = basicCredentials.getPassword();
+        String storedHash = gatewayAccountEntity.getNotificationCredentials().getPassword();
+
+        if (verifiedCredentialsCache.isVerified(username, password, storedHash)) {
+            return true;
+        }
+
+        boolean matches = hashUtil.check(password, storedHash);
+        if (matches) {
+            verifiedCredentialsCache.verified(username, password, storedHash);
+        }
+        return matches;
     }
 }
@@ -0,0 +1,94 @@
+package uk.gov.pay.connector.gateway.smartpay.auth;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import io.dropwizard.setup.Environment;
+import uk.gov.pay.connector.app.ConnectorConfiguration;
+import uk.gov.pay.connector.app.config.NotificationCredentialsCacheConfig;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.security.SecureRandom;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Remembers notification credentials that have passed the BCrypt check, so that a burst of notifications from the
+ * same account does not repeat the check for every request.
+ *
+ * <p>Passwords are not kept: only an HMAC of each one is, under a key generated when the application starts. An
+ * entry also records the stored hash the password was checked against and only matches while the account still has
+ * that hash, so new credentials take effect at once even if they were set on another node.</p>
+ */
+@Singleton
+public class VerifiedNotificationCredentialsCache {
+
+    private final Cache<String, VerifiedCredentials> verifiedCredentials;
+    private final HashFunction passwordDigest;
+    private final Meter hits;
+    private final Meter misses;
+
+    @Inject
+    public VerifiedNotificationCredentialsCache(ConnectorConfiguration connectorConfiguration, Environment environment) {
+        this(connectorConfiguration.getNotificationCredentialsCacheConfig(), environment.metrics(), Ticker.systemTicker());
+    }
+
+    VerifiedNotificationCredentialsCache(NotificationCredentialsCacheConfig config, MetricRegistry metricRegistry, Ticker ticker) {
+        this.verifiedCredentials = CacheBuilder.newBuilder()
+                .expireAfterWrite(config.getVerifiedCredentialsTtlInSeconds(), TimeUnit.SECONDS)
+                .maximumSize(config.getMaximumSize())
+                .ticker(ticker)
+                .build();
+        byte[] key = new byte[32];
+        new SecureRandom().nextBytes(key);
+        this.passwordDigest = Hashing.hmacSha256(key);
+        this.hits = metricRegistry.meter("smartpay-notifications.credentials-cache.hits");
+        this.misses = metricRegistry.meter("smartpay-notifications.credentials-cache.misses");
+    }
+
+    /**
+     * @return true if the password has already been checked against the given stored hash for the username
+     */
+    public boolean isVerified(String username, String password, String storedHash) {
+        VerifiedCredentials entry = verifiedCredentials.getIfPresent(username);
+        if (entry != null && entry.matches(digest(password), storedHash)) {
+            hits.mark();
+            return true;
+        }
+        misses.mark();
+        return false;
+    }
+
+    public void verified(String username, String password, String storedHash) {
+        verifiedCredentials.put(username, new VerifiedCredentials(digest(password), storedHash));
+    }
+
+    public void invalidate(String username) {
+        verifiedCredentials.invalidate(username);
+    }
+
+    private HashCode digest(String password) {
+        return passwordDigest.hashString(password, UTF_8);
+    }
+
+    private static class VerifiedCredentials {
+        private final HashCode passwordDigest;
+        private final String storedHash;
+
+        private VerifiedCredentials(HashCode passwordDigest, String storedHash) {
+            this.passwordDigest = passwordDigest;
+            this.storedHash = storedHash;
+        }
+
+        private boolean matches(HashCode passwordDigest, String storedHash) {
+            return this.passwordDigest.equals(passwordDigest) && this.storedHash.equals(storedHash);
+        }
+    }
+}
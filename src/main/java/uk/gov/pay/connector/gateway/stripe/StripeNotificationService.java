@@ -73,11 +73,22 @@ public class StripeNotificationService {
     }
 
     public void handleNotificationFor(String payload, String signatureHeader) {
-        logger.info("Parsing {} notification", PAYMENT_GATEWAY_NAME);
+        verifyNotificationSignature(payload, signatureHeader);
+        handleNotification(payload);
+    }
 
+    public void verifyNotificationSignature(String payload, String signatureHeader) {
         if (!isValidNotificationSignature(payload, signatureHeader)) {
             throw new WebApplicationException(String.format("Invalid notification signature from %s [%s]", PAYMENT_GATEWAY_NAME, signatureHeader));
         }
+    }
+
+    /**
+     * Processes a notification whose signature has already been checked with
+     * {@link #verifyNotificationSignature(String, String)}.
+     */
+    public void handleNotification(String payload) {
+        logger.info("Parsing {} notification", PAYMENT_GATEWAY_NAME);
 
         StripeNotification notification;
         try {
@@ -186,7 +197,8 @@ public class StripeNotificationService {
             auth3dsDetails.setAuth3dsResult(getMappedAuth3dsResult(type));
 
             delayFor3dsReady(charge);
-            card3dsResponseAuthService.process3DSecureAuthorisationWithoutLocking(charge.getExternalId(), auth3dsDetails);
+            card3dsResponseAuthService.process3DSecureAuthorisationWithoutLocking(charge.getExternalId(),
+                    charge.getPaymentGatewayName(), auth3dsDetails);
         } catch (OperationAlreadyInProgressRuntimeException e) {
             // CardExecutorService is asynchronous and sends back 'OperationAlreadyInProgressRuntimeException' 
             // exception while the charge is being authorised. Catch this exception to send a response with 
@@ -0,0 +1,116 @@
+package uk.gov.pay.connector.gateway.worldpay;
+
+import com.google.common.collect.ImmutableList;
+import com.google.inject.persist.Transactional;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.gov.pay.connector.charge.model.domain.Charge;
+import uk.gov.pay.connector.charge.service.ChargeService;
+import uk.gov.pay.connector.gateway.PaymentGatewayName;
+import uk.gov.pay.connector.gateway.processor.ChargeNotificationProcessor;
+import uk.gov.pay.connector.gateway.processor.RefundNotificationProcessor;
+import uk.gov.pay.connector.gatewayaccount.model.GatewayAccountEntity;
+import uk.gov.pay.connector.gatewayaccount.service.GatewayAccountService;
+import uk.gov.pay.connector.refund.model.domain.RefundStatus;
+
+import javax.inject.Inject;
+import java.util.List;
+import java.util.Optional;
+
+import static net.logstash.logback.argument.StructuredArguments.kv;
+import static uk.gov.pay.connector.charge.model.domain.ChargeStatus.CAPTURED;
+import static uk.gov.pay.logging.LoggingKeys.GATEWAY_ACCOUNT_ID;
+import static uk.gov.pay.logging.LoggingKeys.PAYMENT_EXTERNAL_ID;
+
+/**
+ * Applies a parsed Worldpay notification to its charge or refund in one transaction, so that
+ * {@link WorldpayNotificationService} only sees the outcome once the changes have been committed.
+ */
+public class WorldpayNotificationHandler {
+
+    private static final String PAYMENT_GATEWAY_NAME = PaymentGatewayName.WORLDPAY.getName();
+
+    private static final List<String> REFUND_STATUSES = ImmutableList.of("REFUNDED", "REFUNDED_BY_MERCHANT", "REFUND_FAILED");
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final ChargeService chargeService;
+    private final ChargeNotificationProcessor chargeNotificationProcessor;
+    private final RefundNotificationProcessor refundNotificationProcessor;
+    private final GatewayAccountService gatewayAccountService;
+
+    @Inject
+    public WorldpayNotificationHandler(ChargeService chargeService,
+                                       ChargeNotificationProcessor chargeNotificationProcessor,
+                                       RefundNotificationProcessor refundNotificationProcessor,
+                                       GatewayAccountService gatewayAccountService) {
+        this.chargeService = chargeService;
+        this.chargeNotificationProcessor = chargeNotificationProcessor;
+        this.refundNotificationProcessor = refundNotificationProcessor;
+        this.gatewayAccountService = gatewayAccountService;
+    }
+
+    /**
+     * @return false if the notification should be tried again later, e.g. because it is for a telephone payment we
+     * do not know about yet
+     */
+    @Transactional
+    public boolean handle(WorldpayNotification notification) {
+        Optional<Charge> maybeCharge = chargeService.findByProviderAndTransactionIdFromDbOrLedger(
+                PAYMENT_GATEWAY_NAME, notification.getTransactionId());
+
+        if (maybeCharge.isEmpty()) {
+            logger.info("{} notification {} could not be evaluated (associated charge entity not found)",
+                    PAYMENT_GATEWAY_NAME, notification);
+            // Respond with an error, which will cause worldpay to try to send the notification
+            // again later — this is necessary because sometimes we might receive a notification
+            // for a telephone payment before we know about the payment itself
+            return false;
+        }
+
+        Charge charge = maybeCharge.get();
+        Optional<GatewayAccountEntity> mayBeGatewayAccountEntity =
+                gatewayAccountService.getGatewayAccount(charge.getGatewayAccountId());
+
+        if (mayBeGatewayAccountEntity.isEmpty()) {
+            logger.error("{} notification {} could not be processed (associated gateway account [{}] not found for charge [{}] {}, {})",
+                    PAYMENT_GATEWAY_NAME, notification,
+                    charge.getGatewayAccountId(),
+                    charge.getExternalId(),
+                    kv(PAYMENT_EXTERNAL_ID, charge.getExternalId()),
+                    kv(GATEWAY_ACCOUNT_ID, charge.getGatewayAccountId()));
+            return false;
+        }
+
+        GatewayAccountEntity gatewayAccountEntity = mayBeGatewayAccountEntity.get();
+        
+        if (isCaptureNotification(notification)) {
+            if(charge.isHistoric()){
+                logger.error("{} notification {} could not be processed as charge [{}] has been expunged from connector {} {}",
+                        PAYMENT_GATEWAY_NAME, notification,
+                        charge.getExternalId(),
+                        kv(PAYMENT_EXTERNAL_ID, charge.getExternalId()),
+                        kv(GATEWAY_ACCOUNT_ID, charge.getGatewayAccountId()));
+                return false;
+            }
+            chargeNotificationProcessor.invoke(notification.getTransactionId(), charge, CAPTURED, notification.getGatewayEventDate());
+        } else if (isRefundNotification(notification)) {
+            refundNotificationProcessor.invoke(PaymentGatewayName.WORLDPAY, newRefundStatus(notification), gatewayAccountEntity,
+                    notification.getReference(), notification.getTransactionId(), charge);
+        } else {
+            logger.error("{} notification {} unknown", PAYMENT_GATEWAY_NAME, notification);
+        }
+        return true;
+    }
+
+    private RefundStatus newRefundStatus(WorldpayNotification notification) {
+        return "REFUND_FAILED".equals(notification.getStatus()) ? RefundStatus.REFUND_ERROR : RefundStatus.REFUNDED;
+    }
+
+    private boolean isRefundNotification(WorldpayNotification notification) {
+        return REFUND_STATUSES.contains(notification.getStatus());
+    }
+
+    private boolean isCaptureNotification(WorldpayNotification notification) {
+        return "CAPTURED".equals(notification.getStatus());
+    }
+}
@@ -5,6 +5,7 @@ import com.google.inject.persist.Transactional;
 import uk.gov.pay.connector.common.dao.JpaDao;
 import uk.gov.pay.connector.gatewayaccount.model.GatewayAccountEntity;
 import uk.gov.pay.connector.gatewayaccount.model.GatewayAccountSearchParams;
+import uk.gov.pay.connector.gatewayaccount.model.GatewayAccountSummaryDTO;
 
 import javax.inject.Inject;
 import javax.persistence.EntityManager;
@@ -35,14 +36,9 @@ public class GatewayAccountDao extends JpaDao<GatewayAccountEntity> {
     }
 
     public List<GatewayAccountEntity> search(GatewayAccountSearchParams params) {
-        List<String> filterTemplates = params.getFilterTemplates();
-        String whereClause = filterTemplates.isEmpty() ?
-                "" :
-                " WHERE " + String.join(" AND ", filterTemplates);
-
         String queryTemplate = "SELECT gae" +
                 " FROM GatewayAccountEntity gae" +
-                whereClause +
+                whereClause(params.getFilterTemplates()) +
                 " ORDER BY gae.id";
 
         var query = entityManager
@@ -50,7 +46,46 @@ public class GatewayAccountDao extends JpaDao<GatewayAccountEntity> {
                 .createQuery(queryTemplate, GatewayAccountEntity.class);
         
         params.getQueryMap().forEach(query::setParameter);
+        params.getLimit().ifPresent(query::setMaxResults);
         
         return query.getResultList();
     }
+
+    public List<GatewayAccountSummaryDTO> searchSummaries(GatewayAccountSearchParams params) {
+        String queryTemplate = "SELECT NEW uk.gov.pay.connector.gatewayaccount.model.GatewayAccountSummaryDTO(" +
+                "gae.id, gae.gatewayName, gae.type, gae.description, gae.serviceName, gae.analyticsId, " +
+                "gae.requires3ds, gae.allowApplePay, gae.allowGooglePay, gae.allowMoto)" +
+                " FROM GatewayAccountEntity gae" +
+                whereClause(params.getFilterTemplates()) +
+                " ORDER BY gae.id";
+
+        var query = entityManager
+                .get()
+                .createQuery(queryTemplate, GatewayAccountSummaryDTO.class);
+
+        params.getQueryMap().forEach(query::setParameter);
+        params.getLimit().ifPresent(query::setMaxResults);
+
+        return query.getResultList();
+    }
+
+    public Long count(GatewayAccountSearchParams params) {
+        String queryTemplate = "SELECT count(gae.id)" +
+                " FROM GatewayAccountEntity gae" +
+                whereClause(params.getFilterTemplatesExcludingCursor());
+
+        var query = entityManager
+                .get()
+                .createQuery(queryTemplate, Long.class);
+
+        params.getQueryMapExcludingCursor().forEach(query::setParameter);
+
+        return query.getSingleResult();
+    }
+
+    private static String whereClause(List<String> filterTemplates) {
+        return filterTemplates.isEmpty() ?
+                "" :
+                " WHERE " + String.join(" AND ", filterTemplates);
+    }
 }
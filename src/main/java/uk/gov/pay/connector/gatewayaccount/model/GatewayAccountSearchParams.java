@@ -3,12 +3,15 @@ package uk.gov.pay.connector.gatewayaccount.model;
 import org.apache.commons.lang3.StringUtils;
 import uk.gov.pay.connector.common.model.api.CommaDelimitedSetParameter;
 
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
 import javax.validation.constraints.Pattern;
 import javax.ws.rs.QueryParam;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 
 public class GatewayAccountSearchParams {
 
@@ -19,6 +22,8 @@ public class GatewayAccountSearchParams {
     private static final String REQUIRES_3DS_SQL_FIELD = "requires3ds";
     private static final String TYPE_SQL_FIELD = "type";
     private static final String PAYMENT_PROVIDER_SQL_FIELD = "gatewayName";
+    private static final String AFTER_ID_SQL_FIELD = "afterId";
+    public static final int MAX_PAGE_SIZE = 500;
     
     @QueryParam("accountIds")
     private CommaDelimitedSetParameter accountIds;
@@ -55,6 +60,26 @@ public class GatewayAccountSearchParams {
             message = "Parameter [payment_provider] must be one of 'sandbox', 'worldpay', 'smartpay', 'epdq' or 'stripe'")
     private String paymentProvider;
 
+    // Cursor for pagination: only accounts with an id greater than this are returned
+    @QueryParam("after_id")
+    @Min(value = 0, message = "Parameter [after_id] must be a non-negative number")
+    private Long afterId;
+
+    @QueryParam("limit")
+    @Min(value = 1, message = "Parameter [limit] must be between 1 and " + MAX_PAGE_SIZE)
+    @Max(value = MAX_PAGE_SIZE, message = "Parameter [limit] must be between 1 and " + MAX_PAGE_SIZE)
+    private Integer limit;
+
+    @QueryParam("include_total")
+    @Pattern(regexp = "true|false",
+            message = "Parameter [include_total] must be true or false")
+    private String includeTotal;
+
+    @QueryParam("view")
+    @Pattern(regexp = "full|summary",
+            message = "Parameter [view] must be 'full' or 'summary'")
+    private String view;
+
     public void setAccountIds(CommaDelimitedSetParameter accountIds) {
         this.accountIds = accountIds;
     }
@@ -83,7 +108,45 @@ public class GatewayAccountSearchParams {
         this.paymentProvider = paymentProvider;
     }
 
+    public void setAfterId(Long afterId) {
+        this.afterId = afterId;
+    }
+
+    public void setLimit(Integer limit) {
+        this.limit = limit;
+    }
+
+    public void setIncludeTotal(String includeTotal) {
+        this.includeTotal = includeTotal;
+    }
+
+    public void setView(String view) {
+        this.view = view;
+    }
+
+    public Optional<Integer> getLimit() {
+        return Optional.ofNullable(limit);
+    }
+
+    public boolean isIncludeTotal() {
+        return Boolean.parseBoolean(includeTotal);
+    }
+
+    public boolean isSummaryView() {
+        return "summary".equals(view);
+    }
+
     public List<String> getFilterTemplates() {
+        List<String> filters = new ArrayList<>(getFilterTemplatesExcludingCursor());
+
+        if (afterId != null) {
+            filters.add(" gae.id > :" + AFTER_ID_SQL_FIELD);
+        }
+
+        return List.copyOf(filters);
+    }
+
+    public List<String> getFilterTemplatesExcludingCursor() {
         List<String> filters = new ArrayList<>();
 
         if (accountIds != null && accountIds.isNotEmpty()) {
@@ -112,6 +175,16 @@ public class GatewayAccountSearchParams {
     }
     
     public Map<String, Object> getQueryMap() {
+        HashMap<String, Object> queryMap = new HashMap<>(getQueryMapExcludingCursor());
+
+        if (afterId != null) {
+            queryMap.put(AFTER_ID_SQL_FIELD, afterId);
+        }
+
+        return queryMap;
+    }
+
+    public Map<String, Object> getQueryMapExcludingCursor() {
         HashMap<String, Object> queryMap = new HashMap<>();
         
         if (accountIds != null && accountIds.isNotEmpty()) {
@@ -149,6 +222,10 @@ public class GatewayAccountSearchParams {
                 ", requires3ds='" + requires3ds + '\'' +
                 ", type='" + type + '\'' +
                 ", paymentProvider='" + paymentProvider + '\'' +
+                ", afterId=" + afterId +
+                ", limit=" + limit +
+                ", includeTotal='" + includeTotal + '\'' +
+                ", view='" + view + '\'' +
                 '}';
     }
 }
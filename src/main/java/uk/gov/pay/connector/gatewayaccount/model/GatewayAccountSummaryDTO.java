@@ -0,0 +1,121 @@
+package uk.gov.pay.connector.gatewayaccount.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.collect.ImmutableMap;
+
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+
+import static com.fasterxml.jackson.annotation.JsonInclude.Include.NON_NULL;
+
+/**
+ * Lightweight projection of a gateway account used by the account search when
+ * {@code view=summary} is requested. Populated directly from a JPQL constructor
+ * expression so that credentials, card types and notification settings are never loaded.
+ */
+@JsonInclude(NON_NULL)
+public class GatewayAccountSummaryDTO {
+
+    @JsonProperty("gateway_account_id")
+    private final long accountId;
+
+    @JsonProperty("payment_provider")
+    private final String paymentProvider;
+
+    private final GatewayAccountEntity.Type type;
+
+    private final String description;
+
+    @JsonProperty("service_name")
+    private final String serviceName;
+
+    @JsonProperty("analytics_id")
+    private final String analyticsId;
+
+    @JsonProperty("toggle_3ds")
+    private final boolean requires3ds;
+
+    @JsonProperty("allow_apple_pay")
+    private final boolean allowApplePay;
+
+    @JsonProperty("allow_google_pay")
+    private final boolean allowGooglePay;
+
+    @JsonProperty("allow_moto")
+    private final boolean allowMoto;
+
+    @JsonProperty("_links")
+    private final Map<String, Map<String, URI>> links = new HashMap<>();
+
+    public GatewayAccountSummaryDTO(Long accountId,
+                                    String paymentProvider,
+                                    GatewayAccountEntity.Type type,
+                                    String description,
+                                    String serviceName,
+                                    String analyticsId,
+                                    boolean requires3ds,
+                                    boolean allowApplePay,
+                                    boolean allowGooglePay,
+                                    boolean allowMoto) {
+        this.accountId = accountId;
+        this.paymentProvider = paymentProvider;
+        this.type = type;
+        this.description = description;
+        this.serviceName = serviceName;
+        this.analyticsId = analyticsId;
+        this.requires3ds = requires3ds;
+        this.allowApplePay = allowApplePay;
+        this.allowGooglePay = allowGooglePay;
+        this.allowMoto = allowMoto;
+    }
+
+    public long getAccountId() {
+        return accountId;
+    }
+
+    public String getPaymentProvider() {
+        return paymentProvider;
+    }
+
+    public String getType() {
+        return type.toString();
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public String getServiceName() {
+        return serviceName;
+    }
+
+    public String getAnalyticsId() {
+        return analyticsId;
+    }
+
+    public boolean isRequires3ds() {
+        return requires3ds;
+    }
+
+    public boolean isAllowApplePay() {
+        return allowApplePay;
+    }
+
+    public boolean isAllowGooglePay() {
+        return allowGooglePay;
+    }
+
+    public boolean isAllowMoto() {
+        return allowMoto;
+    }
+
+    public Map<String, Map<String, URI>> getLinks() {
+        return links;
+    }
+
+    public void addLink(String key, URI uri) {
+        links.put(key, ImmutableMap.of("href", uri));
+    }
+}
@@ -21,6 +21,7 @@ import uk.gov.pay.connector.gatewayaccount.model.GatewayAccountRequest;
 import uk.gov.pay.connector.gatewayaccount.model.GatewayAccountResourceDTO;
 import uk.gov.pay.connector.gatewayaccount.model.GatewayAccountResponse;
 import uk.gov.pay.connector.gatewayaccount.model.GatewayAccountSearchParams;
+import uk.gov.pay.connector.gatewayaccount.model.GatewayAccountSummaryDTO;
 import uk.gov.pay.connector.gatewayaccount.service.GatewayAccountService;
 import uk.gov.pay.connector.gatewayaccount.service.GatewayAccountServicesFactory;
 import uk.gov.pay.connector.usernotification.service.GatewayAccountNotificationCredentialsService;
@@ -73,6 +74,7 @@ public class GatewayAccountResource {
     private static final int SERVICE_NAME_FIELD_LENGTH = 50;
     private static final String USERNAME_KEY = "username";
     private static final String PASSWORD_KEY = "password";
+    private static final String TOTAL_COUNT_HEADER = "X-Total-Count";
     private final GatewayAccountService gatewayAccountService;
     private final CardTypeDao cardTypeDao;
     private final Map<String, List<String>> providerCredentialFields;
@@ -131,11 +133,37 @@ public class GatewayAccountResource {
     private Response getGatewayAccounts(@BeanParam GatewayAccountSearchParams gatewayAccountSearchParams, @Context UriInfo uriInfo) {
         logger.info("Searching gateway accounts by parameters " + gatewayAccountSearchParams.toString());
         
-        List<GatewayAccountResourceDTO> gatewayAccounts = gatewayAccountService.searchGatewayAccounts(gatewayAccountSearchParams);
-        gatewayAccounts.forEach(account -> account.addLink("self", buildUri(uriInfo, account.getAccountId())));
+        List<?> gatewayAccounts;
+        Optional<Long> lastAccountId;
+        if (gatewayAccountSearchParams.isSummaryView()) {
+            List<GatewayAccountSummaryDTO> summaries = gatewayAccountService.searchGatewayAccountSummaries(gatewayAccountSearchParams);
+            summaries.forEach(account -> account.addLink("self", buildUri(uriInfo, account.getAccountId())));
+            lastAccountId = summaries.stream().reduce((first, second) -> second).map(GatewayAccountSummaryDTO::getAccountId);
+            gatewayAccounts = summaries;
+        } else {
+            List<GatewayAccountResourceDTO> accounts = gatewayAccountService.searchGatewayAccounts(gatewayAccountSearchParams);
+            accounts.forEach(account -> account.addLink("self", buildUri(uriInfo, account.getAccountId())));
+            lastAccountId = accounts.stream().reduce((first, second) -> second).map(GatewayAccountResourceDTO::getAccountId);
+            gatewayAccounts = accounts;
+        }
+
+        Response.ResponseBuilder responseBuilder = Response.ok(ImmutableMap.of("accounts", gatewayAccounts));
+
+        gatewayAccountSearchParams.getLimit()
+                .filter(limit -> gatewayAccounts.size() == limit)
+                .flatMap(limit -> lastAccountId)
+                .ifPresent(afterId -> responseBuilder.link(buildNextPageUri(uriInfo, afterId), "next"));
+
+        if (gatewayAccountSearchParams.isIncludeTotal()) {
+            responseBuilder.header(TOTAL_COUNT_HEADER, gatewayAccountService.countGatewayAccounts(gatewayAccountSearchParams));
+        }
+
+        return responseBuilder.build();
+    }
 
-        return Response
-                .ok(ImmutableMap.of("accounts", gatewayAccounts))
+    private URI buildNextPageUri(UriInfo uriInfo, long afterId) {
+        return uriInfo.getRequestUriBuilder()
+                .replaceQueryParam("after_id", afterId)
                 .build();
     }
 
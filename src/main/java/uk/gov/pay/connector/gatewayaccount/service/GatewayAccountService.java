@@ -16,6 +16,7 @@ import uk.gov.pay.connector.gatewayaccount.model.GatewayAccountRequest;
 import uk.gov.pay.connector.gatewayaccount.model.GatewayAccountResourceDTO;
 import uk.gov.pay.connector.gatewayaccount.model.GatewayAccountResponse;
 import uk.gov.pay.connector.gatewayaccount.model.GatewayAccountSearchParams;
+import uk.gov.pay.connector.gatewayaccount.model.GatewayAccountSummaryDTO;
 
 import javax.inject.Inject;
 import javax.ws.rs.core.UriInfo;
@@ -63,6 +64,14 @@ public class GatewayAccountService {
                 .collect(Collectors.toList());
     }
 
+    public List<GatewayAccountSummaryDTO> searchGatewayAccountSummaries(GatewayAccountSearchParams params) {
+        return gatewayAccountDao.searchSummaries(params);
+    }
+
+    public long countGatewayAccounts(GatewayAccountSearchParams params) {
+        return gatewayAccountDao.count(params);
+    }
+
     @Transactional
     public Optional<GatewayAccount> doPatch(Long gatewayAccountId, JsonPatchRequest gatewayAccountRequest) {
         return gatewayAccountDao.findById(gatewayAccountId)
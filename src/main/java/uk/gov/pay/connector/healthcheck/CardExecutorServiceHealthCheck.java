@@ -1,20 +1,31 @@
 package uk.gov.pay.connector.healthcheck;
 
 import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
 import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.health.HealthCheck;
+import uk.gov.pay.connector.gateway.PaymentGatewayName;
 import uk.gov.pay.connector.paymentprocessor.service.CardExecutorService;
 
 import javax.inject.Inject;
+import java.util.Map;
 import java.util.concurrent.ThreadPoolExecutor;
 
+import static java.lang.String.format;
+
 public class CardExecutorServiceHealthCheck extends HealthCheck {
 
+    // the share of the queue that can be in use before the executor is considered saturated
+    private static final double SATURATED_QUEUE_RATIO = 0.8;
+
     private ThreadPoolExecutor threadPoolExecutor;
+    private Map<PaymentGatewayName, ThreadPoolExecutor> partitionExecutors;
+    private Meter rejectedMeter;
 
     @Inject
     public CardExecutorServiceHealthCheck(CardExecutorService cardExecutorService) {
         this.threadPoolExecutor = (ThreadPoolExecutor)cardExecutorService.getExecutor();
+        this.partitionExecutors = cardExecutorService.getPartitionExecutors();
         initialiseMetrics(cardExecutorService.getMetricRegistry());
     }
 
@@ -24,14 +35,41 @@ public class CardExecutorServiceHealthCheck extends HealthCheck {
         metricRegistry.<Gauge<Integer>>register("card-executor.core-pool-size", () -> threadPoolExecutor.getCorePoolSize());
         metricRegistry.<Gauge<Integer>>register("card-executor.queue-size", () ->
                 threadPoolExecutor.getQueue() == null ? 0 : threadPoolExecutor.getQueue().size());
+        metricRegistry.<Gauge<Integer>>register("card-executor.queue-remaining-capacity", () ->
+                threadPoolExecutor.getQueue() == null ? 0 : threadPoolExecutor.getQueue().remainingCapacity());
+        this.rejectedMeter = metricRegistry.meter("card-executor.rejected");
+
+        partitionExecutors.forEach((paymentGatewayName, partitionExecutor) -> {
+            String prefix = "card-executor." + paymentGatewayName.getName();
+            metricRegistry.<Gauge<Integer>>register(prefix + ".active-threads", partitionExecutor::getActiveCount);
+            metricRegistry.<Gauge<Integer>>register(prefix + ".pool-size", partitionExecutor::getPoolSize);
+            metricRegistry.<Gauge<Integer>>register(prefix + ".queue-size", () -> partitionExecutor.getQueue().size());
+            metricRegistry.<Gauge<Integer>>register(prefix + ".queue-remaining-capacity", () ->
+                    partitionExecutor.getQueue().remainingCapacity());
+            metricRegistry.<Gauge<Boolean>>register(prefix + ".saturated", () -> isSaturated(partitionExecutor));
+        });
     }
 
     @Override
     protected Result check() {
-        if (threadPoolExecutor.getQueue().size() <= 10) {
+        int queueSize = threadPoolExecutor.getQueue().size();
+        int queueCapacity = queueSize + threadPoolExecutor.getQueue().remainingCapacity();
+        boolean queueSaturated = isSaturated(threadPoolExecutor);
+        // the one minute rate decays rather than dropping to zero, so look for about one rejection a minute or more
+        boolean rejecting = rejectedMeter.getOneMinuteRate() * 60 >= 1;
+
+        // partitions only hold up their own provider, so their saturation is left to the per-partition gauges
+        if (!queueSaturated && !rejecting) {
             return Result.healthy();
         }
 
-        return Result.unhealthy("CardExecutorService-Unhealthy - Check metrics");
+        return Result.unhealthy(format("CardExecutorService-Unhealthy - queue_size=%d, queue_capacity=%d, " +
+                "rejecting=%s - Check metrics", queueSize, queueCapacity, rejecting));
+    }
+
+    private static boolean isSaturated(ThreadPoolExecutor executor) {
+        int queueSize = executor.getQueue().size();
+        int queueCapacity = queueSize + executor.getQueue().remainingCapacity();
+        return queueSize > SATURATED_QUEUE_RATIO * queueCapacity;
     }
 }
@@ -1,26 +1,71 @@
 package uk.gov.pay.connector.paritycheck;
 
+import io.dropwizard.setup.Environment;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
 import uk.gov.pay.connector.app.ConnectorConfiguration;
+import uk.gov.pay.connector.app.config.LedgerClientConfig;
+import uk.gov.pay.connector.util.BlockingTaskThreads;
 
 import javax.inject.Inject;
+import javax.inject.Singleton;
+import javax.ws.rs.ProcessingException;
 import javax.ws.rs.client.Client;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.UriBuilder;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 import static java.lang.String.format;
+import static org.apache.http.HttpStatus.SC_INTERNAL_SERVER_ERROR;
+import static org.apache.http.HttpStatus.SC_NOT_FOUND;
 import static org.apache.http.HttpStatus.SC_OK;
 
+/**
+ * Looks transactions up in ledger. Requests that fail to connect, time out or get a server error are retried a few
+ * times. Lookups for several transactions are sent to ledger concurrently, on a bounded pool, as ledger has no way to
+ * look up more than one transaction in a request.
+ */
+@Singleton
 public class LedgerService {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(LedgerService.class);
+
     private final Client client;
     private final String ledgerUrl;
+    private final LedgerTransactionCache ledgerTransactionCache;
+    private final LedgerClientConfig ledgerClientConfig;
+    private final ExecutorService executorService;
 
     @Inject
-    public LedgerService(Client client, ConnectorConfiguration configuration) {
+    public LedgerService(Client client, ConnectorConfiguration configuration, LedgerTransactionCache ledgerTransactionCache,
+                         Environment environment) {
+        this(client, configuration, ledgerTransactionCache, environment.lifecycle()
+                .executorService("ledger-client-%d")
+                .minThreads(configuration.getLedgerClientConfig().getConcurrency())
+                .maxThreads(configuration.getLedgerClientConfig().getConcurrency())
+                .threadFactory(BlockingTaskThreads.threadFactory(configuration.getExecutorServiceConfig().getExecutionMode(),
+                        "ledger-client-%d"))
+                .build());
+    }
+
+    LedgerService(Client client, ConnectorConfiguration configuration, LedgerTransactionCache ledgerTransactionCache,
+                  ExecutorService executorService) {
         this.client = client;
         this.ledgerUrl = configuration.getLedgerBaseUrl();
+        this.ledgerTransactionCache = ledgerTransactionCache;
+        this.ledgerClientConfig = configuration.getLedgerClientConfig();
+        this.executorService = executorService;
     }
 
     public Optional<LedgerTransaction> getTransaction(String id) {
@@ -32,6 +77,17 @@ public class LedgerService {
         return getTransactionFromLedger(uri);
     }
 
+    public CompletableFuture<Optional<LedgerTransaction>> getTransactionAsync(String id) {
+        return supplyAsync(() -> getTransaction(id));
+    }
+
+    /**
+     * @return the transactions ledger knows about, by ID. IDs ledger does not know about are left out.
+     */
+    public Map<String, LedgerTransaction> getTransactions(Collection<String> ids) {
+        return getAll(ids, this::getTransactionAsync);
+    }
+
     public Optional<LedgerTransaction> getTransactionForProviderAndGatewayTransactionId(String paymentGatewayName,
                                                                                         String gatewayTransactionId) {
         var uri = UriBuilder
@@ -39,7 +95,29 @@ public class LedgerService {
                 .path(format("/v1/transaction/gateway-transaction/%s", gatewayTransactionId))
                 .queryParam("payment_provider", paymentGatewayName);
 
-        return getTransactionFromLedger(uri);
+        try {
+            return ledgerTransactionCache.get(paymentGatewayName + "/" + gatewayTransactionId,
+                    () -> findTransactionInLedger(uri));
+        } catch (LedgerLookupFailedException e) {
+            LOGGER.warn("Ledger lookup for {} transaction {} failed: {}", paymentGatewayName, gatewayTransactionId,
+                    e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    public CompletableFuture<Optional<LedgerTransaction>> getTransactionForProviderAndGatewayTransactionIdAsync(
+            String paymentGatewayName, String gatewayTransactionId) {
+        return supplyAsync(() -> getTransactionForProviderAndGatewayTransactionId(paymentGatewayName, gatewayTransactionId));
+    }
+
+    /**
+     * @return the transactions ledger knows about, by gateway transaction ID. Gateway transaction IDs ledger does not
+     * know about are left out.
+     */
+    public Map<String, LedgerTransaction> getTransactionsForProviderAndGatewayTransactionIds(String paymentGatewayName,
+                                                                                            Collection<String> gatewayTransactionIds) {
+        return getAll(gatewayTransactionIds, gatewayTransactionId ->
+                getTransactionForProviderAndGatewayTransactionIdAsync(paymentGatewayName, gatewayTransactionId));
     }
 
     public Optional<LedgerTransaction> getTransactionForGatewayAccount(String id, Long gatewayAccountId) {
@@ -52,17 +130,111 @@ public class LedgerService {
     }
 
     private Optional<LedgerTransaction> getTransactionFromLedger(UriBuilder uri) {
-        Response response = client
-                .target(uri)
-                .request()
-                .accept(MediaType.APPLICATION_JSON)
-                .get();
+        Response response = getWithRetries(uri);
 
         if (response.getStatus() == SC_OK) {
             return Optional.of(response.readEntity(LedgerTransaction.class));
         }
 
+        response.close();
         return Optional.empty();
     }
 
+    /**
+     * Unlike {@link #getTransactionFromLedger(UriBuilder)}, tells a transaction ledger does not know about apart from a
+     * request that failed, so that only the former is remembered by the {@link LedgerTransactionCache}.
+     */
+    private Optional<LedgerTransaction> findTransactionInLedger(UriBuilder uri) {
+        Response response = getWithRetries(uri);
+
+        int status = response.getStatus();
+        if (status == SC_OK) {
+            return Optional.of(response.readEntity(LedgerTransaction.class));
+        }
+
+        response.close();
+        if (status == SC_NOT_FOUND) {
+            return Optional.empty();
+        }
+
+        throw new LedgerLookupFailedException(format("ledger responded with status %d", status));
+    }
+
+    /**
+     * @return the response to the last attempt, which is left for the caller to read or close
+     * @throws ProcessingException if the last attempt could not connect or timed out
+     */
+    private Response getWithRetries(UriBuilder uri) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                Response response = client
+                        .target(uri)
+                        .request()
+                        .accept(MediaType.APPLICATION_JSON)
+                        .get();
+                int status = response.getStatus();
+                if (status < SC_INTERNAL_SERVER_ERROR || attempt >= ledgerClientConfig.getMaximumAttempts()) {
+                    return response;
+                }
+                response.close();
+                LOGGER.info("Ledger responded with status {} [attempt={}], retrying", status, attempt);
+            } catch (ProcessingException e) {
+                if (attempt >= ledgerClientConfig.getMaximumAttempts()) {
+                    throw e;
+                }
+                LOGGER.info("Request to ledger failed [attempt={}] [error={}], retrying", attempt, e.getMessage());
+            }
+            waitBeforeRetry(attempt);
+        }
+    }
+
+    private void waitBeforeRetry(int attempt) {
+        try {
+            Thread.sleep(ledgerClientConfig.getRetryDelayInMillis() << (attempt - 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ProcessingException("Interrupted while waiting to retry request to ledger", e);
+        }
+    }
+
+    private <T> CompletableFuture<T> supplyAsync(Supplier<T> lookup) {
+        Map<String, String> mdcContextMap = Optional.ofNullable(MDC.getCopyOfContextMap()).orElse(Map.of());
+        return CompletableFuture.supplyAsync(() -> {
+            MDC.setContextMap(mdcContextMap);
+            try {
+                return lookup.get();
+            } finally {
+                MDC.clear();
+            }
+        }, executorService);
+    }
+
+    /**
+     * Waits for every lookup to finish before rethrowing the first failure, if any, so that no lookup is left running
+     * after the caller has moved on.
+     */
+    private Map<String, LedgerTransaction> getAll(Collection<String> ids,
+                                                  Function<String, CompletableFuture<Optional<LedgerTransaction>>> lookup) {
+        Map<String, CompletableFuture<Optional<LedgerTransaction>>> lookups = new LinkedHashMap<>();
+        ids.forEach(id -> lookups.computeIfAbsent(id, lookup));
+
+        try {
+            CompletableFuture.allOf(lookups.values().toArray(CompletableFuture[]::new)).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+
+        Map<String, LedgerTransaction> transactions = new HashMap<>();
+        lookups.forEach((id, transaction) -> transaction.join().ifPresent(t -> transactions.put(id, t)));
+        return transactions;
+    }
+
+    private static class LedgerLookupFailedException extends RuntimeException {
+        private LedgerLookupFailedException(String message) {
+            super(message);
+        }
+    }
 }
@@ -0,0 +1,115 @@
+package uk.gov.pay.connector.paritycheck;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.dropwizard.setup.Environment;
+import uk.gov.pay.connector.app.ConnectorConfiguration;
+import uk.gov.pay.connector.app.config.LedgerTransactionCacheConfig;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Remembers the answers ledger gives to transaction lookups for a short time, including that it does not know about a
+ * transaction, so that notifications redelivered for a payment connector does not hold do not each send the same
+ * request to ledger. Concurrent lookups for the same transaction share a single request.
+ *
+ * <p>Only definite answers are remembered. A lookup that fails is reported to everyone waiting for it and the next
+ * lookup asks ledger again.</p>
+ */
+@Singleton
+public class LedgerTransactionCache {
+
+    private final Cache<String, LedgerTransaction> found;
+    private final Cache<String, Boolean> notFound;
+    private final ConcurrentMap<String, CompletableFuture<Optional<LedgerTransaction>>> inFlight = new ConcurrentHashMap<>();
+    private final boolean enabled;
+    private final Meter hits;
+    private final Meter notFoundHits;
+    private final Meter misses;
+    private final Meter coalesced;
+
+    @Inject
+    public LedgerTransactionCache(ConnectorConfiguration configuration, Environment environment) {
+        this(configuration.getLedgerTransactionCacheConfig(), environment.metrics(), Ticker.systemTicker());
+    }
+
+    LedgerTransactionCache(LedgerTransactionCacheConfig config, MetricRegistry metricRegistry, Ticker ticker) {
+        this.enabled = config.isEnabled();
+        this.found = CacheBuilder.newBuilder()
+                .expireAfterWrite(config.getFoundTtlInSeconds(), TimeUnit.SECONDS)
+                .maximumSize(config.getMaximumSize())
+                .ticker(ticker)
+                .build();
+        this.notFound = CacheBuilder.newBuilder()
+                .expireAfterWrite(config.getNotFoundTtlInSeconds(), TimeUnit.SECONDS)
+                .maximumSize(config.getMaximumSize())
+                .ticker(ticker)
+                .build();
+        this.hits = metricRegistry.meter("ledger.transaction-cache.hits");
+        this.notFoundHits = metricRegistry.meter("ledger.transaction-cache.not-found-hits");
+        this.misses = metricRegistry.meter("ledger.transaction-cache.misses");
+        this.coalesced = metricRegistry.meter("ledger.transaction-cache.coalesced");
+    }
+
+    /**
+     * @param lookup asks ledger for the transaction, returning empty if ledger does not know about it and throwing if
+     *               ledger could not be asked
+     */
+    public Optional<LedgerTransaction> get(String key, Supplier<Optional<LedgerTransaction>> lookup) {
+        if (!enabled) {
+            return lookup.get();
+        }
+
+        LedgerTransaction transaction = found.getIfPresent(key);
+        if (transaction != null) {
+            hits.mark();
+            return Optional.of(transaction);
+        }
+        if (notFound.getIfPresent(key) != null) {
+            notFoundHits.mark();
+            return Optional.empty();
+        }
+
+        CompletableFuture<Optional<LedgerTransaction>> ourLookup = new CompletableFuture<>();
+        CompletableFuture<Optional<LedgerTransaction>> lookupInFlight = inFlight.putIfAbsent(key, ourLookup);
+        if (lookupInFlight != null) {
+            coalesced.mark();
+            return waitFor(lookupInFlight);
+        }
+
+        try {
+            misses.mark();
+            Optional<LedgerTransaction> result = lookup.get();
+            result.ifPresentOrElse(t -> found.put(key, t), () -> notFound.put(key, Boolean.TRUE));
+            ourLookup.complete(result);
+            return result;
+        } catch (RuntimeException e) {
+            ourLookup.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, ourLookup);
+        }
+    }
+
+    private static Optional<LedgerTransaction> waitFor(CompletableFuture<Optional<LedgerTransaction>> lookup) {
+        try {
+            return lookup.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+}
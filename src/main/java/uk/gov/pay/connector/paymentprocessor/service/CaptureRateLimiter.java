@@ -0,0 +1,64 @@
+package uk.gov.pay.connector.paymentprocessor.service;
+
+import com.codahale.metrics.MetricRegistry;
+import io.dropwizard.setup.Environment;
+import uk.gov.pay.connector.app.CaptureProcessConfig;
+import uk.gov.pay.connector.app.ConnectorConfiguration;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Limits the rate at which captures are sent to payment gateways, both per gateway account and per payment
+ * provider, so that one service bulk-approving delayed captures cannot trip gateway throttling for everyone else
+ * sharing the same merchant code. A capture must get a token from both its account's and its provider's bucket.
+ */
+@Singleton
+public class CaptureRateLimiter {
+
+    private final CaptureProcessConfig captureProcessConfig;
+    private final MetricRegistry metricRegistry;
+    private final LongSupplier nanoTime;
+    private final Map<Long, TokenBucket> gatewayAccountBuckets = new ConcurrentHashMap<>();
+    private final Map<String, TokenBucket> paymentProviderBuckets = new ConcurrentHashMap<>();
+
+    @Inject
+    public CaptureRateLimiter(ConnectorConfiguration connectorConfiguration, Environment environment) {
+        this(connectorConfiguration.getCaptureProcessConfig(), environment.metrics(), System::nanoTime);
+    }
+
+    CaptureRateLimiter(CaptureProcessConfig captureProcessConfig, MetricRegistry metricRegistry, LongSupplier nanoTime) {
+        this.captureProcessConfig = captureProcessConfig;
+        this.metricRegistry = metricRegistry;
+        this.nanoTime = nanoTime;
+    }
+
+    /**
+     * @param gatewayAccountId the charge's gateway account, or null if it is not known
+     * @return whether the capture may be sent now
+     */
+    public boolean tryAcquire(Long gatewayAccountId, String paymentProvider) {
+        TokenBucket gatewayAccountBucket = gatewayAccountId == null ? null
+                : gatewayAccountBuckets.computeIfAbsent(gatewayAccountId, id -> new TokenBucket(
+                        captureProcessConfig.getGatewayAccountCapturesPerSecond().getOrDefault(id,
+                                captureProcessConfig.getDefaultGatewayAccountCapturesPerSecond()), nanoTime));
+        TokenBucket paymentProviderBucket = paymentProviderBuckets.computeIfAbsent(paymentProvider,
+                provider -> new TokenBucket(captureProcessConfig.getPaymentProviderCapturesPerSecond(), nanoTime));
+
+        if (gatewayAccountBucket != null && !gatewayAccountBucket.tryAcquire()) {
+            metricRegistry.meter("gateway-operations.capture-process.throttled.gateway-account").mark();
+            return false;
+        }
+        if (!paymentProviderBucket.tryAcquire()) {
+            if (gatewayAccountBucket != null) {
+                gatewayAccountBucket.release();
+            }
+            metricRegistry.meter("gateway-operations.capture-process.throttled." + paymentProvider).mark();
+            return false;
+        }
+        return true;
+    }
+}
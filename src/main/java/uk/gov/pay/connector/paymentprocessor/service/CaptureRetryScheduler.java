@@ -0,0 +1,60 @@
+package uk.gov.pay.connector.paymentprocessor.service;
+
+import com.codahale.metrics.MetricRegistry;
+import io.dropwizard.setup.Environment;
+import uk.gov.pay.connector.app.CaptureProcessConfig;
+import uk.gov.pay.connector.app.ConnectorConfiguration;
+
+import javax.inject.Inject;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Works out how long a charge whose capture failed should wait before it is retried. The delay doubles with every
+ * attempt from the initial retry delay up to the failed capture retry delay, and a random amount of up to the
+ * jitter window is added on top, so that captures which failed together during a gateway outage come back spread
+ * out rather than all at once.
+ */
+public class CaptureRetryScheduler {
+
+    // the longest an SQS message can be kept invisible
+    static final int MAXIMUM_RETRY_DELAY_IN_SECONDS = 43200;
+
+    private final int initialRetryDelayInSeconds;
+    private final int maximumRetryDelayInSeconds;
+    private final int jitterWindowInSeconds;
+    private final MetricRegistry metricRegistry;
+    private final IntUnaryOperator randomUpTo;
+
+    @Inject
+    public CaptureRetryScheduler(ConnectorConfiguration connectorConfiguration, Environment environment) {
+        this(connectorConfiguration.getCaptureProcessConfig(), environment.metrics(),
+                bound -> ThreadLocalRandom.current().nextInt(bound));
+    }
+
+    CaptureRetryScheduler(CaptureProcessConfig captureProcessConfig, MetricRegistry metricRegistry, IntUnaryOperator randomUpTo) {
+        this.initialRetryDelayInSeconds = Math.max(1, captureProcessConfig.getInitialCaptureRetryDelayInSeconds());
+        this.maximumRetryDelayInSeconds = Math.max(initialRetryDelayInSeconds, captureProcessConfig.getFailedCaptureRetryDelayInSeconds());
+        this.jitterWindowInSeconds = Math.max(0, captureProcessConfig.getCaptureRetryJitterWindowInSeconds());
+        this.metricRegistry = metricRegistry;
+        this.randomUpTo = randomUpTo;
+    }
+
+    /**
+     * @param numberOfCaptureAttempts how many times capture has been attempted for the charge so far
+     * @return the number of seconds to wait before the next attempt
+     */
+    public int retryDelayInSeconds(int numberOfCaptureAttempts) {
+        int attempt = Math.max(1, numberOfCaptureAttempts);
+        long backoff = initialRetryDelayInSeconds;
+        for (int i = 1; i < attempt && backoff < maximumRetryDelayInSeconds; i++) {
+            backoff *= 2;
+        }
+        long jitter = jitterWindowInSeconds > 0 ? randomUpTo.applyAsInt(jitterWindowInSeconds + 1) : 0;
+        int delay = (int) Math.min(MAXIMUM_RETRY_DELAY_IN_SECONDS, Math.min(backoff, maximumRetryDelayInSeconds) + jitter);
+
+        metricRegistry.histogram("gateway-operations.capture-process.retry.attempts").update(attempt);
+        metricRegistry.histogram("gateway-operations.capture-process.retry.delay-in-seconds").update(delay);
+        return delay;
+    }
+}
@@ -6,6 +6,7 @@ import org.slf4j.LoggerFactory;
 import uk.gov.pay.connector.charge.model.domain.ChargeEntity;
 import uk.gov.pay.connector.charge.model.domain.ChargeStatus;
 import uk.gov.pay.connector.charge.service.ChargeService;
+import uk.gov.pay.connector.gateway.PaymentGatewayName;
 import uk.gov.pay.connector.gateway.PaymentProviders;
 import uk.gov.pay.connector.gateway.model.Auth3dsDetails;
 import uk.gov.pay.connector.gateway.model.request.Auth3dsResponseGatewayRequest;
@@ -42,8 +43,10 @@ public class Card3dsResponseAuthService {
         });
     }
 
-    public Gateway3DSAuthorisationResponse process3DSecureAuthorisationWithoutLocking(String chargeId, Auth3dsDetails auth3DsDetails) {
-        return cardAuthoriseBaseService.executeAuthorise(chargeId, () -> {
+    public Gateway3DSAuthorisationResponse process3DSecureAuthorisationWithoutLocking(String chargeId,
+                                                                                      PaymentGatewayName paymentGatewayName,
+                                                                                      Auth3dsDetails auth3DsDetails) {
+        return cardAuthoriseBaseService.executeAuthorise(chargeId, paymentGatewayName, () -> {
             final ChargeEntity charge = chargeService.findChargeByExternalId(chargeId);
             return authoriseAndProcess3DS(auth3DsDetails, charge);
         });
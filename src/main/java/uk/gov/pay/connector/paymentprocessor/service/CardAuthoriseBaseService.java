@@ -7,10 +7,12 @@ import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.tuple.Pair;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import uk.gov.pay.connector.charge.dao.ChargeDao;
 import uk.gov.pay.connector.charge.model.domain.ChargeEntity;
 import uk.gov.pay.connector.charge.model.domain.ChargeStatus;
 import uk.gov.pay.connector.common.exception.OperationAlreadyInProgressRuntimeException;
 import uk.gov.pay.connector.gateway.GatewayException;
+import uk.gov.pay.connector.gateway.PaymentGatewayName;
 import uk.gov.pay.connector.gateway.exception.GenericGatewayRuntimeException;
 import uk.gov.pay.connector.gateway.model.response.BaseAuthoriseResponse;
 import uk.gov.pay.connector.gateway.model.response.GatewayResponse;
@@ -28,23 +30,46 @@ import static uk.gov.pay.connector.paymentprocessor.service.CardExecutorService.
 public class CardAuthoriseBaseService {
     
     private final CardExecutorService cardExecutorService;
+    private final ChargeDao chargeDao;
     private final Logger logger = LoggerFactory.getLogger(getClass());
     private final MetricRegistry metricRegistry;
 
     @Inject
-    public CardAuthoriseBaseService(CardExecutorService cardExecutorService, Environment environment) {
+    public CardAuthoriseBaseService(CardExecutorService cardExecutorService, ChargeDao chargeDao,
+                                    Environment environment) {
         this.cardExecutorService = cardExecutorService;
+        this.chargeDao = chargeDao;
         this.metricRegistry = environment.metrics();
     }
  
     public <T> T executeAuthorise(String chargeId, Supplier<T> authorisationSupplier) {
-        Pair<ExecutionStatus, T> executeResult = cardExecutorService.execute(authorisationSupplier);
+        // the payment provider only picks the partition, so it is not looked up when there are no partitions
+        Optional<PaymentGatewayName> paymentGatewayName = cardExecutorService.getPartitionExecutors().isEmpty()
+                ? Optional.empty()
+                : chargeDao.findPaymentGatewayNameByExternalId(chargeId);
+        return executeAuthorise(chargeId, paymentGatewayName, authorisationSupplier);
+    }
+
+    public <T> T executeAuthorise(String chargeId, PaymentGatewayName paymentGatewayName, Supplier<T> authorisationSupplier) {
+        return executeAuthorise(chargeId, Optional.of(paymentGatewayName), authorisationSupplier);
+    }
+
+    private <T> T executeAuthorise(String chargeId, Optional<PaymentGatewayName> paymentGatewayName,
+                                   Supplier<T> authorisationSupplier) {
+        // a charge that cannot be found fails inside the task, on the shared pool
+        Pair<ExecutionStatus, T> executeResult = paymentGatewayName
+                .map(name -> cardExecutorService.execute(name, authorisationSupplier))
+                .orElseGet(() -> cardExecutorService.execute(authorisationSupplier));
 
         switch (executeResult.getLeft()) {
             case COMPLETED:
                 return executeResult.getRight();
             case IN_PROGRESS:
                 throw new OperationAlreadyInProgressRuntimeException(OperationType.AUTHORISATION.getValue(), chargeId);
+            case REJECTED:
+                throw new GenericGatewayRuntimeException("Too many authorisations in progress, authorisation was not attempted");
+            case EXPIRED:
+                throw new GenericGatewayRuntimeException("Authorisation waited too long to start, authorisation was not attempted");
             default:
                 throw new GenericGatewayRuntimeException("Exception occurred while doing authorisation");
         }
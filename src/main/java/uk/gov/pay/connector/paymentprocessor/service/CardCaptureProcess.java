@@ -1,9 +1,13 @@
 package uk.gov.pay.connector.paymentprocessor.service;
 
+import io.dropwizard.setup.Environment;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.MDC;
+import uk.gov.pay.connector.app.CaptureProcessConfig;
+import uk.gov.pay.connector.app.ConnectorConfiguration;
 import uk.gov.pay.connector.charge.ChargesAwaitingCaptureMetricEmitter;
+import uk.gov.pay.connector.charge.model.domain.Charge;
 import uk.gov.pay.connector.charge.service.ChargeService;
 import uk.gov.pay.connector.common.exception.IllegalStateRuntimeException;
 import uk.gov.pay.connector.gateway.CaptureResponse;
@@ -12,90 +16,209 @@ import uk.gov.pay.connector.queue.ChargeCaptureMessage;
 import uk.gov.pay.connector.queue.QueueException;
 
 import javax.inject.Inject;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.stream.Collectors;
 
+/**
+ * Captures the charges in each batch of messages received from the capture queue concurrently, on a thread pool
+ * shared by all receive loops. The number of captures in flight to any one payment gateway is capped so that a
+ * backlog cannot flood a single gateway. Once the whole batch has been attempted, its messages are acknowledged
+ * with one delete and one visibility change request, each retried message being deferred for its own backoff delay.
+ * Captures over the per account or per payment provider rate limit are deferred without being attempted.
+ */
 public class CardCaptureProcess {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(CardCaptureProcess.class);
+    private static final String UNKNOWN_PAYMENT_GATEWAY = "unknown";
+
     private final CaptureQueue captureQueue;
     private final ChargeService chargeService;
     private CardCaptureService cardCaptureService;
+    private final CaptureRetryScheduler captureRetryScheduler;
+    private final CaptureRateLimiter captureRateLimiter;
+    private final ExecutorService captureExecutor;
+    private final int maximumConcurrentCapturesPerGateway;
+    private final int maximumRetries;
+    private final int throttledCaptureRetryDelayInSeconds;
+    private final Map<String, Semaphore> gatewayPermits = new ConcurrentHashMap<>();
 
     @Inject
     public CardCaptureProcess(CaptureQueue captureQueue,
                               CardCaptureService cardCaptureService,
                               ChargeService chargeService,
-                              ChargesAwaitingCaptureMetricEmitter chargesAwaitingCaptureMetricEmitter) {
+                              ChargesAwaitingCaptureMetricEmitter chargesAwaitingCaptureMetricEmitter,
+                              CaptureRetryScheduler captureRetryScheduler,
+                              CaptureRateLimiter captureRateLimiter,
+                              Environment environment,
+                              ConnectorConfiguration connectorConfiguration) {
+        this(captureQueue, cardCaptureService, chargeService, chargesAwaitingCaptureMetricEmitter, captureRetryScheduler,
+                captureRateLimiter,
+                environment
+                        .lifecycle()
+                        .executorService("card-capture-%d")
+                        .minThreads(connectorConfiguration.getCaptureProcessConfig().getCaptureNumberOfThreads())
+                        .maxThreads(connectorConfiguration.getCaptureProcessConfig().getCaptureNumberOfThreads())
+                        .build(),
+                connectorConfiguration.getCaptureProcessConfig());
+    }
+
+    CardCaptureProcess(CaptureQueue captureQueue,
+                       CardCaptureService cardCaptureService,
+                       ChargeService chargeService,
+                       ChargesAwaitingCaptureMetricEmitter chargesAwaitingCaptureMetricEmitter,
+                       CaptureRetryScheduler captureRetryScheduler,
+                       CaptureRateLimiter captureRateLimiter,
+                       ExecutorService captureExecutor,
+                       CaptureProcessConfig captureProcessConfig) {
         this.captureQueue = captureQueue;
         this.cardCaptureService = cardCaptureService;
         this.chargeService = chargeService;
+        this.captureRetryScheduler = captureRetryScheduler;
+        this.captureRateLimiter = captureRateLimiter;
+        this.captureExecutor = captureExecutor;
+        this.maximumConcurrentCapturesPerGateway = captureProcessConfig.getMaximumConcurrentCapturesPerGateway();
+        this.maximumRetries = captureProcessConfig.getMaximumRetries();
+        this.throttledCaptureRetryDelayInSeconds = captureProcessConfig.getThrottledCaptureRetryDelayInSeconds();
 
         chargesAwaitingCaptureMetricEmitter.register();
     }
 
-    public void handleCaptureMessages() throws QueueException {
+    public void handleCaptureMessages() throws QueueException, InterruptedException {
         List<ChargeCaptureMessage> captureMessages = captureQueue.retrieveChargesForCapture();
+        if (captureMessages.isEmpty()) {
+            return;
+        }
+
+        Map<String, Charge> charges = chargeService.findCharges(captureMessages.stream()
+                .map(ChargeCaptureMessage::getChargeId)
+                .collect(Collectors.toSet()));
+
+        List<Future<CaptureOutcome>> outcomes = new ArrayList<>();
         for (ChargeCaptureMessage message : captureMessages) {
+            Optional<Charge> charge = Optional.ofNullable(charges.get(message.getChargeId()));
+            String paymentGatewayName = charge.map(Charge::getPaymentGatewayName).orElse(UNKNOWN_PAYMENT_GATEWAY);
+            Long gatewayAccountId = charge.map(Charge::getGatewayAccountId).orElse(null);
+
+            if (!captureRateLimiter.tryAcquire(gatewayAccountId, paymentGatewayName)) {
+                LOGGER.info("Capture rate limit reached - deferring charge capture message [chargeId={}] [gatewayAccountId={}] [paymentProvider={}]",
+                        message.getChargeId(), gatewayAccountId, paymentGatewayName);
+                outcomes.add(CompletableFuture.completedFuture(CaptureOutcome.retryAfter(throttledCaptureRetryDelayInSeconds)));
+                continue;
+            }
+
+            Semaphore permits = gatewayPermits.computeIfAbsent(paymentGatewayName,
+                    name -> new Semaphore(maximumConcurrentCapturesPerGateway));
+
+            permits.acquire();
             try {
-                MDC.put("chargeId", message.getChargeId());
-                LOGGER.info("Charge capture message received - [queueMessageId={}] [queueMessageReceiptHandle={}]",
-                        message.getQueueMessageId(),
-                        message.getQueueMessageReceiptHandle()
-                );
+                outcomes.add(captureExecutor.submit(() -> {
+                    try {
+                        return handleCaptureMessage(message);
+                    } finally {
+                        permits.release();
+                    }
+                }));
+            } catch (RuntimeException e) {
+                permits.release();
+                throw e;
+            }
+        }
 
-                runCapture(message);
-            } catch (Exception e) {
+        List<ChargeCaptureMessage> processedMessages = new ArrayList<>();
+        Map<ChargeCaptureMessage, Integer> messagesToRetry = new LinkedHashMap<>();
+        for (int i = 0; i < captureMessages.size(); i++) {
+            ChargeCaptureMessage message = captureMessages.get(i);
+            try {
+                CaptureOutcome outcome = outcomes.get(i).get();
+                if (outcome == CaptureOutcome.PROCESSED) {
+                    processedMessages.add(message);
+                } else if (outcome.isRetry()) {
+                    messagesToRetry.put(message, outcome.retryDelayInSeconds);
+                }
+                // otherwise left on the queue to be received again once its visibility timeout runs out
+            } catch (ExecutionException e) {
                 LOGGER.warn("Error capturing charge from SQS message [queueMessageId={}] [errorMessage={}]",
                         message.getQueueMessageId(),
-                        e.getMessage()
+                        e.getCause().getMessage()
                 );
-            } finally {
-                MDC.remove("chargeId");
             }
         }
+
+        captureQueue.markMessagesAsProcessed(processedMessages);
+        captureQueue.scheduleMessagesForRetry(messagesToRetry);
+    }
+
+    private CaptureOutcome handleCaptureMessage(ChargeCaptureMessage message) {
+        try {
+            MDC.put("chargeId", message.getChargeId());
+            LOGGER.info("Charge capture message received - [queueMessageId={}] [queueMessageReceiptHandle={}]",
+                    message.getQueueMessageId(),
+                    message.getQueueMessageReceiptHandle()
+            );
+
+            return runCapture(message);
+        } catch (Exception e) {
+            LOGGER.warn("Error capturing charge from SQS message [queueMessageId={}] [errorMessage={}]",
+                    message.getQueueMessageId(),
+                    e.getMessage()
+            );
+            return CaptureOutcome.NOT_ACKNOWLEDGED;
+        } finally {
+            MDC.remove("chargeId");
+        }
     }
 
-    private void runCapture(ChargeCaptureMessage captureMessage) throws QueueException {
+    private CaptureOutcome runCapture(ChargeCaptureMessage captureMessage) {
         String externalChargeId = captureMessage.getChargeId();
 
         try {
             CaptureResponse gatewayResponse = cardCaptureService.doCapture(externalChargeId);
 
             if (gatewayResponse.isSuccessful()) {
-                captureQueue.markMessageAsProcessed(captureMessage);
+                return CaptureOutcome.PROCESSED;
             } else {
                 LOGGER.info(
                         "Failed to capture [externalChargeId={}] due to: {}",
                         externalChargeId,
                         gatewayResponse.getErrorMessage()
                 );
-                handleCaptureRetry(captureMessage);
+                return handleCaptureRetry(captureMessage);
             }
         } catch (IllegalStateRuntimeException e) {
-            handleCapturedInvalidTransition(captureMessage, e);
+            return handleCapturedInvalidTransition(captureMessage, e);
         }
     }
 
-    private void handleCaptureRetry(ChargeCaptureMessage captureMessage) throws QueueException {
-        boolean shouldRetry = chargeService.isChargeRetriable(captureMessage.getChargeId());
+    private CaptureOutcome handleCaptureRetry(ChargeCaptureMessage captureMessage) {
+        int numberOfCaptureAttempts = chargeService.countCaptureAttempts(captureMessage.getChargeId());
 
-        if (shouldRetry) {
-            LOGGER.info("Charge capture message [{}] scheduled for retry.", captureMessage.getChargeId());
-            captureQueue.scheduleMessageForRetry(captureMessage);
+        if (numberOfCaptureAttempts <= maximumRetries) {
+            int retryDelayInSeconds = captureRetryScheduler.retryDelayInSeconds(numberOfCaptureAttempts);
+            LOGGER.info("Charge capture message [{}] scheduled for retry in {} seconds.", captureMessage.getChargeId(), retryDelayInSeconds);
+            return CaptureOutcome.retryAfter(retryDelayInSeconds);
         } else {
             cardCaptureService.markChargeAsCaptureError(captureMessage.getChargeId());
-            captureQueue.markMessageAsProcessed(captureMessage);
+            return CaptureOutcome.PROCESSED;
         }
     }
 
-    private void handleCapturedInvalidTransition(ChargeCaptureMessage captureMessage, IllegalStateRuntimeException e) throws QueueException {
+    private CaptureOutcome handleCapturedInvalidTransition(ChargeCaptureMessage captureMessage, IllegalStateRuntimeException e) {
         if (chargeService.isChargeCaptureSuccess(captureMessage.getChargeId())) {
             LOGGER.info(
                     "Charge capture message [{}] already captured - marking as processed. [chargeId={}]",
                     captureMessage.getQueueMessageId(),
                     captureMessage.getChargeId());
-            captureQueue.markMessageAsProcessed(captureMessage);
-            return;
+            return CaptureOutcome.PROCESSED;
         }
 
         LOGGER.info(
@@ -104,4 +227,23 @@ public class CardCaptureProcess {
                 captureMessage.getChargeId());
         throw e;
     }
+
+    private static final class CaptureOutcome {
+        private static final CaptureOutcome PROCESSED = new CaptureOutcome(-1);
+        private static final CaptureOutcome NOT_ACKNOWLEDGED = new CaptureOutcome(-1);
+
+        private final int retryDelayInSeconds;
+
+        private CaptureOutcome(int retryDelayInSeconds) {
+            this.retryDelayInSeconds = retryDelayInSeconds;
+        }
+
+        private static CaptureOutcome retryAfter(int retryDelayInSeconds) {
+            return new CaptureOutcome(retryDelayInSeconds);
+        }
+
+        private boolean isRetry() {
+            return retryDelayInSeconds >= 0;
+        }
+    }
 }
@@ -1,7 +1,6 @@
 package uk.gov.pay.connector.paymentprocessor.service;
 
 import com.codahale.metrics.MetricRegistry;
-import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.inject.Inject;
 import io.dropwizard.setup.Environment;
 import org.apache.commons.lang3.tuple.Pair;
@@ -9,26 +8,37 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.MDC;
 import uk.gov.pay.connector.app.ConnectorConfiguration;
+import uk.gov.pay.connector.app.ExecutorPartitionConfig;
 import uk.gov.pay.connector.app.ExecutorServiceConfig;
+import uk.gov.pay.connector.gateway.PaymentGatewayName;
+import uk.gov.pay.connector.util.BlockingTaskThreads;
+import uk.gov.pay.connector.util.ExecutionMode;
 import uk.gov.pay.connector.util.XrayUtils;
 
 import javax.ws.rs.WebApplicationException;
+import java.time.Clock;
+import java.util.Collections;
+import java.util.EnumMap;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.function.Supplier;
 
 import static java.lang.Runtime.getRuntime;
 import static uk.gov.pay.connector.paymentprocessor.service.CardExecutorService.ExecutionStatus.COMPLETED;
+import static uk.gov.pay.connector.paymentprocessor.service.CardExecutorService.ExecutionStatus.EXPIRED;
 import static uk.gov.pay.connector.paymentprocessor.service.CardExecutorService.ExecutionStatus.FAILED;
 import static uk.gov.pay.connector.paymentprocessor.service.CardExecutorService.ExecutionStatus.IN_PROGRESS;
+import static uk.gov.pay.connector.paymentprocessor.service.CardExecutorService.ExecutionStatus.REJECTED;
 
 /**
  * CardExecutorService executes tasks passed to it in a separate thread. The point of running tasks in a separate thread 
@@ -36,6 +46,14 @@ import static uk.gov.pay.connector.paymentprocessor.service.CardExecutorService.
  * .get(config.getTimeoutInSeconds(), TimeUnit.SECONDS). If you look how that is used in the authorise service, it 
  * catches the timeout exception and returns to frontend as 'in progress'. Frontend then polls connector until the 
  * charge is authorised (by the CES thread), and continues on its merry way.
+ *
+ * The queue in front of the threads is bounded, so that under overload tasks are rejected straight away rather than
+ * piling up. A task that has waited in the queue for longer than the queue deadline is dropped without being run, as
+ * the user it was submitted for will long since have stopped polling for it, and its status is EXPIRED.
+ *
+ * Payment providers can be given partitions of their own, with separate threads and queues, so that one slow
+ * provider cannot take the threads of the others. When a partition is full the overflow policy decides whether the
+ * task runs on the shared pool or is rejected. Providers without a partition always use the shared pool.
  */
 public class CardExecutorService {
 
@@ -44,28 +62,72 @@ public class CardExecutorService {
     private final MetricRegistry metricRegistry;
 
     private ExecutorServiceConfig config;
-    private ExecutorService executor;
+    private ThreadPoolExecutor executor;
+    private final Map<PaymentGatewayName, ThreadPoolExecutor> partitionExecutors;
     private XrayUtils xrayUtils;
+    private final Clock clock;
 
     public enum ExecutionStatus {
         COMPLETED,
         FAILED,
-        IN_PROGRESS
+        IN_PROGRESS,
+        REJECTED,
+        EXPIRED
     }
 
     @Inject
     public CardExecutorService(ConnectorConfiguration configuration, Environment environment, XrayUtils xrayUtils) {
-        final ThreadFactory threadFactory = new ThreadFactoryBuilder()
-                .setNameFormat("CardExecutorService-%d")
-                .build();
-        this.metricRegistry = environment.metrics();
-        this.config = configuration.getExecutorServiceConfig();
-        int numberOfThreads = config.getThreadsPerCpu() * getRuntime().availableProcessors();
-        this.executor = Executors.newFixedThreadPool(numberOfThreads, threadFactory);
-        this.xrayUtils = xrayUtils;
+        this(configuration.getExecutorServiceConfig(),
+                newExecutor(BlockingTaskThreads.poolSize(configuration.getExecutorServiceConfig().getExecutionMode(),
+                        configuration.getExecutorServiceConfig().getThreadsPerCpu() * getRuntime().availableProcessors(),
+                        configuration.getExecutorServiceConfig().getVirtualThreadPoolSize()),
+                        configuration.getExecutorServiceConfig().getMaximumQueueSize(),
+                        BlockingTaskThreads.threadFactory(configuration.getExecutorServiceConfig().getExecutionMode(),
+                                "CardExecutorService-%d")),
+                newPartitionExecutors(configuration.getExecutorServiceConfig()),
+                environment.metrics(), xrayUtils, Clock.systemUTC());
         addShutdownHook();
     }
 
+    CardExecutorService(ExecutorServiceConfig config, int numberOfThreads, ThreadFactory threadFactory,
+                        MetricRegistry metricRegistry, XrayUtils xrayUtils, Clock clock) {
+        this(config, newExecutor(numberOfThreads, config.getMaximumQueueSize(), threadFactory), Map.of(),
+                metricRegistry, xrayUtils, clock);
+    }
+
+    CardExecutorService(ExecutorServiceConfig config, ThreadPoolExecutor executor,
+                        Map<PaymentGatewayName, ThreadPoolExecutor> partitionExecutors,
+                        MetricRegistry metricRegistry, XrayUtils xrayUtils, Clock clock) {
+        this.metricRegistry = metricRegistry;
+        this.config = config;
+        this.executor = executor;
+        this.partitionExecutors = partitionExecutors.isEmpty()
+                ? Map.of()
+                : Collections.unmodifiableMap(new EnumMap<>(partitionExecutors));
+        this.xrayUtils = xrayUtils;
+        this.clock = clock;
+    }
+
+    static ThreadPoolExecutor newExecutor(int numberOfThreads, int maximumQueueSize, ThreadFactory threadFactory) {
+        return new ThreadPoolExecutor(numberOfThreads, numberOfThreads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(maximumQueueSize), threadFactory);
+    }
+
+    private static Map<PaymentGatewayName, ThreadPoolExecutor> newPartitionExecutors(ExecutorServiceConfig config) {
+        ExecutionMode executionMode = config.getExecutionMode();
+        Map<PaymentGatewayName, ThreadPoolExecutor> partitionExecutors = new EnumMap<>(PaymentGatewayName.class);
+        config.getPartitions().forEach((paymentProvider, partitionConfig) -> {
+            PaymentGatewayName paymentGatewayName = PaymentGatewayName.valueFrom(paymentProvider);
+            partitionExecutors.put(paymentGatewayName, newExecutor(
+                    BlockingTaskThreads.poolSize(executionMode,
+                            partitionConfig.getThreadsPerCpu() * getRuntime().availableProcessors(),
+                            partitionConfig.getVirtualThreadPoolSize()),
+                    partitionConfig.getMaximumQueueSize(),
+                    BlockingTaskThreads.threadFactory(executionMode, "CardExecutorService-" + paymentGatewayName.getName() + "-%d")));
+        });
+        return partitionExecutors;
+    }
+
     public MetricRegistry getMetricRegistry() {
         return metricRegistry;
     }
@@ -75,13 +137,18 @@ public class CardExecutorService {
             String className = CardExecutorService.class.getSimpleName();
             logger.info("Shutting down {}", className);
             executor.shutdown();
+            partitionExecutors.values().forEach(ExecutorService::shutdown);
             logger.info("Awaiting for {} threads to terminate", className);
             try {
                 executor.awaitTermination(1, TimeUnit.SECONDS);
+                for (ExecutorService partitionExecutor : partitionExecutors.values()) {
+                    partitionExecutor.awaitTermination(1, TimeUnit.SECONDS);
+                }
             } catch (InterruptedException e) {
                 logger.error("Error while waiting for {} threads to terminate", className);
             }
             executor.shutdownNow();
+            partitionExecutors.values().forEach(ExecutorService::shutdownNow);
         }));
     }
 
@@ -89,34 +156,68 @@ public class CardExecutorService {
         return executor;
     }
 
+    /**
+     * @return the executors of the payment provider partitions, excluding the shared pool
+     */
+    public Map<PaymentGatewayName, ThreadPoolExecutor> getPartitionExecutors() {
+        return partitionExecutors;
+    }
+
     // accepts a supplier function and executed that in a separate Thread of its own.
     // returns a Pair of the execution status and the return type
     public <T> Pair<ExecutionStatus, T> execute(Supplier<T> callable) {
+        return executeOn(Optional.empty(), callable);
+    }
+
+    // as above, but on the partition for the payment provider, if it has one
+    public <T> Pair<ExecutionStatus, T> execute(PaymentGatewayName paymentGatewayName, Supplier<T> callable) {
+        return executeOn(Optional.of(paymentGatewayName), callable);
+    }
+
+    private <T> Pair<ExecutionStatus, T> executeOn(Optional<PaymentGatewayName> paymentGatewayName, Supplier<T> callable) {
         Callable<T> task = callable::get;
         Map<String, String> mdcContextMap = Optional.ofNullable(MDC.getCopyOfContextMap()).orElse(Map.of());
-        final long startTime = System.currentTimeMillis();
+        final long startTime = clock.millis();
 
-        Future<T> futureObject = executor.submit(() -> {
+        Callable<T> queuedTask = () -> {
             MDC.setContextMap(mdcContextMap);
-            xrayUtils.beginSegment();
-            long totalWaitTime = System.currentTimeMillis() - startTime;
-            logger.debug("Card operation task spent {} ms in queue", totalWaitTime);
-            if (totalWaitTime > QUEUE_WAIT_WARN_THRESHOLD_MILLIS) {
-                logger.warn("CardExecutor Service delay - queue_wait_time={}", totalWaitTime);
-            }
-            metricRegistry.histogram("card-executor.delay").update(totalWaitTime);
             try {
-                return task.call();
+                long totalWaitTime = clock.millis() - startTime;
+                logger.debug("Card operation task spent {} ms in queue", totalWaitTime);
+                if (totalWaitTime > QUEUE_WAIT_WARN_THRESHOLD_MILLIS) {
+                    logger.warn("CardExecutor Service delay - queue_wait_time={}", totalWaitTime);
+                }
+                metricRegistry.histogram("card-executor.delay").update(totalWaitTime);
+                if (isPastQueueDeadline(totalWaitTime)) {
+                    logger.warn("CardExecutor Service dropped task past its queue deadline - queue_wait_time={}", totalWaitTime);
+                    metricRegistry.meter("card-executor.expired").mark();
+                    throw new QueueDeadlineExceededException();
+                }
+                return runInSegment(task);
             } finally {
-                xrayUtils.endSegment();
+                metricRegistry.counter("card-executor.in-flight").dec();
                 MDC.clear();
             }
-        });
+        };
+
+        metricRegistry.counter("card-executor.in-flight").inc();
+        Optional<Future<T>> submitted = paymentGatewayName
+                .filter(partitionExecutors::containsKey)
+                .map(partition -> submitToPartition(partition, queuedTask))
+                .orElseGet(() -> submitToSharedPool(queuedTask));
+
+        if (submitted.isEmpty()) {
+            metricRegistry.counter("card-executor.in-flight").dec();
+            return Pair.of(REJECTED, null);
+        }
+        Future<T> futureObject = submitted.get();
 
         try {
             return Pair.of(COMPLETED, futureObject.get(config.getTimeoutInSeconds(), TimeUnit.SECONDS));
         } catch (ExecutionException | InterruptedException exception) {
-            if (exception.getCause() instanceof WebApplicationException) {
+            if (exception.getCause() instanceof QueueDeadlineExceededException) {
+                return Pair.of(EXPIRED, null);
+            } else if (exception.getCause() instanceof WebApplicationException) {
                 throw (WebApplicationException) exception.getCause();
             } else if (exception.getCause() instanceof UnsupportedOperationException) { //ooof
                 throw (UnsupportedOperationException) exception.getCause();
@@ -126,4 +227,50 @@ public class CardExecutorService {
             return Pair.of(IN_PROGRESS, null);
         }
     }
+
+    private <T> Optional<Future<T>> submitToPartition(PaymentGatewayName paymentGatewayName, Callable<T> task) {
+        try {
+            return Optional.of(partitionExecutors.get(paymentGatewayName).submit(task));
+        } catch (RejectedExecutionException e) {
+            if (config.getOverflowPolicy() == ExecutorOverflowPolicy.REJECT) {
+                logger.warn("CardExecutor Service rejected task - partition={}", paymentGatewayName.getName());
+                metricRegistry.meter(partitionMetric(paymentGatewayName, "rejected")).mark();
+                return Optional.empty();
+            }
+            metricRegistry.meter(partitionMetric(paymentGatewayName, "overflowed")).mark();
+            return submitToSharedPool(task);
+        }
+    }
+
+    private <T> Optional<Future<T>> submitToSharedPool(Callable<T> task) {
+        try {
+            return Optional.of(executor.submit(task));
+        } catch (RejectedExecutionException e) {
+            logger.warn("CardExecutor Service rejected task - queue_size={}", executor.getQueue().size());
+            metricRegistry.meter("card-executor.rejected").mark();
+            return Optional.empty();
+        }
+    }
+
+    static String partitionMetric(PaymentGatewayName paymentGatewayName, String name) {
+        return "card-executor." + paymentGatewayName.getName() + "." + name;
+    }
+
+    private boolean isPastQueueDeadline(long queueWaitTimeInMillis) {
+        return config.getQueueDeadlineInSeconds() > 0
+                && queueWaitTimeInMillis > TimeUnit.SECONDS.toMillis(config.getQueueDeadlineInSeconds());
+    }
+
+    private <T> T runInSegment(Callable<T> task) throws Exception {
+        xrayUtils.beginSegment();
+        try {
+            return task.call();
+        } finally {
+            xrayUtils.endSegment();
+        }
+    }
+
+    // thrown by a task dropped past its queue deadline, so that it can be told apart from a task that returned null
+    private static class QueueDeadlineExceededException extends Exception {
+    }
 }
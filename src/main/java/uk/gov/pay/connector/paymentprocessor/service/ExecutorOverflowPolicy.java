@@ -0,0 +1,11 @@
+package uk.gov.pay.connector.paymentprocessor.service;
+
+/**
+ * What happens to an authorisation when the card executor partition for its payment provider is full.
+ * {@code SHARED_POOL} runs it on the shared pool instead, if that has room; {@code REJECT}, the default, rejects it
+ * straight away, so that a degraded provider can never take threads from anything else.
+ */
+public enum ExecutorOverflowPolicy {
+    SHARED_POOL,
+    REJECT
+}
@@ -0,0 +1,45 @@
+package uk.gov.pay.connector.paymentprocessor.service;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Allows operations at a steady rate, with bursts of up to one second's worth. Tokens are added continuously at the
+ * configured rate and each operation takes one; an operation that finds the bucket empty is refused rather than
+ * made to wait.
+ */
+class TokenBucket {
+
+    private final double tokensPerNano;
+    private final double capacity;
+    private final LongSupplier nanoTime;
+    private double tokens;
+    private long lastRefillTime;
+
+    TokenBucket(double permitsPerSecond, LongSupplier nanoTime) {
+        this.tokensPerNano = permitsPerSecond / TimeUnit.SECONDS.toNanos(1);
+        this.capacity = Math.max(1, permitsPerSecond);
+        this.nanoTime = nanoTime;
+        this.tokens = capacity;
+        this.lastRefillTime = nanoTime.getAsLong();
+    }
+
+    synchronized boolean tryAcquire() {
+        refill();
+        if (tokens < 1) {
+            return false;
+        }
+        tokens--;
+        return true;
+    }
+
+    synchronized void release() {
+        tokens = Math.min(capacity, tokens + 1);
+    }
+
+    private void refill() {
+        long now = nanoTime.getAsLong();
+        tokens = Math.min(capacity, tokens + (now - lastRefillTime) * tokensPerNano);
+        lastRefillTime = now;
+    }
+}
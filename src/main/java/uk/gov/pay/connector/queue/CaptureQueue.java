@@ -1,8 +1,8 @@
 package uk.gov.pay.connector.queue;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.collect.ImmutableMap;
-import com.google.gson.GsonBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import uk.gov.pay.connector.app.ConnectorConfiguration;
@@ -11,7 +11,9 @@ import uk.gov.pay.connector.queue.sqs.SqsQueueService;
 
 import javax.inject.Inject;
 import java.io.IOException;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.stream.Collectors;
 
@@ -22,7 +24,6 @@ public class CaptureQueue {
     private final ObjectMapper objectMapper;
 
     private final String captureQueueUrl;
-    private final int failedCaptureRetryDelayInSeconds;
     private SqsQueueService sqsQueueService;
 
     // default message keyword `All`, can be made more granular if queue is responsible for multiple message types
@@ -34,14 +35,16 @@ public class CaptureQueue {
             ConnectorConfiguration connectorConfiguration, ObjectMapper objectMapper) {
         this.sqsQueueService = sqsQueueService;
         this.captureQueueUrl = connectorConfiguration.getSqsConfig().getCaptureQueueUrl();
-        this.failedCaptureRetryDelayInSeconds = connectorConfiguration.getCaptureProcessConfig().getFailedCaptureRetryDelayInSeconds();
         this.objectMapper = objectMapper;
     }
 
     public void sendForCapture(ChargeEntity charge) throws QueueException {
-        String message = new GsonBuilder()
-                .create()
-                .toJson(ImmutableMap.of("chargeId", charge.getExternalId()));
+        String message;
+        try {
+            message = objectMapper.writeValueAsString(ImmutableMap.of("chargeId", charge.getExternalId()));
+        } catch (JsonProcessingException e) {
+            throw new QueueException(String.format("Error serialising capture message to json: %s", e.getMessage()));
+        }
 
         QueueMessage queueMessage = sqsQueueService.sendMessage(captureQueueUrl, message);
 
@@ -70,11 +73,36 @@ public class CaptureQueue {
         }
     }
 
-    public void markMessageAsProcessed(ChargeCaptureMessage message) throws QueueException {
-        sqsQueueService.deleteMessage(this.captureQueueUrl, message.getQueueMessageReceiptHandle());
+    public void markMessagesAsProcessed(List<ChargeCaptureMessage> messages) throws QueueException {
+        if (messages.isEmpty()) {
+            return;
+        }
+        List<String> failedReceiptHandles = sqsQueueService.deleteMessageBatch(this.captureQueueUrl, receiptHandles(messages));
+        if (!failedReceiptHandles.isEmpty()) {
+            // these are received again once their visibility timeout runs out and acknowledged as already captured
+            logger.warn("Failed to mark {} charge capture messages as processed", failedReceiptHandles.size());
+        }
     }
 
-    public void scheduleMessageForRetry(ChargeCaptureMessage message) throws QueueException {
-        sqsQueueService.deferMessage(this.captureQueueUrl, message.getQueueMessageReceiptHandle(), failedCaptureRetryDelayInSeconds);
+    /**
+     * @param retryDelaysInSeconds how long each message should stay on the queue before it is received again
+     */
+    public void scheduleMessagesForRetry(Map<ChargeCaptureMessage, Integer> retryDelaysInSeconds) throws QueueException {
+        if (retryDelaysInSeconds.isEmpty()) {
+            return;
+        }
+        Map<String, Integer> timeoutsInSeconds = new LinkedHashMap<>();
+        retryDelaysInSeconds.forEach((message, retryDelayInSeconds) ->
+                timeoutsInSeconds.put(message.getQueueMessageReceiptHandle(), retryDelayInSeconds));
+        List<String> failedReceiptHandles = sqsQueueService.deferMessageBatch(this.captureQueueUrl, timeoutsInSeconds);
+        if (!failedReceiptHandles.isEmpty()) {
+            logger.warn("Failed to schedule {} charge capture messages for retry", failedReceiptHandles.size());
+        }
+    }
+
+    private List<String> receiptHandles(List<ChargeCaptureMessage> messages) {
+        return messages.stream()
+                .map(ChargeCaptureMessage::getQueueMessageReceiptHandle)
+                .collect(Collectors.toList());
     }
 }
@@ -0,0 +1,11 @@
+package uk.gov.pay.connector.queue;
+
+/**
+ * Where the capture and event queues live. {@code IN_MEMORY} keeps them inside the connector process, which is only
+ * suitable for tests and local load testing: messages are lost when the process stops and are not shared between
+ * nodes.
+ */
+public enum QueueBackend {
+    SQS,
+    IN_MEMORY
+}
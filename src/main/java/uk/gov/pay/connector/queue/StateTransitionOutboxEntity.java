@@ -0,0 +1,147 @@
+package uk.gov.pay.connector.queue;
+
+import uk.gov.pay.connector.common.model.domain.UTCDateTimeConverter;
+import uk.gov.pay.connector.events.model.ResourceType;
+import uk.gov.pay.connector.refund.model.domain.RefundStatus;
+
+import javax.persistence.Column;
+import javax.persistence.Convert;
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.SequenceGenerator;
+import javax.persistence.Table;
+import java.time.ZonedDateTime;
+
+import static java.time.temporal.ChronoUnit.MILLIS;
+
+/**
+ * A state transition waiting to be emitted. Rows are written in the same transaction as the charge or refund
+ * update that caused them, and deleted by {@link uk.gov.pay.connector.events.StateTransitionEmitterProcess}
+ * once the events have been sent.
+ */
+@Entity
+@Table(name = "state_transition_outbox")
+@SequenceGenerator(name = "state_transition_outbox_id_seq",
+        sequenceName = "state_transition_outbox_id_seq", allocationSize = 1)
+public class StateTransitionOutboxEntity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "state_transition_outbox_id_seq")
+    private Long id;
+
+    @Column(name = "resource_type")
+    @Enumerated(EnumType.STRING)
+    private ResourceType resourceType;
+
+    @Column(name = "event_class")
+    private String eventClass;
+
+    @Column(name = "charge_event_id")
+    private Long chargeEventId;
+
+    @Column(name = "refund_external_id")
+    private String refundExternalId;
+
+    @Column(name = "refund_status")
+    @Enumerated(EnumType.STRING)
+    private RefundStatus refundStatus;
+
+    @Column(name = "attempts")
+    private int attempts;
+
+    @Column(name = "delay_in_milliseconds")
+    private long delayInMilliseconds;
+
+    @Convert(converter = UTCDateTimeConverter.class)
+    @Column(name = "next_attempt_date")
+    private ZonedDateTime nextAttemptDate;
+
+    @Convert(converter = UTCDateTimeConverter.class)
+    @Column(name = "created_date")
+    private ZonedDateTime createdDate;
+
+    protected StateTransitionOutboxEntity() {
+    }
+
+    public static StateTransitionOutboxEntity from(StateTransition stateTransition, ZonedDateTime now) {
+        StateTransitionOutboxEntity entity = new StateTransitionOutboxEntity();
+        if (stateTransition instanceof PaymentStateTransition) {
+            entity.resourceType = ResourceType.PAYMENT;
+            entity.chargeEventId = ((PaymentStateTransition) stateTransition).getChargeEventId();
+        } else if (stateTransition instanceof RefundStateTransition) {
+            RefundStateTransition refundStateTransition = (RefundStateTransition) stateTransition;
+            entity.resourceType = ResourceType.REFUND;
+            entity.refundExternalId = refundStateTransition.getRefundExternalId();
+            entity.refundStatus = refundStateTransition.getRefundStatus();
+        } else {
+            throw new IllegalArgumentException("Unsupported state transition: " + stateTransition.getClass().getName());
+        }
+        entity.eventClass = stateTransition.getStateTransitionEventClass().getName();
+        entity.attempts = stateTransition.getAttempts();
+        entity.delayInMilliseconds = stateTransition.getDelayDurationInMilliseconds();
+        entity.nextAttemptDate = now.plus(stateTransition.getDelayDurationInMilliseconds(), MILLIS);
+        entity.createdDate = now;
+        return entity;
+    }
+
+    /**
+     * Rebuilds the state transition this row was written for, carrying over the number of attempts made so far.
+     *
+     * @throws ClassNotFoundException if the event class no longer exists, e.g. it was renamed between releases
+     */
+    public StateTransition toStateTransition() throws ClassNotFoundException {
+        Class stateTransitionEventClass = Class.forName(eventClass);
+        if (resourceType == ResourceType.REFUND) {
+            return new RefundStateTransition(refundExternalId, refundStatus, stateTransitionEventClass, attempts, delayInMilliseconds);
+        }
+        return new PaymentStateTransition(chargeEventId, stateTransitionEventClass, attempts, delayInMilliseconds);
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public ResourceType getResourceType() {
+        return resourceType;
+    }
+
+    public String getEventClass() {
+        return eventClass;
+    }
+
+    public Long getChargeEventId() {
+        return chargeEventId;
+    }
+
+    public String getRefundExternalId() {
+        return refundExternalId;
+    }
+
+    public RefundStatus getRefundStatus() {
+        return refundStatus;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public long getDelayInMilliseconds() {
+        return delayInMilliseconds;
+    }
+
+    public ZonedDateTime getNextAttemptDate() {
+        return nextAttemptDate;
+    }
+
+    public ZonedDateTime getCreatedDate() {
+        return createdDate;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+}
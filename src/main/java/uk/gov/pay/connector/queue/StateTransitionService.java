@@ -9,6 +9,7 @@ import uk.gov.pay.connector.common.model.domain.PaymentGatewayStateTransitions;
 import uk.gov.pay.connector.events.EventService;
 import uk.gov.pay.connector.events.model.Event;
 import uk.gov.pay.connector.events.model.ResourceType;
+import uk.gov.pay.connector.queue.dao.StateTransitionOutboxDao;
 import uk.gov.pay.connector.refund.model.domain.RefundEntity;
 import uk.gov.pay.connector.refund.model.domain.RefundStatus;
 import uk.gov.pay.connector.refund.service.RefundStateEventMap;
@@ -23,17 +24,21 @@ import static java.lang.String.format;
 import static java.time.ZonedDateTime.now;
 import static net.logstash.logback.argument.StructuredArguments.kv;
 
+/**
+ * Offers state transitions for emission by writing them to the state transition outbox. Every method joins the
+ * caller's transaction, so a transition is only ever recorded together with the charge or refund update that caused it.
+ */
 public class StateTransitionService {
 
     private final Logger logger = LoggerFactory.getLogger(getClass());
 
-    private StateTransitionQueue stateTransitionQueue;
+    private StateTransitionOutboxDao stateTransitionOutboxDao;
     private EventService eventService;
 
     @Inject
-    public StateTransitionService(StateTransitionQueue stateTransitionQueue,
+    public StateTransitionService(StateTransitionOutboxDao stateTransitionOutboxDao,
                                   EventService eventService) {
-        this.stateTransitionQueue = stateTransitionQueue;
+        this.stateTransitionOutboxDao = stateTransitionOutboxDao;
         this.eventService = eventService;
     }
 
@@ -41,7 +46,7 @@ public class StateTransitionService {
     public void offerRefundStateTransition(RefundEntity refundEntity, RefundStatus refundStatus) {
         Class refundEventClass = RefundStateEventMap.calculateRefundEventClass(refundEntity.getUserExternalId(), refundStatus);
         RefundStateTransition refundStateTransition = new RefundStateTransition(refundEntity.getExternalId(), refundStatus, refundEventClass);
-        stateTransitionQueue.offer(refundStateTransition);
+        offer(refundStateTransition);
 
         eventService.recordOfferedEvent(ResourceType.REFUND,
                 refundEntity.getExternalId(),
@@ -64,9 +69,9 @@ public class StateTransitionService {
             ChargeEventEntity chargeEventEntity, Class<T> eventClass) {
 
         PaymentStateTransition transition = new PaymentStateTransition(chargeEventEntity.getId(), eventClass);
-        stateTransitionQueue.offer(transition);
+        offer(transition);
 
-        var logMessage = format("Offered payment state transition to emitter queue [from=%s] [to=%s] [chargeEventId=%s] [chargeId=%s]",
+        var logMessage = format("Offered payment state transition to outbox [from=%s] [to=%s] [chargeEventId=%s] [chargeId=%s]",
                 fromChargeState, targetChargeState, chargeEventEntity.getId(), externalId);
         var structuredArgs = Stream.concat(
                 chargeEventEntity.getChargeEntity().getStructuredLoggingArgs().stream(),
@@ -84,8 +89,12 @@ public class StateTransitionService {
     @Transactional
     public void offerStateTransition(StateTransition stateTransition, Event event,
                                      ZonedDateTime doNotRetryEmitUntilDate) {
-        stateTransitionQueue.offer(stateTransition);
+        offer(stateTransition);
         eventService.recordOfferedEvent(event.getResourceType(), event.getResourceExternalId(),
                 event.getEventType(), event.getTimestamp(), doNotRetryEmitUntilDate);
     }
+
+    private void offer(StateTransition stateTransition) {
+        stateTransitionOutboxDao.persist(StateTransitionOutboxEntity.from(stateTransition, now(ZoneId.of("UTC"))));
+    }
 }
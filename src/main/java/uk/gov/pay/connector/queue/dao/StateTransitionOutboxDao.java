@@ -0,0 +1,73 @@
+package uk.gov.pay.connector.queue.dao;
+
+import com.google.inject.Inject;
+import com.google.inject.Provider;
+import com.google.inject.persist.Transactional;
+import uk.gov.pay.connector.common.dao.JpaDao;
+import uk.gov.pay.connector.queue.StateTransitionOutboxEntity;
+
+import javax.persistence.EntityManager;
+import java.time.ZonedDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Transactional
+public class StateTransitionOutboxDao extends JpaDao<StateTransitionOutboxEntity> {
+
+    /**
+     * Claims due rows by pushing their next attempt date out by the lease. Rows locked by another relay are skipped
+     * rather than waited on, so several nodes can drain the outbox at once. If the claiming node dies before deleting
+     * or rescheduling a row, it becomes due again once the lease runs out.
+     */
+    private static final String CLAIM_DUE_STATE_TRANSITIONS =
+            "UPDATE state_transition_outbox SET next_attempt_date = now() + (?1 * interval '1 millisecond') " +
+            "WHERE id IN (" +
+            "  SELECT id FROM state_transition_outbox " +
+            "  WHERE next_attempt_date <= now() " +
+            "  ORDER BY next_attempt_date " +
+            "  LIMIT ?2 " +
+            "  FOR UPDATE SKIP LOCKED" +
+            ") " +
+            "RETURNING *";
+
+    @Inject
+    public StateTransitionOutboxDao(Provider<EntityManager> entityManager) {
+        super(entityManager);
+    }
+
+    @SuppressWarnings("unchecked")
+    public List<StateTransitionOutboxEntity> claimDue(int batchSize, long leaseInMilliseconds) {
+        return entityManager.get()
+                .createNativeQuery(CLAIM_DUE_STATE_TRANSITIONS, StateTransitionOutboxEntity.class)
+                .setParameter(1, leaseInMilliseconds)
+                .setParameter(2, batchSize)
+                .getResultList();
+    }
+
+    public void reschedule(Long id, int attempts, ZonedDateTime nextAttemptDate) {
+        entityManager.get()
+                .createQuery("UPDATE StateTransitionOutboxEntity o" +
+                        " SET o.attempts = :attempts, o.nextAttemptDate = :nextAttemptDate" +
+                        " WHERE o.id = :id")
+                .setParameter("attempts", attempts)
+                .setParameter("nextAttemptDate", nextAttemptDate)
+                .setParameter("id", id)
+                .executeUpdate();
+    }
+
+    public void delete(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        entityManager.get()
+                .createQuery("DELETE FROM StateTransitionOutboxEntity o WHERE o.id IN :ids")
+                .setParameter("ids", ids)
+                .executeUpdate();
+    }
+
+    public long count() {
+        return entityManager.get()
+                .createQuery("SELECT COUNT(o) FROM StateTransitionOutboxEntity o", Long.class)
+                .getSingleResult();
+    }
+}
@@ -0,0 +1,319 @@
+package uk.gov.pay.connector.queue.inmemory;
+
+import com.amazonaws.AmazonWebServiceRequest;
+import com.amazonaws.handlers.AsyncHandler;
+import com.amazonaws.services.sqs.AbstractAmazonSQSAsync;
+import com.amazonaws.services.sqs.model.BatchResultErrorEntry;
+import com.amazonaws.services.sqs.model.ChangeMessageVisibilityBatchRequest;
+import com.amazonaws.services.sqs.model.ChangeMessageVisibilityBatchResult;
+import com.amazonaws.services.sqs.model.ChangeMessageVisibilityBatchResultEntry;
+import com.amazonaws.services.sqs.model.ChangeMessageVisibilityRequest;
+import com.amazonaws.services.sqs.model.ChangeMessageVisibilityResult;
+import com.amazonaws.services.sqs.model.DeleteMessageBatchRequest;
+import com.amazonaws.services.sqs.model.DeleteMessageBatchResult;
+import com.amazonaws.services.sqs.model.DeleteMessageBatchResultEntry;
+import com.amazonaws.services.sqs.model.DeleteMessageRequest;
+import com.amazonaws.services.sqs.model.DeleteMessageResult;
+import com.amazonaws.services.sqs.model.GetQueueAttributesRequest;
+import com.amazonaws.services.sqs.model.GetQueueAttributesResult;
+import com.amazonaws.services.sqs.model.Message;
+import com.amazonaws.services.sqs.model.PurgeQueueRequest;
+import com.amazonaws.services.sqs.model.PurgeQueueResult;
+import com.amazonaws.services.sqs.model.ReceiptHandleIsInvalidException;
+import com.amazonaws.services.sqs.model.ReceiveMessageRequest;
+import com.amazonaws.services.sqs.model.ReceiveMessageResult;
+import com.amazonaws.services.sqs.model.SendMessageBatchRequest;
+import com.amazonaws.services.sqs.model.SendMessageBatchResult;
+import com.amazonaws.services.sqs.model.SendMessageBatchResultEntry;
+import com.amazonaws.services.sqs.model.SendMessageRequest;
+import com.amazonaws.services.sqs.model.SendMessageResult;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * An SQS client that keeps its queues in memory, so the capture and event queue pipelines can run and be load
+ * tested without SQS or an emulator. It follows the SQS semantics the connector relies on: queues are created on
+ * first use, messages can be delayed, received messages stay invisible for the visibility timeout, receives are
+ * batched and long-polled, and a message received more than the maximum receive count is moved to the queue's
+ * dead-letter queue instead of being delivered again.
+ */
+public class InMemorySqsClient extends AbstractAmazonSQSAsync {
+
+    static final int DEFAULT_VISIBILITY_TIMEOUT_IN_SECONDS = 30;
+    private static final int DEFAULT_MAXIMUM_NUMBER_OF_MESSAGES = 1;
+    private static final long LONG_POLL_RECHECK_INTERVAL_IN_MILLISECONDS = 100;
+    private static final String DEAD_LETTER_QUEUE_SUFFIX = "-dead-letter";
+
+    private final Clock clock;
+    private final int maximumReceiveCount;
+    private final Map<String, InMemoryQueue> queues = new ConcurrentHashMap<>();
+
+    /**
+     * @param maximumReceiveCount how many times a message may be received before it is dead-lettered, or 0 to
+     *                            never dead-letter
+     */
+    public InMemorySqsClient(Clock clock, int maximumReceiveCount) {
+        this.clock = clock;
+        this.maximumReceiveCount = maximumReceiveCount;
+    }
+
+    public static String deadLetterQueueUrl(String queueUrl) {
+        return queueUrl + DEAD_LETTER_QUEUE_SUFFIX;
+    }
+
+    /**
+     * @return the number of messages in the queue, visible or not
+     */
+    public int getNumberOfMessages(String queueUrl) {
+        return queue(queueUrl).size();
+    }
+
+    @Override
+    public SendMessageResult sendMessage(SendMessageRequest request) {
+        String messageId = queue(request.getQueueUrl())
+                .add(request.getMessageBody(), Optional.ofNullable(request.getDelaySeconds()).orElse(0));
+        return new SendMessageResult().withMessageId(messageId);
+    }
+
+    @Override
+    public SendMessageBatchResult sendMessageBatch(SendMessageBatchRequest request) {
+        InMemoryQueue queue = queue(request.getQueueUrl());
+        SendMessageBatchResult result = new SendMessageBatchResult();
+        request.getEntries().forEach(entry -> {
+            String messageId = queue.add(entry.getMessageBody(), Optional.ofNullable(entry.getDelaySeconds()).orElse(0));
+            result.withSuccessful(new SendMessageBatchResultEntry().withId(entry.getId()).withMessageId(messageId));
+        });
+        return result;
+    }
+
+    @Override
+    public ReceiveMessageResult receiveMessage(ReceiveMessageRequest request) {
+        int maximumNumberOfMessages = Optional.ofNullable(request.getMaxNumberOfMessages()).orElse(DEFAULT_MAXIMUM_NUMBER_OF_MESSAGES);
+        int visibilityTimeoutInSeconds = Optional.ofNullable(request.getVisibilityTimeout()).orElse(DEFAULT_VISIBILITY_TIMEOUT_IN_SECONDS);
+        int waitTimeInSeconds = Optional.ofNullable(request.getWaitTimeSeconds()).orElse(0);
+
+        try {
+            return new ReceiveMessageResult().withMessages(queue(request.getQueueUrl())
+                    .receive(maximumNumberOfMessages, visibilityTimeoutInSeconds, waitTimeInSeconds));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new ReceiveMessageResult();
+        }
+    }
+
+    @Override
+    public DeleteMessageResult deleteMessage(DeleteMessageRequest request) {
+        if (!queue(request.getQueueUrl()).delete(request.getReceiptHandle())) {
+            throw new ReceiptHandleIsInvalidException("The receipt handle is not valid: " + request.getReceiptHandle());
+        }
+        return new DeleteMessageResult();
+    }
+
+    @Override
+    public DeleteMessageBatchResult deleteMessageBatch(DeleteMessageBatchRequest request) {
+        InMemoryQueue queue = queue(request.getQueueUrl());
+        DeleteMessageBatchResult result = new DeleteMessageBatchResult();
+        request.getEntries().forEach(entry -> {
+            if (queue.delete(entry.getReceiptHandle())) {
+                result.withSuccessful(new DeleteMessageBatchResultEntry().withId(entry.getId()));
+            } else {
+                result.withFailed(invalidReceiptHandle(entry.getId()));
+            }
+        });
+        return result;
+    }
+
+    @Override
+    public ChangeMessageVisibilityResult changeMessageVisibility(ChangeMessageVisibilityRequest request) {
+        if (!queue(request.getQueueUrl()).changeVisibility(request.getReceiptHandle(), request.getVisibilityTimeout())) {
+            throw new ReceiptHandleIsInvalidException("The receipt handle is not valid: " + request.getReceiptHandle());
+        }
+        return new ChangeMessageVisibilityResult();
+    }
+
+    @Override
+    public ChangeMessageVisibilityBatchResult changeMessageVisibilityBatch(ChangeMessageVisibilityBatchRequest request) {
+        InMemoryQueue queue = queue(request.getQueueUrl());
+        ChangeMessageVisibilityBatchResult result = new ChangeMessageVisibilityBatchResult();
+        request.getEntries().forEach(entry -> {
+            if (queue.changeVisibility(entry.getReceiptHandle(), entry.getVisibilityTimeout())) {
+                result.withSuccessful(new ChangeMessageVisibilityBatchResultEntry().withId(entry.getId()));
+            } else {
+                result.withFailed(invalidReceiptHandle(entry.getId()));
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Answers the queue attribute checks SQSHealthCheck makes. Only the message counts are reported.
+     */
+    @Override
+    public GetQueueAttributesResult getQueueAttributes(GetQueueAttributesRequest request) {
+        InMemoryQueue queue = queue(request.getQueueUrl());
+        return new GetQueueAttributesResult()
+                .addAttributesEntry("ApproximateNumberOfMessages", String.valueOf(queue.numberOfVisibleMessages()))
+                .addAttributesEntry("ApproximateNumberOfMessagesNotVisible",
+                        String.valueOf(queue.size() - queue.numberOfVisibleMessages()));
+    }
+
+    @Override
+    public PurgeQueueResult purgeQueue(PurgeQueueRequest request) {
+        queue(request.getQueueUrl()).purge();
+        return new PurgeQueueResult();
+    }
+
+    @Override
+    public Future<SendMessageResult> sendMessageAsync(SendMessageRequest request,
+                                                      AsyncHandler<SendMessageRequest, SendMessageResult> asyncHandler) {
+        return completeNow(request, asyncHandler, () -> sendMessage(request));
+    }
+
+    @Override
+    public Future<DeleteMessageResult> deleteMessageAsync(DeleteMessageRequest request,
+                                                          AsyncHandler<DeleteMessageRequest, DeleteMessageResult> asyncHandler) {
+        return completeNow(request, asyncHandler, () -> deleteMessage(request));
+    }
+
+    @Override
+    public void shutdown() {
+        queues.clear();
+    }
+
+    private <Q extends AmazonWebServiceRequest, R> Future<R> completeNow(
+            Q request, AsyncHandler<Q, R> asyncHandler, Supplier<R> call) {
+        try {
+            R result = call.get();
+            if (asyncHandler != null) {
+                asyncHandler.onSuccess(request, result);
+            }
+            return CompletableFuture.completedFuture(result);
+        } catch (RuntimeException e) {
+            if (asyncHandler != null) {
+                asyncHandler.onError(e);
+            }
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private static BatchResultErrorEntry invalidReceiptHandle(String entryId) {
+        return new BatchResultErrorEntry()
+                .withId(entryId)
+                .withCode("ReceiptHandleIsInvalid")
+                .withSenderFault(true);
+    }
+
+    private InMemoryQueue queue(String queueUrl) {
+        return queues.computeIfAbsent(queueUrl, url -> new InMemoryQueue(url.endsWith(DEAD_LETTER_QUEUE_SUFFIX) ? null : deadLetterQueueUrl(url)));
+    }
+
+    private class InMemoryQueue {
+        private final String deadLetterQueueUrl;
+        private final List<StoredMessage> messages = new ArrayList<>();
+
+        private InMemoryQueue(String deadLetterQueueUrl) {
+            this.deadLetterQueueUrl = deadLetterQueueUrl;
+        }
+
+        synchronized int size() {
+            return messages.size();
+        }
+
+        synchronized int numberOfVisibleMessages() {
+            Instant now = clock.instant();
+            return (int) messages.stream().filter(message -> !message.visibleFrom.isAfter(now)).count();
+        }
+
+        synchronized void purge() {
+            messages.clear();
+        }
+
+        synchronized String add(String body, int delayInSeconds) {
+            StoredMessage message = new StoredMessage(UUID.randomUUID().toString(), body, clock.instant().plusSeconds(delayInSeconds));
+            messages.add(message);
+            notifyAll();
+            return message.messageId;
+        }
+
+        synchronized List<Message> receive(int maximumNumberOfMessages, int visibilityTimeoutInSeconds, int waitTimeInSeconds)
+                throws InterruptedException {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(waitTimeInSeconds);
+            List<Message> received = receiveVisible(maximumNumberOfMessages, visibilityTimeoutInSeconds);
+            long remainingInMilliseconds = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            while (received.isEmpty() && remainingInMilliseconds > 0) {
+                // delays and visibility timeouts run out without anyone calling notify, so recheck periodically
+                wait(Math.min(remainingInMilliseconds, LONG_POLL_RECHECK_INTERVAL_IN_MILLISECONDS));
+                received = receiveVisible(maximumNumberOfMessages, visibilityTimeoutInSeconds);
+                remainingInMilliseconds = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            }
+            return received;
+        }
+
+        private List<Message> receiveVisible(int maximumNumberOfMessages, int visibilityTimeoutInSeconds) {
+            Instant now = clock.instant();
+            List<Message> received = new ArrayList<>();
+            Iterator<StoredMessage> iterator = messages.iterator();
+            while (iterator.hasNext() && received.size() < maximumNumberOfMessages) {
+                StoredMessage message = iterator.next();
+                if (message.visibleFrom.isAfter(now)) {
+                    continue;
+                }
+                if (deadLetterQueueUrl != null && maximumReceiveCount > 0 && message.receiveCount >= maximumReceiveCount) {
+                    iterator.remove();
+                    queue(deadLetterQueueUrl).add(message.body, 0);
+                    continue;
+                }
+                message.receiveCount++;
+                message.receiptHandle = UUID.randomUUID().toString();
+                message.visibleFrom = now.plusSeconds(visibilityTimeoutInSeconds);
+                received.add(new Message()
+                        .withMessageId(message.messageId)
+                        .withReceiptHandle(message.receiptHandle)
+                        .withBody(message.body)
+                        .addAttributesEntry("ApproximateReceiveCount", String.valueOf(message.receiveCount)));
+            }
+            return received;
+        }
+
+        synchronized boolean delete(String receiptHandle) {
+            return messages.removeIf(message -> receiptHandle.equals(message.receiptHandle));
+        }
+
+        synchronized boolean changeVisibility(String receiptHandle, int visibilityTimeoutInSeconds) {
+            for (StoredMessage message : messages) {
+                if (receiptHandle.equals(message.receiptHandle)) {
+                    message.visibleFrom = clock.instant().plusSeconds(visibilityTimeoutInSeconds);
+                    notifyAll();
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private static class StoredMessage {
+        private final String messageId;
+        private final String body;
+        private Instant visibleFrom;
+        private String receiptHandle;
+        private int receiveCount;
+
+        private StoredMessage(String messageId, String body, Instant visibleFrom) {
+            this.messageId = messageId;
+            this.body = body;
+            this.visibleFrom = visibleFrom;
+        }
+    }
+}
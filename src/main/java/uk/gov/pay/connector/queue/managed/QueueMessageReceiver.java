@@ -7,6 +7,8 @@ import org.slf4j.LoggerFactory;
 import uk.gov.pay.connector.app.ConnectorConfiguration;
 import uk.gov.pay.connector.events.StateTransitionEmitterProcess;
 import uk.gov.pay.connector.paymentprocessor.service.CardCaptureProcess;
+import uk.gov.pay.connector.util.BlockingTaskThreads;
+import uk.gov.pay.connector.util.ExecutionMode;
 
 import javax.inject.Inject;
 import java.util.concurrent.ScheduledExecutorService;
@@ -15,12 +17,11 @@ import java.util.concurrent.TimeUnit;
 public class QueueMessageReceiver implements Managed {
 
     private static final String SQS_MESSAGE_RECEIVER_THREAD_NAME = "sqs-message-chargeCaptureMessageReceiver";
-    private static final int MAX_NUMBER_OF_SHUTDOWN_READINESS_CHECKS = 5;
-    private static final int DELAY_BETWEEN_SHUTDOWN_CHECKS_IN_MILLISECONDS = 1000;
 
     private static final Logger LOGGER = LoggerFactory.getLogger(QueueMessageReceiver.class);
 
     private final int queueSchedulerThreadDelayInSeconds;
+    private final int queueSchedulerNumberOfThreads;
     private final int paymentStateTransitionPollerNumberOfThreads;
 
 
@@ -37,18 +38,21 @@ public class QueueMessageReceiver implements Managed {
         this.stateTransitionEmitterProcess = stateTransitionEmitterProcess;
         this.cardCaptureProcess = cardCaptureProcess;
 
-        int queueScheduleNumberOfThreads = connectorConfiguration.getCaptureProcessConfig().getQueueSchedulerNumberOfThreads();
+        this.queueSchedulerNumberOfThreads = connectorConfiguration.getCaptureProcessConfig().getQueueSchedulerNumberOfThreads();
         this.paymentStateTransitionPollerNumberOfThreads = connectorConfiguration.getEventQueueConfig().getPaymentStateTransitionPollerNumberOfThreads();
+        ExecutionMode executionMode = connectorConfiguration.getExecutorServiceConfig().getExecutionMode();
 
         chargeCaptureMessageExecutorService = environment
                 .lifecycle()
-                .scheduledExecutorService(SQS_MESSAGE_RECEIVER_THREAD_NAME)
-                .threads(queueScheduleNumberOfThreads)
+                .scheduledExecutorService(SQS_MESSAGE_RECEIVER_THREAD_NAME,
+                        BlockingTaskThreads.threadFactory(executionMode, SQS_MESSAGE_RECEIVER_THREAD_NAME + "-%d"))
+                .threads(queueSchedulerNumberOfThreads)
                 .build();
 
         stateTransitionMessageExecutorService = environment
                 .lifecycle()
-                .scheduledExecutorService("payment-state-transition-message-poller-%d")
+                .scheduledExecutorService("payment-state-transition-message-poller-%d",
+                        BlockingTaskThreads.threadFactory(executionMode, "payment-state-transition-message-poller-%d"))
                 .threads(paymentStateTransitionPollerNumberOfThreads)
                 .build();
 
@@ -58,11 +62,13 @@ public class QueueMessageReceiver implements Managed {
     @Override
     public void start() {
         int initialDelay = queueSchedulerThreadDelayInSeconds;
-        chargeCaptureMessageExecutorService.scheduleWithFixedDelay(
-                this::chargeCaptureMessageReceiver,
-                initialDelay,
-                queueSchedulerThreadDelayInSeconds,
-                TimeUnit.SECONDS);
+        for (int i = 0; i < queueSchedulerNumberOfThreads; i++) {
+            chargeCaptureMessageExecutorService.scheduleWithFixedDelay(
+                    this::chargeCaptureMessageReceiver,
+                    initialDelay,
+                    queueSchedulerThreadDelayInSeconds,
+                    TimeUnit.SECONDS);
+        }
             
         for (int i = 0; i < this.paymentStateTransitionPollerNumberOfThreads; i++) {
             stateTransitionMessageExecutorService.scheduleWithFixedDelay(
@@ -77,18 +83,8 @@ public class QueueMessageReceiver implements Managed {
     }
 
     private void stopStateTransitionExecutor() {
-        int numberOfAttempts = 0;
-        while (!stateTransitionEmitterProcess.isReadyForShutdown() && numberOfAttempts < MAX_NUMBER_OF_SHUTDOWN_READINESS_CHECKS) {
-            LOGGER.info("State transition receiver is not ready for shutdown");
-            numberOfAttempts++;
-
-            try {
-                Thread.sleep(DELAY_BETWEEN_SHUTDOWN_CHECKS_IN_MILLISECONDS);
-            } catch (InterruptedException e) {
-                handleInterruptedException();
-            }
-        }
-
+        // state transitions live in the outbox table, so anything not emitted yet is picked up by another node
+        // or after restart and there is nothing to drain here
         stateTransitionMessageExecutorService.shutdown();
 
         try {
@@ -96,7 +92,7 @@ public class QueueMessageReceiver implements Managed {
                 stateTransitionMessageExecutorService.shutdownNow();
             }
 
-            LOGGER.info("State transition receiver - number of not processed messages {}", stateTransitionEmitterProcess.getNumberOfNotProcessedMessages());
+            LOGGER.info("State transition receiver - number of messages left in outbox {}", stateTransitionEmitterProcess.getNumberOfNotProcessedMessages());
         } catch (InterruptedException e) {
             handleInterruptedException();
         }
@@ -104,7 +100,7 @@ public class QueueMessageReceiver implements Managed {
 
     private void handleInterruptedException() {
         stateTransitionMessageExecutorService.shutdownNow();
-        LOGGER.info("State transition receiver - number of not processed messages {}", stateTransitionEmitterProcess.getNumberOfNotProcessedMessages());
+        LOGGER.info("State transition receiver - number of messages left in outbox {}", stateTransitionEmitterProcess.getNumberOfNotProcessedMessages());
         // Preserve interrupt status
         Thread.currentThread().interrupt();
     }
@@ -1,7 +1,13 @@
 package uk.gov.pay.connector.queue.sqs;
 
 import com.amazonaws.AmazonServiceException;
-import com.amazonaws.services.sqs.AmazonSQS;
+import com.amazonaws.AmazonWebServiceRequest;
+import com.amazonaws.handlers.AsyncHandler;
+import com.amazonaws.services.sqs.AmazonSQSAsync;
+import com.amazonaws.services.sqs.model.SendMessageBatchRequest;
+import com.amazonaws.services.sqs.model.SendMessageRequest;
+import com.amazonaws.services.sqs.model.SendMessageBatchRequestEntry;
+import com.amazonaws.services.sqs.model.SendMessageBatchResult;
 import com.amazonaws.services.sqs.model.SendMessageResult;
 import com.amazonaws.services.sqs.model.DeleteMessageRequest;
 import com.amazonaws.services.sqs.model.DeleteMessageResult;
@@ -10,6 +16,15 @@ import com.amazonaws.services.sqs.model.ReceiveMessageResult;
 import com.amazonaws.services.sqs.model.AmazonSQSException;
 import com.amazonaws.services.sqs.model.ChangeMessageVisibilityResult;
 import com.amazonaws.services.sqs.model.ChangeMessageVisibilityRequest;
+import com.amazonaws.services.sqs.model.ChangeMessageVisibilityBatchRequest;
+import com.amazonaws.services.sqs.model.ChangeMessageVisibilityBatchRequestEntry;
+import com.amazonaws.services.sqs.model.ChangeMessageVisibilityBatchResult;
+import com.amazonaws.services.sqs.model.DeleteMessageBatchRequest;
+import com.amazonaws.services.sqs.model.DeleteMessageBatchRequestEntry;
+import com.amazonaws.services.sqs.model.DeleteMessageBatchResult;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import io.dropwizard.setup.Environment;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import uk.gov.pay.connector.app.ConnectorConfiguration;
@@ -17,27 +32,42 @@ import uk.gov.pay.connector.queue.QueueException;
 import uk.gov.pay.connector.queue.QueueMessage;
 
 import javax.inject.Inject;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
 
+/**
+ * Wraps the shared SQS client. Every call records its latency and errors per queue and operation, as
+ * {@code sqs.<queue name>.<operation>.latency} and {@code sqs.<queue name>.<operation>.errors}.
+ */
 public class SqsQueueService {
 
     private final Logger logger = LoggerFactory.getLogger(getClass());
 
-    private AmazonSQS sqsClient;
+    // DeleteMessageBatch and ChangeMessageVisibilityBatch accept at most 10 entries
+    private static final int MAXIMUM_ACKNOWLEDGEMENT_BATCH_SIZE = 10;
+
+    private AmazonSQSAsync sqsClient;
+    private final MetricRegistry metricRegistry;
 
     private final int messageMaximumWaitTimeInSeconds;
     private final int messageMaximumBatchSize;
 
     @Inject
-    public SqsQueueService(AmazonSQS sqsClient, ConnectorConfiguration connectorConfiguration) {
+    public SqsQueueService(AmazonSQSAsync sqsClient, ConnectorConfiguration connectorConfiguration, Environment environment) {
         this.sqsClient = sqsClient;
+        this.metricRegistry = environment.metrics();
         this.messageMaximumWaitTimeInSeconds = connectorConfiguration.getSqsConfig().getMessageMaximumWaitTimeInSeconds();
         messageMaximumBatchSize = connectorConfiguration.getSqsConfig().getMessageMaximumBatchSize();
     }
 
     public QueueMessage sendMessage(String queueUrl, String messageBody) throws QueueException {
         try {
-            SendMessageResult sendMessageResult = sqsClient.sendMessage(queueUrl, messageBody);
+            SendMessageResult sendMessageResult = callSqs(queueUrl, "send-message", () -> sqsClient.sendMessage(queueUrl, messageBody));
 
             logger.info("Message sent to SQS queue - {}", sendMessageResult);
             return QueueMessage.of(sendMessageResult, messageBody);
@@ -47,6 +77,20 @@ public class SqsQueueService {
         }
     }
 
+    public SendMessageBatchResult sendMessageBatch(String queueUrl, List<SendMessageBatchRequestEntry> entries) throws QueueException {
+        try {
+            SendMessageBatchResult sendMessageBatchResult = callSqs(queueUrl, "send-message-batch",
+                    () -> sqsClient.sendMessageBatch(new SendMessageBatchRequest(queueUrl, entries)));
+
+            logger.info("Message batch sent to SQS queue - [successful={}] [failed={}]",
+                    sendMessageBatchResult.getSuccessful().size(), sendMessageBatchResult.getFailed().size());
+            return sendMessageBatchResult;
+        } catch (AmazonSQSException | UnsupportedOperationException e) {
+            logger.error("Failed sending message batch to SQS queue - {}", e.getMessage());
+            throw new QueueException(e.getMessage());
+        }
+    }
+
     public List<QueueMessage> receiveMessages(String queueUrl, String messageAttributeName) throws QueueException {
         try {
             ReceiveMessageRequest receiveMessageRequest = new ReceiveMessageRequest(queueUrl);
@@ -55,7 +99,7 @@ public class SqsQueueService {
                     .withWaitTimeSeconds(messageMaximumWaitTimeInSeconds)
                     .withMaxNumberOfMessages(messageMaximumBatchSize);
 
-            ReceiveMessageResult receiveMessageResult = sqsClient.receiveMessage(receiveMessageRequest);
+            ReceiveMessageResult receiveMessageResult = callSqs(queueUrl, "receive-message", () -> sqsClient.receiveMessage(receiveMessageRequest));
 
             return QueueMessage.of(receiveMessageResult);
         } catch (AmazonSQSException | UnsupportedOperationException e) {
@@ -66,7 +110,8 @@ public class SqsQueueService {
 
     public DeleteMessageResult deleteMessage(String queueUrl, String messageReceiptHandle) throws QueueException {
         try {
-            return sqsClient.deleteMessage(new DeleteMessageRequest(queueUrl, messageReceiptHandle));
+            return callSqs(queueUrl, "delete-message",
+                    () -> sqsClient.deleteMessage(new DeleteMessageRequest(queueUrl, messageReceiptHandle)));
         } catch (AmazonSQSException | UnsupportedOperationException e) {
             logger.error("Failed to delete message from SQS queue - {}", e.getMessage());
             throw new QueueException(e.getMessage());
@@ -84,10 +129,166 @@ public class SqsQueueService {
                     messageReceiptHandle,
                     timeoutInSeconds);
 
-            return sqsClient.changeMessageVisibility(changeMessageVisibilityRequest);
+            return callSqs(queueUrl, "change-message-visibility",
+                    () -> sqsClient.changeMessageVisibility(changeMessageVisibilityRequest));
         } catch (AmazonSQSException | UnsupportedOperationException e) {
             logger.error("Failed to defer message from SQS queue - {}", e.getMessage());
             throw new QueueException(e.getMessage());
         }
     }
+
+    /**
+     * Deletes several received messages with one DeleteMessageBatch request per ten messages.
+     *
+     * @return the receipt handles of the messages that could not be deleted
+     */
+    public List<String> deleteMessageBatch(String queueUrl, List<String> messageReceiptHandles) throws QueueException {
+        List<String> failedReceiptHandles = new ArrayList<>();
+        for (List<String> receiptHandles : partition(messageReceiptHandles)) {
+            List<DeleteMessageBatchRequestEntry> entries = new ArrayList<>();
+            for (int i = 0; i < receiptHandles.size(); i++) {
+                entries.add(new DeleteMessageBatchRequestEntry(String.valueOf(i), receiptHandles.get(i)));
+            }
+
+            try {
+                DeleteMessageBatchResult result = callSqs(queueUrl, "delete-message-batch",
+                        () -> sqsClient.deleteMessageBatch(new DeleteMessageBatchRequest(queueUrl, entries)));
+                result.getFailed().forEach(error -> {
+                    logger.error("Failed to delete message from SQS queue - [errorMessage={}] [awsErrorCode={}]",
+                            error.getMessage(), error.getCode());
+                    failedReceiptHandles.add(receiptHandles.get(Integer.parseInt(error.getId())));
+                });
+            } catch (AmazonServiceException | UnsupportedOperationException e) {
+                logger.error("Failed to delete message batch from SQS queue - {}", e.getMessage());
+                throw new QueueException(e.getMessage());
+            }
+        }
+        return failedReceiptHandles;
+    }
+
+    /**
+     * Changes the visibility timeout of several received messages with one ChangeMessageVisibilityBatch request per
+     * ten messages.
+     *
+     * @return the receipt handles of the messages that could not be deferred
+     */
+    public List<String> deferMessageBatch(String queueUrl, List<String> messageReceiptHandles, int timeoutInSeconds) throws QueueException {
+        Map<String, Integer> timeoutsInSeconds = new LinkedHashMap<>();
+        messageReceiptHandles.forEach(receiptHandle -> timeoutsInSeconds.put(receiptHandle, timeoutInSeconds));
+        return deferMessageBatch(queueUrl, timeoutsInSeconds);
+    }
+
+    /**
+     * Changes the visibility timeout of several received messages, each to its own timeout, with one
+     * ChangeMessageVisibilityBatch request per ten messages.
+     *
+     * @param timeoutsInSeconds the visibility timeout of each message, keyed by its receipt handle
+     * @return the receipt handles of the messages that could not be deferred
+     */
+    public List<String> deferMessageBatch(String queueUrl, Map<String, Integer> timeoutsInSeconds) throws QueueException {
+        List<String> failedReceiptHandles = new ArrayList<>();
+        for (List<String> receiptHandles : partition(new ArrayList<>(timeoutsInSeconds.keySet()))) {
+            List<ChangeMessageVisibilityBatchRequestEntry> entries = new ArrayList<>();
+            for (int i = 0; i < receiptHandles.size(); i++) {
+                entries.add(new ChangeMessageVisibilityBatchRequestEntry(String.valueOf(i), receiptHandles.get(i))
+                        .withVisibilityTimeout(timeoutsInSeconds.get(receiptHandles.get(i))));
+            }
+
+            try {
+                ChangeMessageVisibilityBatchResult result = callSqs(queueUrl, "change-message-visibility-batch",
+                        () -> sqsClient.changeMessageVisibilityBatch(new ChangeMessageVisibilityBatchRequest(queueUrl, entries)));
+                result.getFailed().forEach(error -> {
+                    logger.error("Failed to defer message from SQS queue - [errorMessage={}] [awsErrorCode={}]",
+                            error.getMessage(), error.getCode());
+                    failedReceiptHandles.add(receiptHandles.get(Integer.parseInt(error.getId())));
+                });
+            } catch (AmazonServiceException | UnsupportedOperationException e) {
+                logger.error("Failed to defer message batch from SQS queue - {}", e.getMessage());
+                throw new QueueException(e.getMessage());
+            }
+        }
+        return failedReceiptHandles;
+    }
+
+    /**
+     * Sends a message without blocking the calling thread. The future completes on one of the SQS client's threads.
+     */
+    public CompletableFuture<QueueMessage> sendMessageAsync(String queueUrl, String messageBody) {
+        CompletableFuture<SendMessageResult> result = new CompletableFuture<>();
+        sqsClient.sendMessageAsync(new SendMessageRequest(queueUrl, messageBody),
+                asyncHandler(queueUrl, "send-message", result));
+
+        return result
+                .thenApply(sendMessageResult -> {
+                    logger.info("Message sent to SQS queue - {}", sendMessageResult);
+                    return QueueMessage.of(sendMessageResult, messageBody);
+                })
+                .exceptionally(e -> {
+                    throw asQueueFailure("Failed sending message to SQS queue - {}", e);
+                });
+    }
+
+    /**
+     * Deletes a received message without blocking the calling thread. The future completes on one of the SQS
+     * client's threads.
+     */
+    public CompletableFuture<DeleteMessageResult> deleteMessageAsync(String queueUrl, String messageReceiptHandle) {
+        CompletableFuture<DeleteMessageResult> result = new CompletableFuture<>();
+        sqsClient.deleteMessageAsync(new DeleteMessageRequest(queueUrl, messageReceiptHandle),
+                asyncHandler(queueUrl, "delete-message", result));
+
+        return result.exceptionally(e -> {
+            throw asQueueFailure("Failed to delete message from SQS queue - {}", e);
+        });
+    }
+
+    private CompletionException asQueueFailure(String logMessage, Throwable e) {
+        Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+        logger.error(logMessage, cause.getMessage());
+        return new CompletionException(new QueueException(cause.getMessage()));
+    }
+
+    private <T> T callSqs(String queueUrl, String operation, Supplier<T> call) {
+        Timer.Context latency = metricRegistry.timer(metricName(queueUrl, operation, "latency")).time();
+        try {
+            return call.get();
+        } catch (RuntimeException e) {
+            metricRegistry.meter(metricName(queueUrl, operation, "errors")).mark();
+            throw e;
+        } finally {
+            latency.stop();
+        }
+    }
+
+    private <Q extends AmazonWebServiceRequest, R> AsyncHandler<Q, R> asyncHandler(
+            String queueUrl, String operation, CompletableFuture<R> result) {
+        Timer.Context latency = metricRegistry.timer(metricName(queueUrl, operation, "latency")).time();
+        return new AsyncHandler<>() {
+            @Override
+            public void onError(Exception exception) {
+                latency.stop();
+                metricRegistry.meter(metricName(queueUrl, operation, "errors")).mark();
+                result.completeExceptionally(exception);
+            }
+
+            @Override
+            public void onSuccess(Q request, R response) {
+                latency.stop();
+                result.complete(response);
+            }
+        };
+    }
+
+    private static String metricName(String queueUrl, String operation, String metric) {
+        String queueName = queueUrl.substring(queueUrl.lastIndexOf('/') + 1);
+        return MetricRegistry.name("sqs", queueName, operation, metric);
+    }
+
+    private static List<List<String>> partition(List<String> receiptHandles) {
+        List<List<String>> batches = new ArrayList<>();
+        for (int i = 0; i < receiptHandles.size(); i += MAXIMUM_ACKNOWLEDGEMENT_BATCH_SIZE) {
+            batches.add(receiptHandles.subList(i, Math.min(i + MAXIMUM_ACKNOWLEDGEMENT_BATCH_SIZE, receiptHandles.size())));
+        }
+        return batches;
+    }
 }
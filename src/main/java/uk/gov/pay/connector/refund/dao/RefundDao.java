@@ -9,11 +9,16 @@ import uk.gov.pay.connector.refund.model.domain.RefundStatus;
 
 import javax.inject.Inject;
 import javax.persistence.EntityManager;
+import javax.persistence.Query;
 import javax.persistence.TemporalType;
 import java.sql.Date;
 import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 
 @Transactional
@@ -57,6 +62,27 @@ public class RefundDao extends JpaDao<RefundEntity> {
 
     }
 
+    public List<RefundHistory> getRefundHistoryByRefundExternalIds(Collection<String> refundExternalIds) {
+        if (refundExternalIds.isEmpty()) {
+            return List.of();
+        }
+        List<String> externalIds = new ArrayList<>(refundExternalIds);
+        String placeholders = IntStream.rangeClosed(1, externalIds.size())
+                .mapToObj(position -> "?" + position)
+                .collect(Collectors.joining(", "));
+        String query = "SELECT rh.id, rh.external_id, rh.amount, rh.status, rh.created_date, " +
+                "rh.version, rh.reference, rh.history_start_date, rh.history_end_date, rh.user_external_id, " +
+                "rh.gateway_transaction_id, rh.charge_external_id, rh.user_email " +
+                "FROM refunds_history rh " +
+                "WHERE rh.external_id IN (" + placeholders + ")";
+
+        Query nativeQuery = entityManager.get().createNativeQuery(query, "RefundEntityHistoryMapping");
+        for (int i = 0; i < externalIds.size(); i++) {
+            nativeQuery.setParameter(i + 1, externalIds.get(i));
+        }
+        return nativeQuery.getResultList();
+    }
+
     public List<RefundHistory> searchHistoryByChargeExternalId(String chargeExternalId) {
 
         String query = "SELECT id, external_id, amount, status, created_date, version, reference, " +
@@ -123,6 +149,19 @@ public class RefundDao extends JpaDao<RefundEntity> {
                 .getResultList();
     }
 
+    public List<RefundEntity> findRefundsByChargeExternalIds(Collection<String> chargeExternalIds) {
+        if (chargeExternalIds.isEmpty()) {
+            return List.of();
+        }
+        String query = "SELECT refund FROM RefundEntity refund " +
+                "WHERE refund.chargeExternalId IN :chargeExternalIds ORDER BY refund.createdDate ASC";
+
+        return entityManager.get()
+                .createQuery(query, RefundEntity.class)
+                .setParameter("chargeExternalIds", chargeExternalIds)
+                .getResultList();
+    }
+
     public Long findMaxId() {
         String query = "SELECT r.id FROM RefundEntity r ORDER BY r.id DESC";
 
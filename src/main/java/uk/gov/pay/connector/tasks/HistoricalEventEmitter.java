@@ -251,12 +251,16 @@ public class HistoricalEventEmitter {
     private void processPaymentDetailEnteredEvent(List<ChargeEventEntity> chargeEventEntities, boolean forceEmission) {
         // transition to AUTHORISATION_READY does not record state transition, verify details have been entered by
         // checking against any terminal authentication transition
-        chargeEventEntities
+        List<Event> events = chargeEventEntities
                 .stream()
                 .filter(event -> isValidPaymentDetailsEnteredTransition(chargeEventEntities, event))
                 .map(PaymentDetailsEntered::from)
                 .filter(event -> forceEmission || !emittedEventDao.hasBeenEmittedBefore(event))
-                .forEach(event -> eventService.emitAndRecordEvent(event, getDoNotRetryEmitUntilDate()));
+                .collect(Collectors.toList());
+
+        if (!events.isEmpty()) {
+            eventService.emitAndRecordEvents(events, getDoNotRetryEmitUntilDate());
+        }
     }
 
     private boolean isValidPaymentDetailsEnteredTransition(List<ChargeEventEntity> chargeEventEntities, ChargeEventEntity event) {
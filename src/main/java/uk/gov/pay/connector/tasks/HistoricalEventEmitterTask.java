@@ -11,6 +11,7 @@ import uk.gov.pay.connector.app.config.EventEmitterConfig;
 import java.io.PrintWriter;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.OptionalLong;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.SynchronousQueue;
@@ -54,17 +55,18 @@ public class HistoricalEventEmitterTask extends Task {
         final OptionalLong maybeMaxId = getOptionalLongParam(parameters, "max_id");
         final Long doNotRetryEmitUntilDuration = getDoNotRetryEmitUntilDuration(parameters);
         final RecordType recordType = getRecordType(parameters);
+        final Optional<String> jobId = Optional.ofNullable(getParameterValue(parameters, "job_id"));
 
-        logger.info("Execute called start_id={} max_id={} doNotRetryEmitUntilDuration={} - processing",
-                startId, maybeMaxId, doNotRetryEmitUntilDuration);
+        logger.info("Execute called start_id={} max_id={} doNotRetryEmitUntilDuration={} job_id={} - processing",
+                startId, maybeMaxId, doNotRetryEmitUntilDuration, jobId);
 
         try {
             logger.info("Request accepted");
 
             if (CHARGE == recordType) {
-                executor.execute(() -> worker.execute(startId, maybeMaxId, doNotRetryEmitUntilDuration));
+                executor.execute(() -> worker.execute(startId, maybeMaxId, doNotRetryEmitUntilDuration, jobId));
             } else {
-                executor.execute(() -> worker.executeForRefundsOnly(startId, maybeMaxId, doNotRetryEmitUntilDuration));
+                executor.execute(() -> worker.executeForRefundsOnly(startId, maybeMaxId, doNotRetryEmitUntilDuration, jobId));
             }
 
             output.println("Accepted");
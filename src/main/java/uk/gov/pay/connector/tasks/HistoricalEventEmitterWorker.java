@@ -16,6 +16,7 @@ import uk.gov.pay.connector.events.dao.EmittedEventDao;
 import uk.gov.pay.connector.queue.StateTransitionService;
 import uk.gov.pay.connector.refund.dao.RefundDao;
 import uk.gov.pay.connector.refund.model.domain.RefundHistory;
+import uk.gov.pay.connector.workpartition.service.WorkPartitionService;
 
 import javax.inject.Inject;
 import java.time.ZonedDateTime;
@@ -28,6 +29,8 @@ import static uk.gov.pay.connector.filters.RestClientLoggingFilter.HEADER_REQUES
 public class HistoricalEventEmitterWorker {
     private static final Logger logger = LoggerFactory.getLogger(HistoricalEventEmitterWorker.class);
     private static final int PAGE_SIZE = 100;
+    private static final String JOB_NAME_PREFIX = "historical-event-emitter:";
+    private static final String REFUNDS_JOB_NAME_PREFIX = "historical-event-emitter-refunds:";
     private final ChargeDao chargeDao;
     private final ChargeService chargeService;
     private final ChargeEventDao chargeEventDao;
@@ -35,13 +38,15 @@ public class HistoricalEventEmitterWorker {
     private final StateTransitionService stateTransitionService;
     private final EventService eventService;
     private final RefundDao refundDao;
+    private final WorkPartitionService workPartitionService;
     private HistoricalEventEmitter historicalEventEmitter;
     private long maxId;
 
     @Inject
     public HistoricalEventEmitterWorker(ChargeDao chargeDao, RefundDao refundDao, ChargeEventDao chargeEventDao,
                                         EmittedEventDao emittedEventDao, StateTransitionService stateTransitionService,
-                                        EventService eventService, ChargeService chargeService) {
+                                        EventService eventService, ChargeService chargeService,
+                                        WorkPartitionService workPartitionService) {
         this.chargeDao = chargeDao;
         this.refundDao = refundDao;
         this.chargeEventDao = chargeEventDao;
@@ -49,16 +54,26 @@ public class HistoricalEventEmitterWorker {
         this.stateTransitionService = stateTransitionService;
         this.eventService = eventService;
         this.chargeService = chargeService;
+        this.workPartitionService = workPartitionService;
     }
 
     public void execute(Long startId, OptionalLong maybeMaxId, Long doNotRetryEmitUntilDuration) {
+        execute(startId, maybeMaxId, doNotRetryEmitUntilDuration, Optional.empty());
+    }
+
+    /**
+     * @param jobId if present, the ID range is shared with every other node running the job with the same ID
+     */
+    public void execute(Long startId, OptionalLong maybeMaxId, Long doNotRetryEmitUntilDuration, Optional<String> jobId) {
         try {
             MDC.put(HEADER_REQUEST_ID, "HistoricalEventEmitterWorker-" + RandomUtils.nextLong(0, 10000));
             initializeHistoricalEventEmitter(doNotRetryEmitUntilDuration);
             maxId = maybeMaxId.orElseGet(chargeDao::findMaxId);
             logger.info("Starting from {} up to {}", startId, maxId);
-            for (long i = startId; i <= maxId; i++) {
-                emitEventsFor(i);
+            if (jobId.isPresent()) {
+                workPartitionService.processInShards(JOB_NAME_PREFIX + jobId.get(), startId, maxId, this::emitEventsForIdRange);
+            } else {
+                emitEventsForIdRange(startId, maxId);
             }
         } catch (NullPointerException e) {
             for (StackTraceElement s : e.getStackTrace()) {
@@ -90,19 +105,25 @@ public class HistoricalEventEmitterWorker {
     }
 
     public void executeForRefundsOnly(Long startId, OptionalLong maybeMaxId, Long doNotRetryEmitUntilDuration) {
+        executeForRefundsOnly(startId, maybeMaxId, doNotRetryEmitUntilDuration, Optional.empty());
+    }
+
+    /**
+     * @param jobId if present, the ID range is shared with every other node running the job with the same ID
+     */
+    public void executeForRefundsOnly(Long startId, OptionalLong maybeMaxId, Long doNotRetryEmitUntilDuration,
+                                      Optional<String> jobId) {
         try {
             MDC.put(HEADER_REQUEST_ID, "HistoricalEventEmitterWorker-" + RandomUtils.nextLong(0, 10000));
             initializeHistoricalEventEmitter(doNotRetryEmitUntilDuration);
 
             maxId = maybeMaxId.orElseGet(refundDao::findMaxId);
             logger.info("Starting emitting refunds from {} up to {}", startId, maxId);
-            for (long currentId = startId; currentId <= maxId; currentId++) {
-
-                long finalCurrentId = currentId;
-                refundDao.findById(currentId)
-                        .ifPresentOrElse(
-                                refundEntity -> historicalEventEmitter.processRefundEvents(refundEntity.getChargeExternalId()),
-                                () -> logger.info("Refund [{}/{}] - not found", finalCurrentId, maxId));
+            if (jobId.isPresent()) {
+                workPartitionService.processInShards(REFUNDS_JOB_NAME_PREFIX + jobId.get(), startId, maxId,
+                        this::emitRefundEventsForIdRange);
+            } else {
+                emitRefundEventsForIdRange(startId, maxId);
             }
         } catch (Exception e) {
             logger.error("Error attempting to process refunds events on job [start={}] [max={}] [error={}]", startId, maxId, e);
@@ -113,6 +134,22 @@ public class HistoricalEventEmitterWorker {
         logger.info("Terminating");
     }
 
+    private void emitEventsForIdRange(long startId, long endId) {
+        for (long i = startId; i <= endId; i++) {
+            emitEventsFor(i);
+        }
+    }
+
+    private void emitRefundEventsForIdRange(long startId, long endId) {
+        for (long currentId = startId; currentId <= endId; currentId++) {
+            long finalCurrentId = currentId;
+            refundDao.findById(currentId)
+                    .ifPresentOrElse(
+                            refundEntity -> historicalEventEmitter.processRefundEvents(refundEntity.getChargeExternalId()),
+                            () -> logger.info("Refund [{}/{}] - not found", finalCurrentId, maxId));
+        }
+    }
+
     // needs to be public for transactional annotation
     @Transactional
     public void emitEventsFor(long currentId) {
@@ -31,10 +31,12 @@ import uk.gov.pay.connector.util.DateTimeUtils;
 import uk.gov.pay.connector.wallets.WalletType;
 
 import java.time.ZonedDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 import static java.util.Objects.isNull;
 import static java.util.Objects.nonNull;
@@ -71,14 +73,41 @@ public class ParityCheckService {
         this.historicalEventEmitter = historicalEventEmitter;
     }
 
+    /**
+     * Looks up the ledger transactions for a batch of charges together, so that checking the charges one at a time
+     * afterwards does not wait on ledger for each charge in turn.
+     *
+     * @return the transactions ledger knows about, by charge external ID
+     */
+    public Map<String, LedgerTransaction> getLedgerTransactions(Collection<ChargeEntity> charges) {
+        return ledgerService.getTransactions(charges.stream()
+                .map(ChargeEntity::getExternalId)
+                .collect(Collectors.toList()));
+    }
+
     public ParityCheckStatus getChargeParityCheckStatus(ChargeEntity chargeEntity) {
-        Optional<LedgerTransaction> transaction = ledgerService.getTransaction(chargeEntity.getExternalId());
+        return getChargeParityCheckStatus(chargeEntity, ledgerService.getTransaction(chargeEntity.getExternalId()));
+    }
 
+    private ParityCheckStatus getChargeParityCheckStatus(ChargeEntity chargeEntity, Optional<LedgerTransaction> transaction) {
         return checkParity(chargeEntity, transaction.orElse(null));
     }
 
     public ParityCheckStatus getChargeAndRefundsParityCheckStatus(ChargeEntity charge) {
-        ParityCheckStatus parityCheckStatus = getChargeParityCheckStatus(charge);
+        return getChargeAndRefundsParityCheckStatus(charge, ledgerService.getTransaction(charge.getExternalId()));
+    }
+
+    /**
+     * As {@link #getChargeAndRefundsParityCheckStatus(ChargeEntity)}, with the charge's transaction taken from
+     * transactions looked up beforehand with {@link #getLedgerTransactions(Collection)}.
+     */
+    public ParityCheckStatus getChargeAndRefundsParityCheckStatus(ChargeEntity charge,
+                                                                  Map<String, LedgerTransaction> ledgerTransactions) {
+        return getChargeAndRefundsParityCheckStatus(charge, Optional.ofNullable(ledgerTransactions.get(charge.getExternalId())));
+    }
+
+    private ParityCheckStatus getChargeAndRefundsParityCheckStatus(ChargeEntity charge, Optional<LedgerTransaction> transaction) {
+        ParityCheckStatus parityCheckStatus = getChargeParityCheckStatus(charge, transaction);
         if (parityCheckStatus.equals(EXISTS_IN_LEDGER)) {
             return getRefundsParityCheckStatus(refundDao.findRefundsByChargeExternalId(charge.getExternalId()));
         }
@@ -100,8 +129,15 @@ public class ParityCheckService {
 
 
     public ParityCheckStatus getRefundsParityCheckStatus(List<RefundEntity> refunds) {
+        if (refunds.isEmpty()) {
+            return EXISTS_IN_LEDGER;
+        }
+
+        Map<String, LedgerTransaction> transactions = ledgerService.getTransactions(refunds.stream()
+                .map(RefundEntity::getExternalId)
+                .collect(Collectors.toList()));
         for (var refund : refunds) {
-            var transaction = ledgerService.getTransaction(refund.getExternalId());
+            var transaction = Optional.ofNullable(transactions.get(refund.getExternalId()));
             ParityCheckStatus parityCheckStatus = getParityCheckStatus(transaction, refund.getStatus().toExternal().getStatus());
             if (!parityCheckStatus.equals(EXISTS_IN_LEDGER)) {
                 logger.info("refund transaction does not exist in ledger or is in a different state [externalId={},status={}] -",
@@ -115,7 +151,20 @@ public class ParityCheckService {
 
     @Transactional
     public boolean parityCheckChargeForExpunger(ChargeEntity chargeEntity) {
-        ParityCheckStatus parityCheckStatus = getChargeParityCheckStatus(chargeEntity);
+        return parityCheckChargeForExpunger(chargeEntity, ledgerService.getTransaction(chargeEntity.getExternalId()));
+    }
+
+    /**
+     * As {@link #parityCheckChargeForExpunger(ChargeEntity)}, with the charge's transaction taken from transactions
+     * looked up beforehand with {@link #getLedgerTransactions(Collection)}.
+     */
+    @Transactional
+    public boolean parityCheckChargeForExpunger(ChargeEntity chargeEntity, Map<String, LedgerTransaction> ledgerTransactions) {
+        return parityCheckChargeForExpunger(chargeEntity, Optional.ofNullable(ledgerTransactions.get(chargeEntity.getExternalId())));
+    }
+
+    private boolean parityCheckChargeForExpunger(ChargeEntity chargeEntity, Optional<LedgerTransaction> transaction) {
+        ParityCheckStatus parityCheckStatus = getChargeParityCheckStatus(chargeEntity, transaction);
 
         if (EXISTS_IN_LEDGER.equals(parityCheckStatus)) {
             return true;
@@ -57,13 +57,14 @@ public class ParityCheckTask extends Task {
         boolean doNotReprocessValidRecords = getFlagParam(parameters, "do_not_reprocess_valid_records").orElse(false);
         Optional<String> parityCheckStatus = getStringParam(parameters, "parity_check_status");
         final Long doNotRetryEmitUntilDuration = getDoNotRetryEmitUntilDuration(parameters);
+        final Optional<String> jobId = getStringParam(parameters, "job_id");
 
-        logger.info("Execute called start_id={} max_id={} - processing", startId, maybeMaxId);
+        logger.info("Execute called start_id={} max_id={} job_id={} - processing", startId, maybeMaxId, jobId);
 
         try {
             logger.info("Request accepted");
             executor.execute(() -> worker.execute(startId, maybeMaxId, doNotReprocessValidRecords,
-                    parityCheckStatus, doNotRetryEmitUntilDuration));
+                    parityCheckStatus, doNotRetryEmitUntilDuration, jobId));
             output.println("Accepted");
         } catch (java.util.concurrent.RejectedExecutionException e) {
             logger.info("Rejected request, worker already running");
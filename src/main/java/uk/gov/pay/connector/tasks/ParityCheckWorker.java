@@ -12,12 +12,17 @@ import uk.gov.pay.connector.charge.service.ChargeService;
 import uk.gov.pay.connector.events.EventService;
 import uk.gov.pay.connector.events.dao.EmittedEventDao;
 import uk.gov.pay.connector.paritycheck.LedgerService;
+import uk.gov.pay.connector.paritycheck.LedgerTransaction;
 import uk.gov.pay.connector.queue.StateTransitionService;
 import uk.gov.pay.connector.refund.dao.RefundDao;
+import uk.gov.pay.connector.workpartition.service.WorkPartitionService;
 
 import javax.inject.Inject;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 import static uk.gov.pay.connector.filters.RestClientLoggingFilter.HEADER_REQUEST_ID;
 
@@ -25,6 +30,7 @@ public class ParityCheckWorker {
     private static final int PAGE_SIZE = 100;
     private static final Logger logger = LoggerFactory.getLogger(ParityCheckWorker.class);
     private static final boolean shouldForceEmission = true;
+    private static final String JOB_NAME_PREFIX = "parity-check:";
     private final ChargeDao chargeDao;
     private ChargeService chargeService;
 
@@ -34,12 +40,13 @@ public class ParityCheckWorker {
     private RefundDao refundDao;
     private ParityCheckService parityCheckService;
     private HistoricalEventEmitter historicalEventEmitter;
+    private WorkPartitionService workPartitionService;
     private long maxId;
 
     @Inject
     public ParityCheckWorker(ChargeDao chargeDao, ChargeService chargeService, LedgerService ledgerService, EmittedEventDao emittedEventDao,
                              StateTransitionService stateTransitionService, EventService eventService, RefundDao refundDao,
-                             ParityCheckService parityCheckService) {
+                             ParityCheckService parityCheckService, WorkPartitionService workPartitionService) {
         this.chargeDao = chargeDao;
         this.chargeService = chargeService;
         this.emittedEventDao = emittedEventDao;
@@ -47,10 +54,19 @@ public class ParityCheckWorker {
         this.eventService = eventService;
         this.refundDao = refundDao;
         this.parityCheckService = parityCheckService;
+        this.workPartitionService = workPartitionService;
     }
 
     public void execute(Long startId, Optional<Long> maybeMaxId, boolean doNotReprocessValidRecords,
                         Optional<String> parityCheckStatus, Long doNotRetryEmitUntilDuration) {
+        execute(startId, maybeMaxId, doNotReprocessValidRecords, parityCheckStatus, doNotRetryEmitUntilDuration, Optional.empty());
+    }
+
+    /**
+     * @param jobId if present, the ID range is shared with every other node running the job with the same ID
+     */
+    public void execute(Long startId, Optional<Long> maybeMaxId, boolean doNotReprocessValidRecords,
+                        Optional<String> parityCheckStatus, Long doNotRetryEmitUntilDuration, Optional<String> jobId) {
         try {
             initializeHistoricalEventEmitter(doNotRetryEmitUntilDuration);
 
@@ -60,7 +76,12 @@ public class ParityCheckWorker {
                 checkParityForParityCheckStatus(parityCheckStatus);
             } else {
                 maxId = maybeMaxId.orElseGet(chargeDao::findMaxId);
-                checkParityForIdRange(startId, maxId, doNotReprocessValidRecords);
+                if (jobId.isPresent()) {
+                    workPartitionService.processInShards(JOB_NAME_PREFIX + jobId.get(), startId, maxId,
+                            (shardStart, shardEnd) -> checkParityForIdRange(shardStart, shardEnd, doNotReprocessValidRecords));
+                } else {
+                    checkParityForIdRange(startId, maxId, doNotReprocessValidRecords);
+                }
             }
         } catch (NullPointerException e) {
             for (StackTraceElement s : e.getStackTrace()) {
@@ -91,7 +112,7 @@ public class ParityCheckWorker {
 
             if (!charges.isEmpty()) {
                 logger.info("Processing charges [last processed id {}, no.of.charges {}] by parity check status", lastProcessedId, charges.size());
-                charges.forEach(c -> checkParityFor(c, false));
+                checkParityFor(charges, false);
                 lastProcessedId = charges.get(charges.size() - 1).getId();
             } else {
                 break;
@@ -100,30 +121,47 @@ public class ParityCheckWorker {
     }
 
     public void checkParityForIdRange(long startId, long maxId, boolean doNotReprocessValidRecords) {
-        logger.info("Starting from {} up to {}", startId, this.maxId);
-        for (long i = startId; i <= this.maxId; i++) {
-            final Optional<ChargeEntity> maybeCharge = chargeDao.findById(i);
-
-            if (maybeCharge.isPresent()) {
-                checkParityFor(maybeCharge.get(), doNotReprocessValidRecords);
-            } else {
-                logger.info("[{}/{}] - not found", i, this.maxId);
+        logger.info("Starting from {} up to {}", startId, maxId);
+        for (long pageStart = startId; pageStart <= maxId; pageStart += PAGE_SIZE) {
+            List<ChargeEntity> charges = new ArrayList<>();
+            for (long i = pageStart; i <= Math.min(pageStart + PAGE_SIZE - 1, maxId); i++) {
+                final Optional<ChargeEntity> maybeCharge = chargeDao.findById(i);
+
+                if (maybeCharge.isPresent()) {
+                    charges.add(maybeCharge.get());
+                } else {
+                    logger.info("[{}/{}] - not found", i, this.maxId);
+                }
             }
+            checkParityFor(charges, doNotReprocessValidRecords);
         }
     }
 
+    private void checkParityFor(List<ChargeEntity> charges, boolean doNotReprocessValidRecords) {
+        // the ledger transactions of a page are looked up together, rather than as each charge is checked
+        Map<String, LedgerTransaction> ledgerTransactions = parityCheckService.getLedgerTransactions(charges.stream()
+                .filter(charge -> !shouldSkip(charge, doNotReprocessValidRecords))
+                .collect(Collectors.toList()));
+        charges.forEach(charge -> checkParityFor(charge, doNotReprocessValidRecords, ledgerTransactions));
+    }
+
+    private static boolean shouldSkip(ChargeEntity charge, boolean doNotReprocessValidRecords) {
+        return doNotReprocessValidRecords && ParityCheckStatus.EXISTS_IN_LEDGER.equals(charge.getParityCheckStatus());
+    }
+
     // needs to be public for transactional annotation
     @Transactional
-    public void checkParityFor(ChargeEntity charge, boolean doNotReprocessValidRecords) {
+    public void checkParityFor(ChargeEntity charge, boolean doNotReprocessValidRecords,
+                               Map<String, LedgerTransaction> ledgerTransactions) {
         try {
             MDC.put("chargeId", charge.getExternalId());
 
-            if (doNotReprocessValidRecords && ParityCheckStatus.EXISTS_IN_LEDGER.equals(charge.getParityCheckStatus())) {
+            if (shouldSkip(charge, doNotReprocessValidRecords)) {
                 logger.info("transaction parity check skipped [id={},status={}]", charge.getId(), charge.getParityCheckStatus());
                 return;
             }
 
-            ParityCheckStatus parityCheckStatus = parityCheckService.getChargeAndRefundsParityCheckStatus(charge);
+            ParityCheckStatus parityCheckStatus = parityCheckService.getChargeAndRefundsParityCheckStatus(charge, ledgerTransactions);
             chargeService.updateChargeParityStatus(charge.getExternalId(), parityCheckStatus);
             logger.info("transaction parity check finished [id={},status={}]", charge.getId(), parityCheckStatus);
 
@@ -7,6 +7,7 @@ import uk.gov.pay.connector.token.model.domain.TokenEntity;
 
 import javax.inject.Inject;
 import javax.persistence.EntityManager;
+import java.sql.Timestamp;
 import java.time.ZonedDateTime;
 import java.util.Optional;
 
@@ -26,10 +27,17 @@ public class TokenDao extends JpaDao<TokenEntity> {
                 .findFirst();
     }
 
-    public int deleteTokensOlderThanSpecifiedDate(ZonedDateTime cutOffDate) {
+    /**
+     * Deletes at most {@code batchSize} tokens created before the cut-off date, oldest first. Each call runs in
+     * its own short transaction and uses the index on created_date, so callers can loop until fewer than
+     * {@code batchSize} rows are deleted without holding locks on the whole expired range.
+     */
+    public int deleteTokensOlderThanSpecifiedDate(ZonedDateTime cutOffDate, int batchSize) {
         return entityManager.get()
-                .createQuery("DELETE FROM TokenEntity t WHERE t.createdDate < :cutOffDate", TokenEntity.class)
-                .setParameter("cutOffDate", cutOffDate)
+                .createNativeQuery("DELETE FROM tokens WHERE id IN (" +
+                        "SELECT id FROM tokens WHERE created_date < ?1 ORDER BY created_date LIMIT ?2)")
+                .setParameter(1, Timestamp.from(cutOffDate.toInstant()))
+                .setParameter(2, batchSize)
                 .executeUpdate();
     }
 }
@@ -0,0 +1,32 @@
+package uk.gov.pay.connector.token.resource;
+
+import com.google.common.collect.ImmutableMap;
+import uk.gov.pay.connector.token.service.TokenReaperService;
+
+import javax.inject.Inject;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.Response;
+
+import static javax.ws.rs.core.MediaType.APPLICATION_JSON;
+import static uk.gov.pay.connector.util.ResponseUtil.successResponseWithEntity;
+
+@Path("/")
+public class TokenReaperResource {
+
+    private final TokenReaperService tokenReaperService;
+
+    @Inject
+    public TokenReaperResource(TokenReaperService tokenReaperService) {
+        this.tokenReaperService = tokenReaperService;
+    }
+
+    @POST
+    @Path("/v1/tasks/expired-tokens-sweep")
+    @Produces(APPLICATION_JSON)
+    public Response deleteExpiredTokens() {
+        int deleted = tokenReaperService.deleteExpiredTokens();
+        return successResponseWithEntity(ImmutableMap.of("tokens-deleted", deleted));
+    }
+}
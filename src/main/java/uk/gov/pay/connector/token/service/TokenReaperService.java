@@ -0,0 +1,100 @@
+package uk.gov.pay.connector.token.service;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.base.Stopwatch;
+import io.dropwizard.setup.Environment;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.gov.pay.connector.app.ConnectorConfiguration;
+import uk.gov.pay.connector.app.config.TokenReaperConfig;
+import uk.gov.pay.connector.token.dao.TokenDao;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static net.logstash.logback.argument.StructuredArguments.kv;
+
+/**
+ * Deletes expired tokens in bounded batches rather than one unbounded DELETE, pausing between batches so that
+ * token lookups during card entry are not blocked behind a long-running delete after a backlog has built up.
+ */
+@Singleton
+public class TokenReaperService {
+
+    private static final Logger logger = LoggerFactory.getLogger(TokenReaperService.class);
+
+    private final TokenDao tokenDao;
+    private final TokenReaperConfig tokenReaperConfig;
+    private final MetricRegistry metricRegistry;
+    private final AtomicBoolean running = new AtomicBoolean(false);
+
+    @Inject
+    public TokenReaperService(TokenDao tokenDao, ConnectorConfiguration configuration, Environment environment) {
+        this.tokenDao = tokenDao;
+        this.tokenReaperConfig = configuration.getTokenReaperConfig();
+        this.metricRegistry = environment.metrics();
+    }
+
+    public int deleteExpiredTokens() {
+        if (!running.compareAndSet(false, true)) {
+            logger.info("Token reaper already running, skipping this run");
+            return 0;
+        }
+
+        try {
+            return deleteExpiredTokensInBatches();
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private int deleteExpiredTokensInBatches() {
+        ZonedDateTime cutOffDate = ZonedDateTime.now(ZoneId.of("UTC")).minusDays(tokenReaperConfig.getTokenExpiryInDays());
+        int batchSize = tokenReaperConfig.getBatchSize();
+        int totalDeleted = 0;
+        int batches = 0;
+        Stopwatch stopwatch = Stopwatch.createStarted();
+
+        while (batches < tokenReaperConfig.getMaximumBatchesPerRun()) {
+            Stopwatch batchStopwatch = Stopwatch.createStarted();
+            int deleted = tokenDao.deleteTokensOlderThanSpecifiedDate(cutOffDate, batchSize);
+            metricRegistry.histogram("token-reaper.batch_duration").update(batchStopwatch.elapsed(TimeUnit.MILLISECONDS));
+            metricRegistry.meter("token-reaper.deleted").mark(deleted);
+
+            batches++;
+            totalDeleted += deleted;
+
+            if (deleted < batchSize || !pauseBetweenBatches()) {
+                break;
+            }
+        }
+
+        metricRegistry.counter("token-reaper.runs").inc();
+        metricRegistry.histogram("token-reaper.run_duration").update(stopwatch.elapsed(TimeUnit.MILLISECONDS));
+        logger.info("Token reaper finished {} {} {}",
+                kv("tokens_deleted", totalDeleted),
+                kv("batches", batches),
+                kv("duration_ms", stopwatch.elapsed(TimeUnit.MILLISECONDS)));
+
+        return totalDeleted;
+    }
+
+    private boolean pauseBetweenBatches() {
+        long pause = tokenReaperConfig.getPauseBetweenBatchesInMillis();
+        if (pause <= 0) {
+            return true;
+        }
+        try {
+            Thread.sleep(pause);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.info("Token reaper interrupted, stopping after current batch");
+            return false;
+        }
+    }
+}
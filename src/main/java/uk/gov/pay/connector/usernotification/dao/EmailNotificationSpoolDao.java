@@ -0,0 +1,73 @@
+package uk.gov.pay.connector.usernotification.dao;
+
+import com.google.inject.Inject;
+import com.google.inject.Provider;
+import com.google.inject.persist.Transactional;
+import uk.gov.pay.connector.common.dao.JpaDao;
+import uk.gov.pay.connector.usernotification.model.domain.EmailNotificationSpoolEntity;
+
+import javax.persistence.EntityManager;
+import java.time.ZonedDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Transactional
+public class EmailNotificationSpoolDao extends JpaDao<EmailNotificationSpoolEntity> {
+
+    /**
+     * Claims due emails by pushing their next attempt date out by the lease, skipping rows locked by another node.
+     * If the claiming node dies before deleting or rescheduling an email, it becomes due again once the lease runs
+     * out.
+     */
+    private static final String CLAIM_DUE_EMAILS =
+            "UPDATE email_notification_spool SET next_attempt_date = now() + (?1 * interval '1 millisecond') " +
+            "WHERE id IN (" +
+            "  SELECT id FROM email_notification_spool " +
+            "  WHERE next_attempt_date <= now() " +
+            "  ORDER BY next_attempt_date " +
+            "  LIMIT ?2 " +
+            "  FOR UPDATE SKIP LOCKED" +
+            ") " +
+            "RETURNING *";
+
+    @Inject
+    public EmailNotificationSpoolDao(Provider<EntityManager> entityManager) {
+        super(entityManager);
+    }
+
+    @SuppressWarnings("unchecked")
+    public List<EmailNotificationSpoolEntity> claimDue(int batchSize, long leaseInMilliseconds) {
+        return entityManager.get()
+                .createNativeQuery(CLAIM_DUE_EMAILS, EmailNotificationSpoolEntity.class)
+                .setParameter(1, leaseInMilliseconds)
+                .setParameter(2, batchSize)
+                .getResultList();
+    }
+
+    public void reschedule(Long id, int attempts, ZonedDateTime nextAttemptDate) {
+        entityManager.get()
+                .createQuery("UPDATE EmailNotificationSpoolEntity e" +
+                        " SET e.attempts = :attempts, e.nextAttemptDate = :nextAttemptDate" +
+                        " WHERE e.id = :id")
+                .setParameter("attempts", attempts)
+                .setParameter("nextAttemptDate", nextAttemptDate)
+                .setParameter("id", id)
+                .executeUpdate();
+    }
+
+    public void delete(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        entityManager.get()
+                .createQuery("DELETE FROM EmailNotificationSpoolEntity e WHERE e.id IN :ids")
+                .setParameter("ids", ids)
+                .executeUpdate();
+    }
+
+    public long count() {
+        return entityManager.get()
+                .createQuery("SELECT COUNT(e) FROM EmailNotificationSpoolEntity e", Long.class)
+                .getSingleResult();
+    }
+}
@@ -1,26 +1,41 @@
 package uk.gov.pay.connector.usernotification.govuknotify;
 
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
 import uk.gov.pay.connector.app.ConnectorConfiguration;
 import uk.gov.pay.connector.app.NotifyConfiguration;
 import uk.gov.service.notify.NotificationClient;
 
 import javax.inject.Inject;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Hands out one {@link NotificationClient} per API key. Clients are thread safe and hold no per-request state, so they
+ * are reused rather than built for every email; clients for keys that have not been used for a while, e.g. because a
+ * gateway account has changed its key, are dropped.
+ */
 public class NotifyClientFactory {
 
+    private static final long UNUSED_CLIENT_EXPIRY_IN_HOURS = 1;
+
     private final NotifyConfiguration configuration;
+    private final LoadingCache<String, NotificationClient> clients;
 
     @Inject
     public NotifyClientFactory(ConnectorConfiguration configuration) {
         this.configuration = configuration.getNotifyConfiguration();
+        this.clients = CacheBuilder.newBuilder()
+                .expireAfterAccess(UNUSED_CLIENT_EXPIRY_IN_HOURS, TimeUnit.HOURS)
+                .build(CacheLoader.from(apiKey -> newInstance(apiKey, this.configuration.getNotificationBaseURL())));
     }
 
     public NotificationClient getInstance() {
-        return newInstance(configuration.getApiKey(), configuration.getNotificationBaseURL());
+        return getInstance(configuration.getApiKey());
     }
 
     public NotificationClient getInstance(String notifyApiKey) {
-        return newInstance(notifyApiKey, configuration.getNotificationBaseURL());
+        return clients.getUnchecked(notifyApiKey);
     }
 
     private NotificationClient newInstance(String apiKey, String notificationBaseURL) {
@@ -0,0 +1,140 @@
+package uk.gov.pay.connector.usernotification.model.domain;
+
+import uk.gov.pay.connector.common.model.domain.UTCDateTimeConverter;
+import uk.gov.pay.connector.gatewayaccount.util.JsonToMapConverter;
+
+import javax.persistence.Column;
+import javax.persistence.Convert;
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.SequenceGenerator;
+import javax.persistence.Table;
+import java.time.ZonedDateTime;
+import java.util.Map;
+
+/**
+ * An email waiting to be sent through GOV.UK Notify. Rows are written in the same transaction as the charge or refund
+ * update that the email is about, and deleted by
+ * {@link uk.gov.pay.connector.usernotification.service.EmailNotificationDispatchProcess} once Notify has accepted
+ * the email or it has been given up on.
+ *
+ * <p>Notify API keys are not copied here: when the gateway account has its own key, it is looked up at send
+ * time.</p>
+ */
+@Entity
+@Table(name = "email_notification_spool")
+@SequenceGenerator(name = "email_notification_spool_id_seq",
+        sequenceName = "email_notification_spool_id_seq", allocationSize = 1)
+public class EmailNotificationSpoolEntity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "email_notification_spool_id_seq")
+    private Long id;
+
+    @Column(name = "notification_type")
+    @Enumerated(EnumType.STRING)
+    private EmailNotificationType notificationType;
+
+    @Column(name = "charge_external_id")
+    private String chargeExternalId;
+
+    @Column(name = "gateway_account_id")
+    private Long gatewayAccountId;
+
+    @Column(name = "use_account_api_key")
+    private boolean useAccountApiKey;
+
+    @Column(name = "template_id")
+    private String templateId;
+
+    @Column(name = "email_address")
+    private String emailAddress;
+
+    @Column(name = "personalisation", columnDefinition = "json")
+    @Convert(converter = JsonToMapConverter.class)
+    private Map<String, String> personalisation;
+
+    @Column(name = "attempts")
+    private int attempts;
+
+    @Convert(converter = UTCDateTimeConverter.class)
+    @Column(name = "next_attempt_date")
+    private ZonedDateTime nextAttemptDate;
+
+    @Convert(converter = UTCDateTimeConverter.class)
+    @Column(name = "created_date")
+    private ZonedDateTime createdDate;
+
+    protected EmailNotificationSpoolEntity() {
+    }
+
+    public EmailNotificationSpoolEntity(EmailNotificationType notificationType, String chargeExternalId,
+                                        Long gatewayAccountId, boolean useAccountApiKey, String templateId,
+                                        String emailAddress, Map<String, String> personalisation, ZonedDateTime now) {
+        this.notificationType = notificationType;
+        this.chargeExternalId = chargeExternalId;
+        this.gatewayAccountId = gatewayAccountId;
+        this.useAccountApiKey = useAccountApiKey;
+        this.templateId = templateId;
+        this.emailAddress = emailAddress;
+        this.personalisation = personalisation;
+        this.attempts = 0;
+        this.nextAttemptDate = now;
+        this.createdDate = now;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public EmailNotificationType getNotificationType() {
+        return notificationType;
+    }
+
+    public String getChargeExternalId() {
+        return chargeExternalId;
+    }
+
+    public Long getGatewayAccountId() {
+        return gatewayAccountId;
+    }
+
+    /**
+     * @return whether the email is sent with the gateway account's own Notify API key rather than the GOV.UK Pay one
+     */
+    public boolean isUseAccountApiKey() {
+        return useAccountApiKey;
+    }
+
+    public String getTemplateId() {
+        return templateId;
+    }
+
+    public String getEmailAddress() {
+        return emailAddress;
+    }
+
+    public Map<String, String> getPersonalisation() {
+        return personalisation;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public ZonedDateTime getNextAttemptDate() {
+        return nextAttemptDate;
+    }
+
+    public ZonedDateTime getCreatedDate() {
+        return createdDate;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+}
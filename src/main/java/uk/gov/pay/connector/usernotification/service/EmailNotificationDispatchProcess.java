@@ -0,0 +1,225 @@
+package uk.gov.pay.connector.usernotification.service;
+
+import com.codahale.metrics.CachedGauge;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.base.Stopwatch;
+import io.dropwizard.lifecycle.Managed;
+import io.dropwizard.setup.Environment;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.gov.pay.connector.app.ConnectorConfiguration;
+import uk.gov.pay.connector.app.config.EmailDispatchConfig;
+import uk.gov.pay.connector.gatewayaccount.dao.GatewayAccountDao;
+import uk.gov.pay.connector.gatewayaccount.model.GatewayAccountEntity;
+import uk.gov.pay.connector.usernotification.dao.EmailNotificationSpoolDao;
+import uk.gov.pay.connector.usernotification.govuknotify.NotifyClientFactory;
+import uk.gov.pay.connector.usernotification.model.domain.EmailNotificationSpoolEntity;
+import uk.gov.pay.connector.util.BlockingTaskThreads;
+import uk.gov.service.notify.NotificationClient;
+import uk.gov.service.notify.NotificationClientException;
+import uk.gov.service.notify.SendEmailResponse;
+
+import javax.inject.Inject;
+import java.time.Clock;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.apache.commons.lang3.StringUtils.isBlank;
+
+/**
+ * Sends the emails spooled by {@link UserNotificationService}. Due emails are claimed in batches under a lease and
+ * each batch is sent concurrently. An email is deleted once Notify has accepted it. If Notify is unavailable or
+ * rate limiting, the email is rescheduled with exponential backoff until it runs out of attempts; any other failure
+ * would only happen again, so the email is given up on straight away.
+ */
+public class EmailNotificationDispatchProcess implements Managed {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(EmailNotificationDispatchProcess.class);
+
+    private static final long SPOOL_SIZE_CACHE_DURATION_IN_SECONDS = 10;
+
+    private enum Outcome {SENT, RETRY, GIVE_UP}
+
+    private final EmailNotificationSpoolDao emailNotificationSpoolDao;
+    private final GatewayAccountDao gatewayAccountDao;
+    private final NotifyClientFactory notifyClientFactory;
+    private final ScheduledExecutorService pollingExecutorService;
+    private final ExecutorService sendingExecutorService;
+    private final MetricRegistry metricRegistry;
+    private final Clock clock;
+    private final int batchSize;
+    private final long pollIntervalInMilliseconds;
+    private final long leaseInMilliseconds;
+    private final int maximumAttempts;
+    private final long initialRetryDelayInSeconds;
+    private final long maximumRetryDelayInSeconds;
+
+    @Inject
+    public EmailNotificationDispatchProcess(EmailNotificationSpoolDao emailNotificationSpoolDao,
+                                            GatewayAccountDao gatewayAccountDao,
+                                            NotifyClientFactory notifyClientFactory,
+                                            ConnectorConfiguration configuration,
+                                            Environment environment) {
+        this(emailNotificationSpoolDao, gatewayAccountDao, notifyClientFactory, configuration.getEmailDispatchConfig(),
+                environment.lifecycle().scheduledExecutorService("email-dispatch-poller").threads(1).build(),
+                environment.lifecycle()
+                        .executorService("email-dispatch-%d")
+                        .minThreads(configuration.getEmailDispatchConfig().getBatchSize())
+                        .maxThreads(configuration.getEmailDispatchConfig().getBatchSize())
+                        .threadFactory(BlockingTaskThreads.threadFactory(configuration.getExecutorServiceConfig().getExecutionMode(),
+                                "email-dispatch-%d"))
+                        .build(),
+                environment.metrics(), Clock.systemUTC());
+        environment.metrics().register("notify-operations.spool.size",
+                new CachedGauge<Long>(SPOOL_SIZE_CACHE_DURATION_IN_SECONDS, TimeUnit.SECONDS) {
+                    @Override
+                    protected Long loadValue() {
+                        return emailNotificationSpoolDao.count();
+                    }
+                });
+    }
+
+    EmailNotificationDispatchProcess(EmailNotificationSpoolDao emailNotificationSpoolDao,
+                                     GatewayAccountDao gatewayAccountDao,
+                                     NotifyClientFactory notifyClientFactory,
+                                     EmailDispatchConfig emailDispatchConfig,
+                                     ScheduledExecutorService pollingExecutorService,
+                                     ExecutorService sendingExecutorService,
+                                     MetricRegistry metricRegistry,
+                                     Clock clock) {
+        this.emailNotificationSpoolDao = emailNotificationSpoolDao;
+        this.gatewayAccountDao = gatewayAccountDao;
+        this.notifyClientFactory = notifyClientFactory;
+        this.pollingExecutorService = pollingExecutorService;
+        this.sendingExecutorService = sendingExecutorService;
+        this.metricRegistry = metricRegistry;
+        this.clock = clock;
+        this.batchSize = emailDispatchConfig.getBatchSize();
+        this.pollIntervalInMilliseconds = emailDispatchConfig.getPollIntervalInMilliseconds();
+        this.leaseInMilliseconds = TimeUnit.SECONDS.toMillis(emailDispatchConfig.getLeaseInSeconds());
+        this.maximumAttempts = emailDispatchConfig.getMaximumAttempts();
+        this.initialRetryDelayInSeconds = emailDispatchConfig.getInitialRetryDelayInSeconds();
+        this.maximumRetryDelayInSeconds = emailDispatchConfig.getMaximumRetryDelayInSeconds();
+    }
+
+    @Override
+    public void start() {
+        pollingExecutorService.scheduleWithFixedDelay(this::dispatchDueEmails, pollIntervalInMilliseconds,
+                pollIntervalInMilliseconds, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void stop() {
+        // emails being sent when the node stops are sent again by another node once their lease runs out
+        pollingExecutorService.shutdown();
+        sendingExecutorService.shutdown();
+    }
+
+    void dispatchDueEmails() {
+        try {
+            List<EmailNotificationSpoolEntity> claimed;
+            do {
+                claimed = emailNotificationSpoolDao.claimDue(batchSize, leaseInMilliseconds);
+                dispatch(claimed);
+            } while (claimed.size() == batchSize && !pollingExecutorService.isShutdown());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            // claimed emails are sent again once their lease runs out
+            LOGGER.error("Failed to dispatch spooled emails [message={}]", e.getMessage());
+        }
+    }
+
+    private void dispatch(List<EmailNotificationSpoolEntity> emails) throws InterruptedException {
+        List<Future<Outcome>> outcomes = new ArrayList<>(emails.size());
+        for (EmailNotificationSpoolEntity email : emails) {
+            outcomes.add(sendingExecutorService.submit(() -> send(email)));
+        }
+
+        List<Long> emailIdsToDelete = new ArrayList<>();
+        for (int i = 0; i < emails.size(); i++) {
+            EmailNotificationSpoolEntity email = emails.get(i);
+            Outcome outcome;
+            try {
+                outcome = outcomes.get(i).get();
+            } catch (ExecutionException e) {
+                LOGGER.error("Failed to send {} email - charge_external_id={}", email.getNotificationType(),
+                        email.getChargeExternalId(), e.getCause());
+                outcome = Outcome.GIVE_UP;
+            }
+
+            int attempts = email.getAttempts() + 1;
+            if (outcome == Outcome.SENT) {
+                emailIdsToDelete.add(email.getId());
+            } else if (outcome == Outcome.RETRY && attempts < maximumAttempts) {
+                emailNotificationSpoolDao.reschedule(email.getId(), attempts,
+                        ZonedDateTime.now(clock).plusSeconds(retryDelayInSeconds(attempts)));
+            } else {
+                LOGGER.error("Giving up on {} email after {} attempts - charge_external_id={}",
+                        email.getNotificationType(), attempts, email.getChargeExternalId());
+                metricRegistry.counter("notify-operations.abandoned").inc();
+                emailIdsToDelete.add(email.getId());
+            }
+        }
+
+        emailNotificationSpoolDao.delete(emailIdsToDelete);
+    }
+
+    private Outcome send(EmailNotificationSpoolEntity email) {
+        Optional<NotificationClient> notificationClient = getNotificationClient(email);
+        if (notificationClient.isEmpty()) {
+            LOGGER.error("No Notify API key for {} email - charge_external_id={}, gateway_account_id={}",
+                    email.getNotificationType(), email.getChargeExternalId(), email.getGatewayAccountId());
+            return Outcome.GIVE_UP;
+        }
+
+        Stopwatch responseTimeStopwatch = Stopwatch.createStarted();
+        try {
+            LOGGER.info("Sending {} email, charge_external_id={}", email.getNotificationType(), email.getChargeExternalId());
+            SendEmailResponse response = notificationClient.get()
+                    .sendEmail(email.getTemplateId(), email.getEmailAddress(), email.getPersonalisation(), null);
+            LOGGER.info("Sent {} email, charge_external_id={}, notification_id={}", email.getNotificationType(),
+                    email.getChargeExternalId(), response.getNotificationId());
+            return Outcome.SENT;
+        } catch (NotificationClientException e) {
+            LOGGER.error("Failed to send " + email.getNotificationType() + " email - charge_external_id=" + email.getChargeExternalId(), e);
+            metricRegistry.counter("notify-operations.failures").inc();
+            return isRetryable(e) ? Outcome.RETRY : Outcome.GIVE_UP;
+        } finally {
+            responseTimeStopwatch.stop();
+            metricRegistry.histogram("notify-operations.response_time").update(responseTimeStopwatch.elapsed(TimeUnit.MILLISECONDS));
+        }
+    }
+
+    private Optional<NotificationClient> getNotificationClient(EmailNotificationSpoolEntity email) {
+        if (!email.isUseAccountApiKey()) {
+            return Optional.of(notifyClientFactory.getInstance());
+        }
+        return gatewayAccountDao.findById(email.getGatewayAccountId())
+                .map(GatewayAccountEntity::getNotifySettings)
+                .map(notifySettings -> notifySettings.get("api_token"))
+                .filter(apiKey -> !isBlank(apiKey))
+                .map(notifyClientFactory::getInstance);
+    }
+
+    /**
+     * Connection failures, which Notify's client reports without an HTTP status, rate limiting and server errors
+     * may succeed later.
+     */
+    private static boolean isRetryable(NotificationClientException e) {
+        int httpResult = e.getHttpResult();
+        return httpResult == 0 || httpResult == 429 || httpResult >= 500;
+    }
+
+    private long retryDelayInSeconds(int attempts) {
+        long delay = initialRetryDelayInSeconds << Math.min(attempts - 1, 30);
+        return Math.min(delay, maximumRetryDelayInSeconds);
+    }
+}
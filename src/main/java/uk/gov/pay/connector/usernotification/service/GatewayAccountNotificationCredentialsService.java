@@ -1,6 +1,7 @@
 package uk.gov.pay.connector.usernotification.service;
 
 import uk.gov.pay.connector.common.exception.CredentialsException;
+import uk.gov.pay.connector.gateway.smartpay.auth.VerifiedNotificationCredentialsCache;
 import uk.gov.pay.connector.gatewayaccount.dao.GatewayAccountDao;
 import uk.gov.pay.connector.gatewayaccount.model.GatewayAccountEntity;
 import uk.gov.pay.connector.usernotification.model.domain.NotificationCredentials;
@@ -15,12 +16,15 @@ public class GatewayAccountNotificationCredentialsService {
     private static final int MINIMUM_PASSWORD_LENGTH = 10;
     private final GatewayAccountDao gatewayDao;
     private final HashUtil hashUtil;
+    private final VerifiedNotificationCredentialsCache verifiedCredentialsCache;
 
     @Inject
     public GatewayAccountNotificationCredentialsService(GatewayAccountDao gatewayDao,
-                                                        HashUtil hashUtil) {
+                                                        HashUtil hashUtil,
+                                                        VerifiedNotificationCredentialsCache verifiedCredentialsCache) {
         this.gatewayDao = gatewayDao;
         this.hashUtil = hashUtil;
+        this.verifiedCredentialsCache = verifiedCredentialsCache;
     }
 
     public void setCredentialsForAccount(Map<String, String> notificationCredentials, GatewayAccountEntity gatewayAccountEntity) throws CredentialsException {
@@ -30,11 +34,13 @@ public class GatewayAccountNotificationCredentialsService {
 
         NotificationCredentials existingCredentials = Optional.ofNullable(gatewayAccountEntity.getNotificationCredentials())
                 .orElseGet(() -> new NotificationCredentials(gatewayAccountEntity));
+        Optional<String> previousUsername = Optional.ofNullable(existingCredentials.getUserName());
 
         existingCredentials.setUserName(notificationCredentials.get("username"));
         existingCredentials.setPassword(hashUtil.hash(notificationCredentials.get("password")));
         gatewayAccountEntity.setNotificationCredentials(existingCredentials);
 
         gatewayDao.merge(gatewayAccountEntity);
+        previousUsername.ifPresent(verifiedCredentialsCache::invalidate);
     }
 }
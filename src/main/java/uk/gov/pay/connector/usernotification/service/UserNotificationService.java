@@ -1,8 +1,5 @@
 package uk.gov.pay.connector.usernotification.service;
 
-import com.codahale.metrics.MetricRegistry;
-import com.google.common.base.Stopwatch;
-import io.dropwizard.setup.Environment;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -12,28 +9,22 @@ import uk.gov.pay.connector.charge.model.domain.ChargeEntity;
 import uk.gov.pay.connector.charge.util.CorporateCardSurchargeCalculator;
 import uk.gov.pay.connector.gatewayaccount.model.GatewayAccountEntity;
 import uk.gov.pay.connector.refund.model.domain.RefundEntity;
-import uk.gov.pay.connector.usernotification.govuknotify.NotifyClientFactory;
+import uk.gov.pay.connector.usernotification.dao.EmailNotificationSpoolDao;
 import uk.gov.pay.connector.usernotification.model.domain.EmailNotificationEntity;
+import uk.gov.pay.connector.usernotification.model.domain.EmailNotificationSpoolEntity;
 import uk.gov.pay.connector.usernotification.model.domain.EmailNotificationType;
 import uk.gov.pay.connector.util.DateTimeUtils;
-import uk.gov.service.notify.NotificationClient;
-import uk.gov.service.notify.NotificationClientException;
-import uk.gov.service.notify.SendEmailResponse;
 
 import javax.inject.Inject;
 import java.math.BigDecimal;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
-import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
-import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
-import static java.lang.Runtime.getRuntime;
 import static java.util.Optional.ofNullable;
 import static org.apache.commons.lang3.StringUtils.isBlank;
 import static org.apache.commons.lang3.StringUtils.isNotBlank;
@@ -41,6 +32,11 @@ import static uk.gov.pay.connector.gatewayaccount.model.EmailCollectionMode.OFF;
 import static uk.gov.pay.connector.gatewayaccount.model.EmailCollectionMode.OPTIONAL;
 
 
+/**
+ * Decides which emails a charge or refund update should send and spools them for
+ * {@link EmailNotificationDispatchProcess} to send. Emails are spooled in the caller's transaction, so they are only
+ * sent if the update they are about commits.
+ */
 public class UserNotificationService {
 
     private static final Pattern LITERAL_DOLLAR_REFERENCE = Pattern.compile(Pattern.quote("$reference"));
@@ -49,94 +45,77 @@ public class UserNotificationService {
     private String refundIssuedEmailTemplateId;
     private boolean emailNotifyGloballyEnabled;
     protected final Logger logger = LoggerFactory.getLogger(getClass());
-    private NotifyClientFactory notifyClientFactory;
-    private ExecutorService executorService;
-    private final MetricRegistry metricRegistry;
+    private final EmailNotificationSpoolDao emailNotificationSpoolDao;
 
     @Inject
-    public UserNotificationService(NotifyClientFactory notifyClientFactory, ConnectorConfiguration configuration, Environment environment) {
+    public UserNotificationService(EmailNotificationSpoolDao emailNotificationSpoolDao, ConnectorConfiguration configuration) {
         readEmailConfig(configuration);
-        if (emailNotifyGloballyEnabled) {
-            this.notifyClientFactory = notifyClientFactory;
-            int numberOfThreads = configuration.getExecutorServiceConfig().getThreadsPerCpu() * getRuntime().availableProcessors();
-            executorService = Executors.newFixedThreadPool(numberOfThreads);
-        }
-        this.metricRegistry = environment.metrics();
+        this.emailNotificationSpoolDao = emailNotificationSpoolDao;
     }
 
-    public Future<Optional<String>> sendRefundIssuedEmail(RefundEntity refundEntity, Charge charge, GatewayAccountEntity gatewayAccountEntity) {
+    public Optional<EmailNotificationSpoolEntity> sendRefundIssuedEmail(RefundEntity refundEntity, Charge charge, GatewayAccountEntity gatewayAccountEntity) {
         return sendEmail(EmailNotificationType.REFUND_ISSUED, charge, gatewayAccountEntity,
                 buildRefundEmailPersonalisationFrom(charge, refundEntity, gatewayAccountEntity));
     }
 
-    public Future<Optional<String>> sendPaymentConfirmedEmail(ChargeEntity chargeEntity, GatewayAccountEntity gatewayAccountEntity) {
+    public Optional<EmailNotificationSpoolEntity> sendPaymentConfirmedEmail(ChargeEntity chargeEntity, GatewayAccountEntity gatewayAccountEntity) {
         return sendEmail(EmailNotificationType.PAYMENT_CONFIRMED, Charge.from(chargeEntity), gatewayAccountEntity,
                 buildConfirmationEmailPersonalisationFrom(chargeEntity));
     }
 
-    private Future<Optional<String>> sendEmail(EmailNotificationType emailNotificationType, Charge charge, GatewayAccountEntity gatewayAccountEntity, HashMap<String, String> personalisation) {
+    private Optional<EmailNotificationSpoolEntity> sendEmail(EmailNotificationType emailNotificationType, Charge charge, GatewayAccountEntity gatewayAccountEntity, HashMap<String, String> personalisation) {
         boolean isEmailEnabled = ofNullable(gatewayAccountEntity.getEmailNotifications().get(emailNotificationType))
                 .map(EmailNotificationEntity::isEnabled)
                 .orElse(false);
         
         if (!emailNotifyGloballyEnabled || !isEmailEnabled || gatewayAccountEntity.getEmailCollectionMode().equals(OFF) ||
                 gatewayAccountEntity.getEmailCollectionMode().equals(OPTIONAL) && ofNullable(charge.getEmail()).isEmpty()) {
-            return CompletableFuture.completedFuture(Optional.empty());
+            return Optional.empty();
         }
 
-        Stopwatch responseTimeStopwatch = Stopwatch.createStarted();
-        return executorService.submit(() -> {
-            try {
-                NotifyClientSettings notifyClientSettings = getNotifyClientSettings(emailNotificationType, gatewayAccountEntity);
-                logger.info("Sending {} email, charge_external_id={}", emailNotificationType, charge.getExternalId());
-                SendEmailResponse response = notifyClientSettings.getClient()
-                        .sendEmail(notifyClientSettings.getTemplateId(), charge.getEmail(), personalisation, null);
-                return Optional.of(response.getNotificationId().toString());
-            } catch (NotificationClientException e) {
-                logger.error("Failed to send " + emailNotificationType + " email - charge_external_id=" + charge.getExternalId(), e);
-                metricRegistry.counter("notify-operations.failures").inc();
-                return Optional.empty();
-            } finally {
-                responseTimeStopwatch.stop();
-                metricRegistry.histogram("notify-operations.response_time").update(responseTimeStopwatch.elapsed(TimeUnit.MILLISECONDS));
-            }
-        });
+        NotifyTemplateSettings notifyTemplateSettings = getNotifyTemplateSettings(emailNotificationType, gatewayAccountEntity);
+        EmailNotificationSpoolEntity email = new EmailNotificationSpoolEntity(emailNotificationType,
+                charge.getExternalId(), gatewayAccountEntity.getId(), notifyTemplateSettings.isUseAccountApiKey(),
+                notifyTemplateSettings.getTemplateId(), charge.getEmail(), personalisation, ZonedDateTime.now(ZoneId.of("UTC")));
+        emailNotificationSpoolDao.persist(email);
+        logger.info("Spooled {} email, charge_external_id={}", emailNotificationType, charge.getExternalId());
+        return Optional.of(email);
     }
 
-    private NotifyClientSettings getNotifyClientSettings(EmailNotificationType emailNotificationType, GatewayAccountEntity gatewayAccountEntity) {
+    private NotifyTemplateSettings getNotifyTemplateSettings(EmailNotificationType emailNotificationType, GatewayAccountEntity gatewayAccountEntity) {
         // todo introduce type for notify settings instead of Map
         Map<String, String> notifySettings = gatewayAccountEntity.getNotifySettings();
         switch (emailNotificationType) {
             case REFUND_ISSUED:
-                return NotifyClientSettings.of(notifySettings, notifyClientFactory, "refund_issued_template_id", refundIssuedEmailTemplateId);
+                return NotifyTemplateSettings.of(notifySettings, "refund_issued_template_id", refundIssuedEmailTemplateId);
             case PAYMENT_CONFIRMED:
-                return NotifyClientSettings.of(notifySettings, notifyClientFactory, "template_id", confirmationEmailTemplateId);
+                return NotifyTemplateSettings.of(notifySettings, "template_id", confirmationEmailTemplateId);
         }
         return null;
     }
 
-    private static class NotifyClientSettings {
-        private NotificationClient client;
+    private static class NotifyTemplateSettings {
+        private boolean useAccountApiKey;
         private String templateId;
 
-        private NotifyClientSettings(NotificationClient client, String templateId) {
-            this.client = client;
+        private NotifyTemplateSettings(boolean useAccountApiKey, String templateId) {
+            this.useAccountApiKey = useAccountApiKey;
             this.templateId = templateId;
         }
 
-        public NotificationClient getClient() {
-            return client;
+        boolean isUseAccountApiKey() {
+            return useAccountApiKey;
         }
 
         String getTemplateId() {
             return templateId;
         }
 
-        public static NotifyClientSettings of(Map<String, String> notifySettings, NotifyClientFactory notifyClientFactory, String customTemplateId, String payTemplateId) {
+        public static NotifyTemplateSettings of(Map<String, String> notifySettings, String customTemplateId, String payTemplateId) {
             if (hasCustomTemplateAndApiKey(notifySettings, customTemplateId)) {
-                return new NotifyClientSettings(notifyClientFactory.getInstance(notifySettings.get("api_token")), notifySettings.get(customTemplateId));
+                return new NotifyTemplateSettings(true, notifySettings.get(customTemplateId));
             }
-            return new NotifyClientSettings(notifyClientFactory.getInstance(), payTemplateId);
+            return new NotifyTemplateSettings(false, payTemplateId);
         }
     }
     
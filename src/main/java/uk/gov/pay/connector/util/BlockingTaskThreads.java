@@ -0,0 +1,75 @@
+package uk.gov.pay.connector.util;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Thread factories for pools that run blocking tasks, in the configured {@link ExecutionMode}.
+ *
+ * <p>Virtual threads are looked up reflectively, as the connector is still built for a runtime without them. When
+ * they are asked for but the runtime cannot provide them, platform threads are used instead and a warning is
+ * logged.</p>
+ */
+public final class BlockingTaskThreads {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(BlockingTaskThreads.class);
+
+    private static final Optional<ThreadFactory> VIRTUAL_THREAD_FACTORY = lookUpVirtualThreadFactory();
+
+    private BlockingTaskThreads() {
+    }
+
+    public static boolean isVirtualThreadSupported() {
+        return VIRTUAL_THREAD_FACTORY.isPresent();
+    }
+
+    /**
+     * @return the mode that will actually be used when the given one is asked for
+     */
+    public static ExecutionMode effectiveMode(ExecutionMode executionMode) {
+        if (executionMode == ExecutionMode.VIRTUAL_THREADS && !isVirtualThreadSupported()) {
+            return ExecutionMode.PLATFORM_THREADS;
+        }
+        return executionMode;
+    }
+
+    /**
+     * @return the number of threads a pool of blocking tasks should have in the given mode. Virtual threads are cheap
+     * enough to be limited by how much concurrency the downstream can take rather than by memory.
+     */
+    public static int poolSize(ExecutionMode executionMode, int platformThreads, int virtualThreads) {
+        return effectiveMode(executionMode) == ExecutionMode.VIRTUAL_THREADS ? virtualThreads : platformThreads;
+    }
+
+    /**
+     * @param nameFormat a {@link String#format(String, Object...)} pattern for thread names, given the thread number
+     */
+    public static ThreadFactory threadFactory(ExecutionMode executionMode, String nameFormat) {
+        if (executionMode == ExecutionMode.VIRTUAL_THREADS && !isVirtualThreadSupported()) {
+            LOGGER.warn("Virtual threads are not supported by this runtime, using platform threads [threads={}]", nameFormat);
+        }
+        ThreadFactory backingThreadFactory = effectiveMode(executionMode) == ExecutionMode.VIRTUAL_THREADS
+                ? VIRTUAL_THREAD_FACTORY.get()
+                : Executors.defaultThreadFactory();
+        return new ThreadFactoryBuilder()
+                .setThreadFactory(backingThreadFactory)
+                .setNameFormat(nameFormat)
+                .build();
+    }
+
+    private static Optional<ThreadFactory> lookUpVirtualThreadFactory() {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Object threadFactory = Class.forName("java.lang.Thread$Builder").getMethod("factory").invoke(builder);
+            return Optional.of((ThreadFactory) threadFactory);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // not available, or only as a preview feature that has not been enabled
+            return Optional.empty();
+        }
+    }
+}
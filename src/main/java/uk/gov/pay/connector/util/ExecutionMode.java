@@ -0,0 +1,11 @@
+package uk.gov.pay.connector.util;
+
+/**
+ * The kind of thread that tasks which spend most of their time blocked on gateway, Notify or SQS calls are run on.
+ * {@code VIRTUAL_THREADS} only takes effect on a runtime that supports virtual threads; elsewhere the existing
+ * platform thread pools are used.
+ */
+public enum ExecutionMode {
+    PLATFORM_THREADS,
+    VIRTUAL_THREADS
+}
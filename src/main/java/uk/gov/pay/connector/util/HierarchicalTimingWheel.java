@@ -0,0 +1,132 @@
+package uk.gov.pay.connector.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps track of deadlines for a large number of keys and hands back the ones that have passed, in time proportional
+ * to the number of keys that are due rather than to the number being tracked.
+ *
+ * <p>Deadlines are kept in a stack of wheels of slots. The lowest wheel has one slot per tick; each slot of the next
+ * wheel up spans a whole revolution of the one below it. A deadline goes into the lowest wheel whose span reaches it,
+ * or into an overflow list beyond the top wheel, and is moved down a wheel when the slot it is in comes round. Keys
+ * are returned within one tick of their deadline, provided {@link #advance(long)} is called at least once a tick.</p>
+ *
+ * <p>Scheduling a key that is already scheduled replaces its deadline.</p>
+ */
+public class HierarchicalTimingWheel<T> {
+
+    private final long tickInMillis;
+    private final int slotsPerWheel;
+    private final long[] slotSpanInMillis;
+    private final List<List<Entry<T>>>[] wheels;
+    private final List<Entry<T>> overflow = new ArrayList<>();
+    private final Map<T, Entry<T>> entries = new HashMap<>();
+    private long currentTimeInMillis;
+
+    @SuppressWarnings("unchecked")
+    public HierarchicalTimingWheel(long tickInMillis, int slotsPerWheel, int numberOfWheels, long startTimeInMillis) {
+        if (tickInMillis <= 0 || slotsPerWheel < 2 || numberOfWheels < 1) {
+            throw new IllegalArgumentException("A timing wheel needs a positive tick, at least two slots and at least one wheel");
+        }
+        this.tickInMillis = tickInMillis;
+        this.slotsPerWheel = slotsPerWheel;
+        this.slotSpanInMillis = new long[numberOfWheels];
+        this.wheels = new List[numberOfWheels];
+        for (int level = 0; level < numberOfWheels; level++) {
+            slotSpanInMillis[level] = level == 0 ? tickInMillis : Math.multiplyExact(slotSpanInMillis[level - 1], slotsPerWheel);
+            wheels[level] = new ArrayList<>(slotsPerWheel);
+            for (int slot = 0; slot < slotsPerWheel; slot++) {
+                wheels[level].add(new ArrayList<>());
+            }
+        }
+        this.currentTimeInMillis = Math.floorDiv(startTimeInMillis, tickInMillis) * tickInMillis;
+    }
+
+    public synchronized void schedule(T key, long deadlineInMillis) {
+        Entry<T> entry = new Entry<>(key, deadlineInMillis);
+        entries.put(key, entry);
+        place(entry);
+    }
+
+    public synchronized void cancel(T key) {
+        entries.remove(key);
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Moves the wheel on to the given time.
+     *
+     * @return the keys whose deadlines have passed, which are no longer scheduled
+     */
+    public synchronized List<T> advance(long nowInMillis) {
+        List<T> due = new ArrayList<>();
+        while (currentTimeInMillis + tickInMillis <= nowInMillis) {
+            List<Entry<T>> slot = wheels[0].get(slotIndex(0, currentTimeInMillis));
+            for (Entry<T> entry : slot) {
+                if (isCurrent(entry)) {
+                    entries.remove(entry.key);
+                    due.add(entry.key);
+                }
+            }
+            slot.clear();
+
+            currentTimeInMillis += tickInMillis;
+            cascade();
+        }
+        return due;
+    }
+
+    private void cascade() {
+        int topLevel = wheels.length - 1;
+        if (currentTimeInMillis % (slotSpanInMillis[topLevel] * slotsPerWheel) == 0) {
+            replace(overflow);
+        }
+        for (int level = topLevel; level > 0; level--) {
+            if (currentTimeInMillis % slotSpanInMillis[level] == 0) {
+                replace(wheels[level].get(slotIndex(level, currentTimeInMillis)));
+            }
+        }
+    }
+
+    private void replace(List<Entry<T>> slot) {
+        List<Entry<T>> toPlace = new ArrayList<>(slot);
+        slot.clear();
+        toPlace.stream().filter(this::isCurrent).forEach(this::place);
+    }
+
+    private void place(Entry<T> entry) {
+        long delay = entry.deadlineInMillis - currentTimeInMillis;
+        for (int level = 0; level < wheels.length; level++) {
+            if (delay < slotSpanInMillis[level] * slotsPerWheel) {
+                long slotTime = Math.max(entry.deadlineInMillis, currentTimeInMillis);
+                wheels[level].get(slotIndex(level, slotTime)).add(entry);
+                return;
+            }
+        }
+        overflow.add(entry);
+    }
+
+    private int slotIndex(int level, long timeInMillis) {
+        return (int) Math.floorMod(Math.floorDiv(timeInMillis, slotSpanInMillis[level]), (long) slotsPerWheel);
+    }
+
+    private boolean isCurrent(Entry<T> entry) {
+        return entries.get(entry.key) == entry;
+    }
+
+    private static class Entry<T> {
+        private final T key;
+        private final long deadlineInMillis;
+
+        private Entry(T key, long deadlineInMillis) {
+            this.key = key;
+            this.deadlineInMillis = deadlineInMillis;
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package uk.gov.pay.connector.webhook.dao;
+
+import com.google.inject.Inject;
+import com.google.inject.Provider;
+import com.google.inject.persist.Transactional;
+import uk.gov.pay.connector.common.dao.JpaDao;
+import uk.gov.pay.connector.webhook.model.domain.NotificationInboxEntity;
+
+import javax.persistence.EntityManager;
+import java.time.ZonedDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Transactional
+public class NotificationInboxDao extends JpaDao<NotificationInboxEntity> {
+
+    /**
+     * Claims due notifications by pushing their next attempt date out by the lease, skipping rows locked by another
+     * node. Only the oldest notification for each ordering key can be claimed, and it stays in the inbox while it is
+     * being processed, so notifications about the same transaction are never processed concurrently or out of order,
+     * even across nodes. If the claiming node dies, the notification becomes due again once the lease runs out.
+     */
+    private static final String CLAIM_DUE_NOTIFICATIONS =
+            "UPDATE notification_inbox SET next_attempt_date = now() + (?1 * interval '1 millisecond') " +
+            "WHERE id IN (" +
+            "  SELECT n.id FROM notification_inbox n " +
+            "  WHERE n.next_attempt_date <= now() " +
+            "  AND NOT EXISTS (" +
+            "    SELECT 1 FROM notification_inbox earlier " +
+            "    WHERE earlier.ordering_key = n.ordering_key AND earlier.id < n.id" +
+            "  ) " +
+            "  ORDER BY n.next_attempt_date " +
+            "  LIMIT ?2 " +
+            "  FOR UPDATE SKIP LOCKED" +
+            ") " +
+            "RETURNING *";
+
+    @Inject
+    public NotificationInboxDao(Provider<EntityManager> entityManager) {
+        super(entityManager);
+    }
+
+    @SuppressWarnings("unchecked")
+    public List<NotificationInboxEntity> claimDue(int batchSize, long leaseInMilliseconds) {
+        return entityManager.get()
+                .createNativeQuery(CLAIM_DUE_NOTIFICATIONS, NotificationInboxEntity.class)
+                .setParameter(1, leaseInMilliseconds)
+                .setParameter(2, batchSize)
+                .getResultList();
+    }
+
+    public void reschedule(Long id, int attempts, ZonedDateTime nextAttemptDate) {
+        entityManager.get()
+                .createQuery("UPDATE NotificationInboxEntity n" +
+                        " SET n.attempts = :attempts, n.nextAttemptDate = :nextAttemptDate" +
+                        " WHERE n.id = :id")
+                .setParameter("attempts", attempts)
+                .setParameter("nextAttemptDate", nextAttemptDate)
+                .setParameter("id", id)
+                .executeUpdate();
+    }
+
+    public void delete(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        entityManager.get()
+                .createQuery("DELETE FROM NotificationInboxEntity n WHERE n.id IN :ids")
+                .setParameter("ids", ids)
+                .executeUpdate();
+    }
+
+    public long count() {
+        return entityManager.get()
+                .createQuery("SELECT COUNT(n) FROM NotificationInboxEntity n", Long.class)
+                .getSingleResult();
+    }
+}
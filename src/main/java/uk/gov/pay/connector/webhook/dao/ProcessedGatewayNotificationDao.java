@@ -0,0 +1,52 @@
+package uk.gov.pay.connector.webhook.dao;
+
+import com.google.inject.Inject;
+import com.google.inject.Provider;
+import com.google.inject.persist.Transactional;
+import uk.gov.pay.connector.common.dao.JpaDao;
+import uk.gov.pay.connector.webhook.model.domain.ProcessedGatewayNotificationEntity;
+
+import javax.persistence.EntityManager;
+
+@Transactional
+public class ProcessedGatewayNotificationDao extends JpaDao<ProcessedGatewayNotificationEntity> {
+
+    private static final String RECORD_PROCESSED =
+            "INSERT INTO processed_gateway_notification (notification_key, processed_date) VALUES (?1, now()) " +
+            "ON CONFLICT (notification_key) DO UPDATE SET processed_date = EXCLUDED.processed_date";
+
+    private static final String FIND_PROCESSED_WITHIN =
+            "SELECT 1 FROM processed_gateway_notification " +
+            "WHERE notification_key = ?1 AND processed_date > now() - (?2 * interval '1 second')";
+
+    private static final String DELETE_EXPIRED =
+            "DELETE FROM processed_gateway_notification WHERE processed_date <= now() - (?1 * interval '1 second')";
+
+    @Inject
+    public ProcessedGatewayNotificationDao(Provider<EntityManager> entityManager) {
+        super(entityManager);
+    }
+
+    public void recordProcessed(String notificationKey) {
+        entityManager.get()
+                .createNativeQuery(RECORD_PROCESSED)
+                .setParameter(1, notificationKey)
+                .executeUpdate();
+    }
+
+    public boolean isProcessedWithin(String notificationKey, long windowInSeconds) {
+        return !entityManager.get()
+                .createNativeQuery(FIND_PROCESSED_WITHIN)
+                .setParameter(1, notificationKey)
+                .setParameter(2, windowInSeconds)
+                .getResultList()
+                .isEmpty();
+    }
+
+    public int deleteExpired(long windowInSeconds) {
+        return entityManager.get()
+                .createNativeQuery(DELETE_EXPIRED)
+                .setParameter(1, windowInSeconds)
+                .executeUpdate();
+    }
+}
@@ -0,0 +1,100 @@
+package uk.gov.pay.connector.webhook.model.domain;
+
+import uk.gov.pay.connector.common.model.domain.UTCDateTimeConverter;
+import uk.gov.pay.connector.gateway.PaymentGatewayName;
+
+import javax.persistence.Column;
+import javax.persistence.Convert;
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.SequenceGenerator;
+import javax.persistence.Table;
+import java.time.ZonedDateTime;
+
+/**
+ * A payment provider notification that has been authenticated and acknowledged but not yet processed. Rows are
+ * deleted by {@link uk.gov.pay.connector.webhook.service.NotificationInboxProcess} once processed or given up on.
+ *
+ * <p>Notifications with the same ordering key, normally the provider's transaction ID, are processed one at a time
+ * in the order they were received.</p>
+ */
+@Entity
+@Table(name = "notification_inbox")
+@SequenceGenerator(name = "notification_inbox_id_seq",
+        sequenceName = "notification_inbox_id_seq", allocationSize = 1)
+public class NotificationInboxEntity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "notification_inbox_id_seq")
+    private Long id;
+
+    @Column(name = "payment_provider")
+    @Enumerated(EnumType.STRING)
+    private PaymentGatewayName paymentProvider;
+
+    @Column(name = "ordering_key")
+    private String orderingKey;
+
+    @Column(name = "payload")
+    private String payload;
+
+    @Column(name = "attempts")
+    private int attempts;
+
+    @Convert(converter = UTCDateTimeConverter.class)
+    @Column(name = "next_attempt_date")
+    private ZonedDateTime nextAttemptDate;
+
+    @Convert(converter = UTCDateTimeConverter.class)
+    @Column(name = "created_date")
+    private ZonedDateTime createdDate;
+
+    protected NotificationInboxEntity() {
+    }
+
+    public NotificationInboxEntity(PaymentGatewayName paymentProvider, String orderingKey, String payload,
+                                   ZonedDateTime now) {
+        this.paymentProvider = paymentProvider;
+        this.orderingKey = orderingKey;
+        this.payload = payload;
+        this.attempts = 0;
+        this.nextAttemptDate = now;
+        this.createdDate = now;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public PaymentGatewayName getPaymentProvider() {
+        return paymentProvider;
+    }
+
+    public String getOrderingKey() {
+        return orderingKey;
+    }
+
+    public String getPayload() {
+        return payload;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public ZonedDateTime getNextAttemptDate() {
+        return nextAttemptDate;
+    }
+
+    public ZonedDateTime getCreatedDate() {
+        return createdDate;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+}
@@ -0,0 +1,38 @@
+package uk.gov.pay.connector.webhook.model.domain;
+
+import uk.gov.pay.connector.common.model.domain.UTCDateTimeConverter;
+
+import javax.persistence.Column;
+import javax.persistence.Convert;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import java.time.ZonedDateTime;
+
+/**
+ * A payment provider notification that has been processed recently, shared between nodes so that a repeat of it can
+ * be recognised wherever it arrives. See {@link uk.gov.pay.connector.webhook.service.NotificationDeduplicator}.
+ */
+@Entity
+@Table(name = "processed_gateway_notification")
+public class ProcessedGatewayNotificationEntity {
+
+    @Id
+    @Column(name = "notification_key")
+    private String notificationKey;
+
+    @Convert(converter = UTCDateTimeConverter.class)
+    @Column(name = "processed_date")
+    private ZonedDateTime processedDate;
+
+    protected ProcessedGatewayNotificationEntity() {
+    }
+
+    public String getNotificationKey() {
+        return notificationKey;
+    }
+
+    public ZonedDateTime getProcessedDate() {
+        return processedDate;
+    }
+}
@@ -6,6 +6,7 @@ import uk.gov.pay.connector.gateway.epdq.EpdqNotificationService;
 import uk.gov.pay.connector.gateway.smartpay.SmartpayNotificationService;
 import uk.gov.pay.connector.gateway.stripe.StripeNotificationService;
 import uk.gov.pay.connector.gateway.worldpay.WorldpayNotificationService;
+import uk.gov.pay.connector.webhook.service.NotificationInboxService;
 
 import javax.annotation.security.PermitAll;
 import javax.inject.Inject;
@@ -31,16 +32,19 @@ public class NotificationResource {
     private final EpdqNotificationService epdqNotificationService;
     private final SmartpayNotificationService smartpayNotificationService;
     private final StripeNotificationService stripeNotificationService;
+    private final NotificationInboxService notificationInboxService;
 
     @Inject
     public NotificationResource(WorldpayNotificationService worldpayNotificationService,
                                 EpdqNotificationService epdqNotificationService,
                                 SmartpayNotificationService smartpayNotificationService,
-                                StripeNotificationService stripeNotificationService) {
+                                StripeNotificationService stripeNotificationService,
+                                NotificationInboxService notificationInboxService) {
         this.worldpayNotificationService = worldpayNotificationService;
         this.smartpayNotificationService = smartpayNotificationService;
         this.epdqNotificationService = epdqNotificationService;
         this.stripeNotificationService = stripeNotificationService;
+        this.notificationInboxService = notificationInboxService;
     }
 
     @POST
@@ -48,7 +52,11 @@ public class NotificationResource {
     @PermitAll
     @Path("/v1/api/notifications/smartpay")
     public Response authoriseSmartpayNotifications(String notification) {
-        smartpayNotificationService.handleNotificationFor(notification);
+        if (notificationInboxService.isEnabled()) {
+            notificationInboxService.addSmartpayNotifications(notification);
+        } else {
+            smartpayNotificationService.handleNotificationFor(notification);
+        }
         String response = "[accepted]";
         logger.info("Responding to notification from provider=smartpay with 200 {}", response);
         return Response.ok(response).build();
@@ -66,7 +74,16 @@ public class NotificationResource {
     @Path("/v1/api/notifications/worldpay")
     @Produces({TEXT_XML, APPLICATION_JSON})
     public Response authoriseWorldpayNotifications(String notification, @HeaderParam("X-Forwarded-For") String ipAddress) {
-        if (!worldpayNotificationService.handleNotificationFor(ipAddress, notification)) {
+        boolean accepted;
+        if (notificationInboxService.isEnabled()) {
+            accepted = worldpayNotificationService.isNotificationFromWorldpay(ipAddress);
+            if (accepted) {
+                notificationInboxService.addWorldpayNotification(notification);
+            }
+        } else {
+            accepted = worldpayNotificationService.handleNotificationFor(ipAddress, notification);
+        }
+        if (!accepted) {
             logger.info(String.format("Rejected notification for ip '%s'", ipAddress), kv("notification_source", ipAddress));
             return forbiddenErrorResponse();
         }
@@ -80,7 +97,15 @@ public class NotificationResource {
     @Path("/v1/api/notifications/epdq")
     @Produces({TEXT_XML, APPLICATION_JSON})
     public Response authoriseEpdqNotifications(String notification) {
-        epdqNotificationService.handleNotificationFor(notification);
+        if (notificationInboxService.isEnabled()) {
+            if (!epdqNotificationService.isVerifiedNotification(notification)) {
+                logger.info("Rejected notification from provider={}", "epdq");
+                return forbiddenErrorResponse();
+            }
+            notificationInboxService.addEpdqNotification(notification);
+        } else {
+            epdqNotificationService.handleNotificationFor(notification);
+        }
         String response = "[OK]";
         logger.info("Responding to notification from provider={} with 200 {}", "epdq", response);
         return Response.ok(response).build();
@@ -91,7 +116,12 @@ public class NotificationResource {
     @Path("/v1/api/notifications/stripe")
     @Produces({TEXT_XML, APPLICATION_JSON})
     public Response authoriseStripeNotifications(String notification, @HeaderParam("Stripe-Signature") String signatureHeader) {
-        stripeNotificationService.handleNotificationFor(notification, signatureHeader);
+        if (notificationInboxService.isEnabled()) {
+            stripeNotificationService.verifyNotificationSignature(notification, signatureHeader);
+            notificationInboxService.addStripeNotification(notification);
+        } else {
+            stripeNotificationService.handleNotificationFor(notification, signatureHeader);
+        }
         String response = "[OK]";
         logger.info("Responding to notification from provider=Stripe with 200 {}", response);
         return Response.ok(response).build();
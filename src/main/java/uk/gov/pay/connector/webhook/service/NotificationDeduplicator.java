@@ -0,0 +1,140 @@
+package uk.gov.pay.connector.webhook.service;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.dropwizard.lifecycle.Managed;
+import io.dropwizard.setup.Environment;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.gov.pay.connector.app.ConnectorConfiguration;
+import uk.gov.pay.connector.app.config.NotificationDeduplicationConfig;
+import uk.gov.pay.connector.webhook.dao.ProcessedGatewayNotificationDao;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Remembers the payment provider notifications that have been processed recently, so that the repeats providers send
+ * can be acknowledged without looking up the charge and attempting a state transition again.
+ *
+ * <p>Callers must only report a notification as processed once the transaction it was processed in has committed;
+ * otherwise a notification whose changes were rolled back would be ignored when the provider sends it again.</p>
+ *
+ * <p>Each node keeps the notifications it has processed in a bounded in-memory cache. In shared mode they are also
+ * written to the database, so a repeat is recognised whichever node it arrives at. Shared mode is only an
+ * optimisation: if the database cannot be reached the notification is simply processed again.</p>
+ */
+@Singleton
+public class NotificationDeduplicator implements Managed {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(NotificationDeduplicator.class);
+
+    private final ProcessedGatewayNotificationDao processedGatewayNotificationDao;
+    private final ScheduledExecutorService pruningExecutorService;
+    private final Cache<NotificationKey, Boolean> processedNotifications;
+    private final Meter duplicates;
+    private final boolean enabled;
+    private final boolean shared;
+    private final long windowInSeconds;
+    private final long pruneIntervalInSeconds;
+
+    @Inject
+    public NotificationDeduplicator(ProcessedGatewayNotificationDao processedGatewayNotificationDao,
+                                    ConnectorConfiguration configuration,
+                                    Environment environment) {
+        this(processedGatewayNotificationDao, configuration.getNotificationDeduplicationConfig(),
+                environment.lifecycle().scheduledExecutorService("notification-deduplication-pruner").threads(1).build(),
+                environment.metrics(), Ticker.systemTicker());
+    }
+
+    NotificationDeduplicator(ProcessedGatewayNotificationDao processedGatewayNotificationDao,
+                             NotificationDeduplicationConfig config,
+                             ScheduledExecutorService pruningExecutorService,
+                             MetricRegistry metricRegistry,
+                             Ticker ticker) {
+        this.processedGatewayNotificationDao = processedGatewayNotificationDao;
+        this.pruningExecutorService = pruningExecutorService;
+        this.processedNotifications = CacheBuilder.newBuilder()
+                .expireAfterWrite(config.getWindowInSeconds(), TimeUnit.SECONDS)
+                .maximumSize(config.getMaximumSize())
+                .ticker(ticker)
+                .build();
+        this.duplicates = metricRegistry.meter("notification-deduplication.duplicates");
+        this.enabled = config.isEnabled();
+        this.shared = config.isShared();
+        this.windowInSeconds = config.getWindowInSeconds();
+        this.pruneIntervalInSeconds = config.getPruneIntervalInSeconds();
+    }
+
+    @Override
+    public void start() {
+        if (enabled && shared) {
+            pruningExecutorService.scheduleWithFixedDelay(this::pruneSharedStore, pruneIntervalInSeconds,
+                    pruneIntervalInSeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    @Override
+    public void stop() {
+        // the pruning executor is shut down by the Dropwizard lifecycle
+    }
+
+    /**
+     * @return true if a notification with the same key has been processed within the window
+     */
+    public boolean isDuplicate(NotificationKey key) {
+        if (!enabled) {
+            return false;
+        }
+        if (processedNotifications.getIfPresent(key) != null) {
+            duplicates.mark();
+            return true;
+        }
+        if (shared && isProcessedOnAnotherNode(key)) {
+            processedNotifications.put(key, Boolean.TRUE);
+            duplicates.mark();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Records that a notification has been processed. Must be called after its transaction has committed.
+     */
+    public void processed(NotificationKey key) {
+        if (!enabled) {
+            return;
+        }
+        processedNotifications.put(key, Boolean.TRUE);
+        if (shared) {
+            try {
+                processedGatewayNotificationDao.recordProcessed(key.digest());
+            } catch (Exception e) {
+                LOGGER.warn("Could not record processed notification {} in the shared store: {}", key, e.getMessage());
+            }
+        }
+    }
+
+    void pruneSharedStore() {
+        try {
+            int deleted = processedGatewayNotificationDao.deleteExpired(windowInSeconds);
+            LOGGER.debug("Deleted {} expired processed notifications", deleted);
+        } catch (Exception e) {
+            LOGGER.warn("Could not delete expired processed notifications: {}", e.getMessage());
+        }
+    }
+
+    private boolean isProcessedOnAnotherNode(NotificationKey key) {
+        try {
+            return processedGatewayNotificationDao.isProcessedWithin(key.digest(), windowInSeconds);
+        } catch (Exception e) {
+            LOGGER.warn("Could not check the shared store for notification {}: {}", key, e.getMessage());
+            return false;
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package uk.gov.pay.connector.webhook.service;
+
+import com.codahale.metrics.CachedGauge;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.base.Stopwatch;
+import io.dropwizard.lifecycle.Managed;
+import io.dropwizard.setup.Environment;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.gov.pay.connector.app.ConnectorConfiguration;
+import uk.gov.pay.connector.app.config.NotificationInboxConfig;
+import uk.gov.pay.connector.gateway.epdq.EpdqNotificationService;
+import uk.gov.pay.connector.gateway.smartpay.SmartpayNotificationService;
+import uk.gov.pay.connector.gateway.stripe.StripeNotificationService;
+import uk.gov.pay.connector.gateway.worldpay.WorldpayNotificationService;
+import uk.gov.pay.connector.util.BlockingTaskThreads;
+import uk.gov.pay.connector.webhook.dao.NotificationInboxDao;
+import uk.gov.pay.connector.webhook.model.domain.NotificationInboxEntity;
+
+import javax.inject.Inject;
+import java.time.Clock;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Processes the notifications added by {@link NotificationInboxService}. Due notifications are claimed in batches
+ * under a lease; a batch never holds two notifications with the same ordering key, so the whole batch is processed
+ * concurrently without breaking the order of notifications for a transaction. A notification is deleted once it has
+ * been processed. If processing fails, or a Worldpay notification arrives before the payment it is about, the
+ * notification is rescheduled with exponential backoff until it runs out of attempts.
+ */
+public class NotificationInboxProcess implements Managed {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(NotificationInboxProcess.class);
+
+    private static final long INBOX_SIZE_CACHE_DURATION_IN_SECONDS = 10;
+
+    private enum Outcome {PROCESSED, RETRY}
+
+    private final NotificationInboxDao notificationInboxDao;
+    private final WorldpayNotificationService worldpayNotificationService;
+    private final EpdqNotificationService epdqNotificationService;
+    private final SmartpayNotificationService smartpayNotificationService;
+    private final StripeNotificationService stripeNotificationService;
+    private final ScheduledExecutorService pollingExecutorService;
+    private final ExecutorService workerExecutorService;
+    private final MetricRegistry metricRegistry;
+    private final Clock clock;
+    private final int batchSize;
+    private final long pollIntervalInMilliseconds;
+    private final long leaseInMilliseconds;
+    private final int maximumAttempts;
+    private final long initialRetryDelayInSeconds;
+    private final long maximumRetryDelayInSeconds;
+
+    @Inject
+    public NotificationInboxProcess(NotificationInboxDao notificationInboxDao,
+                                    WorldpayNotificationService worldpayNotificationService,
+                                    EpdqNotificationService epdqNotificationService,
+                                    SmartpayNotificationService smartpayNotificationService,
+                                    StripeNotificationService stripeNotificationService,
+                                    ConnectorConfiguration configuration,
+                                    Environment environment) {
+        this(notificationInboxDao, worldpayNotificationService, epdqNotificationService, smartpayNotificationService,
+                stripeNotificationService, configuration.getNotificationInboxConfig(),
+                environment.lifecycle().scheduledExecutorService("notification-inbox-poller").threads(1).build(),
+                environment.lifecycle()
+                        .executorService("notification-inbox-%d")
+                        .minThreads(configuration.getNotificationInboxConfig().getWorkerThreads())
+                        .maxThreads(configuration.getNotificationInboxConfig().getWorkerThreads())
+                        .threadFactory(BlockingTaskThreads.threadFactory(configuration.getExecutorServiceConfig().getExecutionMode(),
+                                "notification-inbox-%d"))
+                        .build(),
+                environment.metrics(), Clock.systemUTC());
+        environment.metrics().register("notification-inbox.size",
+                new CachedGauge<Long>(INBOX_SIZE_CACHE_DURATION_IN_SECONDS, TimeUnit.SECONDS) {
+                    @Override
+                    protected Long loadValue() {
+                        return notificationInboxDao.count();
+                    }
+                });
+    }
+
+    NotificationInboxProcess(NotificationInboxDao notificationInboxDao,
+                             WorldpayNotificationService worldpayNotificationService,
+                             EpdqNotificationService epdqNotificationService,
+                             SmartpayNotificationService smartpayNotificationService,
+                             StripeNotificationService stripeNotificationService,
+                             NotificationInboxConfig notificationInboxConfig,
+                             ScheduledExecutorService pollingExecutorService,
+                             ExecutorService workerExecutorService,
+                             MetricRegistry metricRegistry,
+                             Clock clock) {
+        this.notificationInboxDao = notificationInboxDao;
+        this.worldpayNotificationService = worldpayNotificationService;
+        this.epdqNotificationService = epdqNotificationService;
+        this.smartpayNotificationService = smartpayNotificationService;
+        this.stripeNotificationService = stripeNotificationService;
+        this.pollingExecutorService = pollingExecutorService;
+        this.workerExecutorService = workerExecutorService;
+        this.metricRegistry = metricRegistry;
+        this.clock = clock;
+        this.batchSize = notificationInboxConfig.getBatchSize();
+        this.pollIntervalInMilliseconds = notificationInboxConfig.getPollIntervalInMilliseconds();
+        this.leaseInMilliseconds = TimeUnit.SECONDS.toMillis(notificationInboxConfig.getLeaseInSeconds());
+        this.maximumAttempts = notificationInboxConfig.getMaximumAttempts();
+        this.initialRetryDelayInSeconds = notificationInboxConfig.getInitialRetryDelayInSeconds();
+        this.maximumRetryDelayInSeconds = notificationInboxConfig.getMaximumRetryDelayInSeconds();
+    }
+
+    @Override
+    public void start() {
+        pollingExecutorService.scheduleWithFixedDelay(this::processDueNotifications, pollIntervalInMilliseconds,
+                pollIntervalInMilliseconds, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void stop() {
+        // notifications being processed when the node stops are processed again by another node once their lease runs out
+        pollingExecutorService.shutdown();
+        workerExecutorService.shutdown();
+    }
+
+    void processDueNotifications() {
+        try {
+            List<NotificationInboxEntity> claimed;
+            do {
+                claimed = notificationInboxDao.claimDue(batchSize, leaseInMilliseconds);
+                process(claimed);
+            } while (claimed.size() == batchSize && !pollingExecutorService.isShutdown());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            // claimed notifications are processed again once their lease runs out
+            LOGGER.error("Failed to process notification inbox [message={}]", e.getMessage());
+        }
+    }
+
+    private void process(List<NotificationInboxEntity> notifications) throws InterruptedException {
+        List<Future<Outcome>> outcomes = new ArrayList<>(notifications.size());
+        for (NotificationInboxEntity notification : notifications) {
+            outcomes.add(workerExecutorService.submit(() -> process(notification)));
+        }
+
+        List<Long> notificationIdsToDelete = new ArrayList<>();
+        for (int i = 0; i < notifications.size(); i++) {
+            NotificationInboxEntity notification = notifications.get(i);
+            Outcome outcome;
+            try {
+                outcome = outcomes.get(i).get();
+            } catch (ExecutionException e) {
+                LOGGER.error("Failed to process {} notification [id={}, ordering_key={}]",
+                        notification.getPaymentProvider().getName(), notification.getId(),
+                        notification.getOrderingKey(), e.getCause());
+                metricRegistry.counter("notification-inbox.failures").inc();
+                outcome = Outcome.RETRY;
+            }
+
+            int attempts = notification.getAttempts() + 1;
+            if (outcome == Outcome.PROCESSED) {
+                notificationIdsToDelete.add(notification.getId());
+            } else if (attempts < maximumAttempts) {
+                notificationInboxDao.reschedule(notification.getId(), attempts,
+                        ZonedDateTime.now(clock).plusSeconds(retryDelayInSeconds(attempts)));
+            } else {
+                LOGGER.error("Giving up on {} notification after {} attempts [id={}, ordering_key={}]",
+                        notification.getPaymentProvider().getName(), attempts, notification.getId(),
+                        notification.getOrderingKey());
+                metricRegistry.counter("notification-inbox.abandoned").inc();
+                notificationIdsToDelete.add(notification.getId());
+            }
+        }
+
+        notificationInboxDao.delete(notificationIdsToDelete);
+    }
+
+    private Outcome process(NotificationInboxEntity notification) {
+        Stopwatch processingTimeStopwatch = Stopwatch.createStarted();
+        try {
+            switch (notification.getPaymentProvider()) {
+                case WORLDPAY:
+                    return worldpayNotificationService.handleNotification(notification.getPayload())
+                            ? Outcome.PROCESSED : Outcome.RETRY;
+                case EPDQ:
+                    epdqNotificationService.handleNotificationFor(notification.getPayload());
+                    return Outcome.PROCESSED;
+                case SMARTPAY:
+                    smartpayNotificationService.handleNotificationFor(notification.getPayload());
+                    return Outcome.PROCESSED;
+                case STRIPE:
+                    stripeNotificationService.handleNotification(notification.getPayload());
+                    return Outcome.PROCESSED;
+                default:
+                    throw new IllegalArgumentException("Unsupported payment provider " + notification.getPaymentProvider());
+            }
+        } finally {
+            processingTimeStopwatch.stop();
+            metricRegistry.histogram("notification-inbox.processing_time")
+                    .update(processingTimeStopwatch.elapsed(TimeUnit.MILLISECONDS));
+        }
+    }
+
+    private long retryDelayInSeconds(int attempts) {
+        long delay = initialRetryDelayInSeconds << Math.min(attempts - 1, 30);
+        return Math.min(delay, maximumRetryDelayInSeconds);
+    }
+}
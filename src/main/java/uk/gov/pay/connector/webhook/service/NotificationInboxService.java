@@ -0,0 +1,121 @@
+package uk.gov.pay.connector.webhook.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.inject.persist.Transactional;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.gov.pay.connector.app.ConnectorConfiguration;
+import uk.gov.pay.connector.gateway.PaymentGatewayName;
+import uk.gov.pay.connector.gateway.epdq.EpdqNotification;
+import uk.gov.pay.connector.gateway.epdq.EpdqParseException;
+import uk.gov.pay.connector.gateway.util.XMLUnmarshaller;
+import uk.gov.pay.connector.gateway.util.XMLUnmarshallerException;
+import uk.gov.pay.connector.gateway.worldpay.WorldpayNotification;
+import uk.gov.pay.connector.webhook.dao.NotificationInboxDao;
+import uk.gov.pay.connector.webhook.model.domain.NotificationInboxEntity;
+
+import javax.inject.Inject;
+import java.io.IOException;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+
+import static org.apache.commons.lang3.StringUtils.isBlank;
+import static uk.gov.pay.connector.gateway.PaymentGatewayName.EPDQ;
+import static uk.gov.pay.connector.gateway.PaymentGatewayName.SMARTPAY;
+import static uk.gov.pay.connector.gateway.PaymentGatewayName.STRIPE;
+import static uk.gov.pay.connector.gateway.PaymentGatewayName.WORLDPAY;
+
+/**
+ * Writes authenticated notifications to the inbox so that they can be acknowledged straight away and processed by
+ * {@link NotificationInboxProcess}. Each notification is given the provider's transaction ID as its ordering key
+ * when it can be read without touching the database; notifications that cannot be read are still added, without a
+ * key, so that they are logged and dropped by the usual processing.
+ */
+public class NotificationInboxService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(NotificationInboxService.class);
+
+    private final NotificationInboxDao notificationInboxDao;
+    private final ObjectMapper objectMapper;
+    private final boolean enabled;
+
+    @Inject
+    public NotificationInboxService(NotificationInboxDao notificationInboxDao, ObjectMapper objectMapper,
+                                    ConnectorConfiguration configuration) {
+        this.notificationInboxDao = notificationInboxDao;
+        this.objectMapper = objectMapper;
+        this.enabled = configuration.getNotificationInboxConfig().isEnabled();
+    }
+
+    /**
+     * @return whether notifications go through the inbox rather than being processed during the request
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void addWorldpayNotification(String payload) {
+        String transactionId = null;
+        try {
+            transactionId = XMLUnmarshaller.unmarshall(payload, WorldpayNotification.class).getTransactionId();
+        } catch (XMLUnmarshallerException e) {
+            LOGGER.warn("Could not read transaction ID from {} notification: {}", WORLDPAY.getName(), e.getMessage());
+        }
+        add(WORLDPAY, transactionId, payload);
+    }
+
+    public void addEpdqNotification(String payload) {
+        String transactionId = null;
+        try {
+            transactionId = new EpdqNotification(payload).getTransactionId();
+        } catch (EpdqParseException e) {
+            LOGGER.warn("Could not read transaction ID from {} notification: {}", EPDQ.getName(), e.getMessage());
+        }
+        add(EPDQ, transactionId, payload);
+    }
+
+    public void addStripeNotification(String payload) {
+        String objectId = null;
+        try {
+            objectId = objectMapper.readTree(payload).path("data").path("object").path("id").textValue();
+        } catch (IOException e) {
+            LOGGER.warn("Could not read object ID from {} notification: {}", STRIPE.getName(), e.getMessage());
+        }
+        add(STRIPE, objectId, payload);
+    }
+
+    /**
+     * Smartpay sends several notifications, possibly for different charges, in one request. They are added as
+     * separate notifications so that each is ordered with the other notifications for its own charge.
+     */
+    @Transactional
+    public void addSmartpayNotifications(String payload) {
+        JsonNode notificationItems;
+        try {
+            notificationItems = objectMapper.readTree(payload).path("notificationItems");
+        } catch (IOException e) {
+            LOGGER.warn("Could not read notification items from {} notification: {}", SMARTPAY.getName(), e.getMessage());
+            add(SMARTPAY, null, payload);
+            return;
+        }
+
+        for (JsonNode notificationItem : notificationItems) {
+            String originalReference = notificationItem.path("NotificationRequestItem").path("originalReference").textValue();
+            ObjectNode singleNotification = objectMapper.createObjectNode();
+            singleNotification.putArray("notificationItems").add(notificationItem);
+            try {
+                add(SMARTPAY, originalReference, objectMapper.writeValueAsString(singleNotification));
+            } catch (JsonProcessingException e) {
+                throw new IllegalStateException("Could not write " + SMARTPAY.getName() + " notification item", e);
+            }
+        }
+    }
+
+    private void add(PaymentGatewayName paymentProvider, String orderingKey, String payload) {
+        notificationInboxDao.persist(new NotificationInboxEntity(paymentProvider, isBlank(orderingKey) ? null : orderingKey,
+                payload, ZonedDateTime.now(ZoneId.of("UTC"))));
+    }
+}
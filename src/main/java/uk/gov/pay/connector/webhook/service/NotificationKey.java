@@ -0,0 +1,76 @@
+package uk.gov.pay.connector.webhook.service;
+
+import com.google.common.hash.Hashing;
+import uk.gov.pay.connector.gateway.PaymentGatewayName;
+
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.util.Objects;
+import java.util.Optional;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Identifies a payment provider notification for {@link NotificationDeduplicator}. As well as the transaction ID,
+ * status and event date, the key includes the notification's own reference (the refund reference, for example), so
+ * that notifications about two refunds of the same payment are not mistaken for each other.
+ */
+public class NotificationKey {
+
+    private final PaymentGatewayName paymentProvider;
+    private final String transactionId;
+    private final String reference;
+    private final String status;
+    private final Instant eventDate;
+
+    private NotificationKey(PaymentGatewayName paymentProvider, String transactionId, String reference, String status,
+                            Instant eventDate) {
+        this.paymentProvider = paymentProvider;
+        this.transactionId = transactionId;
+        this.reference = reference;
+        this.status = status;
+        this.eventDate = eventDate;
+    }
+
+    public static NotificationKey of(PaymentGatewayName paymentProvider, String transactionId, String reference,
+                                     String status, ZonedDateTime eventDate) {
+        return new NotificationKey(paymentProvider, transactionId, reference, status,
+                Optional.ofNullable(eventDate).map(ZonedDateTime::toInstant).orElse(null));
+    }
+
+    /**
+     * @return a SHA-256 digest of the key, used to share it between nodes
+     */
+    String digest() {
+        return Hashing.sha256().hashString(String.join("\n", paymentProvider.getName(), Objects.toString(transactionId),
+                Objects.toString(reference), Objects.toString(status), Objects.toString(eventDate)), UTF_8).toString();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        NotificationKey that = (NotificationKey) o;
+        return paymentProvider == that.paymentProvider &&
+                Objects.equals(transactionId, that.transactionId) &&
+                Objects.equals(reference, that.reference) &&
+                Objects.equals(status, that.status) &&
+                Objects.equals(eventDate, that.eventDate);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(paymentProvider, transactionId, reference, status, eventDate);
+    }
+
+    @Override
+    public String toString() {
+        return "NotificationKey{" +
+                "paymentProvider=" + paymentProvider +
+                ", transactionId='" + transactionId + '\'' +
+                ", reference='" + reference + '\'' +
+                ", status='" + status + '\'' +
+                ", eventDate=" + eventDate +
+                '}';
+    }
+}
@@ -0,0 +1,142 @@
+package uk.gov.pay.connector.workpartition.dao;
+
+import com.google.inject.Inject;
+import com.google.inject.Provider;
+import com.google.inject.persist.Transactional;
+import org.eclipse.persistence.config.HintValues;
+import org.eclipse.persistence.config.QueryHints;
+import uk.gov.pay.connector.common.dao.JpaDao;
+import uk.gov.pay.connector.workpartition.model.WorkShardEntity;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+import java.util.Optional;
+
+@Transactional
+public class WorkShardDao extends JpaDao<WorkShardEntity> {
+
+    /**
+     * Splits the range into shards of the given size. Shards that already exist for the job are left as they are, so
+     * every node asked to run the same job can call this and end up working from the same set of shards.
+     */
+    private static final String CREATE_SHARDS =
+            "INSERT INTO work_shard (job_name, range_start, range_end, status, created_date) " +
+            "SELECT ?1, shard_start, LEAST(shard_start + ?3 - 1, ?4), 'AVAILABLE', now() " +
+            "FROM generate_series(?2, ?4, ?3) AS shard_start " +
+            "ON CONFLICT (job_name, range_start) DO NOTHING";
+
+    /**
+     * Claims the first shard of the job that is available or whose lease has run out. Shards locked by another node
+     * are skipped rather than waited on.
+     */
+    private static final String CLAIM_SHARD =
+            "UPDATE work_shard SET status = 'CLAIMED', lease_owner = ?2, " +
+            "lease_expiry_date = now() + (?3 * interval '1 millisecond') " +
+            "WHERE id = (" +
+            "  SELECT id FROM work_shard " +
+            "  WHERE job_name = ?1 " +
+            "  AND (status = 'AVAILABLE' OR (status = 'CLAIMED' AND lease_expiry_date < now())) " +
+            "  ORDER BY range_start " +
+            "  LIMIT 1 " +
+            "  FOR UPDATE SKIP LOCKED" +
+            ") " +
+            "RETURNING *";
+
+    private static final String RENEW_LEASE =
+            "UPDATE work_shard SET lease_expiry_date = now() + (?3 * interval '1 millisecond') " +
+            "WHERE id = ?1 AND lease_owner = ?2 AND status = 'CLAIMED'";
+
+    private static final String COMPLETE_SHARD =
+            "UPDATE work_shard SET status = 'COMPLETED', lease_expiry_date = NULL " +
+            "WHERE id = ?1 AND lease_owner = ?2 AND status = 'CLAIMED'";
+
+    private static final String RELEASE_SHARD =
+            "UPDATE work_shard SET status = 'AVAILABLE', lease_owner = NULL, lease_expiry_date = NULL " +
+            "WHERE id = ?1 AND lease_owner = ?2 AND status = 'CLAIMED'";
+
+    /**
+     * Deletes every shard of the jobs that were completed and started before the retention period. A job name stands
+     * for a single run, so the shards of a completed run are only kept to stop a late node from running it again.
+     * Single-node leases are never completed, so they are kept.
+     */
+    private static final String DELETE_COMPLETED_JOBS =
+            "DELETE FROM work_shard WHERE job_name IN (" +
+            "  SELECT job_name FROM work_shard " +
+            "  GROUP BY job_name " +
+            "  HAVING bool_and(status = 'COMPLETED') AND max(created_date) < now() - (?1 * interval '1 day')" +
+            ")";
+
+    @Inject
+    public WorkShardDao(Provider<EntityManager> entityManager) {
+        super(entityManager);
+    }
+
+    public int createShards(String jobName, long rangeStart, long rangeEnd, long shardSize) {
+        return entityManager.get()
+                .createNativeQuery(CREATE_SHARDS)
+                .setParameter(1, jobName)
+                .setParameter(2, rangeStart)
+                .setParameter(3, shardSize)
+                .setParameter(4, rangeEnd)
+                .executeUpdate();
+    }
+
+    @SuppressWarnings("unchecked")
+    public Optional<WorkShardEntity> claim(String jobName, String leaseOwner, long leaseInMilliseconds) {
+        List<WorkShardEntity> claimed = entityManager.get()
+                .createNativeQuery(CLAIM_SHARD, WorkShardEntity.class)
+                // a shard claimed earlier in the same persistence context must not be returned with its old lease
+                .setHint(QueryHints.REFRESH, HintValues.TRUE)
+                .setParameter(1, jobName)
+                .setParameter(2, leaseOwner)
+                .setParameter(3, leaseInMilliseconds)
+                .getResultList();
+        return claimed.stream().findFirst();
+    }
+
+    /**
+     * @return false if the lease has been lost, because it ran out and another node claimed the shard
+     */
+    public boolean renew(Long id, String leaseOwner, long leaseInMilliseconds) {
+        return entityManager.get()
+                .createNativeQuery(RENEW_LEASE)
+                .setParameter(1, id)
+                .setParameter(2, leaseOwner)
+                .setParameter(3, leaseInMilliseconds)
+                .executeUpdate() > 0;
+    }
+
+    public boolean complete(Long id, String leaseOwner) {
+        return updateClaimedShard(COMPLETE_SHARD, id, leaseOwner);
+    }
+
+    public boolean release(Long id, String leaseOwner) {
+        return updateClaimedShard(RELEASE_SHARD, id, leaseOwner);
+    }
+
+    /**
+     * @return the number of shards deleted
+     */
+    public int deleteCompletedJobs(long retentionInDays) {
+        return entityManager.get()
+                .createNativeQuery(DELETE_COMPLETED_JOBS)
+                .setParameter(1, retentionInDays)
+                .executeUpdate();
+    }
+
+    public List<WorkShardEntity> findByJobName(String jobName) {
+        return entityManager.get()
+                .createQuery("SELECT s FROM WorkShardEntity s WHERE s.jobName = :jobName ORDER BY s.rangeStart",
+                        WorkShardEntity.class)
+                .setParameter("jobName", jobName)
+                .getResultList();
+    }
+
+    private boolean updateClaimedShard(String query, Long id, String leaseOwner) {
+        return entityManager.get()
+                .createNativeQuery(query)
+                .setParameter(1, id)
+                .setParameter(2, leaseOwner)
+                .executeUpdate() > 0;
+    }
+}
@@ -0,0 +1,101 @@
+package uk.gov.pay.connector.workpartition.model;
+
+import uk.gov.pay.connector.common.model.domain.UTCDateTimeConverter;
+
+import javax.persistence.Column;
+import javax.persistence.Convert;
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.SequenceGenerator;
+import javax.persistence.Table;
+import java.time.ZonedDateTime;
+
+/**
+ * A range of IDs a background job has to get through. A node claims the shard for the length of a lease, renews the
+ * lease while it works on the range and marks the shard completed when it is done. A shard whose lease has run out
+ * can be claimed by another node.
+ */
+@Entity
+@Table(name = "work_shard")
+@SequenceGenerator(name = "work_shard_id_seq", sequenceName = "work_shard_id_seq", allocationSize = 1)
+public class WorkShardEntity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "work_shard_id_seq")
+    private Long id;
+
+    @Column(name = "job_name")
+    private String jobName;
+
+    @Column(name = "range_start")
+    private long rangeStart;
+
+    @Column(name = "range_end")
+    private long rangeEnd;
+
+    @Column(name = "status")
+    @Enumerated(EnumType.STRING)
+    private WorkShardStatus status;
+
+    @Column(name = "lease_owner")
+    private String leaseOwner;
+
+    @Convert(converter = UTCDateTimeConverter.class)
+    @Column(name = "lease_expiry_date")
+    private ZonedDateTime leaseExpiryDate;
+
+    @Convert(converter = UTCDateTimeConverter.class)
+    @Column(name = "created_date")
+    private ZonedDateTime createdDate;
+
+    protected WorkShardEntity() {
+    }
+
+    public WorkShardEntity(String jobName, long rangeStart, long rangeEnd, WorkShardStatus status, String leaseOwner) {
+        this.jobName = jobName;
+        this.rangeStart = rangeStart;
+        this.rangeEnd = rangeEnd;
+        this.status = status;
+        this.leaseOwner = leaseOwner;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getJobName() {
+        return jobName;
+    }
+
+    public long getRangeStart() {
+        return rangeStart;
+    }
+
+    public long getRangeEnd() {
+        return rangeEnd;
+    }
+
+    public WorkShardStatus getStatus() {
+        return status;
+    }
+
+    public String getLeaseOwner() {
+        return leaseOwner;
+    }
+
+    public ZonedDateTime getLeaseExpiryDate() {
+        return leaseExpiryDate;
+    }
+
+    public ZonedDateTime getCreatedDate() {
+        return createdDate;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+}
@@ -0,0 +1,7 @@
+package uk.gov.pay.connector.workpartition.model;
+
+public enum WorkShardStatus {
+    AVAILABLE,
+    CLAIMED,
+    COMPLETED
+}
@@ -0,0 +1,304 @@
+package uk.gov.pay.connector.workpartition.service;
+
+import io.dropwizard.lifecycle.Managed;
+import io.dropwizard.setup.Environment;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.gov.pay.connector.app.ConnectorConfiguration;
+import uk.gov.pay.connector.app.config.WorkPartitionConfig;
+import uk.gov.pay.connector.workpartition.dao.WorkShardDao;
+import uk.gov.pay.connector.workpartition.model.WorkShardEntity;
+import uk.gov.pay.connector.workpartition.model.WorkShardStatus;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Coordinates background jobs between nodes through leases on rows of the work_shard table.
+ *
+ * <p>A job over a range of IDs is split into shards that every node running the job claims one at a time, so the
+ * nodes share the range between them and no ID is processed twice. A job name stands for one run of the job: once
+ * every shard is completed the job is not run again under the same name, and its shards are deleted after the
+ * retention period.</p>
+ *
+ * <p>A job that should only ever run on one node at a time holds a lease on a single shard. The node that claims it
+ * keeps it between runs, so it can run the job again without writing to the database, and releases it when the
+ * application stops. A job whose work is spread across nodes, so that every node needs a turn, releases the lease
+ * after each run instead.</p>
+ *
+ * <p>Leases are renewed in the background. If a node dies, the shard it held can be claimed by another node once the
+ * lease runs out.</p>
+ */
+@Singleton
+public class WorkPartitionService implements Managed {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(WorkPartitionService.class);
+
+    private final WorkShardDao workShardDao;
+    private final ScheduledExecutorService leaseRenewalExecutor;
+    private final String leaseOwner;
+    private final long leaseInMilliseconds;
+    private final long shardSize;
+    private final long completedJobRetentionInDays;
+    private final LongSupplier nanoTime;
+    private final ConcurrentMap<String, ExclusiveLease> exclusiveLeases = new ConcurrentHashMap<>();
+
+    @Inject
+    public WorkPartitionService(WorkShardDao workShardDao, ConnectorConfiguration connectorConfiguration,
+                                Environment environment) {
+        this(workShardDao, connectorConfiguration.getWorkPartitionConfig(),
+                environment.lifecycle().scheduledExecutorService("work-shard-lease-renewal").threads(1).build(),
+                ManagementFactory.getRuntimeMXBean().getName() + "/" + UUID.randomUUID(), System::nanoTime);
+    }
+
+    WorkPartitionService(WorkShardDao workShardDao, WorkPartitionConfig workPartitionConfig,
+                         ScheduledExecutorService leaseRenewalExecutor, String leaseOwner, LongSupplier nanoTime) {
+        this.workShardDao = workShardDao;
+        this.leaseRenewalExecutor = leaseRenewalExecutor;
+        this.leaseOwner = leaseOwner;
+        this.leaseInMilliseconds = TimeUnit.SECONDS.toMillis(workPartitionConfig.getLeaseDurationInSeconds());
+        this.shardSize = workPartitionConfig.getShardSize();
+        this.completedJobRetentionInDays = workPartitionConfig.getCompletedJobRetentionInDays();
+        this.nanoTime = nanoTime;
+    }
+
+    @Override
+    public void start() {
+    }
+
+    @Override
+    public void stop() {
+        exclusiveLeases.values().forEach(ExclusiveLease::release);
+    }
+
+    /**
+     * Works through the IDs from rangeStart to rangeEnd inclusive a shard at a time, together with any other node
+     * running the job with the same name, until no shard is left to claim.
+     *
+     * <p>If the processor throws, the shard is released for another attempt and the exception is rethrown.</p>
+     *
+     * @return the number of shards this node processed
+     */
+    public int processInShards(String jobName, long rangeStart, long rangeEnd, ShardProcessor processor) {
+        int shardsDeleted = workShardDao.deleteCompletedJobs(completedJobRetentionInDays);
+        if (shardsDeleted > 0) {
+            LOGGER.info("Deleted the work shards of completed jobs [shards_deleted={}]", shardsDeleted);
+        }
+
+        if (rangeEnd >= rangeStart) {
+            workShardDao.createShards(jobName, rangeStart, rangeEnd, shardSize);
+        }
+
+        int shardsProcessed = 0;
+        Optional<WorkShardEntity> maybeShard;
+        while ((maybeShard = workShardDao.claim(jobName, leaseOwner, leaseInMilliseconds)).isPresent()) {
+            WorkShardEntity shard = maybeShard.get();
+            LOGGER.info("Processing work shard [job={}] [range_start={}] [range_end={}]",
+                    jobName, shard.getRangeStart(), shard.getRangeEnd());
+            try {
+                callUnderLease(shard, () -> {
+                    processor.process(shard.getRangeStart(), shard.getRangeEnd());
+                    return null;
+                });
+            } catch (RuntimeException e) {
+                workShardDao.release(shard.getId(), leaseOwner);
+                throw e;
+            }
+            workShardDao.complete(shard.getId(), leaseOwner);
+            shardsProcessed++;
+        }
+
+        if (shardsProcessed == 0 && isCompleted(jobName)) {
+            LOGGER.warn("Not running job because it has already been completed, give it a new job ID to run it again [job={}]",
+                    jobName);
+        }
+        LOGGER.info("No work shards left to claim [job={}] [shards_processed={}]", jobName, shardsProcessed);
+        return shardsProcessed;
+    }
+
+    /**
+     * Runs the task unless another node, or another thread on this node, is already running the job with the same
+     * name.
+     *
+     * @return the result of the task, or empty if it was not run
+     */
+    public <T> Optional<T> callExclusively(String jobName, Supplier<T> task) {
+        return callExclusively(jobName, task, false);
+    }
+
+    /**
+     * @return false if the task was not run because another node is already running the job with the same name
+     */
+    public boolean runExclusively(String jobName, Runnable task) {
+        return callExclusively(jobName, () -> {
+            task.run();
+            return Boolean.TRUE;
+        }, false).isPresent();
+    }
+
+    /**
+     * Runs the task unless another node is already running the job with the same name, like
+     * {@link #runExclusively(String, Runnable)}, but releases the lease afterwards so that other nodes get a turn at
+     * the job. For jobs where each node has work of its own to do.
+     *
+     * @return false if the task was not run because another node is already running the job with the same name
+     */
+    public boolean runInTurn(String jobName, Runnable task) {
+        return callExclusively(jobName, () -> {
+            task.run();
+            return Boolean.TRUE;
+        }, true).isPresent();
+    }
+
+    private <T> Optional<T> callExclusively(String jobName, Supplier<T> task, boolean releaseAfterRun) {
+        ExclusiveLease lease = exclusiveLeases.computeIfAbsent(jobName, ExclusiveLease::new);
+        if (!lease.runLock.tryLock()) {
+            LOGGER.info("Not running job because it is already running on this node [job={}]", jobName);
+            return Optional.empty();
+        }
+
+        try {
+            if (!lease.holdOrClaim()) {
+                LOGGER.info("Not running job because it is already running on another node [job={}]", jobName);
+                return Optional.empty();
+            }
+            try {
+                return Optional.ofNullable(task.get());
+            } finally {
+                if (releaseAfterRun) {
+                    lease.release();
+                }
+            }
+        } finally {
+            lease.runLock.unlock();
+        }
+    }
+
+    private boolean isCompleted(String jobName) {
+        List<WorkShardEntity> shards = workShardDao.findByJobName(jobName);
+        return !shards.isEmpty() && shards.stream().allMatch(shard -> shard.getStatus() == WorkShardStatus.COMPLETED);
+    }
+
+    private <T> T callUnderLease(WorkShardEntity shard, Supplier<T> work) {
+        ScheduledFuture<?> renewal = scheduleRenewal(() -> renewLease(shard));
+        try {
+            return work.get();
+        } finally {
+            renewal.cancel(false);
+        }
+    }
+
+    private ScheduledFuture<?> scheduleRenewal(Runnable renewal) {
+        long renewalIntervalInMilliseconds = Math.max(1, leaseInMilliseconds / 3);
+        return leaseRenewalExecutor.scheduleAtFixedRate(renewal,
+                renewalIntervalInMilliseconds, renewalIntervalInMilliseconds, TimeUnit.MILLISECONDS);
+    }
+
+    private void renewLease(WorkShardEntity shard) {
+        try {
+            if (!workShardDao.renew(shard.getId(), leaseOwner, leaseInMilliseconds)) {
+                LOGGER.warn("Lost the lease on a work shard, another node may be processing it too [job={}] [range_start={}]",
+                        shard.getJobName(), shard.getRangeStart());
+            }
+        } catch (Exception e) {
+            // an exception would cancel the renewal schedule, so log it and try again at the next renewal
+            LOGGER.error("Failed to renew the lease on a work shard [job={}] [range_start={}] [message={}]",
+                    shard.getJobName(), shard.getRangeStart(), e.getMessage());
+        }
+    }
+
+    /**
+     * The lease this node holds, or last held, on the single shard of a job that only runs on one node at a time. It
+     * counts as held until the lease would run out after the last successful claim or renewal, so a node that cannot
+     * renew it stops running the job before another node can claim it.
+     */
+    private class ExclusiveLease {
+
+        private final String jobName;
+        private final ReentrantLock runLock = new ReentrantLock();
+        private boolean shardCreated;
+        private WorkShardEntity shard;
+        private ScheduledFuture<?> renewal;
+        private long heldUntilNanos;
+
+        private ExclusiveLease(String jobName) {
+            this.jobName = jobName;
+        }
+
+        private synchronized boolean holdOrClaim() {
+            if (shard != null && nanoTime.getAsLong() - heldUntilNanos < 0) {
+                return true;
+            }
+            drop();
+
+            if (!shardCreated) {
+                workShardDao.createShards(jobName, 0, 0, 1);
+                shardCreated = true;
+            }
+            long claimStartNanos = nanoTime.getAsLong();
+            Optional<WorkShardEntity> claimed = workShardDao.claim(jobName, leaseOwner, leaseInMilliseconds);
+            if (claimed.isEmpty()) {
+                return false;
+            }
+            shard = claimed.get();
+            heldUntilNanos = claimStartNanos + TimeUnit.MILLISECONDS.toNanos(leaseInMilliseconds);
+            renewal = scheduleRenewal(this::renew);
+            return true;
+        }
+
+        private synchronized void renew() {
+            if (shard == null) {
+                return;
+            }
+            long renewalStartNanos = nanoTime.getAsLong();
+            try {
+                if (workShardDao.renew(shard.getId(), leaseOwner, leaseInMilliseconds)) {
+                    heldUntilNanos = renewalStartNanos + TimeUnit.MILLISECONDS.toNanos(leaseInMilliseconds);
+                } else {
+                    LOGGER.warn("Lost the lease on a single-node job, another node may be running it [job={}]", jobName);
+                    drop();
+                }
+            } catch (Exception e) {
+                // an exception would cancel the renewal schedule, so log it and try again at the next renewal
+                LOGGER.error("Failed to renew the lease on a single-node job [job={}] [message={}]", jobName, e.getMessage());
+            }
+        }
+
+        private synchronized void release() {
+            WorkShardEntity heldShard = shard;
+            drop();
+            if (heldShard != null) {
+                try {
+                    workShardDao.release(heldShard.getId(), leaseOwner);
+                } catch (Exception e) {
+                    LOGGER.error("Failed to release the lease on a single-node job [job={}] [message={}]", jobName, e.getMessage());
+                }
+            }
+        }
+
+        private void drop() {
+            if (renewal != null) {
+                renewal.cancel(false);
+                renewal = null;
+            }
+            shard = null;
+        }
+    }
+
+    @FunctionalInterface
+    public interface ShardProcessor {
+        void process(long rangeStart, long rangeEnd);
+    }
+}
@@ -0,0 +1,48 @@
+package uk.gov.pay.connector.app;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.dropwizard.jackson.Jackson;
+import org.junit.Test;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validation;
+import javax.validation.Validator;
+import java.util.Set;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.hasProperty;
+import static org.hamcrest.Matchers.is;
+
+public class ExecutorServiceConfigTest {
+
+    private final Validator validator = Validation.buildDefaultValidatorFactory().getValidator();
+    private final ObjectMapper mapper = Jackson.newObjectMapper();
+
+    @Test
+    public void shouldPassValidationWhenTheQueueDeadlineIsShorterThanTheTimeout() throws Exception {
+        ExecutorServiceConfig config = mapper.readValue("{\"timeoutInSeconds\": 10, \"queueDeadlineInSeconds\": 5}",
+                ExecutorServiceConfig.class);
+
+        assertThat(validator.validate(config).size(), is(0));
+    }
+
+    @Test
+    public void shouldPassValidationWhenDroppingIsDisabled() throws Exception {
+        ExecutorServiceConfig config = mapper.readValue("{\"timeoutInSeconds\": 1, \"queueDeadlineInSeconds\": 0}",
+                ExecutorServiceConfig.class);
+
+        assertThat(validator.validate(config).size(), is(0));
+    }
+
+    @Test
+    public void shouldFailValidationWhenTheQueueDeadlineIsNotShorterThanTheTimeout() throws Exception {
+        ExecutorServiceConfig config = mapper.readValue("{\"timeoutInSeconds\": 1, \"queueDeadlineInSeconds\": 60}",
+                ExecutorServiceConfig.class);
+
+        Set<ConstraintViolation<ExecutorServiceConfig>> violations = validator.validate(config);
+
+        assertThat(violations, contains(hasProperty("message",
+                is("queueDeadlineInSeconds must be less than timeoutInSeconds, or 0 to never drop tasks"))));
+    }
+}
@@ -1,11 +1,14 @@
 package uk.gov.pay.connector.app;
 
 import org.junit.Test;
+import uk.gov.pay.connector.app.config.LedgerClientConfig;
 import uk.gov.pay.connector.app.config.RestClientConfig;
 
 import javax.net.ssl.SSLContext;
 import javax.ws.rs.client.Client;
 
+import static org.glassfish.jersey.client.ClientProperties.CONNECT_TIMEOUT;
+import static org.glassfish.jersey.client.ClientProperties.READ_TIMEOUT;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.core.IsNot.not;
@@ -41,4 +44,23 @@ public class RestClientFactoryTest {
         //then
         assertThat(client.getSslContext().getProtocol(), is(not("TLSv1.2")));
     }
+
+    @Test
+    public void pooledJerseyClient_shouldUseSSLAndTheConfiguredTimeouts() {
+        //given
+        RestClientConfig clientConfiguration = mock(RestClientConfig.class);
+        when(clientConfiguration.isDisabledSecureConnection()).thenReturn(false);
+        LedgerClientConfig poolConfiguration = mock(LedgerClientConfig.class);
+        when(poolConfiguration.getMaximumConnections()).thenReturn(4);
+        when(poolConfiguration.getConnectTimeoutInMillis()).thenReturn(1000);
+        when(poolConfiguration.getReadTimeoutInMillis()).thenReturn(3000);
+
+        //when
+        Client client = RestClientFactory.buildPooledClient(clientConfiguration, poolConfiguration);
+
+        //then
+        assertThat(client.getSslContext().getProtocol(), is("TLSv1.2"));
+        assertThat(client.getConfiguration().getProperty(CONNECT_TIMEOUT), is(1000));
+        assertThat(client.getConfiguration().getProperty(READ_TIMEOUT), is(3000));
+    }
 }
@@ -13,7 +13,9 @@ import org.mockito.junit.MockitoJUnit;
 import org.mockito.junit.MockitoRule;
 import uk.gov.pay.connector.app.ChargeSweepConfig;
 import uk.gov.pay.connector.app.ConnectorConfiguration;
+import uk.gov.pay.connector.app.config.TokenReaperConfig;
 import uk.gov.pay.connector.charge.dao.ChargeDao;
+import uk.gov.pay.connector.charge.model.ExpirableChargeSummary;
 import uk.gov.pay.connector.charge.model.domain.ChargeEntity;
 import uk.gov.pay.connector.charge.model.domain.ChargeEntityFixture;
 import uk.gov.pay.connector.charge.model.domain.ChargeStatus;
@@ -31,20 +33,30 @@ import uk.gov.pay.connector.gateway.model.response.GatewayResponse.GatewayRespon
 import uk.gov.pay.connector.gateway.worldpay.WorldpayCancelResponse;
 import uk.gov.pay.connector.gatewayaccount.model.GatewayAccountEntity;
 import uk.gov.pay.connector.paymentprocessor.service.QueryService;
-import uk.gov.pay.connector.token.dao.TokenDao;
+import uk.gov.pay.connector.token.service.TokenReaperService;
+import uk.gov.pay.connector.workpartition.service.WorkPartitionService;
 
 import java.time.ZonedDateTime;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import static java.util.Collections.singletonList;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.core.Is.is;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static uk.gov.pay.connector.charge.model.domain.ChargeStatus.AUTHORISATION_3DS_READY;
@@ -75,7 +87,7 @@ public class ChargeExpiryServiceTest {
     private ChargeService mockChargeService;
 
     @Mock
-    private TokenDao mockTokenDao;
+    private TokenReaperService mockTokenReaperService;
 
     @Mock
     private PaymentProviders mockPaymentProviders;
@@ -92,6 +104,12 @@ public class ChargeExpiryServiceTest {
     @Mock
     private ChargeSweepConfig mockedChargeSweepConfig;
 
+    @Mock
+    private ChargeExpiryWheel mockChargeExpiryWheel;
+
+    @Mock
+    private WorkPartitionService mockWorkPartitionService;
+
     @Mock
     private ConnectorConfiguration mockedConfig;
 
@@ -114,7 +132,11 @@ public class ChargeExpiryServiceTest {
     @Before
     public void setup() {
         when(mockedConfig.getChargeSweepConfig()).thenReturn(mockedChargeSweepConfig);
-        chargeExpiryService = new ChargeExpiryService(mockChargeDao, mockChargeService, mockTokenDao, mockPaymentProviders, mockQueryService, mockedConfig);
+        when(mockedConfig.getTokenReaperConfig()).thenReturn(new TokenReaperConfig());
+        chargeExpiryService = new ChargeExpiryService(mockChargeDao, mockChargeService, mockTokenReaperService, mockPaymentProviders, mockQueryService,
+                mockChargeExpiryWheel, mockWorkPartitionService, mockedConfig);
+        when(mockWorkPartitionService.callExclusively(anyString(), any()))
+                .thenAnswer(invocation -> Optional.ofNullable(invocation.<Supplier<?>>getArgument(1).get()));
         when(mockPaymentProviders.byName(PaymentGatewayName.WORLDPAY)).thenReturn(mockPaymentProvider);
         GatewayResponseBuilder<BaseCancelResponse> gatewayResponseBuilder = responseBuilder();
         gatewayResponse = gatewayResponseBuilder.withResponse(mockWorldpayCancelResponse).build();
@@ -129,6 +151,48 @@ public class ChargeExpiryServiceTest {
         return expiredCharge;
     }
 
+    @Test
+    public void shouldExpireOnlyTheScheduledChargesThatAreStillDue() {
+        ChargeEntity dueCharge = ChargeEntityFixture.aValidChargeEntity()
+                .withStatus(CREATED)
+                .withGatewayAccountEntity(gatewayAccount)
+                .build();
+        ChargeEntity chargeNoLongerDue = ChargeEntityFixture.aValidChargeEntity()
+                .withStatus(CAPTURED)
+                .withGatewayAccountEntity(gatewayAccount)
+                .build();
+        List<String> externalIds = List.of(dueCharge.getExternalId(), chargeNoLongerDue.getExternalId());
+        when(mockChargeDao.findByExternalIds(externalIds)).thenReturn(List.of(dueCharge, chargeNoLongerDue));
+        when(mockChargeExpiryWheel.isDue(dueCharge)).thenReturn(true);
+        when(mockChargeExpiryWheel.isDue(chargeNoLongerDue)).thenReturn(false);
+
+        Map<String, Integer> expiryResult = chargeExpiryService.expireChargesIfDue(externalIds);
+
+        assertThat(expiryResult.get("expiry-success"), is(1));
+        verify(mockChargeService).transitionChargeState(dueCharge.getExternalId(), EXPIRED);
+        verify(mockChargeService, never()).transitionChargeState(chargeNoLongerDue.getExternalId(), EXPIRED);
+    }
+
+    @Test
+    public void shouldScheduleExpirableChargesAPageAtATime() {
+        List<ExpirableChargeSummary> firstPage = IntStream.rangeClosed(1, ChargeExpiryService.EXPIRY_WHEEL_LOAD_PAGE_SIZE)
+                .mapToObj(id -> new ExpirableChargeSummary((long) id, "charge-" + id, CREATED.getValue(), ZonedDateTime.now()))
+                .collect(Collectors.toList());
+        List<ExpirableChargeSummary> lastPage = List.of(new ExpirableChargeSummary(
+                (long) ChargeExpiryService.EXPIRY_WHEEL_LOAD_PAGE_SIZE + 1, "last-charge", CREATED.getValue(), ZonedDateTime.now()));
+        when(mockChargeDao.findSummariesWithStatusInAfterId(anyList(), eq(0L), eq(ChargeExpiryService.EXPIRY_WHEEL_LOAD_PAGE_SIZE)))
+                .thenReturn(firstPage);
+        when(mockChargeDao.findSummariesWithStatusInAfterId(anyList(), eq((long) ChargeExpiryService.EXPIRY_WHEEL_LOAD_PAGE_SIZE),
+                eq(ChargeExpiryService.EXPIRY_WHEEL_LOAD_PAGE_SIZE)))
+                .thenReturn(lastPage);
+
+        chargeExpiryService.scheduleExpirableCharges();
+
+        verify(mockChargeExpiryWheel).trackAll(firstPage);
+        verify(mockChargeExpiryWheel).trackAll(lastPage);
+        verify(mockChargeDao, times(2)).findSummariesWithStatusInAfterId(anyList(), anyLong(), anyInt());
+    }
+
     @Test
     @Parameters({
             "CREATED",
@@ -393,6 +457,17 @@ public class ChargeExpiryServiceTest {
         assertThat(sweepResult.get("expiry-failed"), is(0));
     }
 
+    @Test
+    public void shouldNotSweepWhenAnotherNodeIsAlreadySweeping() {
+        doReturn(Optional.empty()).when(mockWorkPartitionService).callExclusively(anyString(), any());
+
+        Map<String, Integer> sweepResult = chargeExpiryService.sweepAndExpireChargesAndTokens();
+
+        verify(mockChargeDao, never()).findBeforeDateWithStatusIn(any(), any());
+        assertThat(sweepResult.get("expiry-success"), is(0));
+        assertThat(sweepResult.get("expiry-failed"), is(0));
+    }
+
     @Test
     public void forceCancelShouldReturnSuccess_whenCancelStateIsCancelled() throws Exception {
         ChargeEntity charge = ChargeEntityFixture.aValidChargeEntity()
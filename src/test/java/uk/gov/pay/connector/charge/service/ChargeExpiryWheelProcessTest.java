@@ -0,0 +1,91 @@
+package uk.gov.pay.connector.charge.service;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import uk.gov.pay.connector.app.ChargeSweepConfig;
+import uk.gov.pay.connector.workpartition.service.WorkPartitionService;
+
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ChargeExpiryWheelProcessTest {
+
+    @Mock
+    private ChargeExpiryWheel chargeExpiryWheel;
+
+    @Mock
+    private ChargeExpiryService chargeExpiryService;
+
+    @Mock
+    private WorkPartitionService workPartitionService;
+
+    @Mock
+    private ScheduledExecutorService scheduledExecutorService;
+
+    @Mock
+    private ChargeSweepConfig chargeSweepConfig;
+
+    private ChargeExpiryWheelProcess chargeExpiryWheelProcess;
+
+    @Before
+    public void setUp() {
+        when(chargeSweepConfig.getExpiryWheelTickInMilliseconds()).thenReturn(1000L);
+        when(chargeSweepConfig.getExpiryWheelBatchSize()).thenReturn(2);
+        chargeExpiryWheelProcess = new ChargeExpiryWheelProcess(chargeExpiryWheel, chargeExpiryService,
+                workPartitionService, scheduledExecutorService, chargeSweepConfig);
+    }
+
+    @Test
+    public void shouldExpireDueChargesInBatchesWhileHoldingTheLease() {
+        when(chargeExpiryWheel.takeDue()).thenReturn(List.of("charge-1", "charge-2", "charge-3"));
+        givenTheLeaseIsAvailable();
+
+        chargeExpiryWheelProcess.expireDueCharges();
+
+        verify(chargeExpiryService).expireChargesIfDue(List.of("charge-1", "charge-2"));
+        verify(chargeExpiryService).expireChargesIfDue(List.of("charge-3"));
+    }
+
+    @Test
+    public void shouldKeepDueChargesForTheNextTickWhenAnotherNodeHoldsTheLease() {
+        when(chargeExpiryWheel.takeDue()).thenReturn(List.of("charge-1"), List.of("charge-2"));
+        when(workPartitionService.runInTurn(eq(ChargeExpiryWheelProcess.JOB_NAME), any())).thenReturn(false);
+
+        chargeExpiryWheelProcess.expireDueCharges();
+
+        verify(chargeExpiryService, never()).expireChargesIfDue(anyList());
+
+        givenTheLeaseIsAvailable();
+        chargeExpiryWheelProcess.expireDueCharges();
+
+        verify(chargeExpiryService).expireChargesIfDue(List.of("charge-1", "charge-2"));
+    }
+
+    @Test
+    public void shouldNotTakeTheLeaseWhenNothingIsDue() {
+        when(chargeExpiryWheel.takeDue()).thenReturn(List.of());
+
+        chargeExpiryWheelProcess.expireDueCharges();
+
+        verifyNoInteractions(workPartitionService);
+    }
+
+    private void givenTheLeaseIsAvailable() {
+        when(workPartitionService.runInTurn(eq(ChargeExpiryWheelProcess.JOB_NAME), any())).thenAnswer(invocation -> {
+            invocation.<Runnable>getArgument(1).run();
+            return true;
+        });
+    }
+}
@@ -0,0 +1,83 @@
+package uk.gov.pay.connector.charge.service;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import uk.gov.pay.connector.app.ChargeSweepConfig;
+import uk.gov.pay.connector.charge.model.domain.ChargeEntity;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Mockito.when;
+import static uk.gov.pay.connector.charge.model.domain.ChargeEntityFixture.aValidChargeEntity;
+import static uk.gov.pay.connector.charge.model.domain.ChargeStatus.AUTHORISATION_SUCCESS;
+import static uk.gov.pay.connector.charge.model.domain.ChargeStatus.AWAITING_CAPTURE_REQUEST;
+import static uk.gov.pay.connector.charge.model.domain.ChargeStatus.CREATED;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ChargeExpiryWheelTest {
+
+    private static final ZonedDateTime NOW = ZonedDateTime.parse("2020-01-01T12:00:00Z");
+
+    @Mock
+    ChargeSweepConfig chargeSweepConfig;
+
+    @Before
+    public void setUp() {
+        when(chargeSweepConfig.getExpiryWheelTickInMilliseconds()).thenReturn(1000L);
+    }
+
+    @Test
+    public void shouldUseTheThresholdForTheStatusOfTheCharge() {
+        when(chargeSweepConfig.getDefaultChargeExpiryThreshold()).thenReturn(5400);
+        when(chargeSweepConfig.getAwaitingCaptureExpiryThreshold()).thenReturn(172800);
+        ChargeExpiryWheel wheel = new ChargeExpiryWheel(chargeSweepConfig, true, clockAt(NOW));
+
+        ChargeEntity created = aValidChargeEntity().withStatus(CREATED).withCreatedDate(NOW).build();
+        ChargeEntity awaitingCaptureRequest = aValidChargeEntity().withStatus(AWAITING_CAPTURE_REQUEST).withCreatedDate(NOW).build();
+
+        assertThat(wheel.getExpiryDeadline(created).get(), is(NOW.plusSeconds(5400)));
+        assertThat(wheel.getExpiryDeadline(awaitingCaptureRequest).get(), is(NOW.plusSeconds(172800)));
+    }
+
+    @Test
+    public void shouldHandBackTrackedChargesOnceDueAndDropChargesThatCanNoLongerExpire() {
+        when(chargeSweepConfig.getDefaultChargeExpiryThreshold()).thenReturn(5400);
+        ChargeEntity expiring = aValidChargeEntity().withStatus(CREATED).withCreatedDate(NOW.minusSeconds(5400)).build();
+        ChargeEntity created = aValidChargeEntity().withExternalId("authorised").withStatus(CREATED)
+                .withCreatedDate(NOW.minusSeconds(5400)).build();
+        ChargeEntity authorised = aValidChargeEntity().withExternalId("authorised").withStatus(AUTHORISATION_SUCCESS)
+                .withCreatedDate(NOW.minusSeconds(5400)).build();
+        ChargeExpiryWheel wheel = new ChargeExpiryWheel(chargeSweepConfig, true, clockAt(NOW));
+
+        wheel.track(expiring);
+        wheel.track(created);
+        wheel.track(authorised);
+
+        assertThat(wheel.isDue(expiring), is(true));
+        assertThat(wheel.isDue(authorised), is(false));
+        assertThat(wheel.size(), is(1));
+    }
+
+    @Test
+    public void shouldNotTrackChargesWhenDisabled() {
+        ChargeExpiryWheel wheel = new ChargeExpiryWheel(chargeSweepConfig, false, clockAt(NOW));
+
+        wheel.track(aValidChargeEntity().withStatus(CREATED).withCreatedDate(NOW).build());
+
+        assertThat(wheel.size(), is(0));
+        assertThat(wheel.takeDue(), is(empty()));
+    }
+
+    private static Clock clockAt(ZonedDateTime time) {
+        return Clock.fixed(Instant.from(time), ZoneOffset.UTC);
+    }
+}
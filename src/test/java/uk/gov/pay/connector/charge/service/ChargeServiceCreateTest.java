@@ -22,6 +22,8 @@ import uk.gov.pay.connector.charge.model.domain.ChargeEntity;
 import uk.gov.pay.connector.charge.model.telephone.PaymentOutcome;
 import uk.gov.pay.connector.charge.model.telephone.Supplemental;
 import uk.gov.pay.connector.charge.model.telephone.TelephoneChargeCreateRequest;
+import uk.gov.pay.connector.charge.model.telephone.TelephoneChargeCreateResult;
+import uk.gov.pay.connector.chargeevent.model.domain.ChargeEventEntity;
 import uk.gov.pay.connector.common.model.domain.PrefilledAddress;
 import uk.gov.pay.connector.token.model.domain.TokenEntity;
 
@@ -46,15 +48,23 @@ import static org.mockito.ArgumentCaptor.forClass;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 import static uk.gov.pay.commons.model.Source.CARD_API;
 import static uk.gov.pay.commons.model.Source.CARD_EXTERNAL_TELEPHONE;
 import static uk.gov.pay.connector.charge.model.domain.ChargeEntityFixture.aValidChargeEntity;
 import static uk.gov.pay.connector.charge.model.domain.ChargeStatus.AUTHORISATION_SUCCESS;
+import static uk.gov.pay.connector.charge.model.domain.ChargeStatus.CAPTURE_SUBMITTED;
+import static uk.gov.pay.connector.charge.model.domain.ChargeStatus.PAYMENT_NOTIFICATION_CREATED;
+import static uk.gov.pay.connector.charge.model.domain.ChargeStatus.UNDEFINED;
+import static uk.gov.pay.connector.chargeevent.model.domain.ChargeEventEntity.ChargeEventEntityBuilder.aChargeEventEntity;
 
 public class ChargeServiceCreateTest extends ChargeServiceTest {
+
+    private ChargeEntity insertedTelephoneCharge;
     
     @Before
     public void setup() {
@@ -91,7 +101,17 @@ public class ChargeServiceCreateTest extends ChargeServiceTest {
                 .withCardDetails(cardDetails)
                 .build();
         
-        when(mockedChargeDao.findByGatewayTransactionId("1PROV")).thenReturn(Optional.of(returnedChargeEntity));
+        when(mockedChargeDao.findByGatewayTransactionIdAndAccount(GATEWAY_ACCOUNT_ID, "1PROV")).thenReturn(Optional.of(returnedChargeEntity));
+
+        // Populate ChargeEntity with ID when inserting a telephone payment notification
+        doAnswer(invocation -> {
+            ChargeEntity chargeEntityBeingInserted = (ChargeEntity) invocation.getArguments()[0];
+            chargeEntityBeingInserted.setId(CHARGE_ENTITY_ID);
+            EXTERNAL_CHARGE_ID[0] = chargeEntityBeingInserted.getExternalId();
+            insertedTelephoneCharge = chargeEntityBeingInserted;
+            return Optional.of(CHARGE_ENTITY_ID);
+        }).when(mockedChargeDao).insertTelephoneChargeIfAbsent(any(ChargeEntity.class));
+        when(mockedChargeDao.findById(CHARGE_ENTITY_ID)).thenAnswer(invocation -> Optional.ofNullable(insertedTelephoneCharge));
     }
     
     @Test
@@ -104,10 +124,10 @@ public class ChargeServiceCreateTest extends ChargeServiceTest {
 
         service.create(telephoneChargeCreateRequest, GATEWAY_ACCOUNT_ID);
 
-        Optional<ChargeResponse> telephoneChargeResponse = service.findCharge(telephoneChargeCreateRequest);
+        Optional<ChargeResponse> telephoneChargeResponse = service.findCharge(GATEWAY_ACCOUNT_ID, telephoneChargeCreateRequest);
 
         ArgumentCaptor<String> gatewayTransactionIdArgumentCaptor = forClass(String.class);
-        verify(mockedChargeDao).findByGatewayTransactionId(gatewayTransactionIdArgumentCaptor.capture());
+        verify(mockedChargeDao).findByGatewayTransactionIdAndAccount(eq(GATEWAY_ACCOUNT_ID), gatewayTransactionIdArgumentCaptor.capture());
 
         String providerId = gatewayTransactionIdArgumentCaptor.getValue();
         assertThat(providerId, is("1PROV"));
@@ -401,7 +421,7 @@ public class ChargeServiceCreateTest extends ChargeServiceTest {
 
         service.create(telephoneChargeCreateRequest, GATEWAY_ACCOUNT_ID);
 
-        verify(mockedChargeDao).persist(chargeEntityArgumentCaptor.capture());
+        verify(mockedChargeDao).insertTelephoneChargeIfAbsent(chargeEntityArgumentCaptor.capture());
 
         ChargeEntity createdChargeEntity = chargeEntityArgumentCaptor.getValue();
         assertThat(createdChargeEntity.getId(), is(CHARGE_ENTITY_ID));
@@ -451,7 +471,7 @@ public class ChargeServiceCreateTest extends ChargeServiceTest {
 
         service.create(telephoneChargeCreateRequest, GATEWAY_ACCOUNT_ID);
 
-        verify(mockedChargeDao).persist(chargeEntityArgumentCaptor.capture());
+        verify(mockedChargeDao).insertTelephoneChargeIfAbsent(chargeEntityArgumentCaptor.capture());
 
         ChargeEntity createdChargeEntity = chargeEntityArgumentCaptor.getValue();
         assertThat(createdChargeEntity.getId(), is(CHARGE_ENTITY_ID));
@@ -500,7 +520,7 @@ public class ChargeServiceCreateTest extends ChargeServiceTest {
 
         service.create(telephoneChargeCreateRequest, GATEWAY_ACCOUNT_ID);
 
-        verify(mockedChargeDao).persist(chargeEntityArgumentCaptor.capture());
+        verify(mockedChargeDao).insertTelephoneChargeIfAbsent(chargeEntityArgumentCaptor.capture());
 
         ChargeEntity createdChargeEntity = chargeEntityArgumentCaptor.getValue();
         assertThat(createdChargeEntity.getId(), is(CHARGE_ENTITY_ID));
@@ -554,7 +574,7 @@ public class ChargeServiceCreateTest extends ChargeServiceTest {
 
         service.create(telephoneChargeCreateRequest, GATEWAY_ACCOUNT_ID);
 
-        verify(mockedChargeDao).persist(chargeEntityArgumentCaptor.capture());
+        verify(mockedChargeDao).insertTelephoneChargeIfAbsent(chargeEntityArgumentCaptor.capture());
 
         ChargeEntity createdChargeEntity = chargeEntityArgumentCaptor.getValue();
         assertThat(createdChargeEntity.getId(), is(CHARGE_ENTITY_ID));
@@ -607,7 +627,7 @@ public class ChargeServiceCreateTest extends ChargeServiceTest {
 
         service.create(telephoneChargeCreateRequest, GATEWAY_ACCOUNT_ID);
 
-        verify(mockedChargeDao).persist(chargeEntityArgumentCaptor.capture());
+        verify(mockedChargeDao).insertTelephoneChargeIfAbsent(chargeEntityArgumentCaptor.capture());
 
         ChargeEntity createdChargeEntity = chargeEntityArgumentCaptor.getValue();
         assertThat(createdChargeEntity.getId(), is(CHARGE_ENTITY_ID));
@@ -641,11 +661,57 @@ public class ChargeServiceCreateTest extends ChargeServiceTest {
 
         service.create(telephoneChargeCreateRequest, GATEWAY_ACCOUNT_ID);
 
-        verify(mockedChargeDao).persist(chargeEntityArgumentCaptor.capture());
+        verify(mockedChargeDao).insertTelephoneChargeIfAbsent(chargeEntityArgumentCaptor.capture());
 
         assertThat(chargeEntityArgumentCaptor.getValue().getSource(), equalTo(CARD_EXTERNAL_TELEPHONE));
     }
 
+    @Test
+    public void shouldOfferStateTransitionsForBothInitialEventsOfATelephoneCharge() {
+        PaymentOutcome paymentOutcome = new PaymentOutcome("success");
+        TelephoneChargeCreateRequest telephoneChargeCreateRequest = telephoneRequestBuilder
+                .withPaymentOutcome(paymentOutcome)
+                .build();
+
+        ChargeEventEntity notificationCreatedEvent = aChargeEventEntity().withStatus(PAYMENT_NOTIFICATION_CREATED).withUpdated(now(ZoneId.of("UTC"))).build();
+        ChargeEventEntity captureSubmittedEvent = aChargeEventEntity().withStatus(CAPTURE_SUBMITTED).withUpdated(now(ZoneId.of("UTC"))).build();
+        doAnswer(invocation -> {
+            ChargeEntity chargeEntityBeingInserted = (ChargeEntity) invocation.getArguments()[0];
+            chargeEntityBeingInserted.setId(CHARGE_ENTITY_ID);
+            chargeEntityBeingInserted.getEvents().add(captureSubmittedEvent);
+            chargeEntityBeingInserted.getEvents().add(notificationCreatedEvent);
+            insertedTelephoneCharge = chargeEntityBeingInserted;
+            return Optional.of(CHARGE_ENTITY_ID);
+        }).when(mockedChargeDao).insertTelephoneChargeIfAbsent(any(ChargeEntity.class));
+
+        service.create(telephoneChargeCreateRequest, GATEWAY_ACCOUNT_ID);
+
+        String externalId = insertedTelephoneCharge.getExternalId();
+        verify(mockStateTransitionService).offerPaymentStateTransition(externalId, UNDEFINED, PAYMENT_NOTIFICATION_CREATED, notificationCreatedEvent);
+        verify(mockStateTransitionService).offerPaymentStateTransition(externalId, PAYMENT_NOTIFICATION_CREATED, CAPTURE_SUBMITTED, captureSubmittedEvent);
+        verify(mockedChargeDao, never()).persist(any(ChargeEntity.class));
+    }
+
+    @Test
+    public void shouldReturnTheExistingChargeWhenTelephoneChargeAlreadyInsertedConcurrently() {
+        PaymentOutcome paymentOutcome = new PaymentOutcome("success");
+        TelephoneChargeCreateRequest telephoneChargeCreateRequest = telephoneRequestBuilder
+                .withPaymentOutcome(paymentOutcome)
+                .build();
+
+        when(mockedChargeDao.insertTelephoneChargeIfAbsent(any(ChargeEntity.class))).thenReturn(Optional.empty());
+
+        TelephoneChargeCreateResult result = service.create(telephoneChargeCreateRequest, GATEWAY_ACCOUNT_ID).get();
+        ChargeResponse chargeResponse = result.getChargeResponse();
+
+        assertThat(result.isCreated(), is(false));
+        verify(mockedChargeDao).findByGatewayTransactionIdAndAccount(GATEWAY_ACCOUNT_ID, "1PROV");
+        verify(mockedChargeDao, never()).findById(any());
+        verifyNoInteractions(mockStateTransitionService);
+        assertThat(chargeResponse.getAmount(), is(100L));
+        assertThat(chargeResponse.getReference().toString(), is("Some reference"));
+    }
+
 
     @Test
     public void shouldCreateATelephoneChargeResponseForSuccess() {
@@ -656,9 +722,12 @@ public class ChargeServiceCreateTest extends ChargeServiceTest {
                 .withPaymentOutcome(paymentOutcome)
                 .build();
 
-        ChargeResponse chargeResponse = service.create(telephoneChargeCreateRequest, GATEWAY_ACCOUNT_ID).get();
+        TelephoneChargeCreateResult result = service.create(telephoneChargeCreateRequest, GATEWAY_ACCOUNT_ID).get();
+        ChargeResponse chargeResponse = result.getChargeResponse();
 
-        verify(mockedChargeDao).persist(chargeEntityArgumentCaptor.capture());
+        verify(mockedChargeDao).insertTelephoneChargeIfAbsent(chargeEntityArgumentCaptor.capture());
+
+        assertThat(result.isCreated(), is(true));
 
         assertThat(chargeResponse.getAmount(), is(100L));
         assertThat(chargeResponse.getReference().toString(), is("Some reference"));
@@ -692,9 +761,9 @@ public class ChargeServiceCreateTest extends ChargeServiceTest {
                 .withCardExpiry(null)
                 .build();
 
-        ChargeResponse chargeResponse = service.create(telephoneChargeCreateRequest, GATEWAY_ACCOUNT_ID).get();
+        ChargeResponse chargeResponse = service.create(telephoneChargeCreateRequest, GATEWAY_ACCOUNT_ID).get().getChargeResponse();
 
-        verify(mockedChargeDao).persist(chargeEntityArgumentCaptor.capture());
+        verify(mockedChargeDao).insertTelephoneChargeIfAbsent(chargeEntityArgumentCaptor.capture());
 
         assertThat(chargeResponse.getAmount(), is(100L));
         assertThat(chargeResponse.getReference().toString(), is("Some reference"));
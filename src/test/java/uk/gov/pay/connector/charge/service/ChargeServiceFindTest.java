@@ -20,7 +20,10 @@ import java.net.URI;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 import static javax.ws.rs.HttpMethod.GET;
 import static javax.ws.rs.HttpMethod.POST;
@@ -30,6 +33,8 @@ import static org.hamcrest.core.IsNull.notNullValue;
 import static org.hamcrest.core.IsNull.nullValue;
 import static org.mockito.ArgumentCaptor.forClass;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoInteractions;
@@ -45,7 +50,7 @@ public class ChargeServiceFindTest extends ChargeServiceTest {
     
     @Before
     public void setup() {
-        when(mockedChargeDao.findByGatewayTransactionId("new")).thenReturn(Optional.empty());
+        when(mockedChargeDao.findByGatewayTransactionIdAndAccount(GATEWAY_ACCOUNT_ID, "new")).thenReturn(Optional.empty());
     }
     
     @Test
@@ -57,10 +62,10 @@ public class ChargeServiceFindTest extends ChargeServiceTest {
                 .withPaymentOutcome(paymentOutcome)
                 .build();
 
-        Optional<ChargeResponse> telephoneChargeResponse = service.findCharge(telephoneChargeCreateRequest);
+        Optional<ChargeResponse> telephoneChargeResponse = service.findCharge(GATEWAY_ACCOUNT_ID, telephoneChargeCreateRequest);
 
         ArgumentCaptor<String> gatewayTransactionIdArgumentCaptor = forClass(String.class);
-        verify(mockedChargeDao).findByGatewayTransactionId(gatewayTransactionIdArgumentCaptor.capture());
+        verify(mockedChargeDao).findByGatewayTransactionIdAndAccount(eq(GATEWAY_ACCOUNT_ID), gatewayTransactionIdArgumentCaptor.capture());
 
         String providerId = gatewayTransactionIdArgumentCaptor.getValue();
         assertThat(providerId, is("new"));
@@ -352,4 +357,50 @@ public class ChargeServiceFindTest extends ChargeServiceTest {
 
         assertThat(charge.isPresent(), is(false));
     }
+
+    @Test
+    public void findByProviderAndTransactionIdsFromDbOrLedger_shouldLoadFromDbTogetherAndFallBackToLedger() {
+        ChargeEntity chargeEntity = aValidChargeEntity().withTransactionId("in-db").build();
+
+        LedgerTransaction transaction = new LedgerTransaction();
+        transaction.setTransactionId("ledger-external-id");
+        transaction.setAmount(1000L);
+        transaction.setCreatedDate(ZonedDateTime.now(ZoneId.of("UTC")).toString());
+        transaction.setGatewayAccountId(String.valueOf(GATEWAY_ACCOUNT_ID));
+        when(mockedChargeDao.findByProviderAndTransactionIds("sandbox", Set.of("in-db", "in-ledger", "unknown")))
+                .thenReturn(List.of(chargeEntity));
+        when(ledgerService.getTransactionsForProviderAndGatewayTransactionIds(eq("sandbox"),
+                argThat(ids -> Set.copyOf(ids).equals(Set.of("in-ledger", "unknown")))))
+                .thenReturn(Map.of("in-ledger", transaction));
+
+        Map<String, Charge> charges = service.findByProviderAndTransactionIdsFromDbOrLedger("sandbox",
+                Set.of("in-db", "in-ledger", "unknown"));
+
+        assertThat(charges.size(), is(2));
+        assertThat(charges.get("in-db").getExternalId(), is(chargeEntity.getExternalId()));
+        assertThat(charges.get("in-ledger").getExternalId(), is("ledger-external-id"));
+        verify(mockedChargeDao, never()).findByProviderAndTransactionId(any(), any());
+        verify(ledgerService, never()).getTransactionForProviderAndGatewayTransactionId(any(), any());
+    }
+
+    @Test
+    public void findCharges_shouldLookUpChargesNotInConnectorInLedgerTogether() {
+        ChargeEntity chargeEntity = aValidChargeEntity().build();
+
+        LedgerTransaction transaction = new LedgerTransaction();
+        transaction.setTransactionId("in-ledger");
+        transaction.setAmount(1000L);
+        transaction.setCreatedDate(ZonedDateTime.now(ZoneId.of("UTC")).toString());
+        transaction.setGatewayAccountId(String.valueOf(GATEWAY_ACCOUNT_ID));
+        List<String> chargeExternalIds = List.of(chargeEntity.getExternalId(), "in-ledger", "unknown");
+        when(mockedChargeDao.findByExternalIds(chargeExternalIds)).thenReturn(List.of(chargeEntity));
+        when(ledgerService.getTransactions(List.of("in-ledger", "unknown"))).thenReturn(Map.of("in-ledger", transaction));
+
+        Map<String, Charge> charges = service.findCharges(chargeExternalIds);
+
+        assertThat(charges.size(), is(2));
+        assertThat(charges.get(chargeEntity.getExternalId()).getExternalId(), is(chargeEntity.getExternalId()));
+        assertThat(charges.get("in-ledger").getExternalId(), is("in-ledger"));
+        verify(ledgerService, never()).getTransaction(any());
+    }
 }
@@ -28,6 +28,7 @@ import uk.gov.pay.connector.pact.RefundHistoryEntityFixture;
 import uk.gov.pay.connector.queue.StateTransitionService;
 import uk.gov.pay.connector.refund.dao.RefundDao;
 import uk.gov.pay.connector.refund.model.domain.RefundEntity;
+import uk.gov.pay.connector.workpartition.service.WorkPartitionService;
 
 import java.time.ZonedDateTime;
 import java.util.List;
@@ -38,6 +39,7 @@ import static org.junit.Assert.assertThat;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.mock;
@@ -62,6 +64,8 @@ public class EmittedEventsBackfillServiceTest {
     @Mock
     private StateTransitionService stateTransitionService;
     @Mock
+    private WorkPartitionService workPartitionService;
+    @Mock
     private ConnectorConfiguration connectorConfiguration;
 
     @Captor
@@ -83,7 +87,11 @@ public class EmittedEventsBackfillServiceTest {
         root.setLevel(Level.INFO);
         root.addAppender(mockAppender);
         emittedEventsBackfillService = new EmittedEventsBackfillService(emittedEventDao, chargeService, refundDao, chargeDao,
-                eventService, stateTransitionService, connectorConfiguration);
+                eventService, stateTransitionService, workPartitionService, connectorConfiguration);
+        when(workPartitionService.runExclusively(anyString(), any())).thenAnswer(invocation -> {
+            invocation.<Runnable>getArgument(1).run();
+            return true;
+        });
         chargeEntity = ChargeEntityFixture
                 .aValidChargeEntity()
                 .build();
@@ -1,17 +1,38 @@
 package uk.gov.pay.connector.events;
 
+import com.amazonaws.services.sqs.model.BatchResultErrorEntry;
+import com.amazonaws.services.sqs.model.SendMessageBatchRequestEntry;
+import com.amazonaws.services.sqs.model.SendMessageBatchResult;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 import uk.gov.pay.connector.app.ConnectorConfiguration;
 import uk.gov.pay.connector.app.EventQueueConfig;
 import uk.gov.pay.connector.app.SqsConfig;
 import uk.gov.pay.connector.events.model.Event;
+import uk.gov.pay.connector.queue.QueueException;
+import uk.gov.pay.connector.queue.QueueMessage;
 import uk.gov.pay.connector.queue.sqs.SqsQueueService;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
@@ -34,6 +55,8 @@ public class EventQueueTest {
     @Mock
     private Event event;
 
+    private final ExecutorService publisherExecutor = Executors.newSingleThreadExecutor();
+
     @Before
     public void setUp() {
         when(mockConnectorConfiguration.getSqsConfig()).thenReturn(sqsConfig);
@@ -41,11 +64,15 @@ public class EventQueueTest {
         when(sqsConfig.getEventQueueUrl()).thenReturn(eventQueueUrl);
     }
 
+    @After
+    public void tearDown() {
+        publisherExecutor.shutdownNow();
+    }
+
     @Test
     public void emitEvent_serialisesTheEventAndSendsToSqs() throws Exception {
         when(eventQueueConfig.getEventQueueEnabled()).thenReturn(true);
-        eventQueue = new EventQueue(mockSqsQueueService,
-                mockConnectorConfiguration);
+        eventQueue = new EventQueue(mockSqsQueueService, mockConnectorConfiguration, publisherExecutor);
         when(event.toJsonString()).thenReturn("{~~SERIALIZED~~}");
 
         eventQueue.emitEvent(event);
@@ -56,11 +83,135 @@ public class EventQueueTest {
     @Test
     public void emitEvent_doesNotEmitIfFeatureFlagIsFalse() throws Exception {
         when(eventQueueConfig.getEventQueueEnabled()).thenReturn(false);
-        eventQueue = new EventQueue(mockSqsQueueService,
-                mockConnectorConfiguration);
+        eventQueue = new EventQueue(mockSqsQueueService, mockConnectorConfiguration, publisherExecutor);
         
         eventQueue.emitEvent(event);
 
         verifyNoMoreInteractions(mockSqsQueueService);
     }
+
+    @Test
+    public void emitEventAsync_serialisesTheEventAndSendsToSqsWithoutBlocking() throws Exception {
+        when(eventQueueConfig.getEventQueueEnabled()).thenReturn(true);
+        eventQueue = new EventQueue(mockSqsQueueService, mockConnectorConfiguration, publisherExecutor);
+        when(event.toJsonString()).thenReturn("{~~SERIALIZED~~}");
+        CompletableFuture<QueueMessage> pendingSend = new CompletableFuture<>();
+        when(mockSqsQueueService.sendMessageAsync(eventQueueUrl, "{~~SERIALIZED~~}")).thenReturn(pendingSend);
+
+        CompletableFuture<Void> result = eventQueue.emitEventAsync(event);
+
+        assertThat(result.isDone(), is(false));
+        pendingSend.complete(mock(QueueMessage.class));
+        assertThat(result.isDone(), is(true));
+    }
+
+    @Test
+    public void emitEventAsync_doesNotEmitIfFeatureFlagIsFalse() {
+        when(eventQueueConfig.getEventQueueEnabled()).thenReturn(false);
+        eventQueue = new EventQueue(mockSqsQueueService, mockConnectorConfiguration, publisherExecutor);
+
+        assertThat(eventQueue.emitEventAsync(event).isDone(), is(true));
+        verifyNoMoreInteractions(mockSqsQueueService);
+    }
+
+    @Test
+    public void emitEvents_sendsEventsInBatchesOfAtMostTen() throws Exception {
+        when(eventQueueConfig.getEventQueueEnabled()).thenReturn(true);
+        eventQueue = new EventQueue(mockSqsQueueService, mockConnectorConfiguration, publisherExecutor);
+        List<Event> events = events(11, "{}");
+        when(mockSqsQueueService.sendMessageBatch(eq(eventQueueUrl), anyList())).thenReturn(new SendMessageBatchResult());
+
+        List<Event> failedEvents = eventQueue.emitEvents(events);
+
+        assertThat(failedEvents, is(empty()));
+        ArgumentCaptor<List<SendMessageBatchRequestEntry>> entriesCaptor = ArgumentCaptor.forClass(List.class);
+        verify(mockSqsQueueService, times(2)).sendMessageBatch(eq(eventQueueUrl), entriesCaptor.capture());
+        assertThat(entriesCaptor.getAllValues().get(0), hasSize(10));
+        assertThat(entriesCaptor.getAllValues().get(1), hasSize(1));
+    }
+
+    @Test
+    public void emitEvents_startsANewBatchWhenThePayloadLimitWouldBeExceeded() throws Exception {
+        when(eventQueueConfig.getEventQueueEnabled()).thenReturn(true);
+        eventQueue = new EventQueue(mockSqsQueueService, mockConnectorConfiguration, publisherExecutor);
+        String largeJson = "x".repeat(100 * 1024);
+        List<Event> events = events(3, largeJson);
+        when(mockSqsQueueService.sendMessageBatch(eq(eventQueueUrl), anyList())).thenReturn(new SendMessageBatchResult());
+
+        eventQueue.emitEvents(events);
+
+        ArgumentCaptor<List<SendMessageBatchRequestEntry>> entriesCaptor = ArgumentCaptor.forClass(List.class);
+        verify(mockSqsQueueService, times(2)).sendMessageBatch(eq(eventQueueUrl), entriesCaptor.capture());
+        assertThat(entriesCaptor.getAllValues().get(0), hasSize(2));
+        assertThat(entriesCaptor.getAllValues().get(1), hasSize(1));
+    }
+
+    @Test
+    public void emitEvents_retriesEntriesThatFailedOnTheSqsSideOnly() throws Exception {
+        when(eventQueueConfig.getEventQueueEnabled()).thenReturn(true);
+        eventQueue = new EventQueue(mockSqsQueueService, mockConnectorConfiguration, publisherExecutor);
+        List<Event> events = events(3, "{}");
+        when(mockSqsQueueService.sendMessageBatch(eq(eventQueueUrl), anyList()))
+                .thenReturn(new SendMessageBatchResult().withFailed(
+                        new BatchResultErrorEntry().withId("1").withSenderFault(false),
+                        new BatchResultErrorEntry().withId("2").withSenderFault(true)))
+                .thenReturn(new SendMessageBatchResult());
+
+        List<Event> failedEvents = eventQueue.emitEvents(events);
+
+        assertThat(failedEvents, contains(events.get(2)));
+        ArgumentCaptor<List<SendMessageBatchRequestEntry>> entriesCaptor = ArgumentCaptor.forClass(List.class);
+        verify(mockSqsQueueService, times(2)).sendMessageBatch(eq(eventQueueUrl), entriesCaptor.capture());
+        assertThat(entriesCaptor.getAllValues().get(1), hasSize(1));
+        assertThat(entriesCaptor.getAllValues().get(1).get(0).getId(), is("1"));
+    }
+
+    @Test
+    public void emitEvents_returnsEventsStillFailingAfterMaximumAttempts() throws Exception {
+        when(eventQueueConfig.getEventQueueEnabled()).thenReturn(true);
+        eventQueue = new EventQueue(mockSqsQueueService, mockConnectorConfiguration, publisherExecutor);
+        List<Event> events = events(2, "{}");
+        when(mockSqsQueueService.sendMessageBatch(eq(eventQueueUrl), anyList())).thenThrow(new QueueException("unavailable"));
+
+        List<Event> failedEvents = eventQueue.emitEvents(events);
+
+        assertThat(failedEvents, is(events));
+        verify(mockSqsQueueService, times(EventQueue.MAXIMUM_BATCH_ENTRY_ATTEMPTS)).sendMessageBatch(eq(eventQueueUrl), anyList());
+    }
+
+    @Test
+    public void emitEvents_returnsTheEventsOfABatchWhoseSendThrowsUnexpectedly() throws Exception {
+        when(eventQueueConfig.getEventQueueEnabled()).thenReturn(true);
+        eventQueue = new EventQueue(mockSqsQueueService, mockConnectorConfiguration, publisherExecutor);
+        List<Event> events = events(12, "{}");
+        when(mockSqsQueueService.sendMessageBatch(eq(eventQueueUrl), anyList()))
+                .thenThrow(new RuntimeException("connection reset"))
+                .thenReturn(new SendMessageBatchResult());
+
+        List<Event> failedEvents = eventQueue.emitEvents(events);
+
+        assertThat(failedEvents, is(events.subList(0, 10)));
+        verify(mockSqsQueueService, times(2)).sendMessageBatch(eq(eventQueueUrl), anyList());
+    }
+
+    @Test
+    public void emitEvents_doesNotEmitIfFeatureFlagIsFalse() {
+        when(eventQueueConfig.getEventQueueEnabled()).thenReturn(false);
+        eventQueue = new EventQueue(mockSqsQueueService, mockConnectorConfiguration, publisherExecutor);
+
+        List<Event> failedEvents = eventQueue.emitEvents(List.of(event));
+
+        assertThat(failedEvents, is(empty()));
+        verifyNoMoreInteractions(mockSqsQueueService);
+    }
+
+    private List<Event> events(int numberOfEvents, String json) throws Exception {
+        List<Event> events = new ArrayList<>();
+        for (int i = 0; i < numberOfEvents; i++) {
+            Event event = mock(Event.class);
+            when(event.toJsonString()).thenReturn(json);
+            events.add(event);
+        }
+        return events;
+    }
 }
@@ -2,6 +2,7 @@ package uk.gov.pay.connector.events;
 
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
@@ -11,13 +12,22 @@ import uk.gov.pay.connector.events.model.charge.PaymentCreated;
 import uk.gov.pay.connector.events.model.charge.PaymentEvent;
 import uk.gov.pay.connector.queue.QueueException;
 
+import javax.persistence.PersistenceException;
 import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import static java.time.ZoneOffset.UTC;
 import static java.time.ZonedDateTime.now;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 @RunWith(MockitoJUnitRunner.class)
 public class EventServiceTest {
@@ -31,33 +41,52 @@ public class EventServiceTest {
     EventService eventService;
 
     @Test
-    public void emitAndRecordEvent_shouldRecordEmission() throws QueueException {
+    public void emitAndRecordEvent_shouldRecordEventBeforeSendingItAndMarkItAsEmitted() {
         Event event = new PaymentEvent("external-id", now());
+        when(eventQueue.emitEventAsync(event)).thenReturn(CompletableFuture.completedFuture(null));
         eventService.emitAndRecordEvent(event);
 
-        verify(emittedEventDao).recordEmission(event, null);
-        verify(eventQueue).emitEvent(event);
+        InOrder inOrder = inOrder(emittedEventDao, eventQueue);
+        inOrder.verify(emittedEventDao).recordEmission(event.getResourceType(), event.getResourceExternalId(),
+                event.getEventType(), event.getTimestamp(), null);
+        inOrder.verify(eventQueue).emitEventAsync(event);
+        inOrder.verify(emittedEventDao).markEventAsEmitted(event);
     }
 
     @Test
-    public void emitAndRecordEvent_shouldRecordEmissionWithDoNotRetryEmitUntilDate() throws QueueException {
+    public void emitAndRecordEvent_shouldRecordEventWithDoNotRetryEmitUntilDate() {
         Event event = new PaymentEvent("external-id", now());
         ZonedDateTime doNotRetryEmitUntilDate = now(UTC);
+        when(eventQueue.emitEventAsync(event)).thenReturn(CompletableFuture.completedFuture(null));
         eventService.emitAndRecordEvent(event, doNotRetryEmitUntilDate);
 
-        verify(emittedEventDao).recordEmission(event, doNotRetryEmitUntilDate);
-        verify(eventQueue).emitEvent(event);
+        verify(emittedEventDao).recordEmission(event.getResourceType(), event.getResourceExternalId(),
+                event.getEventType(), event.getTimestamp(), doNotRetryEmitUntilDate);
+        verify(emittedEventDao).markEventAsEmitted(event);
     }
 
     @Test
-    public void emitAndRecordEvent_shouldRecordEmissionWithoutEmittedDateForQueueException() throws QueueException {
+    public void emitAndRecordEvent_shouldLeaveEventUnmarkedForQueueException() {
         Event event = new PaymentCreated("external-id", null, now());
-        doThrow(QueueException.class).when(eventQueue).emitEvent(event);
+        when(eventQueue.emitEventAsync(event)).thenReturn(CompletableFuture.failedFuture(new QueueException("unavailable")));
         eventService.emitAndRecordEvent(event);
 
-        verify(eventQueue).emitEvent(event);
-        verify(emittedEventDao, never()).recordEmission(event, null);
         verify(emittedEventDao).recordEmission(event.getResourceType(), event.getResourceExternalId(), event.getEventType(), event.getTimestamp(), null);
+        verify(emittedEventDao, never()).markEventAsEmitted(event);
+    }
+
+    @Test
+    public void emitAndRecordEvent_shouldNotSendEventIfItCannotBeRecorded() {
+        Event event = new PaymentEvent("external-id", now());
+        doThrow(new PersistenceException("database unavailable")).when(emittedEventDao).recordEmission(
+                event.getResourceType(), event.getResourceExternalId(), event.getEventType(), event.getTimestamp(), null);
+
+        try {
+            eventService.emitAndRecordEvent(event);
+            fail("Expected exception to be rethrown");
+        } catch (PersistenceException e) {
+            verify(eventQueue, never()).emitEventAsync(event);
+        }
     }
 
     @Test
@@ -68,4 +97,45 @@ public class EventServiceTest {
         verify(eventQueue).emitEvent(event);
         verify(emittedEventDao).markEventAsEmitted(event);
     }
+
+    @Test
+    public void emitAndMarkEventsAsEmitted_shouldOnlyMarkEventsThatWereSent() {
+        Event sentEvent = new PaymentEvent("sent-external-id", now());
+        Event failedEvent = new PaymentEvent("failed-external-id", now());
+        when(eventQueue.emitEvents(List.of(sentEvent, failedEvent))).thenReturn(List.of(failedEvent));
+
+        List<Event> failedEvents = eventService.emitAndMarkEventsAsEmitted(List.of(sentEvent, failedEvent));
+
+        assertThat(failedEvents, contains(failedEvent));
+        verify(emittedEventDao).markEventsAsEmitted(List.of(sentEvent));
+    }
+
+    @Test
+    public void emitAndMarkEventsAsEmitted_shouldNotTouchTheDatabaseIfNothingWasSent() {
+        Event failedEvent = new PaymentEvent("failed-external-id", now());
+        when(eventQueue.emitEvents(List.of(failedEvent))).thenReturn(List.of(failedEvent));
+
+        eventService.emitAndMarkEventsAsEmitted(List.of(failedEvent));
+
+        verify(emittedEventDao, never()).markEventsAsEmitted(anyList());
+    }
+
+    @Test
+    public void emitAndRecordEvents_shouldRecordEventsBeforeSendingThemAndMarkOnlyThoseThatWereSent() {
+        Event sentEvent = new PaymentEvent("sent-external-id", now());
+        Event failedEvent = new PaymentEvent("failed-external-id", now());
+        ZonedDateTime doNotRetryEmitUntilDate = now(UTC);
+        when(eventQueue.emitEvents(List.of(sentEvent, failedEvent))).thenReturn(List.of(failedEvent));
+
+        List<Event> failedEvents = eventService.emitAndRecordEvents(List.of(sentEvent, failedEvent), doNotRetryEmitUntilDate);
+
+        assertThat(failedEvents, contains(failedEvent));
+        InOrder inOrder = inOrder(emittedEventDao, eventQueue);
+        inOrder.verify(emittedEventDao).recordEmission(sentEvent.getResourceType(), sentEvent.getResourceExternalId(),
+                sentEvent.getEventType(), sentEvent.getTimestamp(), doNotRetryEmitUntilDate);
+        inOrder.verify(emittedEventDao).recordEmission(failedEvent.getResourceType(), failedEvent.getResourceExternalId(),
+                failedEvent.getEventType(), failedEvent.getTimestamp(), doNotRetryEmitUntilDate);
+        inOrder.verify(eventQueue).emitEvents(List.of(sentEvent, failedEvent));
+        inOrder.verify(emittedEventDao).markEventsAsEmitted(List.of(sentEvent));
+    }
 }
@@ -1,117 +1,193 @@
 package uk.gov.pay.connector.events;
 
+import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
-import uk.gov.pay.connector.chargeevent.model.domain.ChargeEventEntity;
+import uk.gov.pay.connector.app.ConnectorConfiguration;
+import uk.gov.pay.connector.app.EventQueueConfig;
 import uk.gov.pay.connector.events.eventdetails.charge.PaymentCreatedEventDetails;
 import uk.gov.pay.connector.events.exception.EventCreationException;
+import uk.gov.pay.connector.events.model.Event;
 import uk.gov.pay.connector.events.model.EventFactory;
+import uk.gov.pay.connector.events.model.StateTransitionEvents;
 import uk.gov.pay.connector.events.model.charge.PaymentCreated;
 import uk.gov.pay.connector.events.model.charge.PaymentEvent;
 import uk.gov.pay.connector.queue.PaymentStateTransition;
-import uk.gov.pay.connector.queue.QueueException;
-import uk.gov.pay.connector.queue.StateTransitionQueue;
+import uk.gov.pay.connector.queue.StateTransition;
+import uk.gov.pay.connector.queue.StateTransitionOutboxEntity;
+import uk.gov.pay.connector.queue.dao.StateTransitionOutboxDao;
 
 import java.time.ZonedDateTime;
 import java.util.List;
-import java.util.concurrent.TimeUnit;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.anyLong;
-import static org.mockito.Mockito.atMost;
-import static org.mockito.Mockito.doThrow;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
-import static org.mockito.Mockito.spy;
-import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 
 @RunWith(MockitoJUnitRunner.class)
 public class StateTransitionEmitterProcessTest {
+    private static final long OUTBOX_ID = 7L;
+
     @Mock
-    StateTransitionQueue stateTransitionQueue;
+    StateTransitionOutboxDao stateTransitionOutboxDao;
 
     @Mock
     StateTransitionQueueMetricEmitter stateTransitionQueueMetricEmitter;
 
     @Mock
     private EventFactory eventFactory;
-    
+
     @Mock
     EventService mockEventService;
 
-    @InjectMocks
+    @Mock
+    ConnectorConfiguration connectorConfiguration;
+
+    @Mock
+    EventQueueConfig eventQueueConfig;
+
     StateTransitionEmitterProcess stateTransitionEmitterProcess;
 
+    @Before
+    public void setUp() {
+        when(connectorConfiguration.getEventQueueConfig()).thenReturn(eventQueueConfig);
+        when(eventQueueConfig.getStateTransitionOutboxBatchSize()).thenReturn(50);
+        when(eventQueueConfig.getStateTransitionOutboxLeaseInSeconds()).thenReturn(60);
+        stateTransitionEmitterProcess = new StateTransitionEmitterProcess(stateTransitionOutboxDao, eventFactory,
+                stateTransitionQueueMetricEmitter, mockEventService, connectorConfiguration);
+    }
+
     @Test
-    public void shouldEmitPaymentEventGivenStateTransitionMessageOnQueue() throws Exception {
-        PaymentStateTransition paymentStateTransition = new PaymentStateTransition(100L, PaymentCreated.class);
-        when(eventFactory.createEvents(any(PaymentStateTransition.class))).thenReturn(List.of(
-                new PaymentCreated(
-                        "id",
-                        mock(PaymentCreatedEventDetails.class),
-                        ZonedDateTime.now()
-                )));
-        when(stateTransitionQueue.poll(anyLong(), any(TimeUnit.class))).thenReturn(paymentStateTransition);
+    public void shouldEmitPaymentEventAndDeleteOutboxEntryGivenDueStateTransition() throws Exception {
+        givenClaimedStateTransition(new PaymentStateTransition(100L, PaymentCreated.class));
+        Event event = new PaymentCreated("id", mock(PaymentCreatedEventDetails.class), ZonedDateTime.now());
+        givenEventsCreated(List.of(event));
 
         stateTransitionEmitterProcess.handleStateTransitionMessages();
 
-        verify(mockEventService).emitAndMarkEventAsEmitted(any(PaymentCreated.class));
+        verify(stateTransitionOutboxDao).claimDue(50, 60000L);
+        verify(mockEventService).emitAndMarkEventsAsEmitted(List.of(event));
+        verify(stateTransitionOutboxDao).delete(List.of(OUTBOX_ID));
+        verify(stateTransitionQueueMetricEmitter).recordEmissionLag(any(ZonedDateTime.class));
+        verify(stateTransitionQueueMetricEmitter).recordDrain(eq(1), anyLong());
     }
 
     @Test
-    public void shouldPutPaymentTransitionBackOnQueueIfEventCreationFails() throws Exception {
-        PaymentStateTransition paymentStateTransition = new PaymentStateTransition(100L, PaymentEvent.class);
-        when(stateTransitionQueue.poll(anyLong(), any(TimeUnit.class))).thenReturn(paymentStateTransition);
-        when(eventFactory.createEvents(any(PaymentStateTransition.class))).thenThrow(EventCreationException.class);
+    public void shouldRescheduleOutboxEntryIfEventCreationFails() throws Exception {
+        givenClaimedStateTransition(new PaymentStateTransition(100L, PaymentEvent.class));
+        when(eventFactory.createEvents(anyList())).thenAnswer(invocation -> {
+            List<StateTransition> stateTransitions = invocation.getArgument(0);
+            return new StateTransitionEvents().addFailure(stateTransitions.get(0), new EventCreationException("100"));
+        });
 
         stateTransitionEmitterProcess.handleStateTransitionMessages();
 
-        verifyNoMoreInteractions(mockEventService);
-        verify(stateTransitionQueue).offer(any(PaymentStateTransition.class));
+        verify(mockEventService).emitAndMarkEventsAsEmitted(List.of());
+        verify(stateTransitionOutboxDao).reschedule(eq(OUTBOX_ID), eq(2), any(ZonedDateTime.class));
+        verify(stateTransitionOutboxDao).delete(List.of());
     }
 
     @Test
-    public void shouldPutPaymentTransitionBackOnQueueIfEventEmitFails() throws Exception {
-        PaymentStateTransition paymentStateTransition = new PaymentStateTransition(100L, PaymentEvent.class);
-        ChargeEventEntity chargeEvent = mock(ChargeEventEntity.class);
-        when(stateTransitionQueue.poll(anyLong(), any(TimeUnit.class))).thenReturn(paymentStateTransition);
-        when(eventFactory.createEvents(any(PaymentStateTransition.class))).thenReturn(List.of(
-                new PaymentCreated(
-                        "id",
-                        mock(PaymentCreatedEventDetails.class),
-                        ZonedDateTime.now()
-                )));
-        doThrow(QueueException.class).when(mockEventService).emitAndMarkEventAsEmitted(any());
+    public void shouldRescheduleOutboxEntryIfEventEmitFails() throws Exception {
+        givenClaimedStateTransition(new PaymentStateTransition(100L, PaymentEvent.class));
+        Event event = new PaymentCreated("id", mock(PaymentCreatedEventDetails.class), ZonedDateTime.now());
+        givenEventsCreated(List.of(event));
+        when(mockEventService.emitAndMarkEventsAsEmitted(List.of(event))).thenReturn(List.of(event));
 
         stateTransitionEmitterProcess.handleStateTransitionMessages();
 
-        verify(stateTransitionQueue).offer(any(PaymentStateTransition.class));
+        verify(stateTransitionOutboxDao).reschedule(eq(OUTBOX_ID), eq(2), any(ZonedDateTime.class));
+        verify(stateTransitionOutboxDao).delete(List.of());
     }
 
+    @Test
+    public void shouldDiscardOutboxEntryIfItHasExceededMaxAttempts() throws Exception {
+        int maximumStateTransitionMessageAttempts = 10;
+        givenClaimedStateTransition(new PaymentStateTransition(100L, PaymentEvent.class, maximumStateTransitionMessageAttempts, 0));
+
+        stateTransitionEmitterProcess.handleStateTransitionMessages();
+
+        verifyNoMoreInteractions(eventFactory);
+        verify(mockEventService).emitAndMarkEventsAsEmitted(List.of());
+        verify(stateTransitionOutboxDao).delete(List.of(OUTBOX_ID));
+        verify(stateTransitionOutboxDao, never()).reschedule(anyLong(), anyInt(), any());
+    }
 
     @Test
-    public void shouldNotPutPaymentTransitionBackOnQueueIfItHasExceededMaxAttempts() throws Exception {
-        StateTransitionQueue spyQueue = spy(new StateTransitionQueue());
-        StateTransitionEmitterProcess stateTransitionEmitterProcess = new StateTransitionEmitterProcess(spyQueue, eventFactory, stateTransitionQueueMetricEmitter, mockEventService);
-        PaymentStateTransition paymentStateTransition = new PaymentStateTransition(100L, PaymentEvent.class, 0);
+    public void shouldEmitEventsForAllClaimedStateTransitionsTogether() throws Exception {
+        StateTransitionOutboxEntity first = outboxEntry(1L, new PaymentStateTransition(100L, PaymentCreated.class));
+        StateTransitionOutboxEntity second = outboxEntry(2L, new PaymentStateTransition(101L, PaymentCreated.class));
+        when(stateTransitionOutboxDao.claimDue(anyInt(), anyLong())).thenReturn(List.of(first, second));
+        Event firstEvent = new PaymentCreated("first", mock(PaymentCreatedEventDetails.class), ZonedDateTime.now());
+        Event secondEvent = new PaymentCreated("second", mock(PaymentCreatedEventDetails.class), ZonedDateTime.now());
+        givenEventsCreated(List.of(firstEvent), List.of(secondEvent));
+        when(mockEventService.emitAndMarkEventsAsEmitted(List.of(firstEvent, secondEvent))).thenReturn(List.of(secondEvent));
 
-        when(eventFactory.createEvents(any(PaymentStateTransition.class))).thenThrow(EventCreationException.class);
+        stateTransitionEmitterProcess.handleStateTransitionMessages();
 
-        spyQueue.offer(paymentStateTransition);
+        verify(stateTransitionOutboxDao).delete(List.of(1L));
+        verify(stateTransitionOutboxDao).reschedule(eq(2L), eq(2), any(ZonedDateTime.class));
+        verify(stateTransitionQueueMetricEmitter).recordDrain(eq(2), anyLong());
+    }
 
-        int maximumStateTransitionMessageRetries = 10;
+    @Test
+    public void shouldCreateEventsForAllClaimedStateTransitionsInOneCall() throws Exception {
+        StateTransitionOutboxEntity first = outboxEntry(1L, new PaymentStateTransition(100L, PaymentCreated.class));
+        StateTransitionOutboxEntity second = outboxEntry(2L, new PaymentStateTransition(101L, PaymentCreated.class));
+        when(stateTransitionOutboxDao.claimDue(anyInt(), anyLong())).thenReturn(List.of(first, second));
+        Event firstEvent = new PaymentCreated("first", mock(PaymentCreatedEventDetails.class), ZonedDateTime.now());
+        when(eventFactory.createEvents(anyList())).thenAnswer(invocation -> {
+            List<StateTransition> stateTransitions = invocation.getArgument(0);
+            return new StateTransitionEvents()
+                    .add(stateTransitions.get(0), List.of(firstEvent))
+                    .addFailure(stateTransitions.get(1), new EventCreationException("101"));
+        });
+
+        stateTransitionEmitterProcess.handleStateTransitionMessages();
+
+        verify(eventFactory).createEvents(anyList());
+        verify(mockEventService).emitAndMarkEventsAsEmitted(List.of(firstEvent));
+        verify(stateTransitionOutboxDao).delete(List.of(1L));
+        verify(stateTransitionOutboxDao).reschedule(eq(2L), eq(2), any(ZonedDateTime.class));
+    }
+
+    @Test
+    public void shouldNotEmitAnythingWhenNoStateTransitionsAreDue() throws Exception {
+        when(stateTransitionOutboxDao.claimDue(anyInt(), anyLong())).thenReturn(List.of());
 
-        // try until message attempt limit, factor in initial offer
-        for (int i = 0; i < maximumStateTransitionMessageRetries; i++) {
-            verify(spyQueue, times(i + 1)).offer(any(PaymentStateTransition.class));
-            stateTransitionEmitterProcess.handleStateTransitionMessages();
-        }
+        stateTransitionEmitterProcess.handleStateTransitionMessages();
+
+        verifyNoMoreInteractions(eventFactory, mockEventService);
+    }
+
+    private void givenClaimedStateTransition(StateTransition stateTransition) {
+        when(stateTransitionOutboxDao.claimDue(anyInt(), anyLong())).thenReturn(List.of(outboxEntry(OUTBOX_ID, stateTransition)));
+    }
+
+    @SafeVarargs
+    private void givenEventsCreated(List<Event>... eventsPerStateTransition) {
+        when(eventFactory.createEvents(anyList())).thenAnswer(invocation -> {
+            List<StateTransition> stateTransitions = invocation.getArgument(0);
+            StateTransitionEvents stateTransitionEvents = new StateTransitionEvents();
+            for (int i = 0; i < stateTransitions.size(); i++) {
+                stateTransitionEvents.add(stateTransitions.get(i), eventsPerStateTransition[i]);
+            }
+            return stateTransitionEvents;
+        });
+    }
 
-        verify(spyQueue, atMost(maximumStateTransitionMessageRetries)).offer(any());
+    private StateTransitionOutboxEntity outboxEntry(long id, StateTransition stateTransition) {
+        StateTransitionOutboxEntity outboxEntity = StateTransitionOutboxEntity.from(stateTransition, ZonedDateTime.now());
+        outboxEntity.setId(id);
+        return outboxEntity;
     }
 }
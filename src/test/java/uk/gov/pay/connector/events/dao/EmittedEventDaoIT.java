@@ -144,6 +144,49 @@ public class EmittedEventDaoIT extends DaoITestBase {
         assertThat(event.get("emitted_date").toString(), is(emittedDateBeforeUpdate));
     }
 
+    @Test
+    public void markEventsAsEmitted_shouldMarkEveryRecordedEventThatHasNotBeenEmitted() {
+        final RefundSubmitted firstEvent = new RefundSubmitted("first-refund-external-id", "parent-external-id",
+                null, ZonedDateTime.parse("2019-01-01T14:00:00Z"));
+        final RefundSubmitted secondEvent = new RefundSubmitted("second-refund-external-id", "parent-external-id",
+                null, ZonedDateTime.parse("2019-01-01T15:00:00Z"));
+        final RefundSubmitted notRecordedEvent = new RefundSubmitted("not-recorded-refund-external-id", "parent-external-id",
+                null, ZonedDateTime.parse("2019-01-01T16:00:00Z"));
+        final PaymentCreated alreadyEmittedEvent = aPaymentCreatedEvent();
+        emittedEventDao.recordEmission(firstEvent.getResourceType(), firstEvent.getResourceExternalId(),
+                firstEvent.getEventType(), null, null);
+        emittedEventDao.recordEmission(secondEvent.getResourceType(), secondEvent.getResourceExternalId(),
+                secondEvent.getEventType(), null, null);
+        emittedEventDao.recordEmission(alreadyEmittedEvent, null);
+        String alreadyEmittedDate = emittedEventFor(alreadyEmittedEvent.getResourceExternalId()).get("emitted_date").toString();
+
+        emittedEventDao.markEventsAsEmitted(List.of(firstEvent, secondEvent, notRecordedEvent, alreadyEmittedEvent));
+
+        assertThat(databaseTestHelper.readEmittedEvents().size(), is(3));
+        Map<String, Object> first = emittedEventFor(firstEvent.getResourceExternalId());
+        assertThat(first.get("emitted_date"), is(notNullValue()));
+        assertThat(first.get("event_date").toString(), is("2019-01-01 14:00:00.0"));
+        Map<String, Object> second = emittedEventFor(secondEvent.getResourceExternalId());
+        assertThat(second.get("emitted_date"), is(notNullValue()));
+        assertThat(second.get("event_date").toString(), is("2019-01-01 15:00:00.0"));
+        assertThat(emittedEventFor(alreadyEmittedEvent.getResourceExternalId()).get("emitted_date").toString(), is(alreadyEmittedDate));
+    }
+
+    @Test
+    public void markEventsAsEmitted_shouldUseTheFirstOfSeveralEventsForTheSameRecord() {
+        final RefundSubmitted eventToRecord = aRefundSubmittedEvent(null);
+        emittedEventDao.recordEmission(eventToRecord.getResourceType(), eventToRecord.getResourceExternalId(),
+                eventToRecord.getEventType(), eventToRecord.getTimestamp(), null);
+
+        emittedEventDao.markEventsAsEmitted(List.of(
+                aRefundSubmittedEvent(ZonedDateTime.parse("2019-01-01T14:00:00Z")),
+                aRefundSubmittedEvent(ZonedDateTime.parse("2019-01-01T15:00:00Z"))));
+
+        Map<String, Object> event = databaseTestHelper.readEmittedEvents().get(0);
+        assertThat(event.get("emitted_date"), is(notNullValue()));
+        assertThat(event.get("event_date").toString(), is("2019-01-01 14:00:00.0"));
+    }
+
     @Test
     public void findNotEmittedEventsOlderThan_shouldReturnEventsWithEmptyEmittedDate() {
         final PaymentCreated paymentCreatedEvent = aPaymentCreatedEvent();
@@ -197,6 +240,13 @@ public class EmittedEventDaoIT extends DaoITestBase {
                 is(Timestamp.from(doNotRetryEmitUntil.toInstant())));
     }
 
+    private Map<String, Object> emittedEventFor(String resourceExternalId) {
+        return databaseTestHelper.readEmittedEvents().stream()
+                .filter(event -> resourceExternalId.equals(event.get("resource_external_id")))
+                .findFirst()
+                .orElseThrow();
+    }
+
     private PaymentCreated aPaymentCreatedEvent() {
         PaymentCreatedEventDetails eventDetails = new PaymentCreatedEventDetails.Builder()
                 .withAmount(1L)
@@ -24,6 +24,7 @@ import uk.gov.pay.connector.events.eventdetails.refund.RefundCreatedByUserEventD
 import uk.gov.pay.connector.events.eventdetails.refund.RefundEventWithReferenceDetails;
 import uk.gov.pay.connector.events.model.Event;
 import uk.gov.pay.connector.events.model.EventFactory;
+import uk.gov.pay.connector.events.model.StateTransitionEvents;
 import uk.gov.pay.connector.events.model.ResourceType;
 import uk.gov.pay.connector.events.model.charge.CancelByExternalServiceSubmitted;
 import uk.gov.pay.connector.events.model.charge.CaptureAbandonedAfterTooManyRetries;
@@ -48,12 +49,15 @@ import uk.gov.pay.connector.refund.model.domain.RefundStatus;
 
 import java.time.ZonedDateTime;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.core.IsInstanceOf.instanceOf;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @RunWith(MockitoJUnitRunner.class)
@@ -249,6 +253,44 @@ public class EventFactoryTest {
         Assert.assertThat(event2.getEventDetails(), instanceOf(RefundAvailabilityUpdatedEventDetails.class));
     }
 
+    @Test
+    public void shouldCreateEventsForABatchOfStateTransitionsUsingSetBasedLookups() {
+        Long chargeEventEntityId = 100L;
+        ChargeEventEntity chargeEventEntity = ChargeEventEntityFixture
+                .aValidChargeEventEntity()
+                .withCharge(charge)
+                .withId(chargeEventEntityId)
+                .build();
+        RefundHistory refundHistory = RefundHistoryEntityFixture.aValidRefundHistoryEntity()
+                .withStatus(RefundStatus.CREATED.getValue())
+                .withUserExternalId("user_external_id")
+                .withChargeExternalId(charge.getExternalId())
+                .withAmount(charge.getAmount())
+                .build();
+        when(chargeEventDao.findByIdsWithCharge(any())).thenReturn(List.of(chargeEventEntity));
+        when(refundDao.getRefundHistoryByRefundExternalIds(any())).thenReturn(List.of(refundHistory));
+        when(chargeService.findCharges(any())).thenReturn(Map.of(charge.getExternalId(), Charge.from(charge)));
+
+        StateTransition paymentStateTransition = new PaymentStateTransition(chargeEventEntityId, PaymentCreated.class);
+        StateTransition refundStateTransition = new RefundStateTransition(
+                refundHistory.getExternalId(), refundHistory.getStatus(), RefundCreatedByUser.class);
+        StateTransition missingChargeEventStateTransition = new PaymentStateTransition(101L, PaymentCreated.class);
+
+        StateTransitionEvents events = eventFactory.createEvents(
+                List.of(paymentStateTransition, refundStateTransition, missingChargeEventStateTransition));
+
+        assertThat(events.getEvents(paymentStateTransition).get().get(0), is(instanceOf(PaymentCreated.class)));
+        assertThat(events.getEvents(refundStateTransition).get().get(0), is(instanceOf(RefundCreatedByUser.class)));
+        assertThat(events.getEvents(refundStateTransition).get().get(1), is(instanceOf(RefundAvailabilityUpdated.class)));
+        assertThat(events.getEvents(missingChargeEventStateTransition).isPresent(), is(false));
+        assertThat(events.getFailure(missingChargeEventStateTransition).get().getMessage(),
+                is("Failed to handle event during state transition message processing [eventId=101]"));
+        assertThat(events.getFailure(paymentStateTransition).isPresent(), is(false));
+        verify(chargeEventDao, never()).findById(any(), any());
+        verify(refundDao, never()).getRefundHistoryByRefundExternalIdAndRefundStatus(any(), any());
+        verify(refundDao, never()).findRefundsByChargeExternalId(any());
+    }
+
     @Test
     public void shouldCreateEventWithNoPayloadForNonPayloadEventStateTransition() throws Exception {
         Long chargeEventEntityId = 100L;
@@ -0,0 +1,83 @@
+package uk.gov.pay.connector.expunge.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import uk.gov.pay.connector.charge.model.domain.ChargeEntity;
+import uk.gov.pay.connector.charge.model.domain.ChargeEntityFixture;
+import uk.gov.pay.connector.expunge.dao.ChargeArchiveDao;
+import uk.gov.pay.connector.expunge.model.domain.ChargeArchiveEntity;
+
+import java.time.ZonedDateTime;
+import java.util.Optional;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ChargeArchiveServiceTest {
+
+    private static final String AGGREGATE = "{\"charge\":{\"external_id\":\"charge-id\",\"description\":\"a description a description a description\"}," +
+            "\"charge_events\":[{\"status\":\"CREATED\"},{\"status\":\"CREATED\"},{\"status\":\"CREATED\"}],\"fees\":[],\"refunds\":[]}";
+
+    @Mock
+    private ChargeArchiveDao mockChargeArchiveDao;
+
+    private ChargeArchiveService chargeArchiveService;
+
+    @Before
+    public void setUp() {
+        chargeArchiveService = new ChargeArchiveService(mockChargeArchiveDao, new ObjectMapper());
+    }
+
+    @Test
+    public void archive_shouldPersistCompressedChargeAggregate() {
+        ChargeEntity chargeEntity = ChargeEntityFixture.aValidChargeEntity().build();
+        when(mockChargeArchiveDao.existsForChargeExternalId(chargeEntity.getExternalId())).thenReturn(false);
+        when(mockChargeArchiveDao.findChargeAggregateAsJson(chargeEntity.getId(), chargeEntity.getExternalId()))
+                .thenReturn(AGGREGATE);
+
+        chargeArchiveService.archive(chargeEntity);
+
+        ArgumentCaptor<ChargeArchiveEntity> captor = ArgumentCaptor.forClass(ChargeArchiveEntity.class);
+        verify(mockChargeArchiveDao).persist(captor.capture());
+        ChargeArchiveEntity archive = captor.getValue();
+        assertThat(archive.getChargeExternalId(), is(chargeEntity.getExternalId()));
+        assertThat(archive.getGatewayAccountId(), is(chargeEntity.getGatewayAccount().getId()));
+        assertThat(archive.getPayload().length, is(lessThan(AGGREGATE.length())));
+        assertThat(ChargeArchiveService.decompress(archive.getPayload()), is(AGGREGATE));
+    }
+
+    @Test
+    public void archive_shouldNotArchiveChargeTwice() {
+        ChargeEntity chargeEntity = ChargeEntityFixture.aValidChargeEntity().build();
+        when(mockChargeArchiveDao.existsForChargeExternalId(chargeEntity.getExternalId())).thenReturn(true);
+
+        chargeArchiveService.archive(chargeEntity);
+
+        verify(mockChargeArchiveDao, never()).persist(any());
+    }
+
+    @Test
+    public void findArchivedCharge_shouldReturnDecompressedAggregate() {
+        ChargeArchiveEntity archive = new ChargeArchiveEntity("charge-id", 1L, ZonedDateTime.now(), ZonedDateTime.now(),
+                ChargeArchiveService.compress(AGGREGATE));
+        when(mockChargeArchiveDao.findByChargeExternalId("charge-id")).thenReturn(Optional.of(archive));
+
+        Optional<JsonNode> archivedCharge = chargeArchiveService.findArchivedCharge("charge-id");
+
+        assertThat(archivedCharge.isPresent(), is(true));
+        assertThat(archivedCharge.get().get("charge").get("external_id").asText(), is("charge-id"));
+        assertThat(archivedCharge.get().get("charge_events").size(), is(3));
+    }
+}
@@ -3,6 +3,7 @@ package uk.gov.pay.connector.expunge.service;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 import uk.gov.pay.connector.app.ConnectorConfiguration;
@@ -11,12 +12,21 @@ import uk.gov.pay.connector.charge.dao.ChargeDao;
 import uk.gov.pay.connector.charge.model.domain.ChargeEntity;
 import uk.gov.pay.connector.charge.model.domain.ChargeEntityFixture;
 import uk.gov.pay.connector.charge.service.ChargeService;
+import uk.gov.pay.connector.paritycheck.LedgerTransaction;
 import uk.gov.pay.connector.tasks.ParityCheckService;
+import uk.gov.pay.connector.workpartition.service.WorkPartitionService;
 
 import java.time.ZonedDateTime;
-import java.util.Optional;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -47,6 +57,10 @@ public class ChargeExpungeServiceTest {
     private ConnectorConfiguration mockConnectorConfiguration;
     @Mock
     private ParityCheckService parityCheckService;
+    @Mock
+    private ChargeArchiveService mockChargeArchiveService;
+    @Mock
+    private WorkPartitionService mockWorkPartitionService;
 
     @Before
     public void setUp() {
@@ -55,17 +69,65 @@ public class ChargeExpungeServiceTest {
         when(mockExpungeConfig.getMinimumAgeOfChargeInDays()).thenReturn(minimumAgeOfChargeInDays);
         when(mockExpungeConfig.getExcludeChargesParityCheckedWithInDays()).thenReturn(defaultExcludeChargesParityCheckedWithInDays);
         when(mockExpungeConfig.isExpungeChargesEnabled()).thenReturn(true);
-        when(mockChargeDao.findChargeToExpunge(minimumAgeOfChargeInDays, defaultExcludeChargesParityCheckedWithInDays))
-                .thenReturn(Optional.of(chargeEntity.build()));
+        when(mockChargeDao.findChargesToExpunge(eq(minimumAgeOfChargeInDays), eq(defaultExcludeChargesParityCheckedWithInDays), anyInt()))
+                .thenReturn(List.of(chargeEntity.build()));
+        when(mockWorkPartitionService.runExclusively(anyString(), any())).thenAnswer(invocation -> {
+            invocation.<Runnable>getArgument(1).run();
+            return true;
+        });
         chargeExpungeService = new ChargeExpungeService(mockChargeDao, mockConnectorConfiguration, parityCheckService,
-                mockChargeService);
+                mockChargeService, mockChargeArchiveService, mockWorkPartitionService);
     }
 
     @Test
     public void expunge_shouldExpungeNoOfChargesAsPerConfiguration() {
         chargeExpungeService.expunge(null);
-        verify(mockChargeDao, times(defaultNumberOfChargesToExpunge)).findChargeToExpunge(minimumAgeOfChargeInDays,
-                defaultExcludeChargesParityCheckedWithInDays);
+        verify(mockChargeDao).findChargesToExpunge(minimumAgeOfChargeInDays,
+                defaultExcludeChargesParityCheckedWithInDays, defaultNumberOfChargesToExpunge);
+    }
+
+    @Test
+    public void expunge_shouldFindChargesInBatchesUntilTheNumberToExpungeIsReached() {
+        ChargeEntity chargeEntity = ChargeEntityFixture.aValidChargeEntity().withStatus(CREATED).build();
+        when(mockChargeDao.findChargesToExpunge(eq(minimumAgeOfChargeInDays), eq(defaultExcludeChargesParityCheckedWithInDays), anyInt()))
+                .thenAnswer(invocation -> Collections.nCopies(invocation.<Integer>getArgument(2), chargeEntity));
+
+        chargeExpungeService.expunge(250);
+
+        InOrder inOrder = inOrder(mockChargeDao);
+        inOrder.verify(mockChargeDao, times(2)).findChargesToExpunge(minimumAgeOfChargeInDays,
+                defaultExcludeChargesParityCheckedWithInDays, 100);
+        inOrder.verify(mockChargeDao).findChargesToExpunge(minimumAgeOfChargeInDays,
+                defaultExcludeChargesParityCheckedWithInDays, 50);
+        verify(mockChargeService, times(250)).updateChargeParityStatus(chargeEntity.getExternalId(), SKIPPED);
+    }
+
+    @Test
+    public void expunge_shouldStopWhenThereAreNoMoreChargesToExpunge() {
+        when(mockChargeDao.findChargesToExpunge(eq(minimumAgeOfChargeInDays), eq(defaultExcludeChargesParityCheckedWithInDays), anyInt()))
+                .thenReturn(List.of());
+
+        chargeExpungeService.expunge(250);
+
+        verify(mockChargeDao, times(1)).findChargesToExpunge(eq(minimumAgeOfChargeInDays),
+                eq(defaultExcludeChargesParityCheckedWithInDays), anyInt());
+    }
+
+    @Test
+    public void expunge_shouldCheckParityAgainstLedgerTransactionsLookedUpForTheWholeBatch() {
+        ChargeEntity capturedCharge = ChargeEntityFixture.aValidChargeEntity().withStatus(CAPTURED).build();
+        ChargeEntity createdCharge = ChargeEntityFixture.aValidChargeEntity().withStatus(CREATED).build();
+        Map<String, LedgerTransaction> ledgerTransactions = Map.of(capturedCharge.getExternalId(), new LedgerTransaction());
+        when(mockChargeDao.findChargesToExpunge(eq(minimumAgeOfChargeInDays), eq(defaultExcludeChargesParityCheckedWithInDays), anyInt()))
+                .thenReturn(List.of(capturedCharge, createdCharge));
+        when(parityCheckService.getLedgerTransactions(List.of(capturedCharge))).thenReturn(ledgerTransactions);
+        when(parityCheckService.parityCheckChargeForExpunger(capturedCharge, ledgerTransactions)).thenReturn(true);
+
+        chargeExpungeService.expunge(2);
+
+        verify(parityCheckService, times(1)).getLedgerTransactions(any());
+        verify(mockChargeDao).expungeCharge(capturedCharge.getId(), capturedCharge.getExternalId());
+        verify(mockChargeService).updateChargeParityStatus(createdCharge.getExternalId(), SKIPPED);
     }
 
     @Test
@@ -75,13 +137,21 @@ public class ChargeExpungeServiceTest {
         verifyNoInteractions(mockChargeDao);
     }
 
+    @Test
+    public void expunge_shouldNotExpungeChargesIfAnotherNodeIsAlreadyExpunging() {
+        doReturn(false).when(mockWorkPartitionService).runExclusively(anyString(), any());
+        chargeExpungeService.expunge(null);
+        verify(mockChargeDao, never()).findChargesToExpunge(eq(minimumAgeOfChargeInDays),
+                eq(defaultExcludeChargesParityCheckedWithInDays), anyInt());
+    }
+
     @Test
     public void expunge_shouldNotExpungeChargeIfInNonTerminalStateAndUpdateParityCheckStatusToSkipped() {
         ChargeEntity chargeEntity = ChargeEntityFixture.aValidChargeEntity()
                 .withStatus(CREATED)
                 .build();
-        when(mockChargeDao.findChargeToExpunge(minimumAgeOfChargeInDays, defaultExcludeChargesParityCheckedWithInDays))
-                .thenReturn(Optional.of(chargeEntity));
+        when(mockChargeDao.findChargesToExpunge(eq(minimumAgeOfChargeInDays), eq(defaultExcludeChargesParityCheckedWithInDays), anyInt()))
+                .thenReturn(List.of(chargeEntity));
 
         chargeExpungeService.expunge(1);
 
@@ -99,9 +169,9 @@ public class ChargeExpungeServiceTest {
                 .build();
         when(mockExpungeConfig.isExpungeChargesEnabled()).thenReturn(true);
         when(mockExpungeConfig.getMinimumAgeOfChargeInDays()).thenReturn(minimumAgeOfChargeInDays);
-        when(parityCheckService.parityCheckChargeForExpunger(chargeEntity)).thenReturn(true);
-        when(mockChargeDao.findChargeToExpunge(minimumAgeOfChargeInDays, defaultExcludeChargesParityCheckedWithInDays))
-                .thenReturn(Optional.of(chargeEntity));
+        when(parityCheckService.parityCheckChargeForExpunger(eq(chargeEntity), any())).thenReturn(true);
+        when(mockChargeDao.findChargesToExpunge(eq(minimumAgeOfChargeInDays), eq(defaultExcludeChargesParityCheckedWithInDays), anyInt()))
+                .thenReturn(List.of(chargeEntity));
         chargeExpungeService.expunge(1);
 
         verify(mockChargeDao).expungeCharge(chargeEntity.getId(), chargeEntity.getExternalId());
@@ -117,8 +187,8 @@ public class ChargeExpungeServiceTest {
                 .build();
         when(mockExpungeConfig.isExpungeChargesEnabled()).thenReturn(true);
         when(mockExpungeConfig.getMinimumAgeOfChargeInDays()).thenReturn(minimumAgeOfChargeInDays);
-        when(mockChargeDao.findChargeToExpunge(minimumAgeOfChargeInDays, defaultExcludeChargesParityCheckedWithInDays))
-                .thenReturn(Optional.of(chargeEntity));
+        when(mockChargeDao.findChargesToExpunge(eq(minimumAgeOfChargeInDays), eq(defaultExcludeChargesParityCheckedWithInDays), anyInt()))
+                .thenReturn(List.of(chargeEntity));
         chargeExpungeService.expunge(1);
 
         verify(mockChargeService).updateChargeParityStatus(chargeEntity.getExternalId(), SKIPPED);
@@ -134,11 +204,44 @@ public class ChargeExpungeServiceTest {
                 .build();
         when(mockExpungeConfig.isExpungeChargesEnabled()).thenReturn(true);
         when(mockExpungeConfig.getMinimumAgeOfChargeInDays()).thenReturn(minimumAgeOfChargeInDays);
-        when(mockChargeDao.findChargeToExpunge(minimumAgeOfChargeInDays, defaultExcludeChargesParityCheckedWithInDays))
-                .thenReturn(Optional.of(chargeEntity)).thenReturn(Optional.empty());
-        when(parityCheckService.parityCheckChargeForExpunger(chargeEntity)).thenReturn(true);
+        when(mockChargeDao.findChargesToExpunge(eq(minimumAgeOfChargeInDays), eq(defaultExcludeChargesParityCheckedWithInDays), anyInt()))
+                .thenReturn(List.of(chargeEntity));
+        when(parityCheckService.parityCheckChargeForExpunger(eq(chargeEntity), any())).thenReturn(true);
 
         chargeExpungeService.expunge(2);
         verify(mockChargeDao).expungeCharge(chargeEntity.getId(), chargeEntity.getExternalId());
     }
+
+    @Test
+    public void expunge_shouldArchiveChargeBeforeExpungingWhenArchivingIsEnabled() {
+        ChargeEntity chargeEntity = ChargeEntityFixture.aValidChargeEntity()
+                .withStatus(CAPTURED)
+                .build();
+        when(mockExpungeConfig.isArchiveExpungedChargesEnabled()).thenReturn(true);
+        when(mockChargeDao.findChargesToExpunge(eq(minimumAgeOfChargeInDays), eq(defaultExcludeChargesParityCheckedWithInDays), anyInt()))
+                .thenReturn(List.of(chargeEntity));
+        when(parityCheckService.parityCheckChargeForExpunger(eq(chargeEntity), any())).thenReturn(true);
+
+        chargeExpungeService.expunge(1);
+
+        InOrder inOrder = inOrder(mockChargeArchiveService, mockChargeDao);
+        inOrder.verify(mockChargeArchiveService).archive(chargeEntity);
+        inOrder.verify(mockChargeDao).expungeCharge(chargeEntity.getId(), chargeEntity.getExternalId());
+    }
+
+    @Test
+    public void expunge_shouldNotArchiveChargeWhenArchivingIsDisabled() {
+        ChargeEntity chargeEntity = ChargeEntityFixture.aValidChargeEntity()
+                .withStatus(CAPTURED)
+                .build();
+        when(mockExpungeConfig.isArchiveExpungedChargesEnabled()).thenReturn(false);
+        when(mockChargeDao.findChargesToExpunge(eq(minimumAgeOfChargeInDays), eq(defaultExcludeChargesParityCheckedWithInDays), anyInt()))
+                .thenReturn(List.of(chargeEntity));
+        when(parityCheckService.parityCheckChargeForExpunger(eq(chargeEntity), any())).thenReturn(true);
+
+        chargeExpungeService.expunge(1);
+
+        verifyNoInteractions(mockChargeArchiveService);
+        verify(mockChargeDao).expungeCharge(chargeEntity.getId(), chargeEntity.getExternalId());
+    }
 }
@@ -14,6 +14,7 @@ import uk.gov.pay.connector.gateway.processor.ChargeNotificationProcessor;
 import uk.gov.pay.connector.gateway.processor.RefundNotificationProcessor;
 import uk.gov.pay.connector.gatewayaccount.model.GatewayAccountEntity;
 import uk.gov.pay.connector.gatewayaccount.service.GatewayAccountService;
+import uk.gov.pay.connector.webhook.service.NotificationDeduplicator;
 
 import java.nio.charset.StandardCharsets;
 import java.util.List;
@@ -34,6 +35,8 @@ public abstract class BaseEpdqNotificationServiceTest {
     protected ChargeNotificationProcessor mockChargeNotificationProcessor;
     @Mock
     protected RefundNotificationProcessor mockRefundNotificationProcessor;
+    @Mock
+    protected NotificationDeduplicator mockNotificationDeduplicator;
     protected Charge charge;
     protected GatewayAccountEntity gatewayAccountEntity;
 
@@ -44,11 +47,13 @@ public abstract class BaseEpdqNotificationServiceTest {
     @Before
     public void setup() {
         notificationService = new EpdqNotificationService(
-                mockChargeService,
-                new EpdqSha512SignatureGenerator(),
-                mockChargeNotificationProcessor,
-                mockRefundNotificationProcessor,
-                mockGatewayAccountService
+                new EpdqNotificationHandler(
+                        mockChargeService,
+                        new EpdqSha512SignatureGenerator(),
+                        mockChargeNotificationProcessor,
+                        mockRefundNotificationProcessor,
+                        mockGatewayAccountService),
+                mockNotificationDeduplicator
         );
         gatewayAccountEntity = ChargeEntityFixture.defaultGatewayAccountEntity();
         gatewayAccountEntity.setCredentials(ImmutableMap.of(CREDENTIALS_SHA_OUT_PASSPHRASE, shaPhraseOut));
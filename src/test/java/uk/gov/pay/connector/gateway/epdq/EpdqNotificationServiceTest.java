@@ -8,9 +8,14 @@ import org.mockito.junit.MockitoJUnitRunner;
 import uk.gov.pay.connector.charge.model.domain.Charge;
 import uk.gov.pay.connector.charge.model.domain.ChargeEntityFixture;
 import uk.gov.pay.connector.refund.model.domain.RefundStatus;
+import uk.gov.pay.connector.webhook.service.NotificationKey;
 
 import java.util.Optional;
 
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
@@ -149,4 +154,68 @@ public class EpdqNotificationServiceTest extends BaseEpdqNotificationServiceTest
         verifyNoInteractions(mockChargeNotificationProcessor);
         verifyNoInteractions(mockRefundNotificationProcessor);
     }
+
+    @Test
+    public void shouldRememberANotificationOnceItHasBeenProcessed() {
+        final String payload = notificationPayloadForTransaction(payId, EPDQ_PAYMENT_REQUESTED);
+        when(mockGatewayAccountService.getGatewayAccount(charge.getGatewayAccountId())).thenReturn(Optional.of(gatewayAccountEntity));
+
+        notificationService.handleNotificationFor(payload);
+
+        verify(mockNotificationDeduplicator).processed(NotificationKey.of(EPDQ, payId, payId + "/" + payIdSub,
+                EPDQ_PAYMENT_REQUESTED.getCode(), null));
+    }
+
+    @Test
+    public void shouldNotRememberANotificationWithAnIncorrectSignature() {
+        gatewayAccountEntity.setCredentials(ImmutableMap.of(CREDENTIALS_SHA_OUT_PASSPHRASE, "sha-phrase-out-expected"));
+        when(mockGatewayAccountService.getGatewayAccount(charge.getGatewayAccountId())).thenReturn(Optional.of(gatewayAccountEntity));
+
+        notificationService.handleNotificationFor(notificationPayloadForTransaction(payId, EPDQ_PAYMENT_REQUESTED));
+
+        verifyNoInteractions(mockChargeNotificationProcessor);
+        verify(mockNotificationDeduplicator, never()).processed(any());
+    }
+
+    @Test
+    public void shouldIgnoreADuplicateNotificationWithoutLookingUpTheCharge() {
+        when(mockNotificationDeduplicator.isDuplicate(any())).thenReturn(true);
+
+        notificationService.handleNotificationFor(notificationPayloadForTransaction(payId, EPDQ_PAYMENT_REQUESTED));
+
+        verifyNoInteractions(mockChargeService);
+        verifyNoInteractions(mockChargeNotificationProcessor);
+    }
+
+    @Test
+    public void isVerifiedNotification_shouldAcceptANotificationSignedForTheGatewayAccountWithoutProcessingIt() {
+        when(mockGatewayAccountService.getGatewayAccount(charge.getGatewayAccountId())).thenReturn(Optional.of(gatewayAccountEntity));
+
+        assertThat(notificationService.isVerifiedNotification(notificationPayloadForTransaction(payId, EPDQ_PAYMENT_REQUESTED)), is(true));
+
+        verifyNoInteractions(mockChargeNotificationProcessor);
+        verifyNoInteractions(mockNotificationDeduplicator);
+    }
+
+    @Test
+    public void isVerifiedNotification_shouldRejectANotificationWithAnIncorrectSignature() {
+        gatewayAccountEntity.setCredentials(ImmutableMap.of(CREDENTIALS_SHA_OUT_PASSPHRASE, "sha-phrase-out-expected"));
+        when(mockGatewayAccountService.getGatewayAccount(charge.getGatewayAccountId())).thenReturn(Optional.of(gatewayAccountEntity));
+
+        assertThat(notificationService.isVerifiedNotification(notificationPayloadForTransaction(payId, EPDQ_PAYMENT_REQUESTED)), is(false));
+    }
+
+    @Test
+    public void isVerifiedNotification_shouldRejectANotificationForAnUnknownCharge() {
+        when(mockChargeService.findByProviderAndTransactionIdFromDbOrLedger(EPDQ.getName(), payId)).thenReturn(Optional.empty());
+
+        assertThat(notificationService.isVerifiedNotification(notificationPayloadForTransaction(payId, EPDQ_PAYMENT_REQUESTED)), is(false));
+
+        verifyNoInteractions(mockGatewayAccountService);
+    }
+
+    @Test
+    public void isVerifiedNotification_shouldRejectAPayloadThatCannotBeParsed() {
+        assertThat(notificationService.isVerifiedNotification("not_valid"), is(false));
+    }
 }
@@ -1,5 +1,6 @@
 package uk.gov.pay.connector.gateway.smartpay;
 
+import com.google.common.util.concurrent.MoreExecutors;
 import org.apache.commons.lang3.StringUtils;
 import org.junit.Before;
 import org.junit.Test;
@@ -15,11 +16,21 @@ import uk.gov.pay.connector.gatewayaccount.model.GatewayAccountEntity;
 import uk.gov.pay.connector.gatewayaccount.service.GatewayAccountService;
 import uk.gov.pay.connector.refund.model.domain.RefundStatus;
 import uk.gov.pay.connector.util.TestTemplateResourceLoader;
+import uk.gov.pay.connector.webhook.service.NotificationDeduplicator;
+import uk.gov.pay.connector.webhook.service.NotificationKey;
 
 import java.time.ZonedDateTime;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.fail;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
@@ -46,6 +57,8 @@ public class SmartpayNotificationServiceTest {
     private ChargeNotificationProcessor mockChargeNotificationProcessor;
     @Mock
     private RefundNotificationProcessor mockRefundNotificationProcessor;
+    @Mock
+    private NotificationDeduplicator mockNotificationDeduplicator;
     private Charge charge;
     private GatewayAccountEntity gatewayAccountEntity = ChargeEntityFixture.defaultGatewayAccountEntity();
 
@@ -66,15 +79,16 @@ public class SmartpayNotificationServiceTest {
     public void setup() {
         notificationService = new SmartpayNotificationService(
                 mockChargeService,
-                mockChargeNotificationProcessor,
-                mockRefundNotificationProcessor,
-                mockGatewayAccountService
+                new SmartpayNotificationHandler(mockChargeNotificationProcessor, mockRefundNotificationProcessor,
+                        mockGatewayAccountService),
+                mockNotificationDeduplicator,
+                MoreExecutors.newDirectExecutorService()
         );
         charge = Charge.from(ChargeEntityFixture.aValidChargeEntity()
                 .withStatus(AUTHORISATION_SUCCESS)
                 .build());
 
-        when(mockChargeService.findByProviderAndTransactionIdFromDbOrLedger(SMARTPAY.getName(), originalReference)).thenReturn(Optional.of(charge));
+        when(mockChargeService.findByProviderAndTransactionIdsFromDbOrLedger(SMARTPAY.getName(), Set.of(originalReference))).thenReturn(Map.of(originalReference, charge));
         when(mockGatewayAccountService.getGatewayAccount(charge.getGatewayAccountId())).thenReturn(Optional.of(gatewayAccountEntity));
     }
 
@@ -99,7 +113,7 @@ public class SmartpayNotificationServiceTest {
                 .withStatus(AUTHORISATION_SUCCESS)
                 .build());
         charge.setHistoric(true);
-        when(mockChargeService.findByProviderAndTransactionIdFromDbOrLedger(SMARTPAY.getName(), originalReference)).thenReturn(Optional.of(charge));
+        when(mockChargeService.findByProviderAndTransactionIdsFromDbOrLedger(SMARTPAY.getName(), Set.of(originalReference))).thenReturn(Map.of(originalReference, charge));
 
         notificationService.handleNotificationFor(payload);
 
@@ -141,6 +155,76 @@ public class SmartpayNotificationServiceTest {
         verifyNoInteractions(mockRefundNotificationProcessor);
     }
 
+    @Test
+    public void shouldRememberNotificationsOnceTheyHaveBeenProcessed() {
+        final String payload = sampleSmartpayNotification(SMARTPAY_NOTIFICATION_CAPTURE,
+                randomId(), originalReference, pspReference);
+
+        notificationService.handleNotificationFor(payload);
+
+        verify(mockNotificationDeduplicator).processed(NotificationKey.of(SMARTPAY, originalReference, pspReference,
+                "CAPTURE:true", ZonedDateTime.parse("2015-10-08T13:48:30+02:00")));
+    }
+
+    @Test
+    public void shouldSkipDuplicateNotificationsWithoutLookingUpTheCharge() {
+        final String payload = sampleSmartpayNotification(SMARTPAY_NOTIFICATION_CAPTURE,
+                randomId(), originalReference, pspReference);
+        when(mockNotificationDeduplicator.isDuplicate(any())).thenReturn(true);
+
+        assertThat(notificationService.handleNotificationFor(payload), is(true));
+
+        verifyNoInteractions(mockChargeService);
+        verifyNoInteractions(mockChargeNotificationProcessor);
+        verify(mockNotificationDeduplicator, never()).processed(any());
+    }
+
+    @Test
+    public void shouldLoadTheChargesTogetherAndProcessTheNotificationsForEachCharge() {
+        String otherOriginalReference = "other-original-reference";
+        Charge otherCharge = aChargeForAnotherGatewayAccount();
+        when(mockChargeService.findByProviderAndTransactionIdsFromDbOrLedger(SMARTPAY.getName(),
+                Set.of(originalReference, otherOriginalReference)))
+                .thenReturn(Map.of(originalReference, charge, otherOriginalReference, otherCharge));
+        when(mockGatewayAccountService.getGatewayAccount(otherCharge.getGatewayAccountId())).thenReturn(Optional.of(gatewayAccountEntity));
+        ExecutorService executorService = Executors.newFixedThreadPool(2);
+        notificationService = new SmartpayNotificationService(mockChargeService,
+                new SmartpayNotificationHandler(mockChargeNotificationProcessor, mockRefundNotificationProcessor,
+                        mockGatewayAccountService),
+                mockNotificationDeduplicator,
+                executorService);
+
+        notificationService.handleNotificationFor(twoCaptureNotifications(otherOriginalReference));
+        executorService.shutdown();
+
+        verify(mockChargeNotificationProcessor).invoke(otherOriginalReference, otherCharge, CAPTURED,
+                ZonedDateTime.parse("2015-10-09T13:48:30+02:00"));
+        verify(mockChargeNotificationProcessor).invoke(originalReference, charge, CAPTURED,
+                ZonedDateTime.parse("2015-10-08T13:48:35+02:00"));
+        verify(mockChargeService, never()).findByProviderAndTransactionIdFromDbOrLedger(any(), any());
+    }
+
+    @Test
+    public void shouldProcessTheNotificationsForTheOtherChargesBeforeRethrowingAFailure() {
+        String otherOriginalReference = "other-original-reference";
+        Charge otherCharge = aChargeForAnotherGatewayAccount();
+        when(mockChargeService.findByProviderAndTransactionIdsFromDbOrLedger(SMARTPAY.getName(),
+                Set.of(originalReference, otherOriginalReference)))
+                .thenReturn(Map.of(originalReference, charge, otherOriginalReference, otherCharge));
+        when(mockGatewayAccountService.getGatewayAccount(otherCharge.getGatewayAccountId()))
+                .thenThrow(new IllegalStateException("database unavailable"));
+
+        try {
+            notificationService.handleNotificationFor(twoCaptureNotifications(otherOriginalReference));
+            fail("Expected the failure to be rethrown");
+        } catch (IllegalStateException e) {
+            assertThat(e.getMessage(), is("database unavailable"));
+        }
+
+        verify(mockChargeNotificationProcessor).invoke(originalReference, charge, CAPTURED,
+                ZonedDateTime.parse("2015-10-08T13:48:35+02:00"));
+    }
+
     @Test
     public void shouldIgnoreNotificationWhenStatusIsUnknown() {
         final String payload = sampleSmartpayNotification(SMARTPAY_NOTIFICATION_CAPTURE_WITH_UNKNOWN_STATUS,
@@ -186,6 +270,22 @@ public class SmartpayNotificationServiceTest {
         verifyNoInteractions(mockRefundNotificationProcessor);
     }
 
+    private static Charge aChargeForAnotherGatewayAccount() {
+        GatewayAccountEntity otherGatewayAccountEntity = ChargeEntityFixture.defaultGatewayAccountEntity();
+        otherGatewayAccountEntity.setId(2L);
+        return Charge.from(ChargeEntityFixture.aValidChargeEntity()
+                .withGatewayAccountEntity(otherGatewayAccountEntity)
+                .withStatus(AUTHORISATION_SUCCESS)
+                .build());
+    }
+
+    private String twoCaptureNotifications(String otherOriginalReference) {
+        return TestTemplateResourceLoader.load(SMARTPAY_MULTIPLE_NOTIFICATIONS_DIFFERENT_DATES)
+                .replace("AUTHORISATION", "CAPTURE")
+                .replace("{{transactionId2}}", otherOriginalReference)
+                .replace("{{transactionId}}", originalReference);
+    }
+
     @Test
     public void shouldNotUpdateChargeOrRefund_WhenPayloadIsInvalid() {
         final String payload = "invalid-payload";
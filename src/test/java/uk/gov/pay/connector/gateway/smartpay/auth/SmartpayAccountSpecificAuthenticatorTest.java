@@ -16,7 +16,10 @@ import java.util.Optional;
 
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @RunWith(MockitoJUnitRunner.class)
@@ -31,6 +34,9 @@ public class SmartpayAccountSpecificAuthenticatorTest {
     @Mock
     HashUtil hashUtil;
 
+    @Mock
+    VerifiedNotificationCredentialsCache verifiedCredentialsCache;
+
     @InjectMocks
     private SmartpayAccountSpecificAuthenticator smartpayAccountSpecificAuthenticator;
 
@@ -55,6 +61,18 @@ public class SmartpayAccountSpecificAuthenticatorTest {
         Optional<BasicAuthUser> authenticate = smartpayAccountSpecificAuthenticator.authenticate(new BasicCredentials(username, password));
 
         assertTrue(authenticate.isPresent());
+        verify(verifiedCredentialsCache).verified(username, password, hashedPassword);
+    }
+
+    @Test
+    public void whenCredentialsHaveAlreadyBeenVerified_shouldReturnBasicAuthUserWithoutCheckingThemAgain() {
+
+        when(verifiedCredentialsCache.isVerified(username, password, hashedPassword)).thenReturn(true);
+
+        Optional<BasicAuthUser> authenticate = smartpayAccountSpecificAuthenticator.authenticate(new BasicCredentials(username, password));
+
+        assertTrue(authenticate.isPresent());
+        verify(hashUtil, never()).check(any(), any());
     }
 
     @Test
@@ -65,6 +83,7 @@ public class SmartpayAccountSpecificAuthenticatorTest {
         Optional<BasicAuthUser> authenticate = smartpayAccountSpecificAuthenticator.authenticate(new BasicCredentials(username, password));
 
         assertFalse(authenticate.isPresent());
+        verify(verifiedCredentialsCache, never()).verified(any(), any(), any());
     }
 
     @Test
@@ -0,0 +1,72 @@
+package uk.gov.pay.connector.gateway.smartpay.auth;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.base.Ticker;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import uk.gov.pay.connector.app.config.NotificationCredentialsCacheConfig;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class VerifiedNotificationCredentialsCacheTest {
+
+    @Mock
+    private NotificationCredentialsCacheConfig config;
+
+    private final MetricRegistry metricRegistry = new MetricRegistry();
+    private final AtomicLong nanos = new AtomicLong();
+    private VerifiedNotificationCredentialsCache cache;
+
+    @Before
+    public void setUp() {
+        when(config.getVerifiedCredentialsTtlInSeconds()).thenReturn(300L);
+        when(config.getMaximumSize()).thenReturn(10L);
+        Ticker ticker = new Ticker() {
+            @Override
+            public long read() {
+                return nanos.get();
+            }
+        };
+        cache = new VerifiedNotificationCredentialsCache(config, metricRegistry, ticker);
+    }
+
+    @Test
+    public void shouldOnlyMatchTheSamePasswordAgainstTheSameStoredHash() {
+        cache.verified("username", "password", "stored-hash");
+
+        assertThat(cache.isVerified("username", "password", "stored-hash"), is(true));
+        assertThat(cache.isVerified("username", "wrong-password", "stored-hash"), is(false));
+        assertThat(cache.isVerified("username", "password", "new-stored-hash"), is(false));
+        assertThat(cache.isVerified("another-username", "password", "stored-hash"), is(false));
+
+        assertThat(metricRegistry.meter("smartpay-notifications.credentials-cache.hits").getCount(), is(1L));
+        assertThat(metricRegistry.meter("smartpay-notifications.credentials-cache.misses").getCount(), is(3L));
+    }
+
+    @Test
+    public void shouldForgetVerifiedCredentialsOnceTheyExpire() {
+        cache.verified("username", "password", "stored-hash");
+
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(301));
+
+        assertThat(cache.isVerified("username", "password", "stored-hash"), is(false));
+    }
+
+    @Test
+    public void shouldForgetVerifiedCredentialsWhenInvalidated() {
+        cache.verified("username", "password", "stored-hash");
+
+        cache.invalidate("username");
+
+        assertThat(cache.isVerified("username", "password", "stored-hash"), is(false));
+    }
+}
@@ -81,6 +81,7 @@ public class StripeNotificationServiceTest {
 
         when(stripeGatewayConfig.getWebhookSigningSecrets()).thenReturn(List.of(webhookLiveSigningSecret, webhookTestSigningSecret));
         when(mockCharge.getExternalId()).thenReturn(externalId);
+        when(mockCharge.getPaymentGatewayName()).thenReturn(STRIPE);
         when(mockCharge.getStatus()).thenReturn(AUTHORISATION_3DS_REQUIRED.getValue());
         when(mockChargeService.findByProviderAndTransactionId(STRIPE.getName(), sourceId)).thenReturn(Optional.of(mockCharge));
     }
@@ -115,7 +116,7 @@ public class StripeNotificationServiceTest {
 
         notificationService.handleNotificationFor(payload, signPayload(payload));
 
-        verify(mockCard3dsResponseAuthService).process3DSecureAuthorisationWithoutLocking(externalId, getAuth3dsDetails(Auth3dsDetails.Auth3dsResult.AUTHORISED));
+        verify(mockCard3dsResponseAuthService).process3DSecureAuthorisationWithoutLocking(externalId, STRIPE, getAuth3dsDetails(Auth3dsDetails.Auth3dsResult.AUTHORISED));
     }
 
     @Test
@@ -125,7 +126,7 @@ public class StripeNotificationServiceTest {
 
         notificationService.handleNotificationFor(payload, signPayloadWithTestSecret(payload));
 
-        verify(mockCard3dsResponseAuthService).process3DSecureAuthorisationWithoutLocking(externalId, getAuth3dsDetails(Auth3dsDetails.Auth3dsResult.AUTHORISED));
+        verify(mockCard3dsResponseAuthService).process3DSecureAuthorisationWithoutLocking(externalId, STRIPE, getAuth3dsDetails(Auth3dsDetails.Auth3dsResult.AUTHORISED));
     }
 
     @Test
@@ -134,7 +135,7 @@ public class StripeNotificationServiceTest {
                 sourceId, SOURCE_FAILED);
         notificationService.handleNotificationFor(payload, signPayload(payload));
 
-        verify(mockCard3dsResponseAuthService).process3DSecureAuthorisationWithoutLocking(externalId, getAuth3dsDetails(Auth3dsDetails.Auth3dsResult.DECLINED));
+        verify(mockCard3dsResponseAuthService).process3DSecureAuthorisationWithoutLocking(externalId, STRIPE, getAuth3dsDetails(Auth3dsDetails.Auth3dsResult.DECLINED));
     }
 
     @Test
@@ -143,7 +144,7 @@ public class StripeNotificationServiceTest {
                 sourceId, SOURCE_CANCELED);
         notificationService.handleNotificationFor(payload, signPayload(payload));
 
-        verify(mockCard3dsResponseAuthService).process3DSecureAuthorisationWithoutLocking(externalId, getAuth3dsDetails(Auth3dsDetails.Auth3dsResult.CANCELED));
+        verify(mockCard3dsResponseAuthService).process3DSecureAuthorisationWithoutLocking(externalId, STRIPE, getAuth3dsDetails(Auth3dsDetails.Auth3dsResult.CANCELED));
     } 
     
     @Test
@@ -155,7 +156,7 @@ public class StripeNotificationServiceTest {
         
         notificationService.handleNotificationFor(payload, signPayload(payload));
         
-        verify(mockCard3dsResponseAuthService).process3DSecureAuthorisationWithoutLocking(externalId, getAuth3dsDetails(Auth3dsDetails.Auth3dsResult.AUTHORISED));
+        verify(mockCard3dsResponseAuthService).process3DSecureAuthorisationWithoutLocking(externalId, STRIPE, getAuth3dsDetails(Auth3dsDetails.Auth3dsResult.AUTHORISED));
     }
     
     @Test
@@ -167,7 +168,7 @@ public class StripeNotificationServiceTest {
         
         notificationService.handleNotificationFor(payload, signPayload(payload));
 
-        verify(mockCard3dsResponseAuthService, never()).process3DSecureAuthorisationWithoutLocking(any(), any());
+        verify(mockCard3dsResponseAuthService, never()).process3DSecureAuthorisationWithoutLocking(any(), any(), any());
     }
 
     @Test
@@ -178,7 +179,7 @@ public class StripeNotificationServiceTest {
         when(mockChargeService.findByProviderAndTransactionId(STRIPE.getName(), "pi_123")).thenReturn(Optional.of(mockCharge));
         notificationService.handleNotificationFor(payload, signPayload(payload));
 
-        verify(mockCard3dsResponseAuthService).process3DSecureAuthorisationWithoutLocking(externalId, getAuth3dsDetails(Auth3dsDetails.Auth3dsResult.DECLINED));
+        verify(mockCard3dsResponseAuthService).process3DSecureAuthorisationWithoutLocking(externalId, STRIPE, getAuth3dsDetails(Auth3dsDetails.Auth3dsResult.DECLINED));
     }
 
     @Test
@@ -193,7 +194,7 @@ public class StripeNotificationServiceTest {
             notificationService.handleNotificationFor(payload, signPayload(payload));
         }
 
-        verify(mockCard3dsResponseAuthService, never()).process3DSecureAuthorisationWithoutLocking(anyString(), any());
+        verify(mockCard3dsResponseAuthService, never()).process3DSecureAuthorisationWithoutLocking(anyString(), any(), any());
     }
 
     @Test
@@ -203,7 +204,7 @@ public class StripeNotificationServiceTest {
 
         notificationService.handleNotificationFor(payload, signPayload(payload));
 
-        verify(mockCard3dsResponseAuthService, never()).process3DSecureAuthorisationWithoutLocking(anyString(), any());
+        verify(mockCard3dsResponseAuthService, never()).process3DSecureAuthorisationWithoutLocking(anyString(), any(), any());
     }
 
     @Test
@@ -213,7 +214,7 @@ public class StripeNotificationServiceTest {
 
         notificationService.handleNotificationFor(payload, signPayload(payload));
 
-        verify(mockCard3dsResponseAuthService, never()).process3DSecureAuthorisationWithoutLocking(anyString(), any());
+        verify(mockCard3dsResponseAuthService, never()).process3DSecureAuthorisationWithoutLocking(anyString(), any(), any());
     }
 
     @Test
@@ -223,7 +224,7 @@ public class StripeNotificationServiceTest {
 
         notificationService.handleNotificationFor(payload, signPayload(payload));
 
-        verify(mockCard3dsResponseAuthService, never()).process3DSecureAuthorisationWithoutLocking(anyString(), any());
+        verify(mockCard3dsResponseAuthService, never()).process3DSecureAuthorisationWithoutLocking(anyString(), any(), any());
     }
 
     @Test
@@ -231,7 +232,7 @@ public class StripeNotificationServiceTest {
         final String payload = "invalid-payload";
         notificationService.handleNotificationFor(payload, signPayload(payload));
 
-        verify(mockCard3dsResponseAuthService, never()).process3DSecureAuthorisationWithoutLocking(anyString(), any());
+        verify(mockCard3dsResponseAuthService, never()).process3DSecureAuthorisationWithoutLocking(anyString(), any(), any());
     }
 
     @Test
@@ -247,7 +248,7 @@ public class StripeNotificationServiceTest {
         assertTrue(instantAfterInvocation.isAfter(instantBeforeInvocation.plusSeconds(1)));
         assertTrue(instantAfterInvocation.isBefore(instantBeforeInvocation.plusMillis(1500))); //includes additional overhead to complete handleNotificationFor() 
 
-        verify(mockCard3dsResponseAuthService).process3DSecureAuthorisationWithoutLocking(externalId, getAuth3dsDetails(Auth3dsDetails.Auth3dsResult.DECLINED));
+        verify(mockCard3dsResponseAuthService).process3DSecureAuthorisationWithoutLocking(externalId, STRIPE, getAuth3dsDetails(Auth3dsDetails.Auth3dsResult.DECLINED));
     }
 
     @Test
@@ -263,7 +264,7 @@ public class StripeNotificationServiceTest {
         Instant instantAfterInvocation = Instant.now();
         assertTrue(instantAfterInvocation.isBefore(instantBeforeInvocation.plusMillis(300))); // plus 300 to consider the time to process handleNotificationFor()
 
-        verify(mockCard3dsResponseAuthService).process3DSecureAuthorisationWithoutLocking(externalId, getAuth3dsDetails(Auth3dsDetails.Auth3dsResult.DECLINED));
+        verify(mockCard3dsResponseAuthService).process3DSecureAuthorisationWithoutLocking(externalId, STRIPE, getAuth3dsDetails(Auth3dsDetails.Auth3dsResult.DECLINED));
     }
 
     @Test(expected = WebApplicationException.class)
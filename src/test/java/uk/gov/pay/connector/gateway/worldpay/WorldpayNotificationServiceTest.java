@@ -15,6 +15,8 @@ import uk.gov.pay.connector.gatewayaccount.service.GatewayAccountService;
 import uk.gov.pay.connector.refund.model.domain.RefundStatus;
 import uk.gov.pay.connector.util.DnsUtils;
 import uk.gov.pay.connector.util.TestTemplateResourceLoader;
+import uk.gov.pay.connector.webhook.service.NotificationDeduplicator;
+import uk.gov.pay.connector.webhook.service.NotificationKey;
 
 import java.util.Arrays;
 import java.util.List;
@@ -22,6 +24,8 @@ import java.util.Optional;
 
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoInteractions;
@@ -46,6 +50,8 @@ public class WorldpayNotificationServiceTest {
     private ChargeNotificationProcessor mockChargeNotificationProcessor;
     @Mock
     private RefundNotificationProcessor mockRefundNotificationProcessor;
+    @Mock
+    private NotificationDeduplicator mockNotificationDeduplicator;
     private Charge charge = Charge.from(ChargeEntityFixture.aValidChargeEntity().build());
     private GatewayAccountEntity gatewayAccountEntity = ChargeEntityFixture.defaultGatewayAccountEntity();
 
@@ -56,12 +62,11 @@ public class WorldpayNotificationServiceTest {
     @Before
     public void setup() {
         notificationService = new WorldpayNotificationService(
-                mockChargeService,
                 mockWorldpayConfiguration,
                 mockDnsUtils,
-                mockChargeNotificationProcessor,
-                mockRefundNotificationProcessor,
-                mockGatewayAccountService);
+                new WorldpayNotificationHandler(mockChargeService, mockChargeNotificationProcessor,
+                        mockRefundNotificationProcessor, mockGatewayAccountService),
+                mockNotificationDeduplicator);
         when(mockChargeService.findByProviderAndTransactionIdFromDbOrLedger(WORLDPAY.getName(), transactionId)).thenReturn(Optional.of(charge));
         when(mockGatewayAccountService.getGatewayAccount(charge.getGatewayAccountId())).thenReturn(Optional.of(gatewayAccountEntity));
     }
@@ -165,6 +170,7 @@ public class WorldpayNotificationServiceTest {
         assertFalse(result);
 
         verifyNoInteractions(mockChargeNotificationProcessor);
+        verify(mockNotificationDeduplicator, never()).processed(any());
     }
 
     @Test
@@ -248,6 +254,58 @@ public class WorldpayNotificationServiceTest {
         verifyNoInteractions(mockRefundNotificationProcessor);
     }
 
+    @Test
+    public void handleNotification_shouldProcessNotificationWithoutCheckingIpAddressAgain() {
+        final String payload = sampleWorldpayNotification(
+                transactionId,
+                referenceId,
+                "CAPTURED",
+                "10",
+                "03",
+                "2017");
+
+        final boolean result = notificationService.handleNotification(payload);
+        assertTrue(result);
+
+        verifyNoInteractions(mockDnsUtils);
+        verify(mockChargeNotificationProcessor).invoke(transactionId, charge, CAPTURED,
+                new WorldpayNotification("MERCHANTCODE", "CAPTURED", 10, 3, 2017, transactionId, referenceId).getGatewayEventDate());
+    }
+
+    @Test
+    public void shouldRememberANotificationOnceItHasBeenProcessed() {
+        final String payload = sampleWorldpayNotification(
+                transactionId,
+                referenceId,
+                "CAPTURED",
+                "10",
+                "03",
+                "2017");
+
+        assertTrue(notificationService.handleNotificationFor(ipAddress, payload));
+
+        verify(mockNotificationDeduplicator).processed(NotificationKey.of(WORLDPAY, transactionId, referenceId, "CAPTURED",
+                new WorldpayNotification("MERCHANTCODE", "CAPTURED", 10, 3, 2017, transactionId, referenceId).getGatewayEventDate()));
+    }
+
+    @Test
+    public void shouldAcknowledgeADuplicateNotificationWithoutProcessingItAgain() {
+        final String payload = sampleWorldpayNotification(
+                transactionId,
+                referenceId,
+                "CAPTURED",
+                "10",
+                "03",
+                "2017");
+        when(mockNotificationDeduplicator.isDuplicate(any())).thenReturn(true);
+
+        assertTrue(notificationService.handleNotificationFor(ipAddress, payload));
+
+        verifyNoInteractions(mockChargeService);
+        verifyNoInteractions(mockChargeNotificationProcessor);
+        verify(mockNotificationDeduplicator, never()).processed(any());
+    }
+
     @Test
     public void ifPayloadNotValidXml_shouldIgnoreNotification() {
         String payload = "<not></valid>";
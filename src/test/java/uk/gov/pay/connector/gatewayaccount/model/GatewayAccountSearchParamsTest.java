@@ -5,11 +5,13 @@ import uk.gov.pay.connector.common.model.api.CommaDelimitedSetParameter;
 
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.hamcrest.Matchers.hasEntry;
 import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
 import static org.hamcrest.collection.IsMapWithSize.aMapWithSize;
 import static org.hamcrest.collection.IsMapWithSize.anEmptyMap;
 import static uk.gov.pay.connector.gatewayaccount.model.GatewayAccountEntity.Type.LIVE;
@@ -93,4 +95,35 @@ public class GatewayAccountSearchParamsTest {
         Map<String, Object> queryMap = params.getQueryMap();
         assertThat(queryMap, anEmptyMap());
     }
+
+    @Test
+    public void shouldIncludeCursorInFilterTemplatesAndQueryMapWhenAfterIdSet() {
+        var params = new GatewayAccountSearchParams();
+        params.setType("live");
+        params.setAfterId(100L);
+
+        assertThat(params.getFilterTemplates(), containsInAnyOrder(" gae.type = :type", " gae.id > :afterId"));
+        assertThat(params.getQueryMap(), hasEntry("afterId", 100L));
+    }
+
+    @Test
+    public void shouldExcludeCursorFromCountFilterTemplatesAndQueryMap() {
+        var params = new GatewayAccountSearchParams();
+        params.setType("live");
+        params.setAfterId(100L);
+        params.setLimit(10);
+
+        assertThat(params.getFilterTemplatesExcludingCursor(), containsInAnyOrder(" gae.type = :type"));
+        assertThat(params.getQueryMapExcludingCursor(), aMapWithSize(1));
+        assertThat(params.getQueryMapExcludingCursor(), hasEntry("type", LIVE));
+    }
+
+    @Test
+    public void shouldDefaultToFullViewWithoutTotalOrLimit() {
+        var params = new GatewayAccountSearchParams();
+
+        assertThat(params.isSummaryView(), is(false));
+        assertThat(params.isIncludeTotal(), is(false));
+        assertThat(params.getLimit(), is(Optional.empty()));
+    }
 }
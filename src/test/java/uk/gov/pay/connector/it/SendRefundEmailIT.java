@@ -30,6 +30,7 @@ import static org.mockito.ArgumentMatchers.anyMap;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static uk.gov.pay.connector.charge.model.domain.ChargeStatus.CAPTURED;
@@ -93,7 +94,7 @@ public class SendRefundEmailIT {
                 .contentType(APPLICATION_FORM_URLENCODED)
                 .post("/v1/api/notifications/epdq");
 
-        verify(notificationClient).sendEmail(anyString(), anyString(), anyMap(), isNull());
+        verify(notificationClient, timeout(5000)).sendEmail(anyString(), anyString(), anyMap(), isNull());
     }
 
     private void addGatewayAccount() {
@@ -0,0 +1,152 @@
+package uk.gov.pay.connector.it.dao;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Before;
+import org.junit.Test;
+import uk.gov.pay.connector.charge.model.domain.ChargeStatus;
+import uk.gov.pay.connector.expunge.dao.ChargeArchiveDao;
+
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.List;
+
+import static org.apache.commons.lang3.RandomStringUtils.randomAlphanumeric;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static uk.gov.pay.connector.charge.model.domain.ChargeStatus.AUTHORISATION_SUCCESS;
+import static uk.gov.pay.connector.charge.model.domain.ChargeStatus.CAPTURED;
+import static uk.gov.pay.connector.charge.model.domain.ChargeStatus.CREATED;
+
+public class ChargeArchiveDaoIT extends DaoITestBase {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private ChargeArchiveDao chargeArchiveDao;
+    private DatabaseFixtures.TestAccount testAccount;
+
+    @Before
+    public void setUp() {
+        setup();
+        chargeArchiveDao = env.getInstance(ChargeArchiveDao.class);
+        testAccount = DatabaseFixtures
+                .withDatabaseTestHelper(databaseTestHelper)
+                .aTestAccount()
+                .insert();
+    }
+
+    @Test
+    public void findChargeAggregateAsJson_shouldIncludeTheChargeAndItsEventsFeesAndRefunds() throws Exception {
+        DatabaseFixtures.TestCharge testCharge = aTestCharge();
+        ZonedDateTime created = ZonedDateTime.now(ZoneId.of("UTC")).minusMinutes(2);
+        aTestChargeEvent(testCharge, CREATED, created);
+        aTestChargeEvent(testCharge, AUTHORISATION_SUCCESS, created.plusMinutes(1));
+        DatabaseFixtures
+                .withDatabaseTestHelper(databaseTestHelper)
+                .aTestFee()
+                .withTestCharge(testCharge)
+                .insert();
+        DatabaseFixtures.TestRefund testRefund = DatabaseFixtures
+                .withDatabaseTestHelper(databaseTestHelper)
+                .aTestRefund()
+                .withReference(randomAlphanumeric(10))
+                .withGatewayTransactionId(randomAlphanumeric(10))
+                .withTestCharge(testCharge)
+                .insert();
+
+        JsonNode aggregate = objectMapper.readTree(
+                chargeArchiveDao.findChargeAggregateAsJson(testCharge.getChargeId(), testCharge.getExternalChargeId()));
+
+        assertThat(aggregate.get("charge").get("id").asLong(), is(testCharge.getChargeId()));
+        assertThat(aggregate.get("charge").get("external_id").asText(), is(testCharge.getExternalChargeId()));
+        assertThat(aggregate.get("charge_events").size(), is(2));
+        assertThat(aggregate.get("charge_events").get(0).get("status").asText(), is(CREATED.getValue()));
+        assertThat(aggregate.get("charge_events").get(1).get("status").asText(), is(AUTHORISATION_SUCCESS.getValue()));
+        assertThat(aggregate.get("fees").size(), is(1));
+        assertThat(aggregate.get("fees").get(0).get("charge_id").asLong(), is(testCharge.getChargeId()));
+        assertThat(aggregate.get("refunds").size(), is(1));
+        assertThat(aggregate.get("refunds").get(0).get("external_id").asText(), is(testRefund.getExternalRefundId()));
+    }
+
+    @Test
+    public void findChargeAggregateAsJson_shouldLeaveOutPersonalData() throws Exception {
+        DatabaseFixtures.TestCharge testCharge = aTestCharge();
+        DatabaseFixtures
+                .withDatabaseTestHelper(databaseTestHelper)
+                .aTestRefund()
+                .withReference(randomAlphanumeric(10))
+                .withGatewayTransactionId(randomAlphanumeric(10))
+                .withTestCharge(testCharge)
+                .insert();
+
+        JsonNode aggregate = objectMapper.readTree(
+                chargeArchiveDao.findChargeAggregateAsJson(testCharge.getChargeId(), testCharge.getExternalChargeId()));
+
+        JsonNode charge = aggregate.get("charge");
+        assertThat(charge.get("external_id").asText(), is(testCharge.getExternalChargeId()));
+        for (String column : List.of("email", "cardholder_name", "expiry_date", "first_digits_card_number",
+                "last_digits_card_number", "address_line1", "address_line2", "address_postcode", "address_city",
+                "address_county", "address_country")) {
+            assertThat(column, charge.has(column), is(false));
+        }
+        assertThat(aggregate.get("refunds").get(0).has("user_email"), is(false));
+    }
+
+    @Test
+    public void findChargeAggregateAsJson_shouldReturnEmptyArraysForAChargeWithNoEventsFeesOrRefunds() throws Exception {
+        DatabaseFixtures.TestCharge testCharge = aTestCharge();
+
+        JsonNode aggregate = objectMapper.readTree(
+                chargeArchiveDao.findChargeAggregateAsJson(testCharge.getChargeId(), testCharge.getExternalChargeId()));
+
+        assertThat(aggregate.get("charge").get("external_id").asText(), is(testCharge.getExternalChargeId()));
+        assertThat(aggregate.get("charge_events").isArray(), is(true));
+        assertThat(aggregate.get("charge_events").size(), is(0));
+        assertThat(aggregate.get("fees").size(), is(0));
+        assertThat(aggregate.get("refunds").size(), is(0));
+    }
+
+    @Test
+    public void findChargeAggregateAsJson_shouldNotIncludeAnotherChargesEventsFeesOrRefunds() throws Exception {
+        DatabaseFixtures.TestCharge testCharge = aTestCharge();
+        DatabaseFixtures.TestCharge otherCharge = aTestCharge();
+        aTestChargeEvent(otherCharge, CREATED, ZonedDateTime.now(ZoneId.of("UTC")));
+        DatabaseFixtures
+                .withDatabaseTestHelper(databaseTestHelper)
+                .aTestFee()
+                .withTestCharge(otherCharge)
+                .insert();
+        DatabaseFixtures
+                .withDatabaseTestHelper(databaseTestHelper)
+                .aTestRefund()
+                .withReference(randomAlphanumeric(10))
+                .withGatewayTransactionId(randomAlphanumeric(10))
+                .withTestCharge(otherCharge)
+                .insert();
+
+        JsonNode aggregate = objectMapper.readTree(
+                chargeArchiveDao.findChargeAggregateAsJson(testCharge.getChargeId(), testCharge.getExternalChargeId()));
+
+        assertThat(aggregate.get("charge_events").size(), is(0));
+        assertThat(aggregate.get("fees").size(), is(0));
+        assertThat(aggregate.get("refunds").size(), is(0));
+    }
+
+    private DatabaseFixtures.TestCharge aTestCharge() {
+        return DatabaseFixtures
+                .withDatabaseTestHelper(databaseTestHelper)
+                .aTestCharge()
+                .withTestAccount(testAccount)
+                .withChargeStatus(CAPTURED)
+                .insert();
+    }
+
+    private void aTestChargeEvent(DatabaseFixtures.TestCharge testCharge, ChargeStatus status, ZonedDateTime updated) {
+        DatabaseFixtures
+                .withDatabaseTestHelper(databaseTestHelper)
+                .aTestChargeEvent()
+                .withTestCharge(testCharge)
+                .withChargeStatus(status)
+                .withDate(updated)
+                .insert();
+    }
+}
@@ -10,37 +10,44 @@ import org.junit.rules.ExpectedException;
 import uk.gov.pay.commons.model.Source;
 import uk.gov.pay.commons.model.charge.ExternalMetadata;
 import uk.gov.pay.connector.charge.dao.ChargeDao;
+import uk.gov.pay.connector.charge.model.ExpirableChargeSummary;
 import uk.gov.pay.connector.charge.model.ServicePaymentReference;
 import uk.gov.pay.connector.charge.model.domain.ChargeEntity;
 import uk.gov.pay.connector.charge.model.domain.ChargeStatus;
 import uk.gov.pay.connector.charge.model.domain.ParityCheckStatus;
+import uk.gov.pay.connector.gateway.PaymentGatewayName;
 import uk.gov.pay.connector.gatewayaccount.model.GatewayAccountEntity;
 import uk.gov.pay.connector.it.dao.DatabaseFixtures.TestCharge;
 import uk.gov.pay.connector.util.DateTimeUtils;
 import uk.gov.pay.connector.util.RandomIdGenerator;
 
 import javax.validation.ConstraintViolationException;
+import java.sql.Timestamp;
 import java.time.Duration;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 
 import static java.time.ZonedDateTime.now;
+import static java.util.stream.Collectors.toList;
 import static junit.framework.TestCase.assertTrue;
 import static org.apache.commons.lang.math.RandomUtils.nextLong;
 import static org.exparity.hamcrest.date.ZonedDateTimeMatchers.within;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.hasProperty;
 import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
 import static org.hamcrest.Matchers.notNullValue;
 import static org.hamcrest.Matchers.nullValue;
 import static org.junit.Assert.assertEquals;
@@ -50,8 +57,11 @@ import static uk.gov.pay.connector.charge.model.domain.ChargeStatus.AUTHORISATIO
 import static uk.gov.pay.connector.charge.model.domain.ChargeStatus.CAPTURE_APPROVED;
 import static uk.gov.pay.connector.charge.model.domain.ChargeStatus.CAPTURE_APPROVED_RETRY;
 import static uk.gov.pay.connector.charge.model.domain.ChargeStatus.CAPTURE_READY;
+import static uk.gov.pay.connector.charge.model.domain.ChargeStatus.CAPTURE_SUBMITTED;
+import static uk.gov.pay.connector.charge.model.domain.ChargeStatus.CAPTURED;
 import static uk.gov.pay.connector.charge.model.domain.ChargeStatus.CREATED;
 import static uk.gov.pay.connector.charge.model.domain.ChargeStatus.ENTERING_CARD_DETAILS;
+import static uk.gov.pay.connector.charge.model.domain.ChargeStatus.PAYMENT_NOTIFICATION_CREATED;
 import static uk.gov.pay.connector.charge.model.domain.ChargeStatus.SYSTEM_CANCELLED;
 import static uk.gov.pay.connector.gatewayaccount.model.GatewayAccountEntity.Type.TEST;
 import static uk.gov.pay.connector.model.domain.Auth3dsDetailsEntityFixture.anAuth3dsDetailsEntity;
@@ -356,6 +366,34 @@ public class ChargeDaoIT extends DaoITestBase {
         assertThat(gatewayAccount.getCredentials(), is(Collections.EMPTY_MAP));
     }
 
+    @Test
+    public void shouldFindChargeEntitiesByProviderAndTransactionIds() {
+        DatabaseFixtures
+                .withDatabaseTestHelper(databaseTestHelper)
+                .aTestCharge()
+                .withTestAccount(defaultTestAccount)
+                .withChargeId(8888L)
+                .withExternalChargeId("charge8888")
+                .withTransactionId("transaction-1")
+                .insert();
+        DatabaseFixtures
+                .withDatabaseTestHelper(databaseTestHelper)
+                .aTestCharge()
+                .withTestAccount(defaultTestAccount)
+                .withChargeId(8889L)
+                .withExternalChargeId("charge8889")
+                .withTransactionId("transaction-2")
+                .insert();
+
+        List<ChargeEntity> charges = chargeDao.findByProviderAndTransactionIds(defaultTestAccount.getPaymentProvider(),
+                List.of("transaction-1", "transaction-2", "unknown-transaction"));
+
+        assertThat(charges, containsInAnyOrder(
+                hasProperty("externalId", is("charge8888")),
+                hasProperty("externalId", is("charge8889"))));
+        assertThat(chargeDao.findByProviderAndTransactionIds(defaultTestAccount.getPaymentProvider(), List.of()), hasSize(0));
+    }
+
     @Test
     public void shouldGetChargeByChargeIdWithCorrectAssociatedAccountId() {
         String transactionId = "7826782163";
@@ -433,6 +471,19 @@ public class ChargeDaoIT extends DaoITestBase {
         assertThat(chargeForAccount.isPresent(), is(false));
     }
 
+    @Test
+    public void findPaymentGatewayNameByExternalId_shouldFindThePaymentProviderOfTheCharge() {
+        insertTestCharge();
+        Optional<PaymentGatewayName> paymentGatewayName = chargeDao.findPaymentGatewayNameByExternalId(defaultTestCharge.getExternalChargeId());
+        assertThat(paymentGatewayName, is(Optional.of(PaymentGatewayName.valueFrom(defaultTestAccount.getPaymentProvider()))));
+    }
+
+    @Test
+    public void findPaymentGatewayNameByExternalId_shouldNotFindAPaymentProviderForAnUnknownCharge() {
+        Optional<PaymentGatewayName> paymentGatewayName = chargeDao.findPaymentGatewayNameByExternalId("abcdefg123");
+        assertThat(paymentGatewayName.isPresent(), is(false));
+    }
+
     @Test
     public void testFindByDate_status_findsValidChargeForStatus() {
         TestCharge charge = DatabaseFixtures
@@ -488,6 +539,27 @@ public class ChargeDaoIT extends DaoITestBase {
         assertThat(charges.size(), is(0));
     }
 
+    @Test
+    public void findSummariesWithStatusInAfterId_shouldPageThroughChargesWithTheStatusesInIdOrder() {
+        ZonedDateTime createdDate = now().minusMinutes(5);
+        TestCharge first = insertTestChargeWithStatus(1001L, CREATED, createdDate);
+        insertTestChargeWithStatus(1002L, CAPTURED, createdDate);
+        TestCharge second = insertTestChargeWithStatus(1003L, ENTERING_CARD_DETAILS, createdDate);
+        TestCharge third = insertTestChargeWithStatus(1004L, CREATED, createdDate);
+        List<ChargeStatus> chargeStatuses = List.of(CREATED, ENTERING_CARD_DETAILS);
+
+        List<ExpirableChargeSummary> firstPage = chargeDao.findSummariesWithStatusInAfterId(chargeStatuses, 1000L, 2);
+        List<ExpirableChargeSummary> secondPage = chargeDao.findSummariesWithStatusInAfterId(chargeStatuses,
+                firstPage.get(1).getId(), 2);
+
+        assertThat(firstPage.stream().map(ExpirableChargeSummary::getExternalId).collect(toList()),
+                contains(first.getExternalChargeId(), second.getExternalChargeId()));
+        assertThat(firstPage.get(1).getStatus(), is(ENTERING_CARD_DETAILS.getValue()));
+        assertThat(firstPage.get(0).getCreatedDate(), within(1, ChronoUnit.SECONDS, createdDate));
+        assertThat(secondPage.stream().map(ExpirableChargeSummary::getExternalId).collect(toList()),
+                contains(third.getExternalChargeId()));
+    }
+
     @Test
     public void testFindChargeByUnusedTokenId() {
         TestCharge charge = DatabaseFixtures
@@ -638,6 +710,53 @@ public class ChargeDaoIT extends DaoITestBase {
         assertThat(chargeEntity.getExternalId(), is("some-external-id"));
     }
 
+    @Test
+    public void insertTelephoneChargeIfAbsent_shouldInsertChargeAndInitialEventsInOneStatement() {
+        ChargeEntity telephoneCharge = aTelephoneChargeForDefaultAccount("telephone-provider-id");
+
+        Optional<Long> chargeId = chargeDao.insertTelephoneChargeIfAbsent(telephoneCharge);
+
+        assertThat(chargeId.isPresent(), is(true));
+        ChargeEntity insertedCharge = chargeDao.findByGatewayTransactionIdAndAccount(defaultTestAccount.getAccountId(), "telephone-provider-id").get();
+        assertThat(insertedCharge.getId(), is(chargeId.get()));
+        assertThat(insertedCharge.getExternalId(), is(telephoneCharge.getExternalId()));
+        assertThat(insertedCharge.getStatus(), is(CAPTURE_SUBMITTED.getValue()));
+        assertThat(insertedCharge.getSource(), is(Source.CARD_EXTERNAL_TELEPHONE));
+        assertThat(insertedCharge.getExternalMetadata().get().getMetadata().get("processor_id"), is("processor-id"));
+
+        List<Map<String, Object>> chargeEvents = new ArrayList<>(databaseTestHelper.getChargeEvents(chargeId.get()));
+        assertThat(chargeEvents, hasSize(2));
+        chargeEvents.sort(Comparator.comparing(event -> (Timestamp) event.get("updated")));
+        assertThat(chargeEvents.stream().map(event -> (String) event.get("status")).collect(toList()),
+                contains(PAYMENT_NOTIFICATION_CREATED.getValue(), CAPTURE_SUBMITTED.getValue()));
+        assertThat(chargeEvents.get(0).get("updated"), is(not(chargeEvents.get(1).get("updated"))));
+    }
+
+    @Test
+    public void insertTelephoneChargeIfAbsent_shouldNotInsertDuplicateForSameAccountAndProviderId() {
+        Long firstChargeId = chargeDao.insertTelephoneChargeIfAbsent(aTelephoneChargeForDefaultAccount("telephone-provider-id")).get();
+
+        Optional<Long> duplicateChargeId = chargeDao.insertTelephoneChargeIfAbsent(aTelephoneChargeForDefaultAccount("telephone-provider-id"));
+
+        assertThat(duplicateChargeId.isPresent(), is(false));
+        assertThat(databaseTestHelper.getChargeEvents(firstChargeId), hasSize(2));
+        assertThat(chargeDao.findByGatewayTransactionIdAndAccount(defaultTestAccount.getAccountId(), "telephone-provider-id").get().getId(),
+                is(firstChargeId));
+    }
+
+    private ChargeEntity aTelephoneChargeForDefaultAccount(String providerId) {
+        GatewayAccountEntity gatewayAccount = new GatewayAccountEntity(defaultTestAccount.getPaymentProvider(), new HashMap<>(), TEST);
+        gatewayAccount.setId(defaultTestAccount.getAccountId());
+
+        return aValidChargeEntity()
+                .withGatewayAccountEntity(gatewayAccount)
+                .withGatewayTransactionId(providerId)
+                .withSource(Source.CARD_EXTERNAL_TELEPHONE)
+                .withStatus(CAPTURE_SUBMITTED)
+                .withExternalMetadata(new ExternalMetadata(Map.of("processor_id", "processor-id")))
+                .build();
+    }
+
     @Test
     public void getChargeWithAFee_shouldReturnFeeOnCharge() {
         insertTestCharge();
@@ -737,6 +856,36 @@ public class ChargeDaoIT extends DaoITestBase {
         assertThat(chargeToExpungeFromDB.getCreatedDate(), is(chargeToExpunge.getCreatedDate()));
     }
 
+    @Test
+    public void findChargesToExpunge_shouldReturnUpToTheGivenNumberOfChargesOldestFirst() {
+        TestCharge oldestCharge = DatabaseFixtures
+                .withDatabaseTestHelper(databaseTestHelper)
+                .aTestCharge()
+                .withTestAccount(defaultTestAccount)
+                .withCreatedDate(now(ZoneId.of("UTC")).minusDays(90))
+                .insert();
+
+        TestCharge olderCharge = DatabaseFixtures
+                .withDatabaseTestHelper(databaseTestHelper)
+                .aTestCharge()
+                .withTestAccount(defaultTestAccount)
+                .withCreatedDate(now(ZoneId.of("UTC")).minusDays(60))
+                .insert();
+
+        DatabaseFixtures
+                .withDatabaseTestHelper(databaseTestHelper)
+                .aTestCharge()
+                .withTestAccount(defaultTestAccount)
+                .withCreatedDate(now(ZoneId.of("UTC")).minusDays(30))
+                .insert();
+
+        List<ChargeEntity> chargesToExpunge = chargeDao.findChargesToExpunge(5, 7, 2);
+
+        assertThat(chargesToExpunge.size(), is(2));
+        assertThat(chargesToExpunge.get(0).getId(), is(oldestCharge.getChargeId()));
+        assertThat(chargesToExpunge.get(1).getId(), is(olderCharge.getChargeId()));
+    }
+
     @Test
     public void shouldFindChargesWithPaymentProviderAndStatuses() {
         DatabaseFixtures databaseFixtures = DatabaseFixtures
@@ -808,4 +957,16 @@ public class ChargeDaoIT extends DaoITestBase {
                 .withTestCharge(defaultTestCharge)
                 .insert();
     }
+
+    private TestCharge insertTestChargeWithStatus(long chargeId, ChargeStatus status, ZonedDateTime createdDate) {
+        return DatabaseFixtures
+                .withDatabaseTestHelper(databaseTestHelper)
+                .aTestCharge()
+                .withTestAccount(defaultTestAccount)
+                .withChargeId(chargeId)
+                .withExternalChargeId(RandomIdGenerator.newId())
+                .withChargeStatus(status)
+                .withCreatedDate(createdDate)
+                .insert();
+    }
 }
@@ -0,0 +1,104 @@
+package uk.gov.pay.connector.it.dao;
+
+import org.junit.Before;
+import org.junit.Test;
+import uk.gov.pay.connector.usernotification.dao.EmailNotificationSpoolDao;
+import uk.gov.pay.connector.usernotification.model.domain.EmailNotificationSpoolEntity;
+import uk.gov.pay.connector.usernotification.model.domain.EmailNotificationType;
+
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static uk.gov.pay.connector.usernotification.model.domain.EmailNotificationType.PAYMENT_CONFIRMED;
+import static uk.gov.pay.connector.usernotification.model.domain.EmailNotificationType.REFUND_ISSUED;
+
+public class EmailNotificationSpoolDaoIT extends DaoITestBase {
+
+    private EmailNotificationSpoolDao emailNotificationSpoolDao;
+
+    @Before
+    public void setUp() {
+        emailNotificationSpoolDao = env.getInstance(EmailNotificationSpoolDao.class);
+        databaseTestHelper.truncateEmailNotificationSpool();
+    }
+
+    @Test
+    public void claimDue_shouldReturnDueEmailsAndLeaseThemOut() {
+        persist(PAYMENT_CONFIRMED, "charge-1", now());
+        persist(REFUND_ISSUED, "charge-2", now());
+
+        List<EmailNotificationSpoolEntity> claimed = emailNotificationSpoolDao.claimDue(10, 60000L);
+
+        assertThat(claimed, hasSize(2));
+        EmailNotificationSpoolEntity email = claimed.get(0);
+        assertThat(email.getNotificationType(), is(PAYMENT_CONFIRMED));
+        assertThat(email.getChargeExternalId(), is("charge-1"));
+        assertThat(email.getGatewayAccountId(), is(42L));
+        assertThat(email.isUseAccountApiKey(), is(true));
+        assertThat(email.getTemplateId(), is("a-template-id"));
+        assertThat(email.getEmailAddress(), is("a@example.com"));
+        assertThat(email.getPersonalisation(), is(Map.of("serviceName", "MyService", "amount", "5.00")));
+        assertThat(email.getAttempts(), is(0));
+        assertThat(claimed.get(1).getNotificationType(), is(REFUND_ISSUED));
+
+        assertThat(emailNotificationSpoolDao.claimDue(10, 60000L), hasSize(0));
+    }
+
+    @Test
+    public void claimDue_shouldClaimAtMostTheBatchSize() {
+        persist(PAYMENT_CONFIRMED, "charge-1", now());
+        persist(PAYMENT_CONFIRMED, "charge-2", now());
+
+        assertThat(emailNotificationSpoolDao.claimDue(1, 60000L), hasSize(1));
+        assertThat(emailNotificationSpoolDao.claimDue(1, 60000L), hasSize(1));
+        assertThat(emailNotificationSpoolDao.claimDue(1, 60000L), hasSize(0));
+    }
+
+    @Test
+    public void reschedule_shouldMakeEmailDueAgainWithIncrementedAttempts() {
+        persist(PAYMENT_CONFIRMED, "charge-1", now());
+        EmailNotificationSpoolEntity claimed = emailNotificationSpoolDao.claimDue(10, 60000L).get(0);
+
+        emailNotificationSpoolDao.reschedule(claimed.getId(), 1, now().minusSeconds(1));
+
+        List<EmailNotificationSpoolEntity> reclaimed = emailNotificationSpoolDao.claimDue(10, 60000L);
+        assertThat(reclaimed, hasSize(1));
+        assertThat(reclaimed.get(0).getAttempts(), is(1));
+    }
+
+    @Test
+    public void reschedule_shouldNotMakeEmailDueBeforeItsNextAttemptDate() {
+        persist(PAYMENT_CONFIRMED, "charge-1", now());
+        EmailNotificationSpoolEntity claimed = emailNotificationSpoolDao.claimDue(10, 0L).get(0);
+
+        emailNotificationSpoolDao.reschedule(claimed.getId(), 1, now().plusMinutes(5));
+
+        assertThat(emailNotificationSpoolDao.claimDue(10, 60000L), hasSize(0));
+        assertThat(emailNotificationSpoolDao.count(), is(1L));
+    }
+
+    @Test
+    public void delete_shouldRemoveEmails() {
+        persist(PAYMENT_CONFIRMED, "charge-1", now());
+        persist(PAYMENT_CONFIRMED, "charge-2", now());
+        EmailNotificationSpoolEntity claimed = emailNotificationSpoolDao.claimDue(1, 60000L).get(0);
+
+        emailNotificationSpoolDao.delete(List.of(claimed.getId()));
+
+        assertThat(emailNotificationSpoolDao.count(), is(1L));
+    }
+
+    private void persist(EmailNotificationType notificationType, String chargeExternalId, ZonedDateTime now) {
+        emailNotificationSpoolDao.persist(new EmailNotificationSpoolEntity(notificationType, chargeExternalId, 42L,
+                true, "a-template-id", "a@example.com", Map.of("serviceName", "MyService", "amount", "5.00"), now));
+    }
+
+    private static ZonedDateTime now() {
+        return ZonedDateTime.now(ZoneId.of("UTC"));
+    }
+}
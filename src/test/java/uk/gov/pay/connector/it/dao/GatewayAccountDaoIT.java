@@ -9,6 +9,7 @@ import uk.gov.pay.connector.common.model.api.CommaDelimitedSetParameter;
 import uk.gov.pay.connector.gatewayaccount.dao.GatewayAccountDao;
 import uk.gov.pay.connector.gatewayaccount.model.GatewayAccountEntity;
 import uk.gov.pay.connector.gatewayaccount.model.GatewayAccountSearchParams;
+import uk.gov.pay.connector.gatewayaccount.model.GatewayAccountSummaryDTO;
 import uk.gov.pay.connector.usernotification.model.domain.NotificationCredentials;
 
 import java.util.Arrays;
@@ -483,6 +484,85 @@ public class GatewayAccountDaoIT extends DaoITestBase {
         assertThat(gatewayAccounts.get(0).getId(), is(gatewayAccountId_2));
     }
 
+    @Test
+    public void searchSummaries_shouldReturnSummaryFieldsOrderedById() {
+        long gatewayAccountId_1 = nextLong();
+        databaseTestHelper.addGatewayAccount(anAddGatewayAccountParams()
+                .withAccountId(String.valueOf(gatewayAccountId_1))
+                .withPaymentGateway("stripe")
+                .withType(LIVE)
+                .withServiceName("service-name-1")
+                .withDescription("description-1")
+                .withAnalyticsId("analytics-id-1")
+                .withRequires3ds(true)
+                .withAllowApplePay(true)
+                .withAllowGooglePay(false)
+                .withAllowMoto(true)
+                .build());
+        long gatewayAccountId_2 = gatewayAccountId_1 + 1;
+        databaseTestHelper.addGatewayAccount(anAddGatewayAccountParams()
+                .withAccountId(String.valueOf(gatewayAccountId_2))
+                .build());
+
+        var params = new GatewayAccountSearchParams();
+
+        List<GatewayAccountSummaryDTO> summaries = gatewayAccountDao.searchSummaries(params);
+        assertThat(summaries, hasSize(2));
+        GatewayAccountSummaryDTO summary = summaries.get(0);
+        assertThat(summary.getAccountId(), is(gatewayAccountId_1));
+        assertThat(summary.getPaymentProvider(), is("stripe"));
+        assertThat(summary.getType(), is("live"));
+        assertThat(summary.getServiceName(), is("service-name-1"));
+        assertThat(summary.getDescription(), is("description-1"));
+        assertThat(summary.getAnalyticsId(), is("analytics-id-1"));
+        assertThat(summary.isRequires3ds(), is(true));
+        assertThat(summary.isAllowApplePay(), is(true));
+        assertThat(summary.isAllowGooglePay(), is(false));
+        assertThat(summary.isAllowMoto(), is(true));
+        assertThat(summaries.get(1).getAccountId(), is(gatewayAccountId_2));
+    }
+
+    @Test
+    public void searchSummaries_shouldReturnAPageOfAccountsAfterTheCursor() {
+        long gatewayAccountId_1 = nextLong();
+        for (long accountId = gatewayAccountId_1; accountId < gatewayAccountId_1 + 4; accountId++) {
+            databaseTestHelper.addGatewayAccount(anAddGatewayAccountParams()
+                    .withAccountId(String.valueOf(accountId))
+                    .build());
+        }
+
+        var params = new GatewayAccountSearchParams();
+        params.setAfterId(gatewayAccountId_1);
+        params.setLimit(2);
+
+        List<GatewayAccountSummaryDTO> summaries = gatewayAccountDao.searchSummaries(params);
+        assertThat(summaries, hasSize(2));
+        assertThat(summaries.get(0).getAccountId(), is(gatewayAccountId_1 + 1));
+        assertThat(summaries.get(1).getAccountId(), is(gatewayAccountId_1 + 2));
+    }
+
+    @Test
+    public void count_shouldCountEveryMatchingAccountRegardlessOfCursorAndLimit() {
+        long gatewayAccountId_1 = nextLong();
+        for (long accountId = gatewayAccountId_1; accountId < gatewayAccountId_1 + 3; accountId++) {
+            databaseTestHelper.addGatewayAccount(anAddGatewayAccountParams()
+                    .withAccountId(String.valueOf(accountId))
+                    .withAllowMoto(true)
+                    .build());
+        }
+        databaseTestHelper.addGatewayAccount(anAddGatewayAccountParams()
+                .withAccountId(String.valueOf(gatewayAccountId_1 + 3))
+                .withAllowMoto(false)
+                .build());
+
+        var params = new GatewayAccountSearchParams();
+        params.setMotoEnabled("true");
+        params.setAfterId(gatewayAccountId_1);
+        params.setLimit(1);
+
+        assertThat(gatewayAccountDao.count(params), is(3L));
+    }
+
     @Test
     public void shouldSaveNotifySettings() {
         String fuser = "fuser";
@@ -0,0 +1,114 @@
+package uk.gov.pay.connector.it.dao;
+
+import org.junit.Before;
+import org.junit.Test;
+import uk.gov.pay.connector.gateway.PaymentGatewayName;
+import uk.gov.pay.connector.webhook.dao.NotificationInboxDao;
+import uk.gov.pay.connector.webhook.model.domain.NotificationInboxEntity;
+
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.List;
+
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static uk.gov.pay.connector.gateway.PaymentGatewayName.SMARTPAY;
+import static uk.gov.pay.connector.gateway.PaymentGatewayName.WORLDPAY;
+
+public class NotificationInboxDaoIT extends DaoITestBase {
+
+    private NotificationInboxDao notificationInboxDao;
+
+    @Before
+    public void setUp() {
+        notificationInboxDao = env.getInstance(NotificationInboxDao.class);
+        databaseTestHelper.truncateNotificationInbox();
+    }
+
+    @Test
+    public void claimDue_shouldReturnDueNotificationsAndLeaseThemOut() {
+        persist(WORLDPAY, "transaction-1", "payload-1");
+        persist(SMARTPAY, "transaction-2", "payload-2");
+
+        List<NotificationInboxEntity> claimed = notificationInboxDao.claimDue(10, 60000L);
+
+        assertThat(claimed, hasSize(2));
+        NotificationInboxEntity notification = claimed.get(0);
+        assertThat(notification.getPaymentProvider(), is(WORLDPAY));
+        assertThat(notification.getOrderingKey(), is("transaction-1"));
+        assertThat(notification.getPayload(), is("payload-1"));
+        assertThat(notification.getAttempts(), is(0));
+        assertThat(claimed.get(1).getPaymentProvider(), is(SMARTPAY));
+
+        assertThat(notificationInboxDao.claimDue(10, 60000L), hasSize(0));
+    }
+
+    @Test
+    public void claimDue_shouldOnlyClaimTheOldestNotificationForAnOrderingKey() {
+        persist(WORLDPAY, "transaction-1", "first");
+        persist(WORLDPAY, "transaction-1", "second");
+        persist(WORLDPAY, "transaction-2", "other");
+
+        List<NotificationInboxEntity> claimed = notificationInboxDao.claimDue(10, 60000L);
+        assertThat(claimed, hasSize(2));
+        assertThat(claimed.get(0).getPayload(), is("first"));
+        assertThat(claimed.get(1).getPayload(), is("other"));
+
+        notificationInboxDao.delete(List.of(claimed.get(0).getId()));
+
+        List<NotificationInboxEntity> reclaimed = notificationInboxDao.claimDue(10, 60000L);
+        assertThat(reclaimed, hasSize(1));
+        assertThat(reclaimed.get(0).getPayload(), is("second"));
+    }
+
+    @Test
+    public void claimDue_shouldNotHoldUpNotificationsWithoutAnOrderingKey() {
+        persist(WORLDPAY, null, "first");
+        persist(WORLDPAY, null, "second");
+
+        assertThat(notificationInboxDao.claimDue(10, 60000L), hasSize(2));
+    }
+
+    @Test
+    public void claimDue_shouldClaimAtMostTheBatchSize() {
+        persist(WORLDPAY, "transaction-1", "payload-1");
+        persist(WORLDPAY, "transaction-2", "payload-2");
+
+        assertThat(notificationInboxDao.claimDue(1, 60000L), hasSize(1));
+        assertThat(notificationInboxDao.claimDue(1, 60000L), hasSize(1));
+        assertThat(notificationInboxDao.claimDue(1, 60000L), hasSize(0));
+    }
+
+    @Test
+    public void reschedule_shouldMakeNotificationDueAgainWithIncrementedAttempts() {
+        persist(WORLDPAY, "transaction-1", "payload-1");
+        NotificationInboxEntity claimed = notificationInboxDao.claimDue(10, 60000L).get(0);
+
+        notificationInboxDao.reschedule(claimed.getId(), 1, now().minusSeconds(1));
+
+        List<NotificationInboxEntity> reclaimed = notificationInboxDao.claimDue(10, 60000L);
+        assertThat(reclaimed, hasSize(1));
+        assertThat(reclaimed.get(0).getAttempts(), is(1));
+    }
+
+    @Test
+    public void reschedule_shouldKeepLaterNotificationsForTheSameOrderingKeyWaiting() {
+        persist(WORLDPAY, "transaction-1", "first");
+        persist(WORLDPAY, "transaction-1", "second");
+        NotificationInboxEntity claimed = notificationInboxDao.claimDue(10, 0L).get(0);
+
+        notificationInboxDao.reschedule(claimed.getId(), 1, now().plusMinutes(5));
+
+        assertThat(notificationInboxDao.claimDue(10, 60000L), hasSize(0));
+        assertThat(notificationInboxDao.count(), is(2L));
+    }
+
+    private void persist(PaymentGatewayName paymentProvider, String orderingKey, String payload) {
+        notificationInboxDao.persist(new NotificationInboxEntity(paymentProvider, orderingKey, payload, now()));
+    }
+
+    private static ZonedDateTime now() {
+        return ZonedDateTime.now(ZoneId.of("UTC"));
+    }
+}
@@ -0,0 +1,59 @@
+package uk.gov.pay.connector.it.dao;
+
+import org.junit.Before;
+import org.junit.Test;
+import uk.gov.pay.connector.webhook.dao.ProcessedGatewayNotificationDao;
+
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+public class ProcessedGatewayNotificationDaoIT extends DaoITestBase {
+
+    private ProcessedGatewayNotificationDao processedGatewayNotificationDao;
+
+    @Before
+    public void setUp() {
+        processedGatewayNotificationDao = env.getInstance(ProcessedGatewayNotificationDao.class);
+        databaseTestHelper.truncateProcessedGatewayNotifications();
+    }
+
+    @Test
+    public void isProcessedWithin_shouldFindANotificationRecordedWithinTheWindow() {
+        processedGatewayNotificationDao.recordProcessed("a-notification-key");
+
+        assertThat(processedGatewayNotificationDao.isProcessedWithin("a-notification-key", 600), is(true));
+        assertThat(processedGatewayNotificationDao.isProcessedWithin("another-notification-key", 600), is(false));
+    }
+
+    @Test
+    public void recordProcessed_shouldAllowTheSameNotificationToBeRecordedAgain() {
+        processedGatewayNotificationDao.recordProcessed("a-notification-key");
+        processedGatewayNotificationDao.recordProcessed("a-notification-key");
+
+        assertThat(processedGatewayNotificationDao.isProcessedWithin("a-notification-key", 600), is(true));
+    }
+
+    @Test
+    public void isProcessedWithin_shouldNotFindANotificationRecordedBeforeTheWindow() {
+        databaseTestHelper.addProcessedGatewayNotification("a-notification-key", now().minusMinutes(11));
+
+        assertThat(processedGatewayNotificationDao.isProcessedWithin("a-notification-key", 600), is(false));
+    }
+
+    @Test
+    public void deleteExpired_shouldOnlyDeleteNotificationsOutsideTheWindow() {
+        databaseTestHelper.addProcessedGatewayNotification("a-notification-key", now().minusMinutes(11));
+        processedGatewayNotificationDao.recordProcessed("another-notification-key");
+
+        assertThat(processedGatewayNotificationDao.deleteExpired(600), is(1));
+        assertThat(processedGatewayNotificationDao.isProcessedWithin("a-notification-key", 600), is(false));
+        assertThat(processedGatewayNotificationDao.isProcessedWithin("another-notification-key", 600), is(true));
+    }
+
+    private static ZonedDateTime now() {
+        return ZonedDateTime.now(ZoneId.of("UTC"));
+    }
+}
@@ -12,6 +12,8 @@ import java.time.ZonedDateTime;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 import static java.time.ZonedDateTime.now;
 import static org.apache.commons.lang3.RandomStringUtils.randomAlphanumeric;
@@ -296,6 +298,40 @@ public class RefundDaoJpaIT extends DaoITestBase {
         assertThat(refundEntityList.get(1).getChargeExternalId(), is(chargeTestRecord.externalChargeId));
     }
 
+    @Test
+    public void getRefundHistoryByRefundExternalIds_shouldReturnHistoryForAllGivenRefunds() {
+        RefundEntity firstRefund = new RefundEntity(100L, userExternalId, userEmail, chargeTestRecord.getExternalChargeId());
+        firstRefund.setStatus(CREATED);
+        refundDao.persist(firstRefund);
+        RefundEntity secondRefund = new RefundEntity(200L, userExternalId, userEmail, chargeTestRecord.getExternalChargeId());
+        secondRefund.setStatus(CREATED);
+        refundDao.persist(secondRefund);
+
+        List<RefundHistory> refundHistoryList = refundDao.getRefundHistoryByRefundExternalIds(
+                List.of(firstRefund.getExternalId(), secondRefund.getExternalId()));
+
+        assertThat(refundHistoryList.size(), is(2));
+        assertThat(refundHistoryList.stream().map(RefundHistory::getExternalId).collect(Collectors.toSet()),
+                is(Set.of(firstRefund.getExternalId(), secondRefund.getExternalId())));
+    }
+
+    @Test
+    public void findRefundsByChargeExternalIds_shouldReturnRefundsForAllGivenCharges() {
+        DatabaseFixtures
+                .withDatabaseTestHelper(databaseTestHelper)
+                .aTestRefund()
+                .withReference(randomAlphanumeric(10))
+                .withGatewayTransactionId(randomAlphanumeric(10))
+                .withChargeExternalId(chargeTestRecord.getExternalChargeId())
+                .withTestCharge(chargeTestRecord).insert();
+
+        List<RefundEntity> refundEntityList = refundDao.findRefundsByChargeExternalIds(
+                List.of(chargeTestRecord.externalChargeId, "not-a-charge"));
+
+        assertThat(refundEntityList.size(), is(2));
+        assertThat(refundDao.findRefundsByChargeExternalIds(List.of()).size(), is(0));
+    }
+
     @Test
     public void findMaxId_returnsTheMaximumId() {
         RefundEntity refundEntity = new RefundEntity(100L, userExternalId, userEmail, chargeTestRecord.getExternalChargeId());
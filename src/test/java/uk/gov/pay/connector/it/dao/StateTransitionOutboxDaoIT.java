@@ -0,0 +1,95 @@
+package uk.gov.pay.connector.it.dao;
+
+import org.junit.Before;
+import org.junit.Test;
+import uk.gov.pay.connector.events.model.charge.PaymentCreated;
+import uk.gov.pay.connector.events.model.refund.RefundSucceeded;
+import uk.gov.pay.connector.queue.PaymentStateTransition;
+import uk.gov.pay.connector.queue.RefundStateTransition;
+import uk.gov.pay.connector.queue.StateTransition;
+import uk.gov.pay.connector.queue.StateTransitionOutboxEntity;
+import uk.gov.pay.connector.queue.dao.StateTransitionOutboxDao;
+
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static uk.gov.pay.connector.refund.model.domain.RefundStatus.REFUNDED;
+
+public class StateTransitionOutboxDaoIT extends DaoITestBase {
+
+    private StateTransitionOutboxDao stateTransitionOutboxDao;
+
+    @Before
+    public void setUp() {
+        stateTransitionOutboxDao = env.getInstance(StateTransitionOutboxDao.class);
+        databaseTestHelper.truncateStateTransitionOutbox();
+    }
+
+    @Test
+    public void claimDue_shouldReturnDueStateTransitionsAndLeaseThemOut() throws Exception {
+        persist(new PaymentStateTransition(100L, PaymentCreated.class, 0));
+        persist(new RefundStateTransition("refund-external-id", REFUNDED, RefundSucceeded.class, 0));
+
+        List<StateTransitionOutboxEntity> claimed = stateTransitionOutboxDao.claimDue(10, 60000L);
+
+        assertThat(claimed, hasSize(2));
+        PaymentStateTransition paymentStateTransition = (PaymentStateTransition) claimed.get(0).toStateTransition();
+        assertThat(paymentStateTransition.getChargeEventId(), is(100L));
+        assertThat(paymentStateTransition.getStateTransitionEventClass(), is(PaymentCreated.class));
+        RefundStateTransition refundStateTransition = (RefundStateTransition) claimed.get(1).toStateTransition();
+        assertThat(refundStateTransition.getRefundExternalId(), is("refund-external-id"));
+        assertThat(refundStateTransition.getRefundStatus(), is(REFUNDED));
+
+        assertThat(stateTransitionOutboxDao.claimDue(10, 60000L), hasSize(0));
+    }
+
+    @Test
+    public void claimDue_shouldNotReturnStateTransitionsThatAreNotDueYet() {
+        persist(new PaymentStateTransition(100L, PaymentCreated.class, 60000L));
+
+        assertThat(stateTransitionOutboxDao.claimDue(10, 60000L), hasSize(0));
+        assertThat(stateTransitionOutboxDao.count(), is(1L));
+    }
+
+    @Test
+    public void claimDue_shouldClaimAtMostTheBatchSize() {
+        persist(new PaymentStateTransition(100L, PaymentCreated.class, 0));
+        persist(new PaymentStateTransition(101L, PaymentCreated.class, 0));
+
+        assertThat(stateTransitionOutboxDao.claimDue(1, 60000L), hasSize(1));
+        assertThat(stateTransitionOutboxDao.claimDue(1, 60000L), hasSize(1));
+        assertThat(stateTransitionOutboxDao.claimDue(1, 60000L), hasSize(0));
+    }
+
+    @Test
+    public void reschedule_shouldMakeStateTransitionDueAgainWithIncrementedAttempts() {
+        persist(new PaymentStateTransition(100L, PaymentCreated.class, 0));
+        StateTransitionOutboxEntity claimed = stateTransitionOutboxDao.claimDue(10, 60000L).get(0);
+
+        stateTransitionOutboxDao.reschedule(claimed.getId(), 2, ZonedDateTime.now(ZoneId.of("UTC")).minusSeconds(1));
+
+        List<StateTransitionOutboxEntity> reclaimed = stateTransitionOutboxDao.claimDue(10, 60000L);
+        assertThat(reclaimed, hasSize(1));
+        assertThat(reclaimed.get(0).getAttempts(), is(2));
+    }
+
+    @Test
+    public void delete_shouldRemoveStateTransition() {
+        persist(new PaymentStateTransition(100L, PaymentCreated.class, 0));
+        StateTransitionOutboxEntity claimed = stateTransitionOutboxDao.claimDue(10, 60000L).get(0);
+
+        stateTransitionOutboxDao.delete(List.of(claimed.getId()));
+
+        List<Map<String, Object>> outbox = databaseTestHelper.readStateTransitionOutbox();
+        assertThat(outbox, hasSize(0));
+    }
+
+    private void persist(StateTransition stateTransition) {
+        stateTransitionOutboxDao.persist(StateTransitionOutboxEntity.from(stateTransition, ZonedDateTime.now(ZoneId.of("UTC"))));
+    }
+}
@@ -94,26 +94,31 @@ public class TokenDaoJpaIT extends DaoITestBase {
     }
     
     @Test
-    public void deleteByCutOffDate_shouldDeleteOlderTokens() {
+    public void deleteByCutOffDateInBatches_shouldDeleteAtMostBatchSizeOlderTokens() {
         ZonedDateTime today = ZonedDateTime.now(ZoneId.of("UTC"));
 
         ChargeEntity chargeTestEntity = new ChargeEntity();
         chargeTestEntity.setId(defaultTestCharge.getChargeId());
-        
+
+        for (int i = 0; i < 3; i++) {
+            TokenEntity oldToken = TokenEntity.generateNewTokenFor(chargeTestEntity);
+            oldToken.setCreatedDate(today.minusDays(8 + i));
+            oldToken.setToken("old-token-" + i);
+            tokenDao.persist(oldToken);
+        }
+
         TokenEntity presentDayToken = TokenEntity.generateNewTokenFor(chargeTestEntity);
         presentDayToken.setCreatedDate(today);
         presentDayToken.setToken("present-day-token");
         tokenDao.persist(presentDayToken);
-        
-        TokenEntity olderThanExpiryThreshold = TokenEntity.generateNewTokenFor(chargeTestEntity);
-        olderThanExpiryThreshold.setCreatedDate(today.minusDays(8));
-        olderThanExpiryThreshold.setToken("old-token");
-        tokenDao.persist(olderThanExpiryThreshold);
 
         final ZonedDateTime expiryThreshold = today.minusDays(7);
-        tokenDao.deleteTokensOlderThanSpecifiedDate(expiryThreshold);
 
-        assertThat(tokenDao.findByTokenId("old-token"), isEmpty());
+        assertThat(tokenDao.deleteTokensOlderThanSpecifiedDate(expiryThreshold, 2), is(2));
+        assertThat(tokenDao.findByTokenId("old-token-0"), isPresent());
+
+        assertThat(tokenDao.deleteTokensOlderThanSpecifiedDate(expiryThreshold, 2), is(1));
+        assertThat(tokenDao.findByTokenId("old-token-0"), isEmpty());
         assertThat(tokenDao.findByTokenId("present-day-token"), isPresent());
     }
 }
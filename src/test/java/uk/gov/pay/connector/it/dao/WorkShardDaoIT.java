@@ -0,0 +1,110 @@
+package uk.gov.pay.connector.it.dao;
+
+import org.junit.Before;
+import org.junit.Test;
+import uk.gov.pay.connector.workpartition.dao.WorkShardDao;
+import uk.gov.pay.connector.workpartition.model.WorkShardEntity;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static uk.gov.pay.connector.workpartition.model.WorkShardStatus.AVAILABLE;
+import static uk.gov.pay.connector.workpartition.model.WorkShardStatus.CLAIMED;
+import static uk.gov.pay.connector.workpartition.model.WorkShardStatus.COMPLETED;
+
+public class WorkShardDaoIT extends DaoITestBase {
+
+    private static final long LEASE_IN_MILLISECONDS = 60000L;
+
+    private WorkShardDao workShardDao;
+
+    @Before
+    public void setUp() {
+        workShardDao = env.getInstance(WorkShardDao.class);
+        databaseTestHelper.truncateWorkShards();
+    }
+
+    @Test
+    public void createShards_shouldSplitTheRangeIntoShardsOnlyOnce() {
+        assertThat(workShardDao.createShards("job", 1, 250, 100), is(3));
+        assertThat(workShardDao.createShards("job", 1, 250, 100), is(0));
+
+        List<WorkShardEntity> shards = workShardDao.findByJobName("job");
+        assertThat(shards, hasSize(3));
+        assertThat(shards.get(0).getRangeStart(), is(1L));
+        assertThat(shards.get(0).getRangeEnd(), is(100L));
+        assertThat(shards.get(2).getRangeStart(), is(201L));
+        assertThat(shards.get(2).getRangeEnd(), is(250L));
+        assertThat(shards.get(2).getStatus(), is(AVAILABLE));
+    }
+
+    @Test
+    public void claim_shouldHandOutEachShardToOneNodeOnly() {
+        workShardDao.createShards("job", 1, 200, 100);
+
+        WorkShardEntity first = workShardDao.claim("job", "node-1", LEASE_IN_MILLISECONDS).get();
+        WorkShardEntity second = workShardDao.claim("job", "node-2", LEASE_IN_MILLISECONDS).get();
+
+        assertThat(first.getRangeStart(), is(1L));
+        assertThat(first.getStatus(), is(CLAIMED));
+        assertThat(first.getLeaseOwner(), is("node-1"));
+        assertThat(second.getRangeStart(), is(101L));
+        assertThat(second.getLeaseOwner(), is("node-2"));
+        assertThat(workShardDao.claim("job", "node-3", LEASE_IN_MILLISECONDS), is(Optional.empty()));
+    }
+
+    @Test
+    public void claim_shouldHandOutAShardAgainOnceItsLeaseHasRunOut() {
+        workShardDao.createShards("job", 1, 100, 100);
+        WorkShardEntity shard = workShardDao.claim("job", "node-1", 0L).get();
+
+        WorkShardEntity reclaimed = workShardDao.claim("job", "node-2", LEASE_IN_MILLISECONDS).get();
+
+        assertThat(reclaimed.getId(), is(shard.getId()));
+        assertThat(reclaimed.getLeaseOwner(), is("node-2"));
+        assertThat(workShardDao.renew(shard.getId(), "node-1", LEASE_IN_MILLISECONDS), is(false));
+        assertThat(workShardDao.complete(shard.getId(), "node-1"), is(false));
+    }
+
+    @Test
+    public void complete_shouldStopTheShardFromBeingClaimedAgain() {
+        workShardDao.createShards("job", 1, 100, 100);
+        WorkShardEntity shard = workShardDao.claim("job", "node-1", 0L).get();
+
+        assertThat(workShardDao.complete(shard.getId(), "node-1"), is(true));
+
+        assertThat(workShardDao.claim("job", "node-2", LEASE_IN_MILLISECONDS), is(Optional.empty()));
+        assertThat(workShardDao.findByJobName("job").get(0).getStatus(), is(COMPLETED));
+    }
+
+    @Test
+    public void release_shouldMakeTheShardAvailableAgain() {
+        workShardDao.createShards("job", 0, 0, 1);
+        WorkShardEntity shard = workShardDao.claim("job", "node-1", LEASE_IN_MILLISECONDS).get();
+
+        assertThat(workShardDao.release(shard.getId(), "node-1"), is(true));
+
+        assertThat(workShardDao.claim("job", "node-2", LEASE_IN_MILLISECONDS).get().getId(), is(shard.getId()));
+    }
+
+    @Test
+    public void deleteCompletedJobs_shouldOnlyDeleteJobsWhoseShardsHaveAllBeenCompleted() {
+        workShardDao.createShards("completed-job", 1, 100, 100);
+        WorkShardEntity completedShard = workShardDao.claim("completed-job", "node-1", LEASE_IN_MILLISECONDS).get();
+        workShardDao.complete(completedShard.getId(), "node-1");
+        workShardDao.createShards("job-in-progress", 1, 200, 100);
+        WorkShardEntity shardInProgress = workShardDao.claim("job-in-progress", "node-1", LEASE_IN_MILLISECONDS).get();
+        workShardDao.complete(shardInProgress.getId(), "node-1");
+        workShardDao.createShards("single-node-job", 0, 0, 1);
+
+        assertThat(workShardDao.deleteCompletedJobs(7), is(0));
+        assertThat(workShardDao.deleteCompletedJobs(0), is(1));
+
+        assertThat(workShardDao.findByJobName("completed-job"), hasSize(0));
+        assertThat(workShardDao.findByJobName("job-in-progress"), hasSize(2));
+        assertThat(workShardDao.findByJobName("single-node-job"), hasSize(1));
+    }
+}
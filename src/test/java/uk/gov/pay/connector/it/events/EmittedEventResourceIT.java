@@ -1,18 +1,14 @@
 package uk.gov.pay.connector.it.events;
 
-import io.dropwizard.setup.Environment;
 import org.apache.commons.lang.math.RandomUtils;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import uk.gov.pay.connector.app.ConnectorApp;
-import uk.gov.pay.connector.app.ConnectorConfiguration;
-import uk.gov.pay.connector.app.ConnectorModule;
 import uk.gov.pay.connector.it.base.ChargingITestBase;
 import uk.gov.pay.connector.junit.ConfigOverride;
 import uk.gov.pay.connector.junit.DropwizardConfig;
 import uk.gov.pay.connector.junit.DropwizardJUnitRunner;
-import uk.gov.pay.connector.queue.StateTransitionQueue;
 
 import java.sql.Timestamp;
 import java.time.Instant;
@@ -29,7 +25,7 @@ import static uk.gov.pay.connector.util.AddChargeParams.AddChargeParamsBuilder.a
 
 @RunWith(DropwizardJUnitRunner.class)
 @DropwizardConfig(
-        app = EmittedEventResourceIT.ConnectorAppWithCustomStateTransitionQueue.class,
+        app = ConnectorApp.class,
         config = "config/test-it-config.yaml",
         withDockerSQS = true,
         configOverrides = {
@@ -38,7 +34,6 @@ import static uk.gov.pay.connector.util.AddChargeParams.AddChargeParamsBuilder.a
 )
 public class EmittedEventResourceIT extends ChargingITestBase {
 
-    private static StateTransitionQueue stateTransitionQueue = new StateTransitionQueue();
     private String externalChargeId;
 
     public EmittedEventResourceIT() {
@@ -50,7 +45,7 @@ public class EmittedEventResourceIT extends ChargingITestBase {
     public void setUp() {
         super.setUp();
         databaseTestHelper.truncateEmittedEvents();
-        stateTransitionQueue.clear();
+        databaseTestHelper.truncateStateTransitionOutbox();
     }
 
     @Test
@@ -65,7 +60,7 @@ public class EmittedEventResourceIT extends ChargingITestBase {
                 .postEmittedEventsSweepTask()
                 .statusCode(OK.getStatusCode());
 
-        assertThat(stateTransitionQueue.size(), is(1));
+        assertThat(databaseTestHelper.readStateTransitionOutbox().size(), is(1));
 
         List<Map<String, Object>> emittedEvents = databaseTestHelper.readEmittedEvents();
 
@@ -88,7 +83,7 @@ public class EmittedEventResourceIT extends ChargingITestBase {
                 .postEmittedEventsSweepTask()
                 .statusCode(OK.getStatusCode());
 
-        assertThat(stateTransitionQueue.size(), is(1));
+        assertThat(databaseTestHelper.readStateTransitionOutbox().size(), is(1));
 
         List<Map<String, Object>> emittedEvents = databaseTestHelper.readEmittedEvents();
 
@@ -112,7 +107,7 @@ public class EmittedEventResourceIT extends ChargingITestBase {
                 .postEmittedEventsSweepTask()
                 .statusCode(OK.getStatusCode());
 
-        assertThat(stateTransitionQueue.size(), is(0));
+        assertThat(databaseTestHelper.readStateTransitionOutbox().size(), is(0));
 
         List<Map<String, Object>> emittedEvents = databaseTestHelper.readEmittedEvents();
 
@@ -140,24 +135,4 @@ public class EmittedEventResourceIT extends ChargingITestBase {
                 () -> assertThat(emittedEvent.get("do_not_retry_emit_until"), is(nullValue()))
         );
     }
-
-    public static class ConnectorAppWithCustomStateTransitionQueue extends ConnectorApp {
-
-        @Override
-        protected ConnectorModule getModule(ConnectorConfiguration configuration, Environment environment) {
-            return new EmittedEventResourceIT.ConnectorModuleWithOverrides(configuration, environment);
-        }
-    }
-
-    private static class ConnectorModuleWithOverrides extends ConnectorModule {
-
-        public ConnectorModuleWithOverrides(ConnectorConfiguration configuration, Environment environment) {
-            super(configuration, environment);
-        }
-
-        @Override
-        protected StateTransitionQueue getStateTransitionQueue() {
-            return stateTransitionQueue;
-        }
-    }
 }
@@ -14,7 +14,6 @@ import uk.gov.pay.connector.junit.DropwizardConfig;
 import uk.gov.pay.connector.junit.DropwizardJUnitRunner;
 import uk.gov.pay.connector.model.domain.AuthCardDetailsFixture;
 import uk.gov.pay.connector.paymentprocessor.service.CardCaptureProcess;
-import uk.gov.pay.connector.queue.QueueException;
 import uk.gov.pay.connector.util.DateTimeUtils;
 import uk.gov.pay.connector.util.RandomIdGenerator;
 
@@ -63,7 +62,7 @@ public class ChargesApiResourceIT extends ChargingITestBase {
     }
 
     @Test
-    public void makeChargeSubmitCaptureAndCheckSettlementSummary() throws QueueException {
+    public void makeChargeSubmitCaptureAndCheckSettlementSummary() throws Exception {
         ZonedDateTime startOfTest = ZonedDateTime.now().withZoneSameInstant(ZoneOffset.UTC);
         String expectedDayOfCapture = DateTimeUtils.toUTCDateString(startOfTest);
 
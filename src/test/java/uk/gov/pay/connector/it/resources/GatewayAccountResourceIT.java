@@ -19,6 +19,7 @@ import static javax.ws.rs.core.Response.Status.CONFLICT;
 import static javax.ws.rs.core.Response.Status.NOT_FOUND;
 import static javax.ws.rs.core.Response.Status.OK;
 import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.not;
@@ -208,6 +209,50 @@ public class GatewayAccountResourceIT extends GatewayAccountResourceTestBase {
                 .body("accounts[1].gateway_account_id", is(Integer.valueOf(gatewayAccountId2)));
     }
 
+    @Test
+    public void shouldPageThroughGatewayAccountsWithNextLinksAndATotalCount() {
+        String gatewayAccountId1 = createAGatewayAccountFor("sandbox");
+        String gatewayAccountId2 = createAGatewayAccountFor("sandbox");
+        String gatewayAccountId3 = createAGatewayAccountFor("sandbox");
+
+        givenSetup()
+                .get("/v1/api/accounts?limit=2&include_total=true")
+                .then()
+                .statusCode(OK.getStatusCode())
+                .header("X-Total-Count", is("3"))
+                .header("Link", containsString("after_id=" + gatewayAccountId2))
+                .header("Link", containsString("rel=\"next\""))
+                .body("accounts", hasSize(2))
+                .body("accounts[0].gateway_account_id", is(Integer.valueOf(gatewayAccountId1)))
+                .body("accounts[1].gateway_account_id", is(Integer.valueOf(gatewayAccountId2)));
+
+        givenSetup()
+                .get("/v1/api/accounts?limit=2&include_total=true&after_id=" + gatewayAccountId2)
+                .then()
+                .statusCode(OK.getStatusCode())
+                .header("X-Total-Count", is("3"))
+                .header("Link", nullValue())
+                .body("accounts", hasSize(1))
+                .body("accounts[0].gateway_account_id", is(Integer.valueOf(gatewayAccountId3)));
+    }
+
+    @Test
+    public void shouldGetGatewayAccountSummariesWithoutATotalCountUnlessAskedFor() {
+        String gatewayAccountId1 = createAGatewayAccountFor("sandbox");
+        createAGatewayAccountFor("sandbox");
+
+        givenSetup()
+                .get("/v1/api/accounts?view=summary&limit=1")
+                .then()
+                .statusCode(OK.getStatusCode())
+                .header("X-Total-Count", nullValue())
+                .header("Link", containsString("after_id=" + gatewayAccountId1))
+                .body("accounts", hasSize(1))
+                .body("accounts[0].gateway_account_id", is(Integer.valueOf(gatewayAccountId1)))
+                .body("accounts[0].payment_provider", is("sandbox"))
+                .body("accounts[0]", not(hasKey("credentials")));
+    }
+
     @Test
     public void shouldGetGatewayAccountsByMotoEnabled() {
         String gatewayAccountId1 = createAGatewayAccountFor("sandbox");
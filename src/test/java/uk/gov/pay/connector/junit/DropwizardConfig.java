@@ -57,7 +57,8 @@ public @interface DropwizardConfig {
     boolean withDockerPostgres() default true;
 
     /**
-     * Run a Test container with SQS image as a dependency for given Dropwizard Application
+     * Run the capture and event queues the given Dropwizard Application uses. They are kept in memory, unless the
+     * QUEUE_BACKEND environment variable is SQS, in which case a Test container with SQS image is run instead
      *
      * @return boolean
      */
@@ -8,6 +8,7 @@ import org.junit.runners.model.FrameworkField;
 import org.junit.runners.model.InitializationError;
 import org.junit.runners.model.Statement;
 import uk.gov.pay.commons.testing.port.PortFactory;
+import uk.gov.pay.connector.queue.QueueBackend;
 
 import java.util.Arrays;
 import java.util.List;
@@ -67,7 +68,7 @@ public final class DropwizardJUnitRunner extends JUnitParamsRunner {
             configOverride.add(config("database.password", getDbPassword()));
         }
 
-        if (dropwizardConfigAnnotation.withDockerSQS()) {
+        if (dropwizardConfigAnnotation.withDockerSQS() && QueueBackend.SQS.name().equals(System.getenv("QUEUE_BACKEND"))) {
             SqsTestDocker.initialise("capture-queue", "event-queue");
             configOverride.add(config("sqsConfig.captureQueueUrl", getQueueUrl("capture-queue")));
             configOverride.add(config("sqsConfig.eventQueueUrl", getQueueUrl("event-queue")));
@@ -1,27 +1,39 @@
 package uk.gov.pay.connector.paritycheck;
 
+import com.codahale.metrics.MetricRegistry;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Ticker;
+import com.google.common.util.concurrent.MoreExecutors;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.junit.MockitoJUnitRunner;
 import uk.gov.pay.connector.app.ConnectorConfiguration;
+import uk.gov.pay.connector.app.config.LedgerClientConfig;
+import uk.gov.pay.connector.app.config.LedgerTransactionCacheConfig;
 
+import javax.ws.rs.ProcessingException;
 import javax.ws.rs.client.Client;
 import javax.ws.rs.client.Invocation;
 import javax.ws.rs.client.WebTarget;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.UriBuilder;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import static javax.ws.rs.core.MediaType.APPLICATION_JSON;
+import static org.apache.http.HttpStatus.SC_INTERNAL_SERVER_ERROR;
+import static org.apache.http.HttpStatus.SC_NOT_FOUND;
 import static org.apache.http.HttpStatus.SC_OK;
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.notNullValue;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static uk.gov.pay.connector.util.TestTemplateResourceLoader.LEDGER_GET_TRANSACTION;
 import static uk.gov.pay.connector.util.TestTemplateResourceLoader.load;
@@ -31,16 +43,24 @@ public class LedgerServiceTest {
 
     ObjectMapper objectMapper = new ObjectMapper();
     private LedgerService ledgerService;
+    private Invocation.Builder mockBuilder;
+    private Response mockResponse;
+    private Response errorResponse;
 
     @Before
     public void setUp() throws JsonProcessingException {
         Client mockClient = mock(Client.class);
         ConnectorConfiguration mockConnectorConfiguration = mock(ConnectorConfiguration.class);
         WebTarget mockWebTarget = mock(WebTarget.class);
-        Invocation.Builder mockBuilder = mock(Invocation.Builder.class);
-        Response mockResponse = mock(Response.class);
+        mockBuilder = mock(Invocation.Builder.class);
+        mockResponse = mock(Response.class);
+        errorResponse = mock(Response.class);
+        LedgerTransactionCacheConfig cacheConfig = mock(LedgerTransactionCacheConfig.class);
+        LedgerClientConfig ledgerClientConfig = mock(LedgerClientConfig.class);
 
         when(mockConnectorConfiguration.getLedgerBaseUrl()).thenReturn("http://ledgerUrl");
+        when(mockConnectorConfiguration.getLedgerClientConfig()).thenReturn(ledgerClientConfig);
+        when(ledgerClientConfig.getMaximumAttempts()).thenReturn(3);
         when(mockClient.target(any(UriBuilder.class))).thenReturn(mockWebTarget);
         when(mockWebTarget.request()).thenReturn(mockBuilder);
         when(mockBuilder.accept(APPLICATION_JSON)).thenReturn(mockBuilder);
@@ -48,7 +68,15 @@ public class LedgerServiceTest {
 
         when(mockResponse.readEntity(LedgerTransaction.class)).thenReturn(objectMapper.readValue(load(LEDGER_GET_TRANSACTION), LedgerTransaction.class));
         when(mockResponse.getStatus()).thenReturn(SC_OK);
-        ledgerService = new LedgerService(mockClient, mockConnectorConfiguration);
+        when(errorResponse.getStatus()).thenReturn(SC_INTERNAL_SERVER_ERROR);
+
+        when(cacheConfig.isEnabled()).thenReturn(true);
+        when(cacheConfig.getFoundTtlInSeconds()).thenReturn(60L);
+        when(cacheConfig.getNotFoundTtlInSeconds()).thenReturn(60L);
+        when(cacheConfig.getMaximumSize()).thenReturn(100L);
+        LedgerTransactionCache ledgerTransactionCache = new LedgerTransactionCache(cacheConfig, new MetricRegistry(), Ticker.systemTicker());
+        ledgerService = new LedgerService(mockClient, mockConnectorConfiguration, ledgerTransactionCache,
+                MoreExecutors.newDirectExecutorService());
     }
 
     @Test
@@ -63,4 +91,98 @@ public class LedgerServiceTest {
         assertThat(transaction.getGatewayAccountId(), is("3"));
         assertThat(transaction.getExternalMetaData(), is(notNullValue()));
     }
+
+    @Test
+    public void getTransactionForProviderAndGatewayTransactionId_shouldOnlyAskLedgerOnceForAKnownTransaction() {
+        Optional<LedgerTransaction> first = ledgerService.getTransactionForProviderAndGatewayTransactionId("worldpay", "gateway-tx-id");
+        Optional<LedgerTransaction> second = ledgerService.getTransactionForProviderAndGatewayTransactionId("worldpay", "gateway-tx-id");
+
+        assertThat(first.isPresent(), is(true));
+        assertThat(second.get().getTransactionId(), is("external-id"));
+        verify(mockBuilder, times(1)).get();
+    }
+
+    @Test
+    public void getTransactionForProviderAndGatewayTransactionId_shouldOnlyAskLedgerOnceForATransactionItDoesNotKnowAbout() {
+        when(mockResponse.getStatus()).thenReturn(SC_NOT_FOUND);
+
+        assertThat(ledgerService.getTransactionForProviderAndGatewayTransactionId("worldpay", "gateway-tx-id").isPresent(), is(false));
+        assertThat(ledgerService.getTransactionForProviderAndGatewayTransactionId("worldpay", "gateway-tx-id").isPresent(), is(false));
+
+        verify(mockBuilder, times(1)).get();
+    }
+
+    @Test
+    public void getTransactionForProviderAndGatewayTransactionId_shouldAskLedgerAgainAfterAFailedLookup() {
+        when(mockBuilder.get()).thenReturn(errorResponse, errorResponse, errorResponse, mockResponse);
+
+        assertThat(ledgerService.getTransactionForProviderAndGatewayTransactionId("worldpay", "gateway-tx-id").isPresent(), is(false));
+        assertThat(ledgerService.getTransactionForProviderAndGatewayTransactionId("worldpay", "gateway-tx-id").isPresent(), is(true));
+
+        verify(mockBuilder, times(4)).get();
+    }
+
+    @Test
+    public void getTransaction_shouldRetryAServerError() {
+        when(mockBuilder.get()).thenReturn(errorResponse, mockResponse);
+
+        assertThat(ledgerService.getTransaction("external-id").isPresent(), is(true));
+
+        verify(mockBuilder, times(2)).get();
+        verify(errorResponse).close();
+    }
+
+    @Test
+    public void getTransaction_shouldRetryARequestThatTimesOut() {
+        when(mockBuilder.get()).thenThrow(new ProcessingException("Read timed out")).thenReturn(mockResponse);
+
+        assertThat(ledgerService.getTransaction("external-id").isPresent(), is(true));
+
+        verify(mockBuilder, times(2)).get();
+    }
+
+    @Test
+    public void getTransaction_shouldGiveUpAfterTheMaximumAttempts() {
+        when(mockBuilder.get()).thenReturn(errorResponse);
+
+        assertThat(ledgerService.getTransaction("external-id").isPresent(), is(false));
+
+        verify(mockBuilder, times(3)).get();
+    }
+
+    @Test
+    public void getTransaction_shouldNotRetryWhenLedgerDoesNotKnowAboutTheTransaction() {
+        when(mockResponse.getStatus()).thenReturn(SC_NOT_FOUND);
+
+        assertThat(ledgerService.getTransaction("external-id").isPresent(), is(false));
+
+        verify(mockBuilder, times(1)).get();
+        verify(mockResponse).close();
+    }
+
+    @Test
+    public void getTransactions_shouldLeaveOutTransactionsLedgerDoesNotKnowAbout() {
+        Response notFoundResponse = mock(Response.class);
+        when(notFoundResponse.getStatus()).thenReturn(SC_NOT_FOUND);
+        when(mockBuilder.get()).thenReturn(mockResponse, notFoundResponse);
+
+        Map<String, LedgerTransaction> transactions = ledgerService.getTransactions(List.of("external-id", "unknown", "external-id"));
+
+        assertThat(transactions.size(), is(1));
+        assertThat(transactions.get("external-id").getTransactionId(), is("external-id"));
+        verify(mockBuilder, times(2)).get();
+    }
+
+    @Test
+    public void getTransactionsForProviderAndGatewayTransactionIds_shouldReturnTransactionsByGatewayTransactionId() {
+        Response notFoundResponse = mock(Response.class);
+        when(notFoundResponse.getStatus()).thenReturn(SC_NOT_FOUND);
+        when(mockBuilder.get()).thenReturn(mockResponse, notFoundResponse);
+
+        Map<String, LedgerTransaction> transactions = ledgerService.getTransactionsForProviderAndGatewayTransactionIds("smartpay",
+                List.of("gateway-tx-id", "unknown-gateway-tx-id"));
+
+        assertThat(transactions.size(), is(1));
+        assertThat(transactions.get("gateway-tx-id").getTransactionId(), is("external-id"));
+    }
 }
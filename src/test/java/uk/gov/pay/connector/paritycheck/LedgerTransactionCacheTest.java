@@ -0,0 +1,177 @@
+package uk.gov.pay.connector.paritycheck;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.base.Ticker;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import uk.gov.pay.connector.app.config.LedgerTransactionCacheConfig;
+
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class LedgerTransactionCacheTest {
+
+    @Mock
+    private LedgerTransactionCacheConfig config;
+
+    private final MetricRegistry metricRegistry = new MetricRegistry();
+    private final AtomicLong nanos = new AtomicLong();
+    private final AtomicInteger lookups = new AtomicInteger();
+    private final LedgerTransaction transaction = aLedgerTransaction();
+    private LedgerTransactionCache cache;
+
+    @Before
+    public void setUp() {
+        when(config.isEnabled()).thenReturn(true);
+        when(config.getFoundTtlInSeconds()).thenReturn(300L);
+        when(config.getNotFoundTtlInSeconds()).thenReturn(30L);
+        when(config.getMaximumSize()).thenReturn(10L);
+        cache = aLedgerTransactionCache();
+    }
+
+    @Test
+    public void shouldOnlyLookUpAFoundTransactionOnce() {
+        assertThat(cache.get("worldpay/transaction-id", lookup(Optional.of(transaction))), is(Optional.of(transaction)));
+        assertThat(cache.get("worldpay/transaction-id", lookup(Optional.of(transaction))), is(Optional.of(transaction)));
+
+        assertThat(lookups.get(), is(1));
+        assertThat(metricRegistry.meter("ledger.transaction-cache.misses").getCount(), is(1L));
+        assertThat(metricRegistry.meter("ledger.transaction-cache.hits").getCount(), is(1L));
+    }
+
+    @Test
+    public void shouldOnlyLookUpATransactionLedgerDoesNotKnowAboutOnce() {
+        assertThat(cache.get("worldpay/transaction-id", lookup(Optional.empty())), is(Optional.empty()));
+        assertThat(cache.get("worldpay/transaction-id", lookup(Optional.empty())), is(Optional.empty()));
+
+        assertThat(lookups.get(), is(1));
+        assertThat(metricRegistry.meter("ledger.transaction-cache.not-found-hits").getCount(), is(1L));
+    }
+
+    @Test
+    public void shouldKeepTransactionsForDifferentKeysApart() {
+        cache.get("worldpay/transaction-id", lookup(Optional.of(transaction)));
+
+        assertThat(cache.get("smartpay/transaction-id", lookup(Optional.empty())), is(Optional.empty()));
+        assertThat(lookups.get(), is(2));
+    }
+
+    @Test
+    public void shouldForgetThatLedgerDoesNotKnowAboutATransactionSoonerThanAFoundTransaction() {
+        cache.get("worldpay/found", lookup(Optional.of(transaction)));
+        cache.get("worldpay/not-found", lookup(Optional.empty()));
+
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(31));
+
+        assertThat(cache.get("worldpay/found", lookup(Optional.of(transaction))), is(Optional.of(transaction)));
+        assertThat(cache.get("worldpay/not-found", lookup(Optional.of(transaction))), is(Optional.of(transaction)));
+        assertThat(lookups.get(), is(3));
+
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(270));
+
+        cache.get("worldpay/found", lookup(Optional.of(transaction)));
+        assertThat(lookups.get(), is(4));
+    }
+
+    @Test
+    public void shouldLookUpAgainAfterALookupFails() {
+        try {
+            cache.get("worldpay/transaction-id", () -> {
+                throw new IllegalStateException("ledger unavailable");
+            });
+            fail("Expected the lookup failure to be rethrown");
+        } catch (IllegalStateException e) {
+            assertThat(e.getMessage(), is("ledger unavailable"));
+        }
+
+        assertThat(cache.get("worldpay/transaction-id", lookup(Optional.of(transaction))), is(Optional.of(transaction)));
+        assertThat(lookups.get(), is(1));
+    }
+
+    @Test
+    public void shouldAlwaysLookUpWhenDisabled() {
+        when(config.isEnabled()).thenReturn(false);
+        cache = aLedgerTransactionCache();
+
+        cache.get("worldpay/transaction-id", lookup(Optional.empty()));
+        cache.get("worldpay/transaction-id", lookup(Optional.empty()));
+
+        assertThat(lookups.get(), is(2));
+        assertThat(metricRegistry.meter("ledger.transaction-cache.misses").getCount(), is(0L));
+    }
+
+    @Test
+    public void shouldShareALookupThatIsAlreadyInFlight() throws Exception {
+        CountDownLatch lookupStarted = new CountDownLatch(1);
+        CountDownLatch releaseLookup = new CountDownLatch(1);
+        Supplier<Optional<LedgerTransaction>> slowLookup = () -> {
+            lookups.incrementAndGet();
+            lookupStarted.countDown();
+            try {
+                releaseLookup.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return Optional.of(transaction);
+        };
+
+        ExecutorService executorService = Executors.newFixedThreadPool(2);
+        try {
+            Future<Optional<LedgerTransaction>> first = executorService.submit(() -> cache.get("worldpay/transaction-id", slowLookup));
+            assertThat(lookupStarted.await(5, TimeUnit.SECONDS), is(true));
+
+            Future<Optional<LedgerTransaction>> second = executorService.submit(() -> cache.get("worldpay/transaction-id", slowLookup));
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (metricRegistry.meter("ledger.transaction-cache.coalesced").getCount() == 0 && System.nanoTime() < deadline) {
+                Thread.yield();
+            }
+            releaseLookup.countDown();
+
+            assertThat(first.get(5, TimeUnit.SECONDS), is(Optional.of(transaction)));
+            assertThat(second.get(5, TimeUnit.SECONDS), is(Optional.of(transaction)));
+            assertThat(lookups.get(), is(1));
+            assertThat(metricRegistry.meter("ledger.transaction-cache.coalesced").getCount(), is(1L));
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    private Supplier<Optional<LedgerTransaction>> lookup(Optional<LedgerTransaction> result) {
+        return () -> {
+            lookups.incrementAndGet();
+            return result;
+        };
+    }
+
+    private LedgerTransactionCache aLedgerTransactionCache() {
+        Ticker ticker = new Ticker() {
+            @Override
+            public long read() {
+                return nanos.get();
+            }
+        };
+        return new LedgerTransactionCache(config, metricRegistry, ticker);
+    }
+
+    private static LedgerTransaction aLedgerTransaction() {
+        LedgerTransaction ledgerTransaction = new LedgerTransaction();
+        ledgerTransaction.setTransactionId("external-id");
+        return ledgerTransaction;
+    }
+}
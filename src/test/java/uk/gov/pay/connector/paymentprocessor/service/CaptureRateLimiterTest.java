@@ -0,0 +1,65 @@
+package uk.gov.pay.connector.paymentprocessor.service;
+
+import com.codahale.metrics.MetricRegistry;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import uk.gov.pay.connector.app.CaptureProcessConfig;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class CaptureRateLimiterTest {
+
+    @Mock
+    CaptureProcessConfig captureProcessConfig;
+
+    private final AtomicLong nanoTime = new AtomicLong();
+    private final MetricRegistry metricRegistry = new MetricRegistry();
+    private CaptureRateLimiter captureRateLimiter;
+
+    @Before
+    public void setUp() {
+        when(captureProcessConfig.getDefaultGatewayAccountCapturesPerSecond()).thenReturn(2.0);
+        when(captureProcessConfig.getGatewayAccountCapturesPerSecond()).thenReturn(Map.of(2L, 1.0));
+        when(captureProcessConfig.getPaymentProviderCapturesPerSecond()).thenReturn(3.0);
+        captureRateLimiter = new CaptureRateLimiter(captureProcessConfig, metricRegistry, nanoTime::get);
+    }
+
+    @Test
+    public void shouldThrottleAGatewayAccountOnceItsBucketIsEmptyAndRefillOverTime() {
+        assertThat(captureRateLimiter.tryAcquire(1L, "worldpay"), is(true));
+        assertThat(captureRateLimiter.tryAcquire(1L, "worldpay"), is(true));
+        assertThat(captureRateLimiter.tryAcquire(1L, "worldpay"), is(false));
+
+        nanoTime.addAndGet(TimeUnit.MILLISECONDS.toNanos(500));
+
+        assertThat(captureRateLimiter.tryAcquire(1L, "worldpay"), is(true));
+        assertThat(metricRegistry.meter("gateway-operations.capture-process.throttled.gateway-account").getCount(), is(1L));
+    }
+
+    @Test
+    public void shouldUseTheConfiguredRateForAParticularGatewayAccount() {
+        assertThat(captureRateLimiter.tryAcquire(2L, "epdq"), is(true));
+        assertThat(captureRateLimiter.tryAcquire(2L, "epdq"), is(false));
+    }
+
+    @Test
+    public void shouldThrottleAPaymentProviderAcrossGatewayAccountsWithoutUsingUpTheAccountsTokens() {
+        assertThat(captureRateLimiter.tryAcquire(1L, "worldpay"), is(true));
+        assertThat(captureRateLimiter.tryAcquire(3L, "worldpay"), is(true));
+        assertThat(captureRateLimiter.tryAcquire(4L, "worldpay"), is(true));
+        assertThat(captureRateLimiter.tryAcquire(1L, "worldpay"), is(false));
+
+        assertThat(captureRateLimiter.tryAcquire(1L, "epdq"), is(true));
+        assertThat(metricRegistry.meter("gateway-operations.capture-process.throttled.worldpay").getCount(), is(1L));
+    }
+}
@@ -0,0 +1,64 @@
+package uk.gov.pay.connector.paymentprocessor.service;
+
+import com.codahale.metrics.MetricRegistry;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import uk.gov.pay.connector.app.CaptureProcessConfig;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class CaptureRetrySchedulerTest {
+
+    @Mock
+    CaptureProcessConfig captureProcessConfig;
+
+    private final MetricRegistry metricRegistry = new MetricRegistry();
+
+    @Before
+    public void setUp() {
+        when(captureProcessConfig.getInitialCaptureRetryDelayInSeconds()).thenReturn(60);
+        when(captureProcessConfig.getFailedCaptureRetryDelayInSeconds()).thenReturn(3600);
+        when(captureProcessConfig.getCaptureRetryJitterWindowInSeconds()).thenReturn(300);
+    }
+
+    @Test
+    public void shouldDoubleTheDelayWithEveryAttempt() {
+        CaptureRetryScheduler scheduler = new CaptureRetryScheduler(captureProcessConfig, metricRegistry, bound -> 0);
+
+        assertThat(scheduler.retryDelayInSeconds(1), is(60));
+        assertThat(scheduler.retryDelayInSeconds(2), is(120));
+        assertThat(scheduler.retryDelayInSeconds(4), is(480));
+    }
+
+    @Test
+    public void shouldCapTheDelayBeforeAddingJitter() {
+        CaptureRetryScheduler scheduler = new CaptureRetryScheduler(captureProcessConfig, metricRegistry, bound -> bound - 1);
+
+        assertThat(scheduler.retryDelayInSeconds(7), is(3600 + 300));
+        assertThat(scheduler.retryDelayInSeconds(48), is(3600 + 300));
+    }
+
+    @Test
+    public void shouldNeverDeferForLongerThanSqsAllows() {
+        when(captureProcessConfig.getFailedCaptureRetryDelayInSeconds()).thenReturn(86400);
+        CaptureRetryScheduler scheduler = new CaptureRetryScheduler(captureProcessConfig, metricRegistry, bound -> bound - 1);
+
+        assertThat(scheduler.retryDelayInSeconds(20), is(CaptureRetryScheduler.MAXIMUM_RETRY_DELAY_IN_SECONDS));
+    }
+
+    @Test
+    public void shouldRecordTheRetryDistribution() {
+        CaptureRetryScheduler scheduler = new CaptureRetryScheduler(captureProcessConfig, metricRegistry, bound -> 10);
+
+        scheduler.retryDelayInSeconds(2);
+
+        assertThat(metricRegistry.histogram("gateway-operations.capture-process.retry.attempts").getSnapshot().getMax(), is(2L));
+        assertThat(metricRegistry.histogram("gateway-operations.capture-process.retry.delay-in-seconds").getSnapshot().getMax(), is(130L));
+    }
+}
@@ -12,10 +12,12 @@ import org.mockito.junit.MockitoJUnitRunner;
 import uk.gov.pay.connector.app.ConnectorConfiguration;
 import uk.gov.pay.connector.cardtype.model.domain.CardType;
 import uk.gov.pay.connector.cardtype.model.domain.CardTypeEntity;
+import uk.gov.pay.connector.charge.dao.ChargeDao;
 import uk.gov.pay.connector.charge.exception.ChargeNotFoundRuntimeException;
 import uk.gov.pay.connector.charge.model.CardDetailsEntity;
 import uk.gov.pay.connector.charge.model.domain.ChargeEntity;
 import uk.gov.pay.connector.charge.model.domain.ChargeStatus;
+import uk.gov.pay.connector.charge.service.ChargeExpiryWheel;
 import uk.gov.pay.connector.charge.service.ChargeService;
 import uk.gov.pay.connector.common.exception.IllegalStateRuntimeException;
 import uk.gov.pay.connector.common.exception.OperationAlreadyInProgressRuntimeException;
@@ -26,6 +28,7 @@ import uk.gov.pay.connector.events.EventService;
 import uk.gov.pay.connector.events.model.Event;
 import uk.gov.pay.connector.gateway.GatewayException;
 import uk.gov.pay.connector.gateway.epdq.model.response.EpdqAuthorisationResponse;
+import uk.gov.pay.connector.gateway.exception.GenericGatewayRuntimeException;
 import uk.gov.pay.connector.gateway.model.AuthCardDetails;
 import uk.gov.pay.connector.gateway.model.GatewayParamsFor3ds;
 import uk.gov.pay.connector.gateway.model.PayersCardPrepaidStatus;
@@ -44,7 +47,9 @@ import uk.gov.pay.connector.paritycheck.LedgerService;
 import uk.gov.pay.connector.paymentprocessor.api.AuthorisationResponse;
 import uk.gov.pay.connector.queue.StateTransitionService;
 
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.function.Supplier;
 
 import static com.google.common.collect.Lists.newArrayList;
@@ -62,6 +67,7 @@ import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.anyString;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
@@ -75,12 +81,15 @@ import static uk.gov.pay.connector.charge.model.domain.ChargeStatus.AUTHORISATIO
 import static uk.gov.pay.connector.charge.model.domain.ChargeStatus.AUTHORISATION_TIMEOUT;
 import static uk.gov.pay.connector.charge.model.domain.ChargeStatus.AUTHORISATION_UNEXPECTED_ERROR;
 import static uk.gov.pay.connector.charge.model.domain.ChargeStatus.ENTERING_CARD_DETAILS;
+import static uk.gov.pay.connector.gateway.PaymentGatewayName.WORLDPAY;
 import static uk.gov.pay.connector.gateway.model.ErrorType.GATEWAY_CONNECTION_TIMEOUT_ERROR;
 import static uk.gov.pay.connector.gateway.model.ErrorType.GATEWAY_ERROR;
 import static uk.gov.pay.connector.gateway.model.ErrorType.GENERIC_GATEWAY_ERROR;
 import static uk.gov.pay.connector.gateway.model.response.GatewayResponse.GatewayResponseBuilder.responseBuilder;
 import static uk.gov.pay.connector.paymentprocessor.service.CardExecutorService.ExecutionStatus.COMPLETED;
+import static uk.gov.pay.connector.paymentprocessor.service.CardExecutorService.ExecutionStatus.EXPIRED;
 import static uk.gov.pay.connector.paymentprocessor.service.CardExecutorService.ExecutionStatus.IN_PROGRESS;
+import static uk.gov.pay.connector.paymentprocessor.service.CardExecutorService.ExecutionStatus.REJECTED;
 
 @RunWith(MockitoJUnitRunner.class)
 public class CardAuthoriseServiceTest extends CardServiceTest {
@@ -120,9 +129,9 @@ public class CardAuthoriseServiceTest extends CardServiceTest {
         ConnectorConfiguration mockConfiguration = mock(ConnectorConfiguration.class);
         ChargeService chargeService = new ChargeService(null, mockedChargeDao, mockedChargeEventDao,
                 null, null, mockConfiguration, null,
-                stateTransitionService, ledgerService, mockEventService, mockedRefundDao);
+                stateTransitionService, ledgerService, mockEventService, mockedRefundDao, mock(ChargeExpiryWheel.class));
 
-        CardAuthoriseBaseService cardAuthoriseBaseService = new CardAuthoriseBaseService(mockExecutorService, mockEnvironment);
+        CardAuthoriseBaseService cardAuthoriseBaseService = new CardAuthoriseBaseService(mockExecutorService, mock(ChargeDao.class), mockEnvironment);
         cardAuthorisationService = new CardAuthoriseService(
                 mockedCardTypeDao,
                 mockedProviders,
@@ -629,6 +638,70 @@ public class CardAuthoriseServiceTest extends CardServiceTest {
         }
     }
 
+    @Test
+    public void doAuthorise_shouldThrowAGenericGatewayRuntimeException_whenTooManyAuthorisationsAreInProgress() {
+
+        when(mockExecutorService.execute(any())).thenReturn(Pair.of(REJECTED, null));
+        AuthCardDetails authCardDetails = AuthCardDetailsFixture.anAuthCardDetails().build();
+
+        try {
+            cardAuthorisationService.doAuthorise(charge.getExternalId(), authCardDetails);
+            fail("Exception not thrown.");
+        } catch (GenericGatewayRuntimeException e) {
+            ErrorResponse response = (ErrorResponse) e.getResponse().getEntity();
+            assertThat(response.getMessages(), contains("Too many authorisations in progress, authorisation was not attempted"));
+        }
+    }
+
+    @Test
+    public void doAuthorise_shouldThrowAGenericGatewayRuntimeException_whenTheAuthorisationWaitedPastTheQueueDeadline() {
+
+        when(mockExecutorService.execute(any())).thenReturn(Pair.of(EXPIRED, null));
+        AuthCardDetails authCardDetails = AuthCardDetailsFixture.anAuthCardDetails().build();
+
+        try {
+            cardAuthorisationService.doAuthorise(charge.getExternalId(), authCardDetails);
+            fail("Exception not thrown.");
+        } catch (GenericGatewayRuntimeException e) {
+            ErrorResponse response = (ErrorResponse) e.getResponse().getEntity();
+            assertThat(response.getMessages(), contains("Authorisation waited too long to start, authorisation was not attempted"));
+        }
+    }
+
+    @Test
+    public void doAuthorise_shouldRunOnThePartitionForThePaymentProvider_whenThereArePartitions() {
+        ChargeDao chargeDao = mock(ChargeDao.class);
+        when(chargeDao.findPaymentGatewayNameByExternalId(charge.getExternalId())).thenReturn(Optional.of(WORLDPAY));
+        when(mockExecutorService.getPartitionExecutors()).thenReturn(Map.of(WORLDPAY, mock(ThreadPoolExecutor.class)));
+        when(mockExecutorService.execute(eq(WORLDPAY), any())).thenReturn(Pair.of(IN_PROGRESS, null));
+        CardAuthoriseService cardAuthoriseService = new CardAuthoriseService(mockedCardTypeDao, mockedProviders,
+                new CardAuthoriseBaseService(mockExecutorService, chargeDao, mockEnvironment), null, mockEnvironment);
+        AuthCardDetails authCardDetails = AuthCardDetailsFixture.anAuthCardDetails().build();
+
+        try {
+            cardAuthoriseService.doAuthorise(charge.getExternalId(), authCardDetails);
+            fail("Exception not thrown.");
+        } catch (OperationAlreadyInProgressRuntimeException e) {
+            verify(mockExecutorService).execute(eq(WORLDPAY), any());
+        }
+    }
+
+    @Test
+    public void doAuthorise_shouldNotLookUpThePaymentProvider_whenThereAreNoPartitions() {
+        ChargeDao chargeDao = mock(ChargeDao.class);
+        when(mockExecutorService.execute(any())).thenReturn(Pair.of(IN_PROGRESS, null));
+        CardAuthoriseService cardAuthoriseService = new CardAuthoriseService(mockedCardTypeDao, mockedProviders,
+                new CardAuthoriseBaseService(mockExecutorService, chargeDao, mockEnvironment), null, mockEnvironment);
+        AuthCardDetails authCardDetails = AuthCardDetailsFixture.anAuthCardDetails().build();
+
+        try {
+            cardAuthoriseService.doAuthorise(charge.getExternalId(), authCardDetails);
+            fail("Exception not thrown.");
+        } catch (OperationAlreadyInProgressRuntimeException e) {
+            verify(chargeDao, never()).findPaymentGatewayNameByExternalId(anyString());
+        }
+    }
+
     @Test(expected = ChargeNotFoundRuntimeException.class)
     public void doAuthorise_shouldThrowAChargeNotFoundRuntimeException_whenChargeDoesNotExist() {
 
@@ -1,22 +1,30 @@
 package uk.gov.pay.connector.paymentprocessor.service;
 
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
+import uk.gov.pay.connector.app.CaptureProcessConfig;
 import uk.gov.pay.connector.charge.ChargesAwaitingCaptureMetricEmitter;
 import uk.gov.pay.connector.charge.service.ChargeService;
 import uk.gov.pay.connector.common.exception.IllegalStateRuntimeException;
 import uk.gov.pay.connector.gateway.CaptureResponse;
 import uk.gov.pay.connector.queue.CaptureQueue;
 import uk.gov.pay.connector.queue.ChargeCaptureMessage;
-import uk.gov.pay.connector.queue.QueueException;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -41,8 +49,19 @@ public class CardCaptureProcessTest {
     @Mock
     ChargesAwaitingCaptureMetricEmitter chargesAwaitingCaptureMetricEmitter;
 
+    @Mock
+    CaptureProcessConfig captureProcessConfig;
+
+    @Mock
+    CaptureRetryScheduler captureRetryScheduler;
+
+    @Mock
+    CaptureRateLimiter captureRateLimiter;
+
     private static final String chargeExternalId = "some-charge-id";
 
+    private final ExecutorService captureExecutor = Executors.newFixedThreadPool(2);
+
     CardCaptureProcess cardCaptureProcess;
 
     @Before
@@ -52,48 +71,108 @@ public class CardCaptureProcessTest {
         when(chargeCaptureMessage.getChargeId()).thenReturn(chargeExternalId);
         when(captureQueue.retrieveChargesForCapture()).thenReturn(messages);
         when(cardCaptureService.doCapture(anyString())).thenReturn(captureResponse);
+        when(captureProcessConfig.getMaximumConcurrentCapturesPerGateway()).thenReturn(5);
+        when(captureProcessConfig.getMaximumRetries()).thenReturn(48);
+        when(captureProcessConfig.getThrottledCaptureRetryDelayInSeconds()).thenReturn(10);
+        when(captureRateLimiter.tryAcquire(any(), anyString())).thenReturn(true);
 
         cardCaptureProcess = new CardCaptureProcess(captureQueue, cardCaptureService,
-                chargeService, chargesAwaitingCaptureMetricEmitter);
+                chargeService, chargesAwaitingCaptureMetricEmitter, captureRetryScheduler, captureRateLimiter,
+                captureExecutor, captureProcessConfig);
+    }
+
+    @After
+    public void tearDown() {
+        captureExecutor.shutdownNow();
     }
 
     @Test
-    public void shouldMarkMessageAsProcessedGivenSuccessfulChargeCapture() throws QueueException {
+    public void shouldMarkMessageAsProcessedGivenSuccessfulChargeCapture() throws Exception {
         when(captureResponse.isSuccessful()).thenReturn(true);
 
         cardCaptureProcess.handleCaptureMessages();
 
-        verify(captureQueue).markMessageAsProcessed(chargeCaptureMessage);
+        verify(captureQueue).markMessagesAsProcessed(List.of(chargeCaptureMessage));
+        verify(captureQueue).scheduleMessagesForRetry(Map.of());
     }
 
     @Test
-    public void shouldScheduleRetriableMessageGivenUnsuccessfulChargeCapture() throws QueueException {
+    public void shouldScheduleRetriableMessageGivenUnsuccessfulChargeCapture() throws Exception {
         when(captureResponse.isSuccessful()).thenReturn(false);
-        when(chargeService.isChargeRetriable(chargeExternalId)).thenReturn(true);
+        when(chargeService.countCaptureAttempts(chargeExternalId)).thenReturn(3);
+        when(captureRetryScheduler.retryDelayInSeconds(3)).thenReturn(240);
 
         cardCaptureProcess.handleCaptureMessages();
 
-        verify(captureQueue).scheduleMessageForRetry(chargeCaptureMessage);
+        verify(captureQueue).scheduleMessagesForRetry(Map.of(chargeCaptureMessage, 240));
+        verify(captureQueue).markMessagesAsProcessed(List.of());
     }
 
     @Test
-    public void shouldMarkNonRetribaleMessageAsProcessed_MarkChargeAsCaptureErrorGivenUnsuccessfulChargeCapture() throws QueueException {
+    public void shouldMarkNonRetribaleMessageAsProcessed_MarkChargeAsCaptureErrorGivenUnsuccessfulChargeCapture() throws Exception {
         when(captureResponse.isSuccessful()).thenReturn(false);
-        when(chargeService.isChargeRetriable(chargeExternalId)).thenReturn(false);
+        when(chargeService.countCaptureAttempts(chargeExternalId)).thenReturn(49);
 
         cardCaptureProcess.handleCaptureMessages();
 
         verify(cardCaptureService).markChargeAsCaptureError(chargeExternalId);
-        verify(captureQueue).markMessageAsProcessed(chargeCaptureMessage);
+        verify(captureRetryScheduler, never()).retryDelayInSeconds(anyInt());
+        verify(captureQueue).markMessagesAsProcessed(List.of(chargeCaptureMessage));
     }
 
     @Test
-    public void shouldMarkMessageAsProcessedGivenChargeInCapturedState() throws QueueException {
+    public void shouldMarkMessageAsProcessedGivenChargeInCapturedState() throws Exception {
         when(cardCaptureService.doCapture(anyString())).thenThrow(IllegalStateRuntimeException.class);
         when(chargeService.isChargeCaptureSuccess(anyString())).thenReturn(true);
 
         cardCaptureProcess.handleCaptureMessages();
 
-        verify(captureQueue).markMessageAsProcessed(chargeCaptureMessage);
+        verify(captureQueue).markMessagesAsProcessed(List.of(chargeCaptureMessage));
+    }
+
+    @Test
+    public void shouldNotAcknowledgeMessageGivenUnexpectedCaptureError() throws Exception {
+        when(cardCaptureService.doCapture(anyString())).thenThrow(new RuntimeException("gateway unavailable"));
+
+        cardCaptureProcess.handleCaptureMessages();
+
+        verify(captureQueue).markMessagesAsProcessed(List.of());
+        verify(captureQueue).scheduleMessagesForRetry(Map.of());
+    }
+
+    @Test
+    public void shouldAcknowledgeAllMessagesOfABatchTogether() throws Exception {
+        ChargeCaptureMessage capturedMessage = mock(ChargeCaptureMessage.class);
+        ChargeCaptureMessage retriedMessage = mock(ChargeCaptureMessage.class);
+        when(capturedMessage.getChargeId()).thenReturn("captured-charge-id");
+        when(retriedMessage.getChargeId()).thenReturn("retried-charge-id");
+        when(captureQueue.retrieveChargesForCapture()).thenReturn(List.of(chargeCaptureMessage, capturedMessage, retriedMessage));
+        CaptureResponse failedResponse = mock(CaptureResponse.class);
+        when(captureResponse.isSuccessful()).thenReturn(true);
+        when(cardCaptureService.doCapture("retried-charge-id")).thenReturn(failedResponse);
+        when(chargeService.countCaptureAttempts("retried-charge-id")).thenReturn(1);
+        when(captureRetryScheduler.retryDelayInSeconds(1)).thenReturn(60);
+
+        cardCaptureProcess.handleCaptureMessages();
+
+        verify(captureQueue).markMessagesAsProcessed(List.of(chargeCaptureMessage, capturedMessage));
+        verify(captureQueue).scheduleMessagesForRetry(Map.of(retriedMessage, 60));
+        verify(cardCaptureService, never()).markChargeAsCaptureError(anyString());
+    }
+
+    @Test
+    public void shouldDeferThrottledMessageWithoutAttemptingCapture() throws Exception {
+        ChargeCaptureMessage throttledMessage = mock(ChargeCaptureMessage.class);
+        when(throttledMessage.getChargeId()).thenReturn("throttled-charge-id");
+        when(captureQueue.retrieveChargesForCapture()).thenReturn(List.of(chargeCaptureMessage, throttledMessage));
+        when(captureRateLimiter.tryAcquire(any(), anyString())).thenReturn(true, false);
+        when(captureResponse.isSuccessful()).thenReturn(true);
+
+        cardCaptureProcess.handleCaptureMessages();
+
+        verify(cardCaptureService, never()).doCapture("throttled-charge-id");
+        verify(chargeService, never()).countCaptureAttempts("throttled-charge-id");
+        verify(captureQueue).markMessagesAsProcessed(List.of(chargeCaptureMessage));
+        verify(captureQueue).scheduleMessagesForRetry(Map.of(throttledMessage, 10));
     }
 }
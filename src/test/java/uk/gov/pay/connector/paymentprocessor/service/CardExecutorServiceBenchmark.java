@@ -0,0 +1,183 @@
+package uk.gov.pay.connector.paymentprocessor.service;
+
+import com.codahale.metrics.MetricRegistry;
+import io.dropwizard.setup.Environment;
+import uk.gov.pay.connector.app.ExecutorServiceConfig;
+import uk.gov.pay.connector.cardtype.dao.CardTypeDao;
+import uk.gov.pay.connector.charge.dao.ChargeDao;
+import uk.gov.pay.connector.charge.model.CardDetailsEntity;
+import uk.gov.pay.connector.charge.model.domain.ChargeEntity;
+import uk.gov.pay.connector.charge.service.ChargeService;
+import uk.gov.pay.connector.gateway.GatewayException;
+import uk.gov.pay.connector.gateway.PaymentGatewayName;
+import uk.gov.pay.connector.gateway.PaymentProvider;
+import uk.gov.pay.connector.gateway.PaymentProviders;
+import uk.gov.pay.connector.gateway.model.AuthCardDetails;
+import uk.gov.pay.connector.gateway.model.request.CardAuthorisationGatewayRequest;
+import uk.gov.pay.connector.gateway.sandbox.SandboxPaymentProvider;
+import uk.gov.pay.connector.util.BlockingTaskThreads;
+import uk.gov.pay.connector.util.ExecutionMode;
+import uk.gov.pay.connector.util.XrayUtils;
+
+import java.time.Clock;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+import static uk.gov.pay.connector.charge.model.domain.ChargeEntityFixture.aValidChargeEntity;
+import static uk.gov.pay.connector.charge.model.domain.ChargeStatus.ENTERING_CARD_DETAILS;
+import static uk.gov.pay.connector.model.domain.AuthCardDetailsFixture.anAuthCardDetails;
+
+/**
+ * Compares authorisation throughput through {@link CardAuthoriseService#doAuthorise(String, AuthCardDetails)} with
+ * the {@link CardExecutorService} on platform and on virtual threads.
+ *
+ * <p>Both runs use the same number of executor threads, so that the comparison is of the threads and not of the
+ * concurrency limit. Each authorisation takes the path a card authorisation request takes without card executor
+ * partitions, the default: the executor, locking the charge, the sandbox gateway and recording the outcome.
+ * The database and the gateway are simulated: every database call holds one of a fixed number of connections for the
+ * given time, as calls through the Dropwizard connection pool do, and the gateway sleeps for its round trip.</p>
+ *
+ * <p>Not run as part of the build; run the main method from the test classpath, optionally passing the number of
+ * authorisations, the number of executor threads, the simulated gateway latency in milliseconds, the number of
+ * database connections and the simulated time of a database call in milliseconds. The defaults match config.yaml.</p>
+ *
+ * <p>When reading the results, note that an authorisation makes several database calls, so throughput cannot exceed
+ * the number of connections divided by the database time of one authorisation. With the default pool of 8
+ * connections that bound is reached long before the executor runs out of threads in either mode, and more threads,
+ * virtual or not, only queue up behind the pool. The output gives the bound next to the measured throughput.</p>
+ *
+ * <p>On a runtime without virtual threads both runs use platform threads, which the output says.</p>
+ */
+public class CardExecutorServiceBenchmark {
+
+    // lockChargeForProcessing, findByBrand and updateChargePostCardAuthorisation
+    private static final int DATABASE_CALLS_PER_AUTHORISATION = 3;
+
+    public static void main(String[] args) throws Exception {
+        int numberOfAuthorisations = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        int numberOfThreads = args.length > 1 ? Integer.parseInt(args[1]) : 100 * Runtime.getRuntime().availableProcessors();
+        int gatewayLatencyInMillis = args.length > 2 ? Integer.parseInt(args[2]) : 200;
+        int databaseConnections = args.length > 3 ? Integer.parseInt(args[3]) : 8;
+        int databaseLatencyInMillis = args.length > 4 ? Integer.parseInt(args[4]) : 2;
+
+        for (ExecutionMode executionMode : ExecutionMode.values()) {
+            run(executionMode, numberOfAuthorisations, numberOfThreads, gatewayLatencyInMillis, databaseConnections,
+                    databaseLatencyInMillis);
+        }
+    }
+
+    private static void run(ExecutionMode executionMode, int numberOfAuthorisations, int numberOfThreads,
+                            int gatewayLatencyInMillis, int databaseConnections, int databaseLatencyInMillis)
+            throws InterruptedException, GatewayException {
+        ExecutorServiceConfig config = mock(ExecutorServiceConfig.class);
+        when(config.getMaximumQueueSize()).thenReturn(numberOfAuthorisations);
+        when(config.getTimeoutInSeconds()).thenReturn(600);
+
+        MetricRegistry metricRegistry = new MetricRegistry();
+        CardExecutorService cardExecutorService = new CardExecutorService(config, numberOfThreads,
+                BlockingTaskThreads.threadFactory(executionMode, "benchmark-" + executionMode + "-%d"),
+                metricRegistry, new XrayUtils(false), Clock.systemUTC());
+        CardAuthoriseService cardAuthoriseService = cardAuthoriseService(cardExecutorService, metricRegistry,
+                new Database(databaseConnections, databaseLatencyInMillis), gatewayLatencyInMillis);
+
+        AuthCardDetails authCardDetails = anAuthCardDetails().build();
+        AtomicInteger failed = new AtomicInteger();
+        // stands in for the Jetty request threads, which block until the authorisation has finished
+        ExecutorService requestThreads = Executors.newFixedThreadPool(numberOfThreads);
+
+        long startTime = System.nanoTime();
+        for (int i = 0; i < numberOfAuthorisations; i++) {
+            requestThreads.execute(() -> {
+                try {
+                    cardAuthoriseService.doAuthorise("charge-external-id", authCardDetails);
+                } catch (RuntimeException e) {
+                    failed.incrementAndGet();
+                }
+            });
+        }
+        requestThreads.shutdown();
+        requestThreads.awaitTermination(1, TimeUnit.HOURS);
+        long elapsedInMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+        cardExecutorService.getExecutor().shutdown();
+
+        double databaseBoundPerSecond = databaseConnections * 1000.0
+                / Math.max(1, DATABASE_CALLS_PER_AUTHORISATION * databaseLatencyInMillis);
+        System.out.printf("requested=%s effective=%s threads=%d database_connections=%d authorisations=%d failed=%d " +
+                        "elapsed_ms=%d throughput_per_second=%.1f database_bound_per_second=%.1f%n",
+                executionMode, BlockingTaskThreads.effectiveMode(executionMode), numberOfThreads, databaseConnections,
+                numberOfAuthorisations, failed.get(), elapsedInMillis,
+                numberOfAuthorisations * 1000.0 / Math.max(1, elapsedInMillis), databaseBoundPerSecond);
+    }
+
+    private static CardAuthoriseService cardAuthoriseService(CardExecutorService cardExecutorService,
+                                                             MetricRegistry metricRegistry, Database database,
+                                                             int gatewayLatencyInMillis) throws GatewayException {
+        Environment environment = stub(Environment.class);
+        when(environment.metrics()).thenReturn(metricRegistry);
+
+        CardTypeDao cardTypeDao = stub(CardTypeDao.class);
+        when(cardTypeDao.findByBrand(anyString())).thenAnswer(invocation -> database.call(List::of));
+
+        ChargeService chargeService = stub(ChargeService.class);
+        when(chargeService.lockChargeForProcessing(anyString(), any()))
+                .thenAnswer(invocation -> database.call(CardExecutorServiceBenchmark::aChargeEnteringCardDetails));
+        when(chargeService.updateChargePostCardAuthorisation(anyString(), any(), any(), any(), any(), any()))
+                .thenAnswer(invocation -> database.call(CardExecutorServiceBenchmark::aChargeEnteringCardDetails));
+
+        SandboxPaymentProvider sandboxPaymentProvider = new SandboxPaymentProvider();
+        PaymentProvider paymentProvider = stub(PaymentProvider.class);
+        when(paymentProvider.generateTransactionId()).thenAnswer(invocation -> sandboxPaymentProvider.generateTransactionId());
+        when(paymentProvider.authorise(any())).thenAnswer(invocation -> {
+            Thread.sleep(gatewayLatencyInMillis);
+            return sandboxPaymentProvider.authorise(invocation.<CardAuthorisationGatewayRequest>getArgument(0));
+        });
+        PaymentProviders paymentProviders = stub(PaymentProviders.class);
+        when(paymentProviders.byName(PaymentGatewayName.SANDBOX)).thenReturn(paymentProvider);
+
+        CardAuthoriseBaseService cardAuthoriseBaseService = new CardAuthoriseBaseService(cardExecutorService,
+                stub(ChargeDao.class), environment);
+        return new CardAuthoriseService(cardTypeDao, paymentProviders, cardAuthoriseBaseService, chargeService, environment);
+    }
+
+    private static ChargeEntity aChargeEnteringCardDetails() {
+        return aValidChargeEntity()
+                .withStatus(ENTERING_CARD_DETAILS)
+                .withCardDetails(new CardDetailsEntity())
+                .build();
+    }
+
+    // mocks record every invocation unless they are stub only, which would make the threads contend on the mocks
+    private static <T> T stub(Class<T> classToMock) {
+        return mock(classToMock, withSettings().stubOnly());
+    }
+
+    private static class Database {
+        private final Semaphore connections;
+        private final int latencyInMillis;
+
+        private Database(int numberOfConnections, int latencyInMillis) {
+            this.connections = new Semaphore(numberOfConnections, true);
+            this.latencyInMillis = latencyInMillis;
+        }
+
+        private <T> T call(Supplier<T> query) throws InterruptedException {
+            connections.acquire();
+            try {
+                Thread.sleep(latencyInMillis);
+                return query.get();
+            } finally {
+                connections.release();
+            }
+        }
+    }
+}
@@ -0,0 +1,243 @@
+package uk.gov.pay.connector.paymentprocessor.service;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.commons.lang3.tuple.Pair;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import uk.gov.pay.connector.app.ExecutorServiceConfig;
+import uk.gov.pay.connector.util.XrayUtils;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+import static org.mockito.Mockito.when;
+import static uk.gov.pay.connector.gateway.PaymentGatewayName.SANDBOX;
+import static uk.gov.pay.connector.gateway.PaymentGatewayName.WORLDPAY;
+import static uk.gov.pay.connector.paymentprocessor.service.CardExecutorService.ExecutionStatus.COMPLETED;
+import static uk.gov.pay.connector.paymentprocessor.service.CardExecutorService.ExecutionStatus.EXPIRED;
+import static uk.gov.pay.connector.paymentprocessor.service.CardExecutorService.ExecutionStatus.IN_PROGRESS;
+import static uk.gov.pay.connector.paymentprocessor.service.CardExecutorService.ExecutionStatus.REJECTED;
+
+@RunWith(MockitoJUnitRunner.class)
+public class CardExecutorServiceTest {
+
+    @Mock
+    private ExecutorServiceConfig config;
+
+    private final MetricRegistry metricRegistry = new MetricRegistry();
+    private final MutableClock clock = new MutableClock(Instant.parse("2020-01-01T10:00:00Z"));
+    private final CountDownLatch releaseBlockingTask = new CountDownLatch(1);
+    private CardExecutorService cardExecutorService;
+
+    @Before
+    public void setUp() {
+        when(config.getMaximumQueueSize()).thenReturn(1);
+        when(config.getQueueDeadlineInSeconds()).thenReturn(60);
+        cardExecutorService = new CardExecutorService(config, 1, Executors.defaultThreadFactory(), metricRegistry,
+                new XrayUtils(false), clock);
+    }
+
+    @After
+    public void tearDown() {
+        releaseBlockingTask.countDown();
+        cardExecutorService.getExecutor().shutdownNow();
+        cardExecutorService.getPartitionExecutors().values().forEach(ThreadPoolExecutor::shutdownNow);
+    }
+
+    @Test
+    public void shouldReturnTheResultOfATaskThatCompletesInTime() {
+        when(config.getTimeoutInSeconds()).thenReturn(1);
+
+        Pair<CardExecutorService.ExecutionStatus, String> result = cardExecutorService.execute(() -> "authorised");
+
+        assertThat(result.getLeft(), is(COMPLETED));
+        assertThat(result.getRight(), is("authorised"));
+        assertThat(metricRegistry.counter("card-executor.in-flight").getCount(), is(0L));
+    }
+
+    @Test
+    public void shouldRejectTasksOnceTheQueueIsFull() {
+        cardExecutorService.execute(this::blockUntilReleased);
+        cardExecutorService.execute(() -> "queued");
+
+        Pair<CardExecutorService.ExecutionStatus, String> result = cardExecutorService.execute(() -> "rejected");
+
+        assertThat(result.getLeft(), is(REJECTED));
+        assertThat(result.getRight(), is(nullValue()));
+        assertThat(metricRegistry.meter("card-executor.rejected").getCount(), is(1L));
+        assertThat(metricRegistry.counter("card-executor.in-flight").getCount(), is(2L));
+    }
+
+    @Test
+    public void shouldDropTasksThatHaveWaitedPastTheQueueDeadline() throws Exception {
+        AtomicBoolean ran = new AtomicBoolean(false);
+        cardExecutorService.execute(this::blockUntilReleased);
+        Pair<CardExecutorService.ExecutionStatus, Boolean> result = cardExecutorService.execute(() -> ran.getAndSet(true));
+
+        clock.advanceSeconds(61);
+        releaseBlockingTask.countDown();
+        cardExecutorService.getExecutor().shutdown();
+        cardExecutorService.getExecutor().awaitTermination(5, TimeUnit.SECONDS);
+
+        assertThat(result.getLeft(), is(IN_PROGRESS));
+        assertThat(ran.get(), is(false));
+        assertThat(metricRegistry.meter("card-executor.expired").getCount(), is(1L));
+        assertThat(metricRegistry.counter("card-executor.in-flight").getCount(), is(0L));
+    }
+
+    @Test
+    public void shouldReportATaskDroppedPastTheQueueDeadlineAsExpiredToAWaitingCaller() throws Exception {
+        when(config.getTimeoutInSeconds()).thenReturn(5);
+        ExecutorService callers = Executors.newFixedThreadPool(2);
+        ThreadPoolExecutor executor = (ThreadPoolExecutor) cardExecutorService.getExecutor();
+        try {
+            callers.submit(() -> cardExecutorService.execute(this::blockUntilReleased));
+            waitUntil(() -> executor.getActiveCount() == 1);
+            Future<Pair<CardExecutorService.ExecutionStatus, String>> result =
+                    callers.submit(() -> cardExecutorService.execute(() -> "dropped"));
+            waitUntil(() -> executor.getQueue().size() == 1);
+
+            clock.advanceSeconds(61);
+            releaseBlockingTask.countDown();
+
+            assertThat(result.get(5, TimeUnit.SECONDS).getLeft(), is(EXPIRED));
+            assertThat(result.get().getRight(), is(nullValue()));
+        } finally {
+            callers.shutdownNow();
+        }
+    }
+
+    @Test
+    public void shouldRunQueuedTasksWhenDroppingIsDisabled() throws Exception {
+        when(config.getQueueDeadlineInSeconds()).thenReturn(0);
+        AtomicBoolean ran = new AtomicBoolean(false);
+        cardExecutorService.execute(this::blockUntilReleased);
+        cardExecutorService.execute(() -> ran.getAndSet(true));
+
+        clock.advanceSeconds(3600);
+        releaseBlockingTask.countDown();
+        cardExecutorService.getExecutor().shutdown();
+        cardExecutorService.getExecutor().awaitTermination(5, TimeUnit.SECONDS);
+
+        assertThat(ran.get(), is(true));
+        assertThat(metricRegistry.meter("card-executor.expired").getCount(), is(0L));
+    }
+
+    @Test
+    public void shouldRunTasksForAProviderWithAPartitionOnThePartition() {
+        when(config.getTimeoutInSeconds()).thenReturn(1);
+        CardExecutorService partitionedExecutorService = withWorldpayPartition();
+
+        Pair<CardExecutorService.ExecutionStatus, String> result = partitionedExecutorService.execute(WORLDPAY,
+                () -> Thread.currentThread().getName());
+        Pair<CardExecutorService.ExecutionStatus, String> sharedResult = partitionedExecutorService.execute(SANDBOX,
+                () -> Thread.currentThread().getName());
+
+        assertThat(result.getRight(), is("worldpay-0"));
+        assertThat(sharedResult.getRight(), is("shared-0"));
+    }
+
+    @Test
+    public void shouldOverflowOntoTheSharedPoolWhenAPartitionIsFull() {
+        when(config.getOverflowPolicy()).thenReturn(ExecutorOverflowPolicy.SHARED_POOL);
+        CardExecutorService partitionedExecutorService = withWorldpayPartition();
+        partitionedExecutorService.execute(WORLDPAY, this::blockUntilReleased);
+        partitionedExecutorService.execute(WORLDPAY, () -> "queued");
+
+        Pair<CardExecutorService.ExecutionStatus, String> result = partitionedExecutorService.execute(WORLDPAY, () -> "overflowed");
+
+        assertThat(result.getLeft(), is(not(REJECTED)));
+        assertThat(metricRegistry.meter("card-executor.worldpay.overflowed").getCount(), is(1L));
+        assertThat(metricRegistry.meter("card-executor.rejected").getCount(), is(0L));
+    }
+
+    @Test
+    public void shouldRejectWhenAPartitionIsFullWithoutTouchingTheSharedPool() {
+        when(config.getOverflowPolicy()).thenReturn(ExecutorOverflowPolicy.REJECT);
+        CardExecutorService partitionedExecutorService = withWorldpayPartition();
+        partitionedExecutorService.execute(WORLDPAY, this::blockUntilReleased);
+        partitionedExecutorService.execute(WORLDPAY, () -> "queued");
+
+        Pair<CardExecutorService.ExecutionStatus, String> result = partitionedExecutorService.execute(WORLDPAY, () -> "rejected");
+
+        assertThat(result.getLeft(), is(REJECTED));
+        assertThat(metricRegistry.meter("card-executor.worldpay.rejected").getCount(), is(1L));
+        assertThat(metricRegistry.meter("card-executor.rejected").getCount(), is(0L));
+        assertThat(partitionedExecutorService.getExecutor().isTerminated(), is(false));
+    }
+
+    private CardExecutorService withWorldpayPartition() {
+        cardExecutorService.getExecutor().shutdownNow();
+        ThreadPoolExecutor sharedExecutor = CardExecutorService.newExecutor(1, 1,
+                new ThreadFactoryBuilder().setNameFormat("shared-%d").build());
+        ThreadPoolExecutor worldpayExecutor = CardExecutorService.newExecutor(1, 1,
+                new ThreadFactoryBuilder().setNameFormat("worldpay-%d").build());
+        cardExecutorService = new CardExecutorService(config, sharedExecutor, Map.of(WORLDPAY, worldpayExecutor),
+                metricRegistry, new XrayUtils(false), clock);
+        return cardExecutorService;
+    }
+
+    private static void waitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(condition.getAsBoolean(), is(true));
+    }
+
+    private String blockUntilReleased() {
+        try {
+            releaseBlockingTask.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return "released";
+    }
+
+    private static class MutableClock extends Clock {
+        private volatile Instant instant;
+
+        private MutableClock(Instant instant) {
+            this.instant = instant;
+        }
+
+        void advanceSeconds(long seconds) {
+            instant = instant.plusSeconds(seconds);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return instant;
+        }
+    }
+}
@@ -7,7 +7,6 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
-import uk.gov.pay.connector.app.CaptureProcessConfig;
 import uk.gov.pay.connector.app.ConnectorConfiguration;
 import uk.gov.pay.connector.app.SqsConfig;
 import uk.gov.pay.connector.queue.sqs.SqsQueueService;
@@ -41,12 +40,9 @@ public class CaptureQueueTest {
                 QueueMessage.of(messageResult, validJsonMessage)
         );
         objectMapper = new ObjectMapper();
-        CaptureProcessConfig captureProcessConfig = mock(CaptureProcessConfig.class);
         SqsConfig sqsConfig = mock(SqsConfig.class);
         when(sqsConfig.getCaptureQueueUrl()).thenReturn("");
-        when(captureProcessConfig.getFailedCaptureRetryDelayInSeconds()).thenReturn(3600);
         when(connectorConfiguration.getSqsConfig()).thenReturn(sqsConfig);
-        when(connectorConfiguration.getCaptureProcessConfig()).thenReturn(captureProcessConfig);
         when(sqsQueueService.receiveMessages(anyString(), anyString())).thenReturn(messages);
     }
 
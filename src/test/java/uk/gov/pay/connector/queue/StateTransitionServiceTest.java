@@ -12,6 +12,7 @@ import uk.gov.pay.connector.events.EventService;
 import uk.gov.pay.connector.events.model.ResourceType;
 import uk.gov.pay.connector.events.model.charge.PaymentStarted;
 import uk.gov.pay.connector.events.model.refund.RefundCreatedByUser;
+import uk.gov.pay.connector.queue.dao.StateTransitionOutboxDao;
 import uk.gov.pay.connector.refund.model.domain.RefundEntity;
 import uk.gov.pay.connector.refund.model.domain.RefundHistory;
 
@@ -41,13 +42,13 @@ public class StateTransitionServiceTest {
     StateTransitionService stateTransitionService;
 
     @Mock
-    StateTransitionQueue mockStateTransitionQueue;
+    StateTransitionOutboxDao mockStateTransitionOutboxDao;
     @Mock
     EventService mockEventService;
 
     @Before
     public void setUp() {
-        stateTransitionService = new StateTransitionService(mockStateTransitionQueue, mockEventService);
+        stateTransitionService = new StateTransitionService(mockStateTransitionOutboxDao, mockEventService);
     }
 
     @Test
@@ -57,11 +58,13 @@ public class StateTransitionServiceTest {
                 .build();
 
         stateTransitionService.offerPaymentStateTransition("external-id", ChargeStatus.CREATED, ENTERING_CARD_DETAILS, chargeEvent);
-        ArgumentCaptor<PaymentStateTransition> paymentStateTransitionArgumentCaptor = ArgumentCaptor.forClass(PaymentStateTransition.class);
-        verify(mockStateTransitionQueue).offer(paymentStateTransitionArgumentCaptor.capture());
+        ArgumentCaptor<StateTransitionOutboxEntity> outboxEntityArgumentCaptor = ArgumentCaptor.forClass(StateTransitionOutboxEntity.class);
+        verify(mockStateTransitionOutboxDao).persist(outboxEntityArgumentCaptor.capture());
 
-        assertThat(paymentStateTransitionArgumentCaptor.getValue().getChargeEventId(), is(100L));
-        assertThat(paymentStateTransitionArgumentCaptor.getValue().getStateTransitionEventClass(), is(PaymentStarted.class));
+        assertThat(outboxEntityArgumentCaptor.getValue().getResourceType(), is(PAYMENT));
+        assertThat(outboxEntityArgumentCaptor.getValue().getChargeEventId(), is(100L));
+        assertThat(outboxEntityArgumentCaptor.getValue().getEventClass(), is(PaymentStarted.class.getName()));
+        assertThat(outboxEntityArgumentCaptor.getValue().getAttempts(), is(1));
 
         verify(mockEventService).recordOfferedEvent(PAYMENT, "external-id", "PAYMENT_STARTED", chargeEvent.getUpdated());
     }
@@ -71,7 +74,7 @@ public class StateTransitionServiceTest {
         ChargeEventEntity chargeEvent = mock(ChargeEventEntity.class);
         stateTransitionService.offerPaymentStateTransition("external-id", ChargeStatus.CREATED, AUTHORISATION_READY, chargeEvent);
 
-        verifyNoMoreInteractions(mockStateTransitionQueue);
+        verifyNoMoreInteractions(mockStateTransitionOutboxDao);
         verifyNoMoreInteractions(mockEventService);
     }
 
@@ -84,11 +87,13 @@ public class StateTransitionServiceTest {
 
         stateTransitionService.offerRefundStateTransition(refundEntity, CREATED);
 
-        ArgumentCaptor<RefundStateTransition> refundStateTransitionArgumentCaptor = ArgumentCaptor.forClass(RefundStateTransition.class);
-        verify(mockStateTransitionQueue).offer(refundStateTransitionArgumentCaptor.capture());
+        ArgumentCaptor<StateTransitionOutboxEntity> outboxEntityArgumentCaptor = ArgumentCaptor.forClass(StateTransitionOutboxEntity.class);
+        verify(mockStateTransitionOutboxDao).persist(outboxEntityArgumentCaptor.capture());
 
-        assertThat(refundStateTransitionArgumentCaptor.getValue().getRefundExternalId(), is(refundEntity.getExternalId()));
-        assertThat(refundStateTransitionArgumentCaptor.getValue().getStateTransitionEventClass(), is(RefundCreatedByUser.class));
+        assertThat(outboxEntityArgumentCaptor.getValue().getResourceType(), is(REFUND));
+        assertThat(outboxEntityArgumentCaptor.getValue().getRefundExternalId(), is(refundEntity.getExternalId()));
+        assertThat(outboxEntityArgumentCaptor.getValue().getRefundStatus(), is(CREATED));
+        assertThat(outboxEntityArgumentCaptor.getValue().getEventClass(), is(RefundCreatedByUser.class.getName()));
 
         ArgumentCaptor<ZonedDateTime> eventDateArgumentCaptor = forClass(ZonedDateTime.class);
         ArgumentCaptor<ResourceType> resourceTypeCaptor = forClass(ResourceType.class);
@@ -115,11 +120,11 @@ public class StateTransitionServiceTest {
 
         stateTransitionService.offerStateTransition(refundStateTransition, refundCreatedByUser, doNotEmitRetryUntil);
 
-        ArgumentCaptor<RefundStateTransition> refundStateTransitionArgumentCaptor = ArgumentCaptor.forClass(RefundStateTransition.class);
-        verify(mockStateTransitionQueue).offer(refundStateTransitionArgumentCaptor.capture());
+        ArgumentCaptor<StateTransitionOutboxEntity> outboxEntityArgumentCaptor = ArgumentCaptor.forClass(StateTransitionOutboxEntity.class);
+        verify(mockStateTransitionOutboxDao).persist(outboxEntityArgumentCaptor.capture());
 
-        assertThat(refundStateTransitionArgumentCaptor.getValue().getRefundExternalId(), is(refundHistory.getExternalId()));
-        assertThat(refundStateTransitionArgumentCaptor.getValue().getStateTransitionEventClass(), is(RefundCreatedByUser.class));
+        assertThat(outboxEntityArgumentCaptor.getValue().getRefundExternalId(), is(refundHistory.getExternalId()));
+        assertThat(outboxEntityArgumentCaptor.getValue().getEventClass(), is(RefundCreatedByUser.class.getName()));
 
         verify(mockEventService).recordOfferedEvent(REFUND, refundHistory.getExternalId(),
                 "REFUND_CREATED_BY_USER", refundHistory.getHistoryStartDate(), doNotEmitRetryUntil);
@@ -0,0 +1,210 @@
+package uk.gov.pay.connector.queue.inmemory;
+
+import com.amazonaws.services.sqs.model.ChangeMessageVisibilityRequest;
+import com.amazonaws.services.sqs.model.DeleteMessageBatchRequestEntry;
+import com.amazonaws.services.sqs.model.DeleteMessageBatchResult;
+import com.amazonaws.services.sqs.model.DeleteMessageRequest;
+import com.amazonaws.services.sqs.model.GetQueueAttributesRequest;
+import com.amazonaws.services.sqs.model.Message;
+import com.amazonaws.services.sqs.model.PurgeQueueRequest;
+import com.amazonaws.services.sqs.model.ReceiptHandleIsInvalidException;
+import com.amazonaws.services.sqs.model.ReceiveMessageRequest;
+import com.amazonaws.services.sqs.model.SendMessageBatchRequestEntry;
+import com.amazonaws.services.sqs.model.SendMessageRequest;
+import com.codahale.metrics.MetricRegistry;
+import io.dropwizard.setup.Environment;
+import org.junit.Before;
+import org.junit.Test;
+import uk.gov.pay.connector.app.ConnectorConfiguration;
+import uk.gov.pay.connector.app.SqsConfig;
+import uk.gov.pay.connector.queue.QueueMessage;
+import uk.gov.pay.connector.queue.sqs.SqsQueueService;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class InMemorySqsClientTest {
+
+    private static final String QUEUE_URL = "http://in-memory/capture-queue";
+
+    private MutableClock clock;
+    private InMemorySqsClient sqsClient;
+
+    @Before
+    public void setUp() {
+        clock = new MutableClock(Instant.parse("2020-01-01T10:00:00Z"));
+        sqsClient = new InMemorySqsClient(clock, 2);
+    }
+
+    @Test
+    public void shouldNotReturnAReceivedMessageAgainUntilItsVisibilityTimeoutRunsOut() {
+        sqsClient.sendMessage(QUEUE_URL, "first");
+
+        assertThat(receiveBodies(10, 30), contains("first"));
+        assertThat(receiveBodies(10, 30), is(empty()));
+
+        clock.advanceSeconds(30);
+
+        assertThat(receiveBodies(10, 30), contains("first"));
+    }
+
+    @Test
+    public void shouldNotReturnADelayedMessageUntilItsDelayRunsOut() {
+        sqsClient.sendMessage(new SendMessageRequest(QUEUE_URL, "delayed").withDelaySeconds(60));
+
+        assertThat(receiveBodies(10, 30), is(empty()));
+
+        clock.advanceSeconds(60);
+
+        assertThat(receiveBodies(10, 30), contains("delayed"));
+    }
+
+    @Test
+    public void shouldReceiveAtMostTheRequestedNumberOfMessagesInOrder() {
+        sqsClient.sendMessageBatch(QUEUE_URL, List.of(
+                new SendMessageBatchRequestEntry("1", "first"),
+                new SendMessageBatchRequestEntry("2", "second"),
+                new SendMessageBatchRequestEntry("3", "third")));
+
+        assertThat(receiveBodies(2, 30), contains("first", "second"));
+        assertThat(receiveBodies(2, 30), contains("third"));
+    }
+
+    @Test
+    public void shouldRemoveDeletedMessagesAndReportUnknownReceiptHandlesInABatch() {
+        sqsClient.sendMessage(QUEUE_URL, "first");
+        Message message = receive(1, 30).get(0);
+
+        DeleteMessageBatchResult result = sqsClient.deleteMessageBatch(QUEUE_URL, List.of(
+                new DeleteMessageBatchRequestEntry("1", message.getReceiptHandle()),
+                new DeleteMessageBatchRequestEntry("2", "not-a-receipt-handle")));
+
+        assertThat(result.getSuccessful(), hasSize(1));
+        assertThat(result.getFailed().get(0).getId(), is("2"));
+        assertThat(sqsClient.getNumberOfMessages(QUEUE_URL), is(0));
+    }
+
+    @Test(expected = ReceiptHandleIsInvalidException.class)
+    public void shouldRejectAReceiptHandleFromAnEarlierReceive() {
+        sqsClient.sendMessage(QUEUE_URL, "first");
+        Message firstReceive = receive(1, 0).get(0);
+        receive(1, 0);
+
+        sqsClient.deleteMessage(new DeleteMessageRequest(QUEUE_URL, firstReceive.getReceiptHandle()));
+    }
+
+    @Test
+    public void shouldMakeAMessageVisibleAgainWhenItsVisibilityIsChanged() {
+        sqsClient.sendMessage(QUEUE_URL, "first");
+        Message message = receive(1, 30).get(0);
+
+        sqsClient.changeMessageVisibility(new ChangeMessageVisibilityRequest(QUEUE_URL, message.getReceiptHandle(), 0));
+
+        assertThat(receiveBodies(1, 30), contains("first"));
+    }
+
+    @Test
+    public void shouldMoveAMessageToTheDeadLetterQueueOnceItHasBeenReceivedTheMaximumNumberOfTimes() {
+        sqsClient.sendMessage(QUEUE_URL, "poison");
+
+        assertThat(receive(1, 0).get(0).getAttributes().get("ApproximateReceiveCount"), is("1"));
+        assertThat(receive(1, 0).get(0).getAttributes().get("ApproximateReceiveCount"), is("2"));
+        assertThat(receiveBodies(1, 0), is(empty()));
+
+        assertThat(sqsClient.getNumberOfMessages(QUEUE_URL), is(0));
+        List<Message> deadLettered = sqsClient.receiveMessage(InMemorySqsClient.deadLetterQueueUrl(QUEUE_URL)).getMessages();
+        assertThat(deadLettered.get(0).getBody(), is("poison"));
+    }
+
+    @Test
+    public void shouldReportMessageCountsAndEmptyAQueueWhenItIsPurged() {
+        sqsClient.sendMessage(QUEUE_URL, "first");
+        sqsClient.sendMessage(QUEUE_URL, "second");
+        receiveBodies(1, 30);
+
+        Map<String, String> attributes = sqsClient.getQueueAttributes(
+                new GetQueueAttributesRequest(QUEUE_URL).withAttributeNames("All")).getAttributes();
+        assertThat(attributes.get("ApproximateNumberOfMessages"), is("1"));
+        assertThat(attributes.get("ApproximateNumberOfMessagesNotVisible"), is("1"));
+
+        sqsClient.purgeQueue(new PurgeQueueRequest(QUEUE_URL));
+
+        assertThat(sqsClient.getNumberOfMessages(QUEUE_URL), is(0));
+    }
+
+    @Test
+    public void shouldSendReceiveAndDeleteThroughTheQueueService() throws Exception {
+        SqsConfig sqsConfig = mock(SqsConfig.class);
+        when(sqsConfig.getMessageMaximumBatchSize()).thenReturn(10);
+        when(sqsConfig.getMessageMaximumWaitTimeInSeconds()).thenReturn(0);
+        ConnectorConfiguration connectorConfiguration = mock(ConnectorConfiguration.class);
+        when(connectorConfiguration.getSqsConfig()).thenReturn(sqsConfig);
+        Environment environment = mock(Environment.class);
+        when(environment.metrics()).thenReturn(new MetricRegistry());
+        SqsQueueService sqsQueueService = new SqsQueueService(sqsClient, connectorConfiguration, environment);
+
+        sqsQueueService.sendMessageAsync(QUEUE_URL, "{\"chargeId\":\"charge-id\"}").join();
+        List<QueueMessage> received = sqsQueueService.receiveMessages(QUEUE_URL, "All");
+        List<String> failed = sqsQueueService.deleteMessageBatch(QUEUE_URL,
+                received.stream().map(QueueMessage::getReceiptHandle).collect(Collectors.toList()));
+
+        assertThat(received.get(0).getMessageBody(), is("{\"chargeId\":\"charge-id\"}"));
+        assertThat(failed, is(empty()));
+        assertThat(received.get(0).getMessageId(), is(not("")));
+        assertThat(sqsClient.getNumberOfMessages(QUEUE_URL), is(0));
+    }
+
+    private List<Message> receive(int maximumNumberOfMessages, int visibilityTimeoutInSeconds) {
+        return sqsClient.receiveMessage(new ReceiveMessageRequest(QUEUE_URL)
+                .withMaxNumberOfMessages(maximumNumberOfMessages)
+                .withVisibilityTimeout(visibilityTimeoutInSeconds))
+                .getMessages();
+    }
+
+    private List<String> receiveBodies(int maximumNumberOfMessages, int visibilityTimeoutInSeconds) {
+        return receive(maximumNumberOfMessages, visibilityTimeoutInSeconds).stream()
+                .map(Message::getBody)
+                .collect(Collectors.toList());
+    }
+
+    private static class MutableClock extends Clock {
+        private Instant instant;
+
+        private MutableClock(Instant instant) {
+            this.instant = instant;
+        }
+
+        void advanceSeconds(long seconds) {
+            instant = instant.plusSeconds(seconds);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return instant;
+        }
+    }
+}
@@ -5,8 +5,11 @@ import ch.qos.logback.classic.Logger;
 import ch.qos.logback.classic.spi.ILoggingEvent;
 import ch.qos.logback.classic.spi.LoggingEvent;
 import ch.qos.logback.core.Appender;
-import com.amazonaws.services.sqs.AmazonSQS;
+import com.amazonaws.handlers.AsyncHandler;
+import com.amazonaws.services.sqs.AmazonSQSAsync;
 import com.amazonaws.services.sqs.model.*;
+import com.codahale.metrics.MetricRegistry;
+import io.dropwizard.setup.Environment;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
@@ -21,6 +24,10 @@ import uk.gov.pay.connector.queue.QueueException;
 import uk.gov.pay.connector.queue.QueueMessage;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.is;
@@ -38,13 +45,18 @@ public class SqsQueueServiceTest {
     private static final String MESSAGE_ATTRIBUTE_NAME = "All";
 
     @Mock
-    private AmazonSQS mockSqsClient;
+    private AmazonSQSAsync mockSqsClient;
     @Mock
     private Appender<ILoggingEvent> mockAppender;
 
     @Mock
     private ConnectorConfiguration connectorConfiguration;
 
+    @Mock
+    private Environment environment;
+
+    private final MetricRegistry metricRegistry = new MetricRegistry();
+
     private ArgumentCaptor<LoggingEvent> loggingEventArgumentCaptor = ArgumentCaptor.forClass(LoggingEvent.class);
 
     private SqsQueueService sqsQueueService;
@@ -57,7 +69,9 @@ public class SqsQueueServiceTest {
 
         when(connectorConfiguration.getSqsConfig()).thenReturn(sqsConfig);
 
-        sqsQueueService = new SqsQueueService(mockSqsClient, connectorConfiguration);
+        when(environment.metrics()).thenReturn(metricRegistry);
+
+        sqsQueueService = new SqsQueueService(mockSqsClient, connectorConfiguration, environment);
 
         Logger root = (Logger) LoggerFactory.getLogger(SqsQueueService.class);
         root.setLevel(Level.INFO);
@@ -86,6 +100,116 @@ public class SqsQueueServiceTest {
         sqsQueueService.sendMessage(QUEUE_URL, MESSAGE);
     }
 
+    @Test
+    public void shouldRecordLatencyAndErrorsPerQueueAndOperation() throws QueueException {
+        when(mockSqsClient.sendMessage(QUEUE_URL, MESSAGE))
+                .thenReturn(new SendMessageResult().withMessageId("test-message-id"))
+                .thenThrow(AmazonSQSException.class);
+
+        sqsQueueService.sendMessage(QUEUE_URL, MESSAGE);
+        try {
+            sqsQueueService.sendMessage(QUEUE_URL, MESSAGE);
+        } catch (QueueException expected) {
+        }
+
+        assertThat(metricRegistry.timer("sqs.queue-url.send-message.latency").getCount(), is(2L));
+        assertThat(metricRegistry.meter("sqs.queue-url.send-message.errors").getCount(), is(1L));
+    }
+
+    @Test
+    public void shouldSendMessageAsynchronously() {
+        SendMessageResult sendMessageResult = new SendMessageResult().withMessageId("test-message-id");
+        when(mockSqsClient.sendMessageAsync(any(SendMessageRequest.class), any())).thenAnswer(invocation -> {
+            AsyncHandler<SendMessageRequest, SendMessageResult> handler = invocation.getArgument(1);
+            handler.onSuccess(invocation.getArgument(0), sendMessageResult);
+            return CompletableFuture.completedFuture(sendMessageResult);
+        });
+
+        QueueMessage message = sqsQueueService.sendMessageAsync(QUEUE_URL, MESSAGE).join();
+
+        assertEquals("test-message-id", message.getMessageId());
+        assertThat(metricRegistry.timer("sqs.queue-url.send-message.latency").getCount(), is(1L));
+    }
+
+    @Test
+    public void shouldFailAsynchronousDeleteWithQueueException() {
+        when(mockSqsClient.deleteMessageAsync(any(DeleteMessageRequest.class), any())).thenAnswer(invocation -> {
+            AsyncHandler<DeleteMessageRequest, DeleteMessageResult> handler = invocation.getArgument(1);
+            handler.onError(new AmazonSQSException("unavailable"));
+            return null;
+        });
+
+        try {
+            sqsQueueService.deleteMessageAsync(QUEUE_URL, "receipt-handle").join();
+            Assert.fail("expected the delete to fail");
+        } catch (CompletionException e) {
+            assertTrue(e.getCause() instanceof QueueException);
+        }
+        assertThat(metricRegistry.meter("sqs.queue-url.delete-message.errors").getCount(), is(1L));
+    }
+
+    @Test
+    public void shouldSendMessageBatchToQueue() throws QueueException {
+        List<SendMessageBatchRequestEntry> entries = List.of(new SendMessageBatchRequestEntry("0", MESSAGE));
+        SendMessageBatchResult sendMessageBatchResult = new SendMessageBatchResult()
+                .withSuccessful(new SendMessageBatchResultEntry().withId("0").withMessageId("test-message-id"));
+        when(mockSqsClient.sendMessageBatch(any(SendMessageBatchRequest.class))).thenReturn(sendMessageBatchResult);
+
+        SendMessageBatchResult result = sqsQueueService.sendMessageBatch(QUEUE_URL, entries);
+
+        assertThat(result, is(sendMessageBatchResult));
+        ArgumentCaptor<SendMessageBatchRequest> requestCaptor = ArgumentCaptor.forClass(SendMessageBatchRequest.class);
+        verify(mockSqsClient).sendMessageBatch(requestCaptor.capture());
+        assertThat(requestCaptor.getValue().getQueueUrl(), is(QUEUE_URL));
+        assertThat(requestCaptor.getValue().getEntries(), is(entries));
+    }
+
+    @Test(expected = QueueException.class)
+    public void shouldThrowExceptionIfMessageBatchIsNotSentToQueue() throws QueueException {
+        when(mockSqsClient.sendMessageBatch(any(SendMessageBatchRequest.class))).thenThrow(AmazonSQSException.class);
+
+        sqsQueueService.sendMessageBatch(QUEUE_URL, List.of(new SendMessageBatchRequestEntry("0", MESSAGE)));
+    }
+
+    @Test
+    public void shouldDeleteMessagesInBatchesOfTenAndReturnFailedReceiptHandles() throws QueueException {
+        List<String> receiptHandles = IntStream.range(0, 11)
+                .mapToObj(i -> "receipt-handle-" + i)
+                .collect(Collectors.toList());
+        when(mockSqsClient.deleteMessageBatch(any(DeleteMessageBatchRequest.class)))
+                .thenReturn(new DeleteMessageBatchResult().withFailed(new BatchResultErrorEntry().withId("3")))
+                .thenReturn(new DeleteMessageBatchResult());
+
+        List<String> failedReceiptHandles = sqsQueueService.deleteMessageBatch(QUEUE_URL, receiptHandles);
+
+        assertThat(failedReceiptHandles, is(List.of("receipt-handle-3")));
+        ArgumentCaptor<DeleteMessageBatchRequest> requestCaptor = ArgumentCaptor.forClass(DeleteMessageBatchRequest.class);
+        verify(mockSqsClient, times(2)).deleteMessageBatch(requestCaptor.capture());
+        assertThat(requestCaptor.getAllValues().get(0).getEntries().size(), is(10));
+        assertThat(requestCaptor.getAllValues().get(1).getEntries().get(0).getReceiptHandle(), is("receipt-handle-10"));
+    }
+
+    @Test
+    public void shouldDeferMessagesInOneBatchRequest() throws QueueException {
+        when(mockSqsClient.changeMessageVisibilityBatch(any(ChangeMessageVisibilityBatchRequest.class)))
+                .thenReturn(new ChangeMessageVisibilityBatchResult());
+
+        List<String> failedReceiptHandles = sqsQueueService.deferMessageBatch(QUEUE_URL, List.of("first", "second"), 3600);
+
+        assertTrue(failedReceiptHandles.isEmpty());
+        ArgumentCaptor<ChangeMessageVisibilityBatchRequest> requestCaptor = ArgumentCaptor.forClass(ChangeMessageVisibilityBatchRequest.class);
+        verify(mockSqsClient).changeMessageVisibilityBatch(requestCaptor.capture());
+        assertThat(requestCaptor.getValue().getEntries().size(), is(2));
+        assertThat(requestCaptor.getValue().getEntries().get(1).getVisibilityTimeout(), is(3600));
+    }
+
+    @Test(expected = QueueException.class)
+    public void shouldThrowExceptionIfMessageBatchCannotBeDeleted() throws QueueException {
+        when(mockSqsClient.deleteMessageBatch(any(DeleteMessageBatchRequest.class))).thenThrow(AmazonSQSException.class);
+
+        sqsQueueService.deleteMessageBatch(QUEUE_URL, List.of("receipt-handle"));
+    }
+
     @Test
     public void shouldReceiveMessagesFromQueueSuccessfully() throws QueueException {
         ReceiveMessageResult receiveMessageResult = new ReceiveMessageResult();
@@ -14,6 +14,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import uk.gov.pay.commons.testing.port.PortFactory;
 import uk.gov.pay.connector.app.ConnectorConfiguration;
+import uk.gov.pay.connector.queue.QueueBackend;
 import uk.gov.pay.connector.util.DatabaseTestHelper;
 
 import java.util.List;
@@ -54,6 +55,8 @@ abstract public class AppWithPostgresRule implements TestRule {
 
     private ConfigOverride[] overrideSqsConfig(ConfigOverride[] configOverrides) {
         List<ConfigOverride> newConfigOverride = newArrayList(configOverrides);
+        // queue calls are stubbed on wiremock, so they have to go over HTTP whatever backend the config file uses
+        newConfigOverride.add(config("sqsConfig.queueBackend", QueueBackend.SQS.name()));
         newConfigOverride.add(config("sqsConfig.captureQueueUrl", "http://localhost:" + WIREMOCK_PORT + "/capture-queue"));
         return newConfigOverride.toArray(new ConfigOverride[0]);
     }
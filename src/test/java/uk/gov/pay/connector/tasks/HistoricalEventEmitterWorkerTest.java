@@ -37,18 +37,22 @@ import uk.gov.pay.connector.refund.dao.RefundDao;
 import uk.gov.pay.connector.refund.model.domain.RefundEntity;
 import uk.gov.pay.connector.refund.model.domain.RefundHistory;
 import uk.gov.pay.connector.refund.model.domain.RefundStatus;
+import uk.gov.pay.connector.workpartition.service.WorkPartitionService;
+import uk.gov.pay.connector.workpartition.service.WorkPartitionService.ShardProcessor;
 
 import java.time.ZonedDateTime;
 import java.util.List;
 import java.util.Optional;
 import java.util.OptionalLong;
 
+import static org.hamcrest.CoreMatchers.instanceOf;
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.mockito.AdditionalMatchers.and;
 import static org.mockito.AdditionalMatchers.geq;
 import static org.mockito.AdditionalMatchers.leq;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.ArgumentMatchers.isNotNull;
 import static org.mockito.Mockito.atMostOnce;
 import static org.mockito.Mockito.mock;
@@ -76,6 +80,8 @@ public class HistoricalEventEmitterWorkerTest {
     EventService eventService;
     @Mock
     RefundDao refundDao;
+    @Mock
+    WorkPartitionService workPartitionService;
 
     HistoricalEventEmitterWorker worker;
     private ChargeEntity chargeEntity;
@@ -83,7 +89,7 @@ public class HistoricalEventEmitterWorkerTest {
     @Before
     public void setUp() {
         worker = new HistoricalEventEmitterWorker(chargeDao, refundDao, chargeEventDao, emittedEventDao,
-                stateTransitionService, eventService, chargeService);
+                stateTransitionService, eventService, chargeService, workPartitionService);
         CardDetailsEntity cardDetails = mock(CardDetailsEntity.class);
         when(cardDetails.getLastDigitsCardNumber()).thenReturn(LastDigitsCardNumber.of("1234"));
         chargeEntity = ChargeEntityFixture
@@ -136,6 +142,20 @@ public class HistoricalEventEmitterWorkerTest {
         verify(stateTransitionService, times(100)).offerStateTransition(any(), any(), isNotNull());
     }
 
+    @Test
+    public void executeWithJobIdEmitsEventsOnlyForTheShardsClaimedByThisNode() {
+        when(workPartitionService.processInShards(eq("historical-event-emitter:job-1"), eq(1L), eq(100L), any()))
+                .thenAnswer(invocation -> {
+                    invocation.<ShardProcessor>getArgument(3).process(51L, 100L);
+                    return 1;
+                });
+
+        worker.execute(1L, OptionalLong.of(100L), 1L, Optional.of("job-1"));
+
+        verify(chargeDao, times(50)).findById(and(geq(51L), leq(100L)));
+        verify(chargeDao, never()).findById(50L);
+    }
+
     @Test
     public void executeShouldNotEmitEventIfEmittedPreviously() {
         when(chargeDao.findById((any()))).thenReturn(Optional.of(chargeEntity));
@@ -191,7 +211,10 @@ public class HistoricalEventEmitterWorkerTest {
 
         worker.execute(1L, OptionalLong.empty(), 1L);
 
-        verify(eventService, times(1)).emitAndRecordEvent(any(PaymentDetailsEntered.class), isNotNull());
+        ArgumentCaptor<List<Event>> eventsCaptor = ArgumentCaptor.forClass(List.class);
+        verify(eventService, times(1)).emitAndRecordEvents(eventsCaptor.capture(), isNotNull());
+        assertThat(eventsCaptor.getValue().size(), is(1));
+        assertThat(eventsCaptor.getValue().get(0), instanceOf(PaymentDetailsEntered.class));
     }
 
     @Test
@@ -281,9 +304,10 @@ public class HistoricalEventEmitterWorkerTest {
 
         assertThat(argument.getAllValues().get(0).getStateTransitionEventClass(), is(AuthorisationSucceeded.class));
 
-        ArgumentCaptor<Event> daoArgumentCaptor = ArgumentCaptor.forClass(Event.class);
-        verify(eventService, times(1)).emitAndRecordEvent(daoArgumentCaptor.capture(), isNotNull()); // additional event - paymentDetailsEnteredEvent
-        assertThat(daoArgumentCaptor.getAllValues().get(0).getEventType(), is("PAYMENT_DETAILS_ENTERED"));
+        ArgumentCaptor<List<Event>> daoArgumentCaptor = ArgumentCaptor.forClass(List.class);
+        verify(eventService, times(1)).emitAndRecordEvents(daoArgumentCaptor.capture(), isNotNull()); // additional event - paymentDetailsEnteredEvent
+        assertThat(daoArgumentCaptor.getValue().size(), is(1));
+        assertThat(daoArgumentCaptor.getValue().get(0).getEventType(), is("PAYMENT_DETAILS_ENTERED"));
     }
 
     @Test
@@ -346,9 +370,10 @@ public class HistoricalEventEmitterWorkerTest {
         assertThat(argument.getAllValues().get(0).getStateTransitionEventClass(), is(GatewayRequires3dsAuthorisation.class));
         assertThat(argument.getAllValues().get(1).getStateTransitionEventClass(), is(AuthorisationSucceeded.class));
 
-        ArgumentCaptor<Event> daoArgumentCaptor = ArgumentCaptor.forClass(Event.class);
-        verify(eventService, times(1)).emitAndRecordEvent(daoArgumentCaptor.capture(), isNotNull());
-        assertThat(daoArgumentCaptor.getAllValues().get(0).getEventType(), is("PAYMENT_DETAILS_ENTERED"));
+        ArgumentCaptor<List<Event>> daoArgumentCaptor = ArgumentCaptor.forClass(List.class);
+        verify(eventService, times(1)).emitAndRecordEvents(daoArgumentCaptor.capture(), isNotNull());
+        assertThat(daoArgumentCaptor.getValue().size(), is(1));
+        assertThat(daoArgumentCaptor.getValue().get(0).getEventType(), is("PAYMENT_DETAILS_ENTERED"));
     }
 
     @Test
@@ -16,12 +16,14 @@ import uk.gov.pay.connector.refund.dao.RefundDao;
 import uk.gov.pay.connector.refund.model.domain.RefundEntity;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import static java.time.ZonedDateTime.parse;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.core.Is.is;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static uk.gov.pay.commons.model.Source.CARD_API;
@@ -33,6 +35,7 @@ import static uk.gov.pay.connector.charge.model.domain.ChargeStatus.CAPTURED;
 import static uk.gov.pay.connector.charge.model.domain.ChargeStatus.CAPTURE_SUBMITTED;
 import static uk.gov.pay.connector.charge.model.domain.ChargeStatus.CREATED;
 import static uk.gov.pay.connector.charge.model.domain.ParityCheckStatus.DATA_MISMATCH;
+import static uk.gov.pay.connector.charge.model.domain.ParityCheckStatus.MISSING_IN_LEDGER;
 import static uk.gov.pay.connector.model.domain.LedgerTransactionFixture.aValidLedgerTransaction;
 import static uk.gov.pay.connector.model.domain.LedgerTransactionFixture.from;
 import static uk.gov.pay.connector.pact.ChargeEventEntityFixture.aValidChargeEventEntity;
@@ -168,6 +171,28 @@ public class ParityCheckServiceTest {
         verify(mockChargeService).updateChargeParityStatus(chargeEntity.getExternalId(), DATA_MISMATCH);
     }
     
+    @Test
+    public void parityCheckChargeForExpunger_shouldUseTheLedgerTransactionLookedUpBeforehand() {
+        LedgerTransaction transaction = from(chargeEntity, refundEntities).build();
+        when(mockLedgerService.getTransactions(List.of(chargeEntity.getExternalId())))
+                .thenReturn(Map.of(chargeEntity.getExternalId(), transaction));
+
+        Map<String, LedgerTransaction> ledgerTransactions = parityCheckService.getLedgerTransactions(List.of(chargeEntity));
+        boolean matchesWithLedger = parityCheckService.parityCheckChargeForExpunger(chargeEntity, ledgerTransactions);
+
+        assertThat(matchesWithLedger, is(true));
+        verify(mockLedgerService, never()).getTransaction(any());
+    }
+
+    @Test
+    public void parityCheckChargeForExpunger_shouldReturnFalseIfChargeWasNotFoundInLedgerBeforehand() {
+        boolean matchesWithLedger = parityCheckService.parityCheckChargeForExpunger(chargeEntity, Map.of());
+
+        assertThat(matchesWithLedger, is(false));
+        verify(mockLedgerService, never()).getTransaction(any());
+        verify(mockChargeService).updateChargeParityStatus(chargeEntity.getExternalId(), MISSING_IN_LEDGER);
+    }
+
     @Test
     public void parityCheckChargeForExpunger_shouldReturnFalseIfChargeDoesNotMatchWithLedger() {
         LedgerTransaction transaction = aValidLedgerTransaction().withStatus("pending").build();
@@ -20,8 +20,11 @@ import uk.gov.pay.connector.paritycheck.LedgerService;
 import uk.gov.pay.connector.queue.StateTransitionService;
 import uk.gov.pay.connector.refund.dao.RefundDao;
 import uk.gov.pay.connector.refund.model.domain.RefundEntity;
+import uk.gov.pay.connector.workpartition.service.WorkPartitionService;
+import uk.gov.pay.connector.workpartition.service.WorkPartitionService.ShardProcessor;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import static org.mockito.ArgumentMatchers.any;
@@ -60,6 +63,8 @@ public class ParityCheckWorkerTest {
     private RefundDao refundDao;
     @Mock
     private LedgerService ledgerService;
+    @Mock
+    private WorkPartitionService workPartitionService;
 
     private ParityCheckWorker worker;
     private ChargeEntity chargeEntity;
@@ -69,9 +74,13 @@ public class ParityCheckWorkerTest {
     @Before
     public void setUp() {
         worker = new ParityCheckWorker(chargeDao, chargeService, ledgerService, emittedEventDao,
-                stateTransitionService, eventService, refundDao, parityCheckService);
+                stateTransitionService, eventService, refundDao, parityCheckService, workPartitionService);
         CardDetailsEntity cardDetails = mock(CardDetailsEntity.class);
-        chargeEntity = aValidChargeEntity()
+        chargeEntity = aChargeEntityWithCreatedEvent();
+    }
+
+    private ChargeEntity aChargeEntityWithCreatedEvent() {
+        ChargeEntity charge = aValidChargeEntity()
                 .withCardDetails(defaultCardDetails())
                 .withGatewayAccountEntity(defaultGatewayAccountEntity())
                 .withMoto(true)
@@ -82,11 +91,12 @@ public class ParityCheckWorkerTest {
                 .withDelayedCapture(true)
                 .build();
         ChargeEventEntity chargeEventEntity = ChargeEventEntityFixture.aValidChargeEventEntity()
-                .withTimestamp(chargeEntity.getCreatedDate())
-                .withCharge(chargeEntity)
+                .withTimestamp(charge.getCreatedDate())
+                .withCharge(charge)
                 .withChargeStatus(ChargeStatus.CREATED)
                 .build();
-        chargeEntity.getEvents().add(chargeEventEntity);
+        charge.getEvents().add(chargeEventEntity);
+        return charge;
     }
 
     @Test
@@ -108,7 +118,8 @@ public class ParityCheckWorkerTest {
     public void executeRecordsParityStatusForChargesExistingInLedger() {
         when(chargeDao.findMaxId()).thenReturn(1L);
         when(chargeDao.findById(1L)).thenReturn(Optional.of(chargeEntity));
-        when(ledgerService.getTransaction(chargeEntity.getExternalId())).thenReturn(Optional.of(from(chargeEntity, null).build()));
+        when(ledgerService.getTransactions(List.of(chargeEntity.getExternalId())))
+                .thenReturn(Map.of(chargeEntity.getExternalId(), from(chargeEntity, null).build()));
 
         worker.execute(1L, Optional.empty(), doNotReprocessValidRecords, emptyParityCheckStatus, 1L);
 
@@ -125,15 +136,16 @@ public class ParityCheckWorkerTest {
         when(chargeDao.findMaxId()).thenReturn(1L);
         when(chargeDao.findById(1L)).thenReturn(Optional.of(chargeEntity));
         when(refundDao.findRefundsByChargeExternalId(chargeEntity.getExternalId())).thenReturn(List.of(refundEntity));
-        when(ledgerService.getTransaction(chargeEntity.getExternalId())).thenReturn(Optional.of(from(chargeEntity, null).build()));
-        when(ledgerService.getTransaction(refundEntity.getExternalId()))
-                .thenReturn(Optional.of(aValidLedgerTransaction().withStatus("submitted").build()));
+        when(ledgerService.getTransactions(List.of(chargeEntity.getExternalId())))
+                .thenReturn(Map.of(chargeEntity.getExternalId(), from(chargeEntity, null).build()));
+        when(ledgerService.getTransactions(List.of(refundEntity.getExternalId())))
+                .thenReturn(Map.of(refundEntity.getExternalId(), aValidLedgerTransaction().withStatus("submitted").build()));
 
         worker.execute(1L, Optional.empty(), doNotReprocessValidRecords, emptyParityCheckStatus, 1L);
 
         verify(chargeService, times(1)).updateChargeParityStatus(chargeEntity.getExternalId(), ParityCheckStatus.EXISTS_IN_LEDGER);
-        verify(ledgerService, times(2)).getTransaction(any());
-        verify(ledgerService, times(1)).getTransaction(chargeEntity.getExternalId());
+        verify(ledgerService, times(2)).getTransactions(any());
+        verify(ledgerService, never()).getTransaction(any());
         verify(refundDao, times(2)).findRefundsByChargeExternalId(chargeEntity.getExternalId());
         verify(stateTransitionService, never()).offerStateTransition(any(), any(), any());
         verify(emittedEventDao, never()).recordEmission(any(), any());
@@ -144,13 +156,14 @@ public class ParityCheckWorkerTest {
     public void executeRecordsParityStatusForChargeWithDifferentStatusInLedger() {
         when(chargeDao.findMaxId()).thenReturn(1L);
         when(chargeDao.findById(1L)).thenReturn(Optional.of(chargeEntity));
-        when(ledgerService.getTransaction(chargeEntity.getExternalId())).thenReturn(Optional.of(aValidLedgerTransaction().withStatus("started").build()));
+        when(ledgerService.getTransactions(List.of(chargeEntity.getExternalId())))
+                .thenReturn(Map.of(chargeEntity.getExternalId(), aValidLedgerTransaction().withStatus("started").build()));
 
         worker.execute(1L, Optional.empty(), doNotReprocessValidRecords, emptyParityCheckStatus, 1L);
 
         verify(chargeService, times(1)).updateChargeParityStatus(chargeEntity.getExternalId(), ParityCheckStatus.DATA_MISMATCH);
-        verify(ledgerService, times(1)).getTransaction(any());
-        verify(ledgerService, times(1)).getTransaction(chargeEntity.getExternalId());
+        verify(ledgerService, times(1)).getTransactions(any());
+        verify(ledgerService, times(1)).getTransactions(List.of(chargeEntity.getExternalId()));
         verify(stateTransitionService, times(1)).offerStateTransition(any(), any(), notNull());
     }
 
@@ -160,30 +173,36 @@ public class ParityCheckWorkerTest {
         when(refundDao.findRefundsByChargeExternalId(chargeEntity.getExternalId()))
                 .thenReturn(List.of(aValidRefundEntity().build(), aValidRefundEntity().build()));
         when(chargeDao.findById(1L)).thenReturn(Optional.of(chargeEntity));
-        when(ledgerService.getTransaction(any())).thenReturn(Optional.empty());
-        when(ledgerService.getTransaction(chargeEntity.getExternalId())).thenReturn(Optional.of(from(chargeEntity, null).build()));
+        when(ledgerService.getTransactions(any())).thenReturn(Map.of());
+        when(ledgerService.getTransactions(List.of(chargeEntity.getExternalId())))
+                .thenReturn(Map.of(chargeEntity.getExternalId(), from(chargeEntity, null).build()));
 
         worker.execute(1L, Optional.empty(), doNotReprocessValidRecords, emptyParityCheckStatus, 1L);
 
         verify(chargeService, times(1)).updateChargeParityStatus(chargeEntity.getExternalId(), ParityCheckStatus.MISSING_IN_LEDGER);
-        verify(ledgerService, times(2)).getTransaction(any());
+        verify(ledgerService, times(2)).getTransactions(any());
         verify(stateTransitionService, times(1)).offerStateTransition(any(), any(), notNull());
     }
 
     @Test
     public void executeEmitsEventAndRecordsEmissionWhenRefundWithDifferentStatusInLedger() {
+        RefundEntity refundEntity = aValidRefundEntity().withExternalId("refund-external-id").build();
+        RefundEntity otherRefundEntity = aValidRefundEntity().withExternalId("other-refund-external-id").build();
         when(chargeDao.findMaxId()).thenReturn(1L);
         when(refundDao.findRefundsByChargeExternalId(chargeEntity.getExternalId()))
-                .thenReturn(List.of(aValidRefundEntity().build(), aValidRefundEntity().build()));
+                .thenReturn(List.of(refundEntity, otherRefundEntity));
         when(chargeDao.findById(1L)).thenReturn(Optional.of(chargeEntity));
-        when(ledgerService.getTransaction(any())).thenReturn(Optional.of(
-                aValidLedgerTransaction().withStatus("success").build()));
-        when(ledgerService.getTransaction(chargeEntity.getExternalId())).thenReturn(Optional.of(from(chargeEntity, null).build()));
+        when(ledgerService.getTransactions(List.of(refundEntity.getExternalId(), otherRefundEntity.getExternalId())))
+                .thenReturn(Map.of(
+                        refundEntity.getExternalId(), aValidLedgerTransaction().withStatus("success").build(),
+                        otherRefundEntity.getExternalId(), aValidLedgerTransaction().withStatus("success").build()));
+        when(ledgerService.getTransactions(List.of(chargeEntity.getExternalId())))
+                .thenReturn(Map.of(chargeEntity.getExternalId(), from(chargeEntity, null).build()));
 
         worker.execute(1L, Optional.empty(), doNotReprocessValidRecords, emptyParityCheckStatus, 1L);
 
         verify(chargeService, times(1)).updateChargeParityStatus(chargeEntity.getExternalId(), ParityCheckStatus.DATA_MISMATCH);
-        verify(ledgerService, times(2)).getTransaction(any());
+        verify(ledgerService, times(2)).getTransactions(any());
         verify(stateTransitionService, times(1)).offerStateTransition(any(), any(), notNull());
     }
 
@@ -191,40 +210,71 @@ public class ParityCheckWorkerTest {
     public void executeEmitsEventAndRecordsEmission() {
         when(chargeDao.findMaxId()).thenReturn(1L);
         when(chargeDao.findById(1L)).thenReturn(Optional.of(chargeEntity));
-        when(ledgerService.getTransaction(chargeEntity.getExternalId())).thenReturn(Optional.empty());
+        when(ledgerService.getTransactions(List.of(chargeEntity.getExternalId()))).thenReturn(Map.of());
 
         worker.execute(1L, Optional.empty(), doNotReprocessValidRecords, emptyParityCheckStatus, 
                 120L);
 
         verify(chargeService, times(1)).updateChargeParityStatus(chargeEntity.getExternalId(),
                 ParityCheckStatus.MISSING_IN_LEDGER);
-        verify(ledgerService, times(1)).getTransaction(any());
+        verify(ledgerService, times(1)).getTransactions(any());
         verify(stateTransitionService, times(1)).offerStateTransition(any(), any(), notNull());
     }
 
     @Test
     public void executeShouldEmitEventIfEmittedPreviously() {
         when(chargeDao.findById((any()))).thenReturn(Optional.of(chargeEntity));
-        when(ledgerService.getTransaction(chargeEntity.getExternalId())).thenReturn(Optional.empty());
+        when(ledgerService.getTransactions(List.of(chargeEntity.getExternalId()))).thenReturn(Map.of());
 
         worker.execute(1L, Optional.of(1L), doNotReprocessValidRecords, emptyParityCheckStatus, 120L);
 
         verify(chargeService, times(1)).updateChargeParityStatus(chargeEntity.getExternalId(), ParityCheckStatus.MISSING_IN_LEDGER);
-        verify(ledgerService, times(1)).getTransaction(any());
+        verify(ledgerService, times(1)).getTransactions(any());
         verify(stateTransitionService, times(1)).offerStateTransition(any(), any(), notNull());
     }
 
+    @Test
+    public void executeLooksUpTheLedgerTransactionsOfAPageOfChargesTogether() {
+        ChargeEntity otherChargeEntity = aChargeEntityWithCreatedEvent();
+        when(chargeDao.findMaxId()).thenReturn(3L);
+        when(chargeDao.findById(1L)).thenReturn(Optional.of(chargeEntity));
+        when(chargeDao.findById(2L)).thenReturn(Optional.empty());
+        when(chargeDao.findById(3L)).thenReturn(Optional.of(otherChargeEntity));
+        when(ledgerService.getTransactions(List.of(chargeEntity.getExternalId(), otherChargeEntity.getExternalId())))
+                .thenReturn(Map.of(chargeEntity.getExternalId(), from(chargeEntity, null).build()));
+
+        worker.execute(1L, Optional.empty(), doNotReprocessValidRecords, emptyParityCheckStatus, 1L);
+
+        verify(ledgerService, times(1)).getTransactions(any());
+        verify(ledgerService, never()).getTransaction(any());
+        verify(chargeService).updateChargeParityStatus(chargeEntity.getExternalId(), ParityCheckStatus.EXISTS_IN_LEDGER);
+        verify(chargeService).updateChargeParityStatus(otherChargeEntity.getExternalId(), ParityCheckStatus.MISSING_IN_LEDGER);
+    }
+
+    @Test
+    public void executeWithJobIdChecksParityOnlyForTheShardsClaimedByThisNode() {
+        when(workPartitionService.processInShards(eq("parity-check:job-1"), eq(1L), eq(2L), any())).thenAnswer(invocation -> {
+            invocation.<ShardProcessor>getArgument(3).process(2L, 2L);
+            return 1;
+        });
+
+        worker.execute(1L, Optional.of(2L), doNotReprocessValidRecords, emptyParityCheckStatus, 1L, Optional.of("job-1"));
+
+        verify(chargeDao).findById(2L);
+        verify(chargeDao, never()).findById(1L);
+    }
+
     @Test
     public void executeForParityCheckStatusShouldEmitEventsOnlyForStatus() {
         when(chargeDao.findByParityCheckStatus(ParityCheckStatus.DATA_MISMATCH, 100, chargeEntity.getId())).thenReturn(List.of());
         when(chargeDao.findByParityCheckStatus(ParityCheckStatus.DATA_MISMATCH, 100, 0L)).thenReturn(List.of(chargeEntity));
-        when(ledgerService.getTransaction(chargeEntity.getExternalId())).thenReturn(Optional.empty());
+        when(ledgerService.getTransactions(List.of(chargeEntity.getExternalId()))).thenReturn(Map.of());
 
         worker.execute(0L, Optional.empty(), doNotReprocessValidRecords, Optional.of("DATA_MISMATCH"), 1L);
 
         verify(chargeDao, times(2)).findByParityCheckStatus(eq(ParityCheckStatus.DATA_MISMATCH), anyInt(), any());
         verify(chargeService, times(1)).updateChargeParityStatus(chargeEntity.getExternalId(), ParityCheckStatus.MISSING_IN_LEDGER);
-        verify(ledgerService, times(1)).getTransaction(any());
+        verify(ledgerService, times(1)).getTransactions(any());
         verify(stateTransitionService, times(1)).offerStateTransition(any(), any(), notNull());
     }
 }
@@ -0,0 +1,80 @@
+package uk.gov.pay.connector.token.service;
+
+import com.codahale.metrics.MetricRegistry;
+import io.dropwizard.setup.Environment;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import uk.gov.pay.connector.app.ConnectorConfiguration;
+import uk.gov.pay.connector.app.config.TokenReaperConfig;
+import uk.gov.pay.connector.token.dao.TokenDao;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class TokenReaperServiceTest {
+
+    @Mock
+    private TokenDao mockTokenDao;
+    @Mock
+    private ConnectorConfiguration mockConnectorConfiguration;
+    @Mock
+    private TokenReaperConfig mockTokenReaperConfig;
+    @Mock
+    private Environment mockEnvironment;
+
+    private MetricRegistry metricRegistry = new MetricRegistry();
+    private TokenReaperService tokenReaperService;
+
+    @Before
+    public void setUp() {
+        when(mockConnectorConfiguration.getTokenReaperConfig()).thenReturn(mockTokenReaperConfig);
+        when(mockEnvironment.metrics()).thenReturn(metricRegistry);
+        when(mockTokenReaperConfig.getTokenExpiryInDays()).thenReturn(7);
+        when(mockTokenReaperConfig.getBatchSize()).thenReturn(100);
+        when(mockTokenReaperConfig.getMaximumBatchesPerRun()).thenReturn(10);
+        tokenReaperService = new TokenReaperService(mockTokenDao, mockConnectorConfiguration, mockEnvironment);
+    }
+
+    @Test
+    public void shouldDeleteInBatchesUntilALessThanFullBatchIsDeleted() {
+        when(mockTokenReaperConfig.getPauseBetweenBatchesInMillis()).thenReturn(0L);
+        when(mockTokenDao.deleteTokensOlderThanSpecifiedDate(any(), eq(100))).thenReturn(100, 100, 42);
+
+        int deleted = tokenReaperService.deleteExpiredTokens();
+
+        assertThat(deleted, is(242));
+        verify(mockTokenDao, times(3)).deleteTokensOlderThanSpecifiedDate(any(), eq(100));
+        assertThat(metricRegistry.meter("token-reaper.deleted").getCount(), is(242L));
+        assertThat(metricRegistry.counter("token-reaper.runs").getCount(), is(1L));
+    }
+
+    @Test
+    public void shouldStopAfterMaximumBatchesPerRun() {
+        when(mockTokenReaperConfig.getPauseBetweenBatchesInMillis()).thenReturn(0L);
+        when(mockTokenDao.deleteTokensOlderThanSpecifiedDate(any(), eq(100))).thenReturn(100);
+
+        int deleted = tokenReaperService.deleteExpiredTokens();
+
+        assertThat(deleted, is(1000));
+        verify(mockTokenDao, times(10)).deleteTokensOlderThanSpecifiedDate(any(), eq(100));
+    }
+
+    @Test
+    public void shouldRunASingleBatchWhenNothingToDelete() {
+        when(mockTokenDao.deleteTokensOlderThanSpecifiedDate(any(), eq(100))).thenReturn(0);
+
+        int deleted = tokenReaperService.deleteExpiredTokens();
+
+        assertThat(deleted, is(0));
+        verify(mockTokenDao, times(1)).deleteTokensOlderThanSpecifiedDate(any(), eq(100));
+    }
+}
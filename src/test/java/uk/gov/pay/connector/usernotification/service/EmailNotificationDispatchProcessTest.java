@@ -0,0 +1,219 @@
+package uk.gov.pay.connector.usernotification.service;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.util.concurrent.MoreExecutors;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import uk.gov.pay.connector.app.config.EmailDispatchConfig;
+import uk.gov.pay.connector.gatewayaccount.dao.GatewayAccountDao;
+import uk.gov.pay.connector.gatewayaccount.model.GatewayAccountEntity;
+import uk.gov.pay.connector.usernotification.dao.EmailNotificationSpoolDao;
+import uk.gov.pay.connector.usernotification.govuknotify.NotifyClientFactory;
+import uk.gov.pay.connector.usernotification.model.domain.EmailNotificationSpoolEntity;
+import uk.gov.service.notify.NotificationClient;
+import uk.gov.service.notify.NotificationClientException;
+import uk.gov.service.notify.SendEmailResponse;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ScheduledExecutorService;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static uk.gov.pay.connector.usernotification.model.domain.EmailNotificationType.PAYMENT_CONFIRMED;
+
+@RunWith(MockitoJUnitRunner.class)
+public class EmailNotificationDispatchProcessTest {
+
+    private static final Instant NOW = Instant.parse("2020-01-01T10:00:00Z");
+    private static final Long GATEWAY_ACCOUNT_ID = 42L;
+    private static final Map<String, String> PERSONALISATION = Map.of("serviceName", "MyService");
+
+    @Mock
+    private EmailNotificationSpoolDao emailNotificationSpoolDao;
+    @Mock
+    private GatewayAccountDao gatewayAccountDao;
+    @Mock
+    private NotifyClientFactory notifyClientFactory;
+    @Mock
+    private NotificationClient notificationClient;
+    @Mock
+    private SendEmailResponse sendEmailResponse;
+    @Mock
+    private EmailDispatchConfig emailDispatchConfig;
+    @Mock
+    private ScheduledExecutorService pollingExecutorService;
+
+    private final MetricRegistry metricRegistry = new MetricRegistry();
+    private EmailNotificationDispatchProcess emailNotificationDispatchProcess;
+
+    @Before
+    public void setUp() {
+        when(emailDispatchConfig.getBatchSize()).thenReturn(10);
+        when(emailDispatchConfig.getLeaseInSeconds()).thenReturn(120);
+        when(emailDispatchConfig.getMaximumAttempts()).thenReturn(10);
+        when(emailDispatchConfig.getInitialRetryDelayInSeconds()).thenReturn(30);
+        when(emailDispatchConfig.getMaximumRetryDelayInSeconds()).thenReturn(3600);
+        emailNotificationDispatchProcess = new EmailNotificationDispatchProcess(emailNotificationSpoolDao,
+                gatewayAccountDao, notifyClientFactory, emailDispatchConfig, pollingExecutorService,
+                MoreExecutors.newDirectExecutorService(), metricRegistry, Clock.fixed(NOW, ZoneOffset.UTC));
+    }
+
+    @Test
+    public void shouldSendDueEmailsWithThePayApiKeyAndDeleteThem() throws Exception {
+        EmailNotificationSpoolEntity email = anEmail(1L, false);
+        when(emailNotificationSpoolDao.claimDue(10, 120000L)).thenReturn(List.of(email));
+        when(notifyClientFactory.getInstance()).thenReturn(notificationClient);
+        when(notificationClient.sendEmail("a-template-id", "a@example.com", PERSONALISATION, null)).thenReturn(sendEmailResponse);
+
+        emailNotificationDispatchProcess.dispatchDueEmails();
+
+        verify(emailNotificationSpoolDao).delete(List.of(1L));
+        verify(emailNotificationSpoolDao, never()).reschedule(anyLong(), anyInt(), any());
+        assertThat(metricRegistry.histogram("notify-operations.response_time").getCount(), is(1L));
+        assertThat(metricRegistry.counter("notify-operations.failures").getCount(), is(0L));
+    }
+
+    @Test
+    public void shouldSendWithTheGatewayAccountsOwnApiKeyWhenItHasOne() throws Exception {
+        EmailNotificationSpoolEntity email = anEmail(1L, true);
+        GatewayAccountEntity gatewayAccount = new GatewayAccountEntity();
+        gatewayAccount.setNotifySettings(Map.of("api_token", "my-api-key", "template_id", "a-template-id"));
+        when(emailNotificationSpoolDao.claimDue(10, 120000L)).thenReturn(List.of(email));
+        when(gatewayAccountDao.findById(GATEWAY_ACCOUNT_ID)).thenReturn(Optional.of(gatewayAccount));
+        when(notifyClientFactory.getInstance("my-api-key")).thenReturn(notificationClient);
+        when(notificationClient.sendEmail("a-template-id", "a@example.com", PERSONALISATION, null)).thenReturn(sendEmailResponse);
+
+        emailNotificationDispatchProcess.dispatchDueEmails();
+
+        verify(emailNotificationSpoolDao).delete(List.of(1L));
+    }
+
+    @Test
+    public void shouldGiveUpOnAnEmailWhenTheGatewayAccountNoLongerHasAnApiKey() {
+        EmailNotificationSpoolEntity email = anEmail(1L, true);
+        when(emailNotificationSpoolDao.claimDue(10, 120000L)).thenReturn(List.of(email));
+        when(gatewayAccountDao.findById(GATEWAY_ACCOUNT_ID)).thenReturn(Optional.of(new GatewayAccountEntity()));
+
+        emailNotificationDispatchProcess.dispatchDueEmails();
+
+        verify(emailNotificationSpoolDao).delete(List.of(1L));
+        verify(notifyClientFactory, never()).getInstance(any());
+        assertThat(metricRegistry.counter("notify-operations.abandoned").getCount(), is(1L));
+    }
+
+    @Test
+    public void shouldRescheduleAnEmailWhenNotifyIsUnavailable() throws Exception {
+        EmailNotificationSpoolEntity email = anEmail(1L, false);
+        when(emailNotificationSpoolDao.claimDue(10, 120000L)).thenReturn(List.of(email));
+        when(notifyClientFactory.getInstance()).thenReturn(notificationClient);
+        when(notificationClient.sendEmail(any(), any(), any(), any())).thenThrow(notifyError(503));
+
+        emailNotificationDispatchProcess.dispatchDueEmails();
+
+        verify(emailNotificationSpoolDao).reschedule(1L, 1, ZonedDateTime.ofInstant(NOW, ZoneOffset.UTC).plusSeconds(30));
+        verify(emailNotificationSpoolDao).delete(List.of());
+        assertThat(metricRegistry.counter("notify-operations.failures").getCount(), is(1L));
+        assertThat(metricRegistry.histogram("notify-operations.response_time").getCount(), is(1L));
+    }
+
+    @Test
+    public void shouldDoubleTheRetryDelayWithEachAttemptUpToTheMaximum() throws Exception {
+        EmailNotificationSpoolEntity thirdAttempt = aRetriedEmail(1L, 2);
+        EmailNotificationSpoolEntity ninthAttempt = aRetriedEmail(2L, 8);
+        when(emailNotificationSpoolDao.claimDue(10, 120000L)).thenReturn(List.of(thirdAttempt, ninthAttempt));
+        when(notifyClientFactory.getInstance()).thenReturn(notificationClient);
+        when(notificationClient.sendEmail(any(), any(), any(), any())).thenThrow(notifyError(429));
+
+        emailNotificationDispatchProcess.dispatchDueEmails();
+
+        verify(emailNotificationSpoolDao).reschedule(1L, 3, ZonedDateTime.ofInstant(NOW, ZoneOffset.UTC).plusSeconds(120));
+        verify(emailNotificationSpoolDao).reschedule(2L, 9, ZonedDateTime.ofInstant(NOW, ZoneOffset.UTC).plusSeconds(3600));
+    }
+
+    @Test
+    public void shouldGiveUpOnAnEmailThatHasUsedUpItsAttempts() throws Exception {
+        EmailNotificationSpoolEntity lastAttempt = aRetriedEmail(1L, 9);
+        when(emailNotificationSpoolDao.claimDue(10, 120000L)).thenReturn(List.of(lastAttempt));
+        when(notifyClientFactory.getInstance()).thenReturn(notificationClient);
+        when(notificationClient.sendEmail(any(), any(), any(), any())).thenThrow(notifyError(500));
+
+        emailNotificationDispatchProcess.dispatchDueEmails();
+
+        verify(emailNotificationSpoolDao, never()).reschedule(anyLong(), anyInt(), any());
+        verify(emailNotificationSpoolDao).delete(List.of(1L));
+        assertThat(metricRegistry.counter("notify-operations.abandoned").getCount(), is(1L));
+    }
+
+    @Test
+    public void shouldGiveUpOnAnEmailThatNotifyRejects() throws Exception {
+        EmailNotificationSpoolEntity email = anEmail(1L, false);
+        when(emailNotificationSpoolDao.claimDue(10, 120000L)).thenReturn(List.of(email));
+        when(notifyClientFactory.getInstance()).thenReturn(notificationClient);
+        when(notificationClient.sendEmail(any(), any(), any(), any())).thenThrow(notifyError(400));
+
+        emailNotificationDispatchProcess.dispatchDueEmails();
+
+        verify(emailNotificationSpoolDao, never()).reschedule(anyLong(), anyInt(), any());
+        verify(emailNotificationSpoolDao).delete(List.of(1L));
+        assertThat(metricRegistry.counter("notify-operations.failures").getCount(), is(1L));
+        assertThat(metricRegistry.counter("notify-operations.abandoned").getCount(), is(1L));
+    }
+
+    @Test
+    public void shouldKeepClaimingWhileBatchesComeBackFull() throws Exception {
+        when(emailDispatchConfig.getBatchSize()).thenReturn(1);
+        emailNotificationDispatchProcess = new EmailNotificationDispatchProcess(emailNotificationSpoolDao,
+                gatewayAccountDao, notifyClientFactory, emailDispatchConfig, pollingExecutorService,
+                MoreExecutors.newDirectExecutorService(), metricRegistry, Clock.fixed(NOW, ZoneOffset.UTC));
+        when(emailNotificationSpoolDao.claimDue(1, 120000L))
+                .thenReturn(List.of(anEmail(1L, false)))
+                .thenReturn(List.of(anEmail(2L, false)))
+                .thenReturn(List.of());
+        when(notifyClientFactory.getInstance()).thenReturn(notificationClient);
+        when(notificationClient.sendEmail(any(), any(), any(), any())).thenReturn(sendEmailResponse);
+
+        emailNotificationDispatchProcess.dispatchDueEmails();
+
+        verify(emailNotificationSpoolDao, times(3)).claimDue(1, 120000L);
+        verify(emailNotificationSpoolDao).delete(List.of(1L));
+        verify(emailNotificationSpoolDao).delete(List.of(2L));
+    }
+
+    private EmailNotificationSpoolEntity anEmail(Long id, boolean useAccountApiKey) {
+        EmailNotificationSpoolEntity email = new EmailNotificationSpoolEntity(PAYMENT_CONFIRMED, "a-charge-external-id",
+                GATEWAY_ACCOUNT_ID, useAccountApiKey, "a-template-id", "a@example.com", PERSONALISATION,
+                ZonedDateTime.ofInstant(NOW, ZoneOffset.UTC));
+        email.setId(id);
+        return email;
+    }
+
+    private EmailNotificationSpoolEntity aRetriedEmail(Long id, int attempts) {
+        EmailNotificationSpoolEntity email = spy(anEmail(id, false));
+        doReturn(attempts).when(email).getAttempts();
+        return email;
+    }
+
+    private static NotificationClientException notifyError(int httpResult) {
+        NotificationClientException exception = spy(new NotificationClientException("Status code: " + httpResult));
+        doReturn(httpResult).when(exception).getHttpResult();
+        return exception;
+    }
+}
@@ -12,6 +12,7 @@ import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.junit.MockitoJUnitRunner;
 import uk.gov.pay.connector.common.exception.CredentialsException;
+import uk.gov.pay.connector.gateway.smartpay.auth.VerifiedNotificationCredentialsCache;
 import uk.gov.pay.connector.gatewayaccount.dao.GatewayAccountDao;
 import uk.gov.pay.connector.gatewayaccount.model.GatewayAccountEntity;
 import uk.gov.pay.connector.usernotification.model.domain.NotificationCredentials;
@@ -41,9 +42,13 @@ public class GatewayAccountNotificationCredentialsServiceTest {
     @Mock
     HashUtil hashUtil;
 
+    @Mock
+    VerifiedNotificationCredentialsCache verifiedCredentialsCache;
+
     @Before
     public void setup() {
-        gatewayAccountNotificationCredentialsService = new GatewayAccountNotificationCredentialsService(gatewayDao, hashUtil);
+        gatewayAccountNotificationCredentialsService = new GatewayAccountNotificationCredentialsService(gatewayDao, hashUtil,
+                verifiedCredentialsCache);
     }
 
     @Test
@@ -87,6 +92,22 @@ public class GatewayAccountNotificationCredentialsServiceTest {
         inOrder.verify(gatewayAccount).setNotificationCredentials(notificationCredentials);
     }
 
+    @Test
+    public void shouldForgetVerifiedCredentialsForThePreviousUsernameOnceTheNewCredentialsAreSaved() throws CredentialsException {
+        GatewayAccountEntity gatewayAccount = mock(GatewayAccountEntity.class);
+        NotificationCredentials notificationCredentials = mock(NotificationCredentials.class);
+        Map<String, String> credentials = ImmutableMap.of("username", "bob", "password", "bobssecret");
+
+        when(gatewayAccount.getNotificationCredentials()).thenReturn(notificationCredentials);
+        when(notificationCredentials.getUserName()).thenReturn("alice");
+
+        gatewayAccountNotificationCredentialsService.setCredentialsForAccount(credentials, gatewayAccount);
+
+        InOrder inOrder = Mockito.inOrder(gatewayDao, verifiedCredentialsCache);
+        inOrder.verify(gatewayDao).merge(gatewayAccount);
+        inOrder.verify(verifiedCredentialsCache).invalidate("alice");
+    }
+
     @Test
     public void shouldValidateThatPasswordisAtLeast10Characters() throws CredentialsException {
         expectedException.expect(CredentialsException.class);
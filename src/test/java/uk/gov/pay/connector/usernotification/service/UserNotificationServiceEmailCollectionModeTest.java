@@ -1,8 +1,5 @@
 package uk.gov.pay.connector.usernotification.service;
 
-import com.codahale.metrics.Histogram;
-import com.codahale.metrics.MetricRegistry;
-import io.dropwizard.setup.Environment;
 import junitparams.JUnitParamsRunner;
 import junitparams.Parameters;
 import junitparams.converters.Nullable;
@@ -14,19 +11,12 @@ import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnit;
 import org.mockito.junit.MockitoRule;
 import uk.gov.pay.connector.app.ConnectorConfiguration;
-import uk.gov.pay.connector.app.ExecutorServiceConfig;
 import uk.gov.pay.connector.app.NotifyConfiguration;
 import uk.gov.pay.connector.gatewayaccount.model.EmailCollectionMode;
-import uk.gov.pay.connector.usernotification.govuknotify.NotifyClientFactory;
-import uk.gov.service.notify.NotificationClient;
-import uk.gov.service.notify.SendEmailResponse;
+import uk.gov.pay.connector.usernotification.dao.EmailNotificationSpoolDao;
+import uk.gov.pay.connector.usernotification.model.domain.EmailNotificationSpoolEntity;
 
-import java.util.UUID;
-import java.util.concurrent.TimeUnit;
-
-import static org.mockito.ArgumentMatchers.anyMap;
-import static org.mockito.ArgumentMatchers.anyString;
-import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -44,16 +34,7 @@ public class UserNotificationServiceEmailCollectionModeTest {
     private ConnectorConfiguration connectorConfig;
     
     @Mock
-    private Environment environment;
-
-    @Mock
-    private NotifyClientFactory notifyClientFactory;
-
-    @Mock
-    private NotificationClient notificationClient;
-
-    @Mock
-    private SendEmailResponse mockNotificationCreatedResponse;
+    private EmailNotificationSpoolDao emailNotificationSpoolDao;
     
     private UserNotificationService userNotificationService;
     
@@ -65,19 +46,7 @@ public class UserNotificationServiceEmailCollectionModeTest {
         when(notifyConfiguration.getRefundIssuedEmailTemplateId()).thenReturn("another-template");
         when(notifyConfiguration.isEmailNotifyEnabled()).thenReturn(true);
 
-        when(notifyClientFactory.getInstance()).thenReturn(notificationClient);
-
-        ExecutorServiceConfig mockExecutorConfiguration = mock(ExecutorServiceConfig.class);
-        when(connectorConfig.getExecutorServiceConfig()).thenReturn(mockExecutorConfiguration);
-        when(mockExecutorConfiguration.getThreadsPerCpu()).thenReturn(2);
-
-        MetricRegistry metricRegistry = mock(MetricRegistry.class);
-        when(environment.metrics()).thenReturn(metricRegistry);
-        when(metricRegistry.histogram(anyString())).thenReturn(mock(Histogram.class));
-
-        when(mockNotificationCreatedResponse.getNotificationId()).thenReturn(UUID.randomUUID());
-        
-        userNotificationService = new UserNotificationService(notifyClientFactory, connectorConfig, environment);
+        userNotificationService = new UserNotificationService(emailNotificationSpoolDao, connectorConfig);
     }
     
     @Test
@@ -89,15 +58,13 @@ public class UserNotificationServiceEmailCollectionModeTest {
     })
     public void determineSendingEmailForEmailCollectionModes(String emailCollectionMode, 
                                                           @Nullable String emailAddress, 
-                                                          boolean shouldEmailBeSent) throws Exception {
-
-        when(notificationClient.sendEmail(anyString(), anyString(), anyMap(), isNull())).thenReturn(mockNotificationCreatedResponse);
+                                                          boolean shouldEmailBeSent) {
 
         var gatewayAccount = defaultGatewayAccountEntity();
         gatewayAccount.setEmailCollectionMode(EmailCollectionMode.fromString(emailCollectionMode));
         var chargeEntity = aValidChargeEntity().withEmail(emailAddress).withGatewayAccountEntity(gatewayAccount).build();
-        userNotificationService.sendPaymentConfirmedEmail(chargeEntity, chargeEntity.getGatewayAccount()).get(1000, TimeUnit.SECONDS);
+        userNotificationService.sendPaymentConfirmedEmail(chargeEntity, chargeEntity.getGatewayAccount());
 
-        verify(notificationClient, times(shouldEmailBeSent? 1 : 0)).sendEmail(anyString(), anyString(), anyMap(), isNull());
+        verify(emailNotificationSpoolDao, times(shouldEmailBeSent? 1 : 0)).persist(any(EmailNotificationSpoolEntity.class));
     }
 }
@@ -1,17 +1,12 @@
 package uk.gov.pay.connector.usernotification.service;
 
-import com.codahale.metrics.Counter;
-import com.codahale.metrics.Histogram;
-import com.codahale.metrics.MetricRegistry;
 import com.google.common.collect.ImmutableMap;
-import io.dropwizard.setup.Environment;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 import uk.gov.pay.connector.app.ConnectorConfiguration;
-import uk.gov.pay.connector.app.ExecutorServiceConfig;
 import uk.gov.pay.connector.app.NotifyConfiguration;
 import uk.gov.pay.connector.charge.model.ServicePaymentReference;
 import uk.gov.pay.connector.charge.model.domain.Charge;
@@ -20,12 +15,10 @@ import uk.gov.pay.connector.gatewayaccount.model.GatewayAccountEntity;
 import uk.gov.pay.connector.charge.model.domain.ChargeEntityFixture;
 import uk.gov.pay.connector.model.domain.RefundEntityFixture;
 import uk.gov.pay.connector.refund.model.domain.RefundEntity;
-import uk.gov.pay.connector.usernotification.govuknotify.NotifyClientFactory;
+import uk.gov.pay.connector.usernotification.dao.EmailNotificationSpoolDao;
 import uk.gov.pay.connector.usernotification.model.domain.EmailNotificationEntity;
+import uk.gov.pay.connector.usernotification.model.domain.EmailNotificationSpoolEntity;
 import uk.gov.pay.connector.usernotification.model.domain.EmailNotificationType;
-import uk.gov.service.notify.NotificationClient;
-import uk.gov.service.notify.NotificationClientException;
-import uk.gov.service.notify.SendEmailResponse;
 
 import java.time.ZoneId;
 import java.time.ZoneOffset;
@@ -33,50 +26,24 @@ import java.time.ZonedDateTime;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
-import java.util.UUID;
-import java.util.concurrent.Future;
-import java.util.concurrent.TimeUnit;
 
-import static java.util.UUID.randomUUID;
 import static junit.framework.TestCase.fail;
 import static org.hamcrest.Matchers.is;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertThat;
-import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.ArgumentMatchers.anyMap;
-import static org.mockito.Mockito.anyLong;
-import static org.mockito.Mockito.anyString;
-import static org.mockito.Mockito.eq;
 import static org.mockito.Mockito.reset;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoInteractions;
-import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 
 @RunWith(MockitoJUnitRunner.class)
 public class UserNotificationServiceTest {
     @Mock
-    private NotificationClient mockNotifyClient;
-    @Mock
-    private NotifyClientFactory mockNotifyClientFactory;
+    private EmailNotificationSpoolDao mockEmailNotificationSpoolDao;
     @Mock
     private ConnectorConfiguration mockConfig;
     @Mock
-    private SendEmailResponse mockNotificationCreatedResponse;
-    @Mock
     private NotifyConfiguration mockNotifyConfiguration;
-    @Mock
-    private ExecutorServiceConfig mockExecutorConfiguration;
-    @Mock
-    private MetricRegistry mockMetricRegistry;
-    @Mock
-    private Environment mockEnvironment;
-    @Mock
-    private Histogram mockHistogram;
-    @Mock
-    private Counter mockCounter;
-
-    private final UUID notificationId = randomUUID();
 
     private final ChargeEntity chargeEntity = ChargeEntityFixture.aValidChargeEntity()
             .withCreatedDate(ZonedDateTime.of(2016, 1, 1, 10, 23, 12, 0, ZoneOffset.UTC))
@@ -100,21 +67,11 @@ public class UserNotificationServiceTest {
         when(mockNotifyConfiguration.getRefundIssuedEmailTemplateId()).thenReturn("another-template");
         when(mockNotifyConfiguration.isEmailNotifyEnabled()).thenReturn(true);
 
-        when(mockNotifyClientFactory.getInstance()).thenReturn(mockNotifyClient);
-        when(mockNotificationCreatedResponse.getNotificationId()).thenReturn(notificationId);
-
-        when(mockConfig.getExecutorServiceConfig()).thenReturn(mockExecutorConfiguration);
-        when(mockExecutorConfiguration.getThreadsPerCpu()).thenReturn(2);
-
-        when(mockEnvironment.metrics()).thenReturn(mockMetricRegistry);
-        when(mockMetricRegistry.histogram(anyString())).thenReturn(mockHistogram);
-        when(mockMetricRegistry.counter(anyString())).thenReturn(mockCounter);
-
-        userNotificationService = new UserNotificationService(mockNotifyClientFactory, mockConfig, mockEnvironment);
+        userNotificationService = new UserNotificationService(mockEmailNotificationSpoolDao, mockConfig);
     }
 
     @Test
-    public void shouldSendPaymentConfirmationEmailIfEmailNotifyIsEnabled() throws Exception {
+    public void shouldSpoolPaymentConfirmationEmailIfEmailNotifyIsEnabled() {
         HashMap<String, String> personalisation = new HashMap<>();
         personalisation.put("serviceReference", "This is a reference");
         personalisation.put("date", "1 January 2016 - 10:23:12");
@@ -123,17 +80,22 @@ public class UserNotificationServiceTest {
         personalisation.put("customParagraph", "^ template body");
         personalisation.put("amount", "5.00");
         personalisation.put("corporateCardSurcharge", "");
-        when(mockNotifyClient.sendEmail(mockNotifyConfiguration.getEmailTemplateId(),
-                chargeEntity.getEmail(),
-                personalisation,
-                null)).thenReturn(mockNotificationCreatedResponse);
 
-        Optional<String> maybeNotificationId = userNotificationService.sendPaymentConfirmedEmail(chargeEntity, chargeEntity.getGatewayAccount()).get(1000, TimeUnit.SECONDS);
-        assertThat(maybeNotificationId.get(), is(notificationId.toString()));
+        EmailNotificationSpoolEntity email = userNotificationService.sendPaymentConfirmedEmail(chargeEntity, chargeEntity.getGatewayAccount()).get();
+
+        verify(mockEmailNotificationSpoolDao).persist(email);
+        assertThat(email.getNotificationType(), is(EmailNotificationType.PAYMENT_CONFIRMED));
+        assertThat(email.getChargeExternalId(), is(chargeEntity.getExternalId()));
+        assertThat(email.getGatewayAccountId(), is(chargeEntity.getGatewayAccount().getId()));
+        assertThat(email.getTemplateId(), is("some-template"));
+        assertThat(email.getEmailAddress(), is(chargeEntity.getEmail()));
+        assertThat(email.getPersonalisation(), is(personalisation));
+        assertThat(email.isUseAccountApiKey(), is(false));
+        assertThat(email.getAttempts(), is(0));
     }
 
     @Test
-    public void shouldSendPaymentConfirmationEmailWithReferenceInCustomParagraphIfEmailNotifyIsEnabled() throws Exception {
+    public void shouldSpoolPaymentConfirmationEmailWithReferenceInCustomParagraphIfEmailNotifyIsEnabled() {
         GatewayAccountEntity gatewayAccountEntity = ChargeEntityFixture.defaultGatewayAccountEntity();
         gatewayAccountEntity.getEmailNotifications().get(EmailNotificationType.PAYMENT_CONFIRMED)
                 .setTemplateBody("Here’s the ref: $reference. Here it is again: abc$referencedef. And to end: $reference");
@@ -153,17 +115,13 @@ public class UserNotificationServiceTest {
         personalisation.put("amount", "5.00");
         personalisation.put("corporateCardSurcharge", "");
 
-        when(mockNotifyClient.sendEmail(mockNotifyConfiguration.getEmailTemplateId(),
-                charge.getEmail(),
-                personalisation,
-                null)).thenReturn(mockNotificationCreatedResponse);
+        EmailNotificationSpoolEntity email = userNotificationService.sendPaymentConfirmedEmail(charge, charge.getGatewayAccount()).get();
 
-        Optional<String> maybeNotificationId = userNotificationService.sendPaymentConfirmedEmail(charge, charge.getGatewayAccount()).get(1000, TimeUnit.SECONDS);
-        assertThat(maybeNotificationId.get(), is(notificationId.toString()));
+        assertThat(email.getPersonalisation(), is(personalisation));
     }
 
     @Test
-    public void shouldSendRefundIssuedEmailIfEmailNotifyIsEnabled() throws Exception {
+    public void shouldSpoolRefundIssuedEmailIfEmailNotifyIsEnabled() {
         HashMap<String, String> personalisation = new HashMap<>();
         personalisation.put("serviceName", "MyService");
         personalisation.put("serviceReference", "This is a reference");
@@ -171,13 +129,14 @@ public class UserNotificationServiceTest {
         personalisation.put("description", "This is a description");
         personalisation.put("amount", "1.00");
 
-        when(mockNotifyClient.sendEmail(mockNotifyConfiguration.getRefundIssuedEmailTemplateId(),
-                chargeEntity.getEmail(),
-                personalisation,
-                null)).thenReturn(mockNotificationCreatedResponse);
+        EmailNotificationSpoolEntity email = userNotificationService.sendRefundIssuedEmail(refundEntity, charge, gatewayAccountEntity).get();
 
-        Optional<String> maybeNotificationId = userNotificationService.sendRefundIssuedEmail(refundEntity, charge, gatewayAccountEntity).get(1000, TimeUnit.SECONDS);
-        assertThat(maybeNotificationId.get(), is(notificationId.toString()));
+        verify(mockEmailNotificationSpoolDao).persist(email);
+        assertThat(email.getNotificationType(), is(EmailNotificationType.REFUND_ISSUED));
+        assertThat(email.getTemplateId(), is("another-template"));
+        assertThat(email.getEmailAddress(), is(charge.getEmail()));
+        assertThat(email.getPersonalisation(), is(personalisation));
+        assertThat(email.isUseAccountApiKey(), is(false));
     }
 
     @Test
@@ -185,7 +144,7 @@ public class UserNotificationServiceTest {
         try {
             reset(mockNotifyConfiguration);
             when(mockNotifyConfiguration.isEmailNotifyEnabled()).thenReturn(true);
-            userNotificationService = new UserNotificationService(mockNotifyClientFactory, mockConfig, mockEnvironment);
+            userNotificationService = new UserNotificationService(mockEmailNotificationSpoolDao, mockConfig);
             fail("this method should throw an ex");
         } catch (Exception e) {
             assertEquals("Check notify config, need to set 'emailTemplateId' (payment confirmation email) and 'refundIssuedEmailTemplateId' properties", e.getMessage());
@@ -198,7 +157,7 @@ public class UserNotificationServiceTest {
             reset(mockNotifyConfiguration);
             when(mockNotifyConfiguration.isEmailNotifyEnabled()).thenReturn(true);
             when(mockNotifyConfiguration.getEmailTemplateId()).thenReturn("template");
-            userNotificationService = new UserNotificationService(mockNotifyClientFactory, mockConfig, mockEnvironment);
+            userNotificationService = new UserNotificationService(mockEmailNotificationSpoolDao, mockConfig);
             fail("this method should throw an ex");
         } catch (Exception e) {
             assertEquals("Check notify config, need to set 'emailTemplateId' (payment confirmation email) and 'refundIssuedEmailTemplateId' properties", e.getMessage());
@@ -206,109 +165,59 @@ public class UserNotificationServiceTest {
     }
 
     @Test
-    public void shouldNotSendPaymentConfirmedEmail_IfNotifyIsDisabled() throws Exception {
+    public void shouldNotSpoolPaymentConfirmedEmail_IfNotifyIsDisabled() {
         when(mockNotifyConfiguration.isEmailNotifyEnabled()).thenReturn(false);
         ChargeEntity chargeEntity = ChargeEntityFixture.aValidChargeEntity().build();
-        userNotificationService = new UserNotificationService(mockNotifyClientFactory, mockConfig, mockEnvironment);
-        Future<Optional<String>> idF = userNotificationService.sendPaymentConfirmedEmail(chargeEntity, chargeEntity.getGatewayAccount());
-        idF.get(1000, TimeUnit.SECONDS);
+        userNotificationService = new UserNotificationService(mockEmailNotificationSpoolDao, mockConfig);
 
-        verifyNoInteractions(mockNotifyClient);
+        Optional<EmailNotificationSpoolEntity> email = userNotificationService.sendPaymentConfirmedEmail(chargeEntity, chargeEntity.getGatewayAccount());
+
+        assertThat(email.isPresent(), is(false));
+        verifyNoInteractions(mockEmailNotificationSpoolDao);
     }
 
     @Test
-    public void shouldNotSendRefundIssuedEmail_IfNotifyIsDisabled() throws Exception {
+    public void shouldNotSpoolRefundIssuedEmail_IfNotifyIsDisabled() {
         when(mockNotifyConfiguration.isEmailNotifyEnabled()).thenReturn(false);
-        ChargeEntity chargeEntity = ChargeEntityFixture.aValidChargeEntity().build();
         RefundEntity refundEntity = RefundEntityFixture.aValidRefundEntity().build();
-        userNotificationService = new UserNotificationService(mockNotifyClientFactory, mockConfig, mockEnvironment);
-        Future<Optional<String>> idF = userNotificationService.sendRefundIssuedEmail(refundEntity, charge, gatewayAccountEntity);
-        idF.get(1000, TimeUnit.SECONDS);
+        userNotificationService = new UserNotificationService(mockEmailNotificationSpoolDao, mockConfig);
+
+        Optional<EmailNotificationSpoolEntity> email = userNotificationService.sendRefundIssuedEmail(refundEntity, charge, gatewayAccountEntity);
 
-        verifyNoInteractions(mockNotifyClient);
+        assertThat(email.isPresent(), is(false));
+        verifyNoInteractions(mockEmailNotificationSpoolDao);
     }
 
     @Test
-    public void shouldNotSendPaymentConfirmedEmail_whenConfirmationEmailNotificationsAreDisabledForService() {
+    public void shouldNotSpoolPaymentConfirmedEmail_whenConfirmationEmailNotificationsAreDisabledForService() {
         chargeEntity.getGatewayAccount()
                 .getEmailNotifications()
                 .get(EmailNotificationType.PAYMENT_CONFIRMED)
                 .setEnabled(false);
 
-        userNotificationService = new UserNotificationService(mockNotifyClientFactory, mockConfig, mockEnvironment);
         userNotificationService.sendPaymentConfirmedEmail(chargeEntity, chargeEntity.getGatewayAccount());
-        verifyNoInteractions(mockNotifyClient);
-    }
-
-    @Test
-    public void shouldRecordNotifyResponseTimesWhenSendPaymentConfirmationEmailSucceeds() throws Exception {
-        when(mockNotifyClient.sendEmail(any(), any(), any(), any())).thenReturn(mockNotificationCreatedResponse);
-
-        Future<Optional<String>> idF = userNotificationService.sendPaymentConfirmedEmail(chargeEntity, chargeEntity.getGatewayAccount());
-        idF.get(1000, TimeUnit.SECONDS);
-
-        verify(mockMetricRegistry).histogram("notify-operations.response_time");
-        verify(mockHistogram).update(anyLong());
-        verifyNoMoreInteractions(mockCounter);
+        verifyNoInteractions(mockEmailNotificationSpoolDao);
     }
 
     @Test
-    public void shouldNotSendRefundIssuedEmail_whenConfirmationEmailNotificationsAreDisabledForService() {
+    public void shouldNotSpoolRefundIssuedEmail_whenConfirmationEmailNotificationsAreDisabledForService() {
         chargeEntity.getGatewayAccount()
                 .getEmailNotifications()
                 .get(EmailNotificationType.REFUND_ISSUED)
                 .setEnabled(false);
 
         userNotificationService.sendRefundIssuedEmail(refundEntity, charge, gatewayAccountEntity);
-        verifyNoInteractions(mockNotifyClient);
-    }
-
-    @Test
-    public void shouldRecordNotifyResponseTimesWhenSendRefundIssuedEmailSucceeds() throws Exception {
-        when(mockNotifyClient.sendEmail(any(), any(), any(), any())).thenReturn(mockNotificationCreatedResponse);
- 
-        Future<Optional<String>> idF = userNotificationService.sendRefundIssuedEmail(refundEntity, charge, gatewayAccountEntity);
-        idF.get(1000, TimeUnit.SECONDS);
-        verify(mockMetricRegistry).histogram("notify-operations.response_time");
-        verify(mockHistogram).update(anyLong());
-        verifyNoMoreInteractions(mockCounter);
-    }
-
-    @Test
-    public void shouldRecordNotifyResponseTimesAndFailureWhenSendPaymentConfirmationEmailFails() throws Exception {
-        when(mockNotifyClient.sendEmail(any(), any(), any(), any())).thenThrow(NotificationClientException.class);
-
-        Future<Optional<String>> idF = userNotificationService.sendPaymentConfirmedEmail(chargeEntity, chargeEntity.getGatewayAccount());
-        idF.get(1000, TimeUnit.SECONDS);
-
-        verify(mockMetricRegistry).histogram("notify-operations.response_time");
-        verify(mockHistogram).update(anyLong());
-        verify(mockCounter).inc();
+        verifyNoInteractions(mockEmailNotificationSpoolDao);
     }
 
     @Test
-    public void shouldRecordNotifyResponseTimesAndFailureWhenSendRefundIssuedEmailFails() throws Exception {
-        when(mockNotifyClient.sendEmail(any(), any(), any(), any())).thenThrow(NotificationClientException.class);
- 
-        Future<Optional<String>> idF = userNotificationService.sendRefundIssuedEmail(refundEntity, charge, gatewayAccountEntity);
-        idF.get(1000, TimeUnit.SECONDS);
-
-        verify(mockMetricRegistry).histogram("notify-operations.response_time");
-        verify(mockHistogram).update(anyLong());
-        verify(mockCounter).inc();
-    }
-
-    @Test
-    public void shouldSendBlankCustomParagraphIfNotSetInConfirmationEmail() throws Exception {
-        when(mockNotifyClient.sendEmail(any(), any(), any(), any())).thenReturn(mockNotificationCreatedResponse);
-
+    public void shouldSpoolBlankCustomParagraphIfNotSetInConfirmationEmail() {
         GatewayAccountEntity accountEntity = chargeEntity.getGatewayAccount();
         EmailNotificationEntity emailNotificationEntity = new EmailNotificationEntity(accountEntity);
         emailNotificationEntity.setTemplateBody(null);
         accountEntity.addNotification(EmailNotificationType.PAYMENT_CONFIRMED, emailNotificationEntity);
 
-        Future<Optional<String>> idF = userNotificationService.sendPaymentConfirmedEmail(chargeEntity, chargeEntity.getGatewayAccount());
-        idF.get(1000, TimeUnit.SECONDS);
+        EmailNotificationSpoolEntity email = userNotificationService.sendPaymentConfirmedEmail(chargeEntity, chargeEntity.getGatewayAccount()).get();
 
         HashMap<String, String> map = new HashMap<>();
 
@@ -320,17 +229,11 @@ public class UserNotificationServiceTest {
         map.put("amount", "5.00");
         map.put("corporateCardSurcharge", "");
 
-        verify(mockNotifyClient).sendEmail(
-                mockNotifyConfiguration.getEmailTemplateId(),
-                chargeEntity.getEmail(),
-                map, null
-        );
+        assertThat(email.getPersonalisation(), is(map));
     }
 
     @Test
-    public void shouldSendCorporateCardSurchargeWithMessage_whenSurchargePresent() throws Exception {
-        when(mockNotifyClient.sendEmail(any(), any(), any(), any())).thenReturn(mockNotificationCreatedResponse);
-
+    public void shouldSpoolCorporateCardSurchargeWithMessage_whenSurchargePresent() {
         ChargeEntity charge = ChargeEntityFixture.aValidChargeEntity()
                 .withCreatedDate(ZonedDateTime.of(2016, 1, 1, 10, 23, 12, 0, ZoneId.of("UTC")))
                 .withCorporateSurcharge(250L)
@@ -341,8 +244,7 @@ public class UserNotificationServiceTest {
         emailNotificationEntity.setTemplateBody(null);
         accountEntity.addNotification(EmailNotificationType.PAYMENT_CONFIRMED, emailNotificationEntity);
 
-        Future<Optional<String>> idF = userNotificationService.sendPaymentConfirmedEmail(charge, charge.getGatewayAccount());
-        idF.get(1000, TimeUnit.SECONDS);
+        EmailNotificationSpoolEntity email = userNotificationService.sendPaymentConfirmedEmail(charge, charge.getGatewayAccount()).get();
 
         HashMap<String, String> map = new HashMap<>();
 
@@ -354,89 +256,63 @@ public class UserNotificationServiceTest {
         map.put("amount", "7.50");
         map.put("corporateCardSurcharge", "Your payment includes a fee of £2.50 for using a corporate credit or debit card.");
 
-        verify(mockNotifyClient).sendEmail(
-                mockNotifyConfiguration.getEmailTemplateId(),
-                charge.getEmail(),
-                map, null
-        );
+        assertThat(email.getPersonalisation(), is(map));
     }
 
     @Test
-    public void shouldUse_customNonGovUkBrandedEmail_whenAccountConfiguredToCustomBrandingForConfirmationEmail() throws Exception {
-        when(mockNotifyClientFactory.getInstance("my-api-key")).thenReturn(mockNotifyClient);
-        when(mockNotifyClient.sendEmail(any(), any(), any(), any())).thenReturn(mockNotificationCreatedResponse);
-
+    public void shouldUse_customNonGovUkBrandedEmail_whenAccountConfiguredToCustomBrandingForConfirmationEmail() {
         ChargeEntity charge = ChargeEntityFixture.aValidChargeEntity()
                 .withCreatedDate(ZonedDateTime.of(2016, 1, 1, 10, 23, 12, 0, ZoneId.of("UTC")))
                 .withNotifySettings(ImmutableMap.of("api_token", "my-api-key", "template_id", "my-template-id"))
                 .build();
 
-        userNotificationService = new UserNotificationService(mockNotifyClientFactory, mockConfig, mockEnvironment);
-
-        Future<Optional<String>> idF = userNotificationService.sendPaymentConfirmedEmail(charge, charge.getGatewayAccount());
-        idF.get(1000, TimeUnit.SECONDS);
+        EmailNotificationSpoolEntity email = userNotificationService.sendPaymentConfirmedEmail(charge, charge.getGatewayAccount()).get();
 
-        verify(mockNotifyClientFactory).getInstance("my-api-key");
-        verify(mockNotifyClient).sendEmail(eq("my-template-id"), anyString(), anyMap(), any());
+        assertThat(email.isUseAccountApiKey(), is(true));
+        assertThat(email.getTemplateId(), is("my-template-id"));
     }
 
     @Test
-    public void shouldUse_customNonGovUkBrandedEmail_whenAccountConfiguredToCustomBrandingForRefundIssuedEmail() throws Exception {
-        when(mockNotifyClientFactory.getInstance("my-api-key")).thenReturn(mockNotifyClient);
-        when(mockNotifyClient.sendEmail(any(), any(), any(), any())).thenReturn(mockNotificationCreatedResponse);
-
+    public void shouldUse_customNonGovUkBrandedEmail_whenAccountConfiguredToCustomBrandingForRefundIssuedEmail() {
         ChargeEntity chargeEntity = ChargeEntityFixture.aValidChargeEntity()
                 .withCreatedDate(ZonedDateTime.of(2016, 1, 1, 10, 23, 12, 0, ZoneId.of("UTC")))
                 .withNotifySettings(ImmutableMap.of("api_token", "my-api-key", "refund_issued_template_id", "template_id2"))
                 .build();
-        RefundEntity refundEntity = RefundEntityFixture.aValidRefundEntity()
-                .withAmount(100L)
-                .withCreatedDate(ZonedDateTime.of(2017, 1, 1, 10, 23, 12, 0, ZoneId.of("UTC")))
-                .build();
 
-        Future<Optional<String>> idF = userNotificationService.sendRefundIssuedEmail(refundEntity, Charge.from(chargeEntity), chargeEntity.getGatewayAccount());
-        idF.get(1000, TimeUnit.SECONDS);
+        EmailNotificationSpoolEntity email = userNotificationService.sendRefundIssuedEmail(refundEntity, Charge.from(chargeEntity), chargeEntity.getGatewayAccount()).get();
 
-        verify(mockNotifyClientFactory).getInstance("my-api-key");
-        verify(mockNotifyClient).sendEmail(eq("template_id2"), anyString(), anyMap(), any());
+        assertThat(email.isUseAccountApiKey(), is(true));
+        assertThat(email.getTemplateId(), is("template_id2"));
     }
 
     @Test
-    public void shouldUse_GovUkBrandedEmails_whenNotifySettingsDoNotHaveApiToken_ForPaymentConfirmationEmail() throws Exception {
-        when(mockNotifyClient.sendEmail(any(), any(), any(), any())).thenReturn(mockNotificationCreatedResponse);
-
+    public void shouldUse_GovUkBrandedEmails_whenNotifySettingsDoNotHaveApiToken_ForPaymentConfirmationEmail() {
         ChargeEntity charge = ChargeEntityFixture.aValidChargeEntity()
                 .withCreatedDate(ZonedDateTime.of(2016, 1, 1, 10, 23, 12, 0, ZoneId.of("UTC")))
                 .withNotifySettings(ImmutableMap.of("template_id", "my-template-id"))
                 .build();
- 
-        Future<Optional<String>> idF = userNotificationService.sendPaymentConfirmedEmail(charge, charge.getGatewayAccount());
-        idF.get(1000, TimeUnit.SECONDS);
 
-        verify(mockNotifyClientFactory).getInstance();
-        verify(mockNotifyClient).sendEmail(eq("some-template"), anyString(), anyMap(), any());
+        EmailNotificationSpoolEntity email = userNotificationService.sendPaymentConfirmedEmail(charge, charge.getGatewayAccount()).get();
+
+        assertThat(email.isUseAccountApiKey(), is(false));
+        assertThat(email.getTemplateId(), is("some-template"));
     }
 
     @Test
-    public void shouldUse_GovUkBrandedEmails_whenNotifySettingsDoNotHaveTemplate_ForPaymentConfirmationEmail() throws Exception {
-        when(mockNotifyClient.sendEmail(any(), any(), any(), any())).thenReturn(mockNotificationCreatedResponse);
-
+    public void shouldUse_GovUkBrandedEmails_whenNotifySettingsDoNotHaveTemplate_ForPaymentConfirmationEmail() {
         ChargeEntity charge = ChargeEntityFixture.aValidChargeEntity()
                 .withCreatedDate(ZonedDateTime.of(2016, 1, 1, 10, 23, 12, 0, ZoneId.of("UTC")))
                 .withNotifySettings(ImmutableMap.of("api_token", "my-api-key"))
                 .build();
- 
-        Future<Optional<String>> idF = userNotificationService.sendPaymentConfirmedEmail(charge, charge.getGatewayAccount());
-        idF.get(1000, TimeUnit.SECONDS);
 
-        verify(mockNotifyClientFactory).getInstance();
-        verify(mockNotifyClient).sendEmail(eq("some-template"), anyString(), anyMap(), any());
+        EmailNotificationSpoolEntity email = userNotificationService.sendPaymentConfirmedEmail(charge, charge.getGatewayAccount()).get();
+
+        assertThat(email.isUseAccountApiKey(), is(false));
+        assertThat(email.getTemplateId(), is("some-template"));
     }
 
     @Test
-    public void shouldUse_GovUkBrandedEmails_whenNotifySettingsDoNotHaveApiToken_ForRefundIssuedEmail() throws Exception {
-        when(mockNotifyClient.sendEmail(any(), any(), any(), any())).thenReturn(mockNotificationCreatedResponse);
- 
+    public void shouldUse_GovUkBrandedEmails_whenNotifySettingsDoNotHaveApiToken_ForRefundIssuedEmail() {
         ChargeEntity chargeEntity = ChargeEntityFixture.aValidChargeEntity()
                 .withCreatedDate(ZonedDateTime.of(2016, 1, 1, 10, 23, 12, 0, ZoneId.of("UTC")))
                 .withNotifySettings(ImmutableMap.of("refund_issued_template_id", "my-template-id"))
@@ -444,28 +320,24 @@ public class UserNotificationServiceTest {
 
         RefundEntity refund = RefundEntityFixture.aValidRefundEntity().build();
 
-        Future<Optional<String>> idF = userNotificationService.sendRefundIssuedEmail(refund, Charge.from(chargeEntity), chargeEntity.getGatewayAccount());
-        idF.get(1000, TimeUnit.SECONDS);
+        EmailNotificationSpoolEntity email = userNotificationService.sendRefundIssuedEmail(refund, Charge.from(chargeEntity), chargeEntity.getGatewayAccount()).get();
 
-        verify(mockNotifyClientFactory).getInstance();
-        verify(mockNotifyClient).sendEmail(eq("another-template"), anyString(), anyMap(), any());
+        assertThat(email.isUseAccountApiKey(), is(false));
+        assertThat(email.getTemplateId(), is("another-template"));
     }
 
     @Test
-    public void shouldUse_GovUkBrandedEmails_whenNotifySettingsDoNotHaveTemplate_ForRefundIssuedEmail() throws Exception {
-        when(mockNotifyClient.sendEmail(any(), any(), any(), any())).thenReturn(mockNotificationCreatedResponse);
-
+    public void shouldUse_GovUkBrandedEmails_whenNotifySettingsDoNotHaveTemplate_ForRefundIssuedEmail() {
         ChargeEntity chargeEntity = ChargeEntityFixture.aValidChargeEntity()
                 .withCreatedDate(ZonedDateTime.of(2016, 1, 1, 10, 23, 12, 0, ZoneId.of("UTC")))
                 .withNotifySettings(ImmutableMap.of("api_token", "my-api-key"))
                 .build();
 
         RefundEntity refund = RefundEntityFixture.aValidRefundEntity().build();
- 
-        Future<Optional<String>> idF = userNotificationService.sendRefundIssuedEmail(refund, Charge.from(chargeEntity), chargeEntity.getGatewayAccount());
-        idF.get(1000, TimeUnit.SECONDS);
 
-        verify(mockNotifyClientFactory).getInstance();
-        verify(mockNotifyClient).sendEmail(eq("another-template"), anyString(), anyMap(), any());
+        EmailNotificationSpoolEntity email = userNotificationService.sendRefundIssuedEmail(refund, Charge.from(chargeEntity), chargeEntity.getGatewayAccount()).get();
+
+        assertThat(email.isUseAccountApiKey(), is(false));
+        assertThat(email.getTemplateId(), is("another-template"));
     }
 }
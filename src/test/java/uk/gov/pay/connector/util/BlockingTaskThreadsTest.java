@@ -0,0 +1,47 @@
+package uk.gov.pay.connector.util;
+
+import org.junit.Test;
+
+import java.util.concurrent.ThreadFactory;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assume.assumeFalse;
+import static org.junit.Assume.assumeTrue;
+
+public class BlockingTaskThreadsTest {
+
+    @Test
+    public void shouldNameThreadsWithTheGivenFormat() {
+        ThreadFactory threadFactory = BlockingTaskThreads.threadFactory(ExecutionMode.PLATFORM_THREADS, "card-executor-%d");
+
+        assertThat(threadFactory.newThread(() -> {}).getName(), is("card-executor-0"));
+        assertThat(threadFactory.newThread(() -> {}).getName(), is("card-executor-1"));
+    }
+
+    @Test
+    public void shouldFallBackToPlatformThreadsWhenVirtualThreadsAreNotSupported() {
+        assumeFalse(BlockingTaskThreads.isVirtualThreadSupported());
+
+        assertThat(BlockingTaskThreads.effectiveMode(ExecutionMode.VIRTUAL_THREADS), is(ExecutionMode.PLATFORM_THREADS));
+        assertThat(BlockingTaskThreads.poolSize(ExecutionMode.VIRTUAL_THREADS, 16, 2000), is(16));
+        assertThat(BlockingTaskThreads.threadFactory(ExecutionMode.VIRTUAL_THREADS, "notify-%d")
+                .newThread(() -> {}).getName(), is("notify-0"));
+    }
+
+    @Test
+    public void shouldUseVirtualThreadsWhenSupported() {
+        assumeTrue(BlockingTaskThreads.isVirtualThreadSupported());
+
+        assertThat(BlockingTaskThreads.effectiveMode(ExecutionMode.VIRTUAL_THREADS), is(ExecutionMode.VIRTUAL_THREADS));
+        assertThat(BlockingTaskThreads.poolSize(ExecutionMode.VIRTUAL_THREADS, 16, 2000), is(2000));
+        assertThat(BlockingTaskThreads.threadFactory(ExecutionMode.VIRTUAL_THREADS, "notify-%d")
+                .newThread(() -> {}).isDaemon(), is(true));
+    }
+
+    @Test
+    public void shouldUsePlatformThreadsWhenAskedFor() {
+        assertThat(BlockingTaskThreads.effectiveMode(ExecutionMode.PLATFORM_THREADS), is(ExecutionMode.PLATFORM_THREADS));
+        assertThat(BlockingTaskThreads.poolSize(ExecutionMode.PLATFORM_THREADS, 16, 2000), is(16));
+    }
+}
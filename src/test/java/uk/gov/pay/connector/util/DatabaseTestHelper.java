@@ -741,12 +741,48 @@ public class DatabaseTestHelper {
         jdbi.withHandle(h -> h.createUpdate("TRUNCATE TABLE emitted_events").execute());
     }
 
+    public void truncateStateTransitionOutbox() {
+        jdbi.withHandle(h -> h.createUpdate("TRUNCATE TABLE state_transition_outbox").execute());
+    }
+
+    public void truncateWorkShards() {
+        jdbi.withHandle(h -> h.createUpdate("TRUNCATE TABLE work_shard").execute());
+    }
+
+    public void truncateEmailNotificationSpool() {
+        jdbi.withHandle(h -> h.createUpdate("TRUNCATE TABLE email_notification_spool").execute());
+    }
+
+    public void truncateNotificationInbox() {
+        jdbi.withHandle(h -> h.createUpdate("TRUNCATE TABLE notification_inbox").execute());
+    }
+
+    public void addProcessedGatewayNotification(String notificationKey, ZonedDateTime processedDate) {
+        jdbi.withHandle(h ->
+                h.createUpdate("INSERT INTO processed_gateway_notification(notification_key, processed_date) " +
+                        "VALUES(:notification_key, :processed_date)")
+                        .bind("notification_key", notificationKey)
+                        .bind("processed_date", Timestamp.from(processedDate.toInstant()))
+                        .execute()
+        );
+    }
+
+    public void truncateProcessedGatewayNotifications() {
+        jdbi.withHandle(h -> h.createUpdate("TRUNCATE TABLE processed_gateway_notification").execute());
+    }
+
     public void truncateAllData() {
         jdbi.withHandle(h -> h.createUpdate("TRUNCATE TABLE gateway_accounts CASCADE").execute());
         jdbi.withHandle(h -> h.createUpdate("TRUNCATE TABLE emitted_events CASCADE").execute());
         jdbi.withHandle(h -> h.createUpdate("TRUNCATE TABLE tokens").execute());
         jdbi.withHandle(h -> h.createUpdate("TRUNCATE TABLE refunds").execute());
         jdbi.withHandle(h -> h.createUpdate("TRUNCATE TABLE refunds_history").execute());
+        jdbi.withHandle(h -> h.createUpdate("TRUNCATE TABLE state_transition_outbox").execute());
+        jdbi.withHandle(h -> h.createUpdate("TRUNCATE TABLE work_shard").execute());
+        jdbi.withHandle(h -> h.createUpdate("TRUNCATE TABLE email_notification_spool").execute());
+        jdbi.withHandle(h -> h.createUpdate("TRUNCATE TABLE notification_inbox").execute());
+        jdbi.withHandle(h -> h.createUpdate("TRUNCATE TABLE processed_gateway_notification").execute());
+        jdbi.withHandle(h -> h.createUpdate("TRUNCATE TABLE charge_archive").execute());
     }
 
     public Long getChargeIdByExternalId(String externalChargeId) {
@@ -819,6 +855,14 @@ public class DatabaseTestHelper {
         );
     }
 
+    public List<Map<String, Object>> readStateTransitionOutbox() {
+        return jdbi.withHandle(handle ->
+                handle.createQuery("SELECT * from state_transition_outbox ORDER BY id")
+                        .mapToMap()
+                        .list()
+        );
+    }
+
     public void insertWorldpay3dsFlexCredential(Long gatewayAccountId, String jwtMacKey, String issuer, String organisationalUnitId, Long version) {
         jdbi.withHandle(handle ->
                 handle
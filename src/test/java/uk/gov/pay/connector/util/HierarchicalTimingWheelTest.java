@@ -0,0 +1,81 @@
+package uk.gov.pay.connector.util;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+
+public class HierarchicalTimingWheelTest {
+
+    private static final long TICK = 1000;
+
+    private final HierarchicalTimingWheel<String> wheel = new HierarchicalTimingWheel<>(TICK, 4, 3, 0);
+
+    @Test
+    public void shouldReturnKeysOnlyOnceTheirDeadlineHasPassed() {
+        wheel.schedule("charge", 2500);
+
+        assertThat(wheel.advance(2000), is(empty()));
+        assertThat(wheel.advance(3000), contains("charge"));
+        assertThat(wheel.advance(4000), is(empty()));
+        assertThat(wheel.size(), is(0));
+    }
+
+    @Test
+    public void shouldCascadeDeadlinesFromHigherWheelsAndBeyondTheTopWheel() {
+        // the wheels span 4, 16 and 64 seconds, so these land in the second wheel, the third wheel and the overflow
+        wheel.schedule("second-wheel", 9500);
+        wheel.schedule("third-wheel", 40500);
+        wheel.schedule("overflow", 200500);
+
+        assertThat(advanceOneTickAtATime(9000), is(empty()));
+        assertThat(wheel.advance(10000), contains("second-wheel"));
+        assertThat(advanceOneTickAtATime(40000), is(empty()));
+        assertThat(wheel.advance(41000), contains("third-wheel"));
+        assertThat(advanceOneTickAtATime(200000), is(empty()));
+        assertThat(wheel.advance(201000), contains("overflow"));
+    }
+
+    @Test
+    public void shouldCatchUpWhenAdvancedLate() {
+        wheel.schedule("first", 1500);
+        wheel.schedule("second", 30500);
+        wheel.schedule("later", 90500);
+
+        assertThat(wheel.advance(60000), containsInAnyOrder("first", "second"));
+        assertThat(wheel.advance(91000), contains("later"));
+    }
+
+    @Test
+    public void shouldUseTheLatestDeadlineOfARescheduledKeyAndIgnoreCancelledKeys() {
+        wheel.schedule("rescheduled", 1500);
+        wheel.schedule("rescheduled", 20500);
+        wheel.schedule("cancelled", 1500);
+        wheel.cancel("cancelled");
+
+        assertThat(wheel.advance(20000), is(empty()));
+        assertThat(wheel.advance(21000), contains("rescheduled"));
+    }
+
+    @Test
+    public void shouldReturnKeysScheduledInThePastOnTheNextTick() {
+        wheel.advance(10000);
+        wheel.schedule("overdue", 2000);
+
+        assertThat(wheel.advance(11000), contains("overdue"));
+    }
+
+    private List<String> advanceOneTickAtATime(long until) {
+        List<String> due = new ArrayList<>();
+        for (long now = 0; now <= until; now += TICK) {
+            due.addAll(wheel.advance(now));
+        }
+        return due;
+    }
+}
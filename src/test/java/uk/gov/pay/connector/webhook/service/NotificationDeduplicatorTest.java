@@ -0,0 +1,153 @@
+package uk.gov.pay.connector.webhook.service;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.base.Ticker;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import uk.gov.pay.connector.app.config.NotificationDeduplicationConfig;
+import uk.gov.pay.connector.webhook.dao.ProcessedGatewayNotificationDao;
+
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+import static uk.gov.pay.connector.gateway.PaymentGatewayName.SMARTPAY;
+import static uk.gov.pay.connector.gateway.PaymentGatewayName.WORLDPAY;
+
+@RunWith(MockitoJUnitRunner.class)
+public class NotificationDeduplicatorTest {
+
+    private static final ZonedDateTime EVENT_DATE = ZonedDateTime.parse("2020-01-01T10:00:00Z");
+    private static final NotificationKey KEY = NotificationKey.of(WORLDPAY, "transaction-id", "refund-reference",
+            "REFUNDED", EVENT_DATE);
+
+    @Mock
+    private NotificationDeduplicationConfig config;
+    @Mock
+    private ProcessedGatewayNotificationDao processedGatewayNotificationDao;
+    @Mock
+    private ScheduledExecutorService pruningExecutorService;
+
+    private final MetricRegistry metricRegistry = new MetricRegistry();
+    private final AtomicLong nanos = new AtomicLong();
+    private NotificationDeduplicator notificationDeduplicator;
+
+    @Before
+    public void setUp() {
+        when(config.isEnabled()).thenReturn(true);
+        when(config.getWindowInSeconds()).thenReturn(600L);
+        when(config.getMaximumSize()).thenReturn(10L);
+        when(config.getPruneIntervalInSeconds()).thenReturn(300L);
+        notificationDeduplicator = aNotificationDeduplicator();
+    }
+
+    @Test
+    public void shouldRecogniseANotificationThatHasBeenProcessed() {
+        assertThat(notificationDeduplicator.isDuplicate(KEY), is(false));
+
+        notificationDeduplicator.processed(KEY);
+
+        assertThat(notificationDeduplicator.isDuplicate(NotificationKey.of(WORLDPAY, "transaction-id", "refund-reference",
+                "REFUNDED", EVENT_DATE.withZoneSameInstant(ZoneId.of("Europe/London")))), is(true));
+        assertThat(metricRegistry.meter("notification-deduplication.duplicates").getCount(), is(1L));
+        verifyNoInteractions(processedGatewayNotificationDao);
+    }
+
+    @Test
+    public void shouldNotMistakeADifferentNotificationForADuplicate() {
+        notificationDeduplicator.processed(KEY);
+
+        assertThat(notificationDeduplicator.isDuplicate(NotificationKey.of(WORLDPAY, "transaction-id", "another-refund-reference",
+                "REFUNDED", EVENT_DATE)), is(false));
+        assertThat(notificationDeduplicator.isDuplicate(NotificationKey.of(WORLDPAY, "transaction-id", "refund-reference",
+                "REFUND_FAILED", EVENT_DATE)), is(false));
+        assertThat(notificationDeduplicator.isDuplicate(NotificationKey.of(SMARTPAY, "transaction-id", "refund-reference",
+                "REFUNDED", EVENT_DATE)), is(false));
+        assertThat(notificationDeduplicator.isDuplicate(NotificationKey.of(WORLDPAY, "transaction-id", "refund-reference",
+                "REFUNDED", EVENT_DATE.plusSeconds(1))), is(false));
+    }
+
+    @Test
+    public void shouldForgetANotificationOnceTheWindowHasPassed() {
+        notificationDeduplicator.processed(KEY);
+
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(601));
+
+        assertThat(notificationDeduplicator.isDuplicate(KEY), is(false));
+    }
+
+    @Test
+    public void shouldNotRecogniseDuplicatesWhenDisabled() {
+        when(config.isEnabled()).thenReturn(false);
+        notificationDeduplicator = aNotificationDeduplicator();
+
+        notificationDeduplicator.processed(KEY);
+
+        assertThat(notificationDeduplicator.isDuplicate(KEY), is(false));
+    }
+
+    @Test
+    public void shouldShareProcessedNotificationsThroughTheDatabaseInSharedMode() {
+        when(config.isShared()).thenReturn(true);
+        notificationDeduplicator = aNotificationDeduplicator();
+        when(processedGatewayNotificationDao.isProcessedWithin(KEY.digest(), 600L)).thenReturn(true);
+
+        notificationDeduplicator.processed(NotificationKey.of(SMARTPAY, "another-transaction-id", null, "CAPTURE:true", null));
+
+        assertThat(notificationDeduplicator.isDuplicate(KEY), is(true));
+        assertThat(notificationDeduplicator.isDuplicate(KEY), is(true));
+        verify(processedGatewayNotificationDao).recordProcessed(
+                NotificationKey.of(SMARTPAY, "another-transaction-id", null, "CAPTURE:true", null).digest());
+        // the second check is answered from memory
+        verify(processedGatewayNotificationDao).isProcessedWithin(KEY.digest(), 600L);
+    }
+
+    @Test
+    public void shouldProcessTheNotificationIfTheSharedStoreCannotBeReached() {
+        when(config.isShared()).thenReturn(true);
+        notificationDeduplicator = aNotificationDeduplicator();
+        when(processedGatewayNotificationDao.isProcessedWithin(anyString(), anyLong())).thenThrow(new RuntimeException("database unavailable"));
+        doThrow(new RuntimeException("database unavailable")).when(processedGatewayNotificationDao).recordProcessed(anyString());
+
+        assertThat(notificationDeduplicator.isDuplicate(KEY), is(false));
+        notificationDeduplicator.processed(KEY);
+        assertThat(notificationDeduplicator.isDuplicate(KEY), is(true));
+    }
+
+    @Test
+    public void shouldOnlySchedulePruningInSharedMode() {
+        notificationDeduplicator.start();
+        verify(pruningExecutorService, never()).scheduleWithFixedDelay(any(), anyLong(), anyLong(), any());
+
+        when(config.isShared()).thenReturn(true);
+        notificationDeduplicator = aNotificationDeduplicator();
+        notificationDeduplicator.start();
+        verify(pruningExecutorService).scheduleWithFixedDelay(any(), anyLong(), anyLong(), any());
+    }
+
+    private NotificationDeduplicator aNotificationDeduplicator() {
+        Ticker ticker = new Ticker() {
+            @Override
+            public long read() {
+                return nanos.get();
+            }
+        };
+        return new NotificationDeduplicator(processedGatewayNotificationDao, config, pruningExecutorService,
+                metricRegistry, ticker);
+    }
+}
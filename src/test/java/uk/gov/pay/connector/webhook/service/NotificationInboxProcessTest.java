@@ -0,0 +1,179 @@
+package uk.gov.pay.connector.webhook.service;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.util.concurrent.MoreExecutors;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import uk.gov.pay.connector.app.config.NotificationInboxConfig;
+import uk.gov.pay.connector.gateway.PaymentGatewayName;
+import uk.gov.pay.connector.gateway.epdq.EpdqNotificationService;
+import uk.gov.pay.connector.gateway.smartpay.SmartpayNotificationService;
+import uk.gov.pay.connector.gateway.stripe.StripeNotificationService;
+import uk.gov.pay.connector.gateway.worldpay.WorldpayNotificationService;
+import uk.gov.pay.connector.webhook.dao.NotificationInboxDao;
+import uk.gov.pay.connector.webhook.model.domain.NotificationInboxEntity;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static uk.gov.pay.connector.gateway.PaymentGatewayName.EPDQ;
+import static uk.gov.pay.connector.gateway.PaymentGatewayName.SMARTPAY;
+import static uk.gov.pay.connector.gateway.PaymentGatewayName.STRIPE;
+import static uk.gov.pay.connector.gateway.PaymentGatewayName.WORLDPAY;
+
+@RunWith(MockitoJUnitRunner.class)
+public class NotificationInboxProcessTest {
+
+    private static final Instant NOW = Instant.parse("2020-01-01T10:00:00Z");
+
+    @Mock
+    private NotificationInboxDao notificationInboxDao;
+    @Mock
+    private WorldpayNotificationService worldpayNotificationService;
+    @Mock
+    private EpdqNotificationService epdqNotificationService;
+    @Mock
+    private SmartpayNotificationService smartpayNotificationService;
+    @Mock
+    private StripeNotificationService stripeNotificationService;
+    @Mock
+    private NotificationInboxConfig notificationInboxConfig;
+    @Mock
+    private ScheduledExecutorService pollingExecutorService;
+
+    private final MetricRegistry metricRegistry = new MetricRegistry();
+    private NotificationInboxProcess notificationInboxProcess;
+
+    @Before
+    public void setUp() {
+        when(notificationInboxConfig.getBatchSize()).thenReturn(10);
+        when(notificationInboxConfig.getLeaseInSeconds()).thenReturn(300);
+        when(notificationInboxConfig.getMaximumAttempts()).thenReturn(10);
+        when(notificationInboxConfig.getInitialRetryDelayInSeconds()).thenReturn(30);
+        when(notificationInboxConfig.getMaximumRetryDelayInSeconds()).thenReturn(3600);
+        notificationInboxProcess = aNotificationInboxProcess();
+    }
+
+    @Test
+    public void shouldProcessDueNotificationsWithTheirProvidersServiceAndDeleteThem() {
+        when(notificationInboxDao.claimDue(10, 300000L)).thenReturn(List.of(
+                aNotification(1L, WORLDPAY, "worldpay-payload"),
+                aNotification(2L, EPDQ, "epdq-payload"),
+                aNotification(3L, SMARTPAY, "smartpay-payload"),
+                aNotification(4L, STRIPE, "stripe-payload")));
+        when(worldpayNotificationService.handleNotification("worldpay-payload")).thenReturn(true);
+
+        notificationInboxProcess.processDueNotifications();
+
+        verify(epdqNotificationService).handleNotificationFor("epdq-payload");
+        verify(smartpayNotificationService).handleNotificationFor("smartpay-payload");
+        verify(stripeNotificationService).handleNotification("stripe-payload");
+        verify(notificationInboxDao).delete(List.of(1L, 2L, 3L, 4L));
+        verify(notificationInboxDao, never()).reschedule(anyLong(), anyInt(), any());
+        assertThat(metricRegistry.histogram("notification-inbox.processing_time").getCount(), is(4L));
+    }
+
+    @Test
+    public void shouldRescheduleAWorldpayNotificationForAPaymentWeDoNotKnowAboutYet() {
+        when(notificationInboxDao.claimDue(10, 300000L)).thenReturn(List.of(aNotification(1L, WORLDPAY, "worldpay-payload")));
+        when(worldpayNotificationService.handleNotification("worldpay-payload")).thenReturn(false);
+
+        notificationInboxProcess.processDueNotifications();
+
+        verify(notificationInboxDao).reschedule(1L, 1, ZonedDateTime.ofInstant(NOW, ZoneOffset.UTC).plusSeconds(30));
+        verify(notificationInboxDao).delete(List.of());
+    }
+
+    @Test
+    public void shouldRescheduleANotificationThatFailsToProcess() {
+        when(notificationInboxDao.claimDue(10, 300000L)).thenReturn(List.of(
+                aNotification(1L, EPDQ, "epdq-payload"),
+                aNotification(2L, SMARTPAY, "smartpay-payload")));
+        doThrow(new RuntimeException("database unavailable")).when(epdqNotificationService).handleNotificationFor("epdq-payload");
+
+        notificationInboxProcess.processDueNotifications();
+
+        verify(notificationInboxDao).reschedule(1L, 1, ZonedDateTime.ofInstant(NOW, ZoneOffset.UTC).plusSeconds(30));
+        verify(notificationInboxDao).delete(List.of(2L));
+        assertThat(metricRegistry.counter("notification-inbox.failures").getCount(), is(1L));
+    }
+
+    @Test
+    public void shouldDoubleTheRetryDelayWithEachAttemptUpToTheMaximum() {
+        NotificationInboxEntity thirdAttempt = aRetriedNotification(1L, 2);
+        NotificationInboxEntity ninthAttempt = aRetriedNotification(2L, 8);
+        when(notificationInboxDao.claimDue(10, 300000L)).thenReturn(List.of(thirdAttempt, ninthAttempt));
+
+        notificationInboxProcess.processDueNotifications();
+
+        verify(notificationInboxDao).reschedule(1L, 3, ZonedDateTime.ofInstant(NOW, ZoneOffset.UTC).plusSeconds(120));
+        verify(notificationInboxDao).reschedule(2L, 9, ZonedDateTime.ofInstant(NOW, ZoneOffset.UTC).plusSeconds(3600));
+    }
+
+    @Test
+    public void shouldGiveUpOnANotificationThatHasUsedUpItsAttempts() {
+        NotificationInboxEntity lastAttempt = aRetriedNotification(1L, 9);
+        when(notificationInboxDao.claimDue(10, 300000L)).thenReturn(List.of(lastAttempt));
+
+        notificationInboxProcess.processDueNotifications();
+
+        verify(notificationInboxDao, never()).reschedule(anyLong(), anyInt(), any());
+        verify(notificationInboxDao).delete(List.of(1L));
+        assertThat(metricRegistry.counter("notification-inbox.abandoned").getCount(), is(1L));
+    }
+
+    @Test
+    public void shouldKeepClaimingWhileBatchesComeBackFull() {
+        when(notificationInboxConfig.getBatchSize()).thenReturn(1);
+        notificationInboxProcess = aNotificationInboxProcess();
+        when(notificationInboxDao.claimDue(1, 300000L))
+                .thenReturn(List.of(aNotification(1L, SMARTPAY, "smartpay-payload-1")))
+                .thenReturn(List.of(aNotification(2L, SMARTPAY, "smartpay-payload-2")))
+                .thenReturn(List.of());
+
+        notificationInboxProcess.processDueNotifications();
+
+        verify(notificationInboxDao, times(3)).claimDue(1, 300000L);
+        verify(notificationInboxDao).delete(List.of(1L));
+        verify(notificationInboxDao).delete(List.of(2L));
+    }
+
+    private NotificationInboxProcess aNotificationInboxProcess() {
+        return new NotificationInboxProcess(notificationInboxDao, worldpayNotificationService, epdqNotificationService,
+                smartpayNotificationService, stripeNotificationService, notificationInboxConfig, pollingExecutorService,
+                MoreExecutors.newDirectExecutorService(), metricRegistry, Clock.fixed(NOW, ZoneOffset.UTC));
+    }
+
+    private NotificationInboxEntity aNotification(Long id, PaymentGatewayName paymentProvider, String payload) {
+        NotificationInboxEntity notification = new NotificationInboxEntity(paymentProvider, "a-transaction-id-" + id,
+                payload, ZonedDateTime.ofInstant(NOW, ZoneOffset.UTC));
+        notification.setId(id);
+        return notification;
+    }
+
+    private NotificationInboxEntity aRetriedNotification(Long id, int attempts) {
+        NotificationInboxEntity notification = spy(aNotification(id, WORLDPAY, "worldpay-payload-" + id));
+        doReturn(attempts).when(notification).getAttempts();
+        when(worldpayNotificationService.handleNotification("worldpay-payload-" + id)).thenReturn(false);
+        return notification;
+    }
+}
@@ -0,0 +1,141 @@
+package uk.gov.pay.connector.webhook.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import uk.gov.pay.connector.app.ConnectorConfiguration;
+import uk.gov.pay.connector.app.config.NotificationInboxConfig;
+import uk.gov.pay.connector.webhook.dao.NotificationInboxDao;
+import uk.gov.pay.connector.webhook.model.domain.NotificationInboxEntity;
+
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static uk.gov.pay.connector.gateway.PaymentGatewayName.EPDQ;
+import static uk.gov.pay.connector.gateway.PaymentGatewayName.SMARTPAY;
+import static uk.gov.pay.connector.gateway.PaymentGatewayName.STRIPE;
+import static uk.gov.pay.connector.gateway.PaymentGatewayName.WORLDPAY;
+import static uk.gov.pay.connector.util.TestTemplateResourceLoader.EPDQ_NOTIFICATION_TEMPLATE;
+import static uk.gov.pay.connector.util.TestTemplateResourceLoader.SMARTPAY_MULTIPLE_NOTIFICATIONS;
+import static uk.gov.pay.connector.util.TestTemplateResourceLoader.STRIPE_NOTIFICATION_3DS_SOURCE;
+import static uk.gov.pay.connector.util.TestTemplateResourceLoader.WORLDPAY_NOTIFICATION;
+import static uk.gov.pay.connector.util.TestTemplateResourceLoader.load;
+
+@RunWith(MockitoJUnitRunner.class)
+public class NotificationInboxServiceTest {
+
+    @Mock
+    private NotificationInboxDao notificationInboxDao;
+    @Mock
+    private ConnectorConfiguration configuration;
+    @Mock
+    private NotificationInboxConfig notificationInboxConfig;
+    @Captor
+    private ArgumentCaptor<NotificationInboxEntity> notificationCaptor;
+
+    private NotificationInboxService notificationInboxService;
+
+    @Before
+    public void setUp() {
+        when(configuration.getNotificationInboxConfig()).thenReturn(notificationInboxConfig);
+        when(notificationInboxConfig.isEnabled()).thenReturn(true);
+        notificationInboxService = new NotificationInboxService(notificationInboxDao, new ObjectMapper(), configuration);
+    }
+
+    @Test
+    public void shouldAddWorldpayNotificationOrderedByItsTransactionId() {
+        String payload = load(WORLDPAY_NOTIFICATION)
+                .replace("{{transactionId}}", "a-transaction-id")
+                .replace("{{refund-ref}}", "a-refund-ref")
+                .replace("{{status}}", "CAPTURED")
+                .replace("{{bookingDateDay}}", "10")
+                .replace("{{bookingDateMonth}}", "03")
+                .replace("{{bookingDateYear}}", "2017");
+
+        notificationInboxService.addWorldpayNotification(payload);
+
+        verify(notificationInboxDao).persist(notificationCaptor.capture());
+        NotificationInboxEntity notification = notificationCaptor.getValue();
+        assertThat(notification.getPaymentProvider(), is(WORLDPAY));
+        assertThat(notification.getOrderingKey(), is("a-transaction-id"));
+        assertThat(notification.getPayload(), is(payload));
+        assertThat(notification.getAttempts(), is(0));
+    }
+
+    @Test
+    public void shouldAddUnreadableWorldpayNotificationWithoutAnOrderingKey() {
+        notificationInboxService.addWorldpayNotification("<not></valid>");
+
+        verify(notificationInboxDao).persist(notificationCaptor.capture());
+        assertThat(notificationCaptor.getValue().getOrderingKey(), is(nullValue()));
+        assertThat(notificationCaptor.getValue().getPayload(), is("<not></valid>"));
+    }
+
+    @Test
+    public void shouldAddEpdqNotificationOrderedByItsPayId() {
+        String payload = load(EPDQ_NOTIFICATION_TEMPLATE)
+                .replace("{{status}}", "9")
+                .replace("{{cardHolderName}}", "mr")
+                .replace("{{payId}}", "a-pay-id")
+                .replace("{{payIdSub}}", "1")
+                .replace("{{shaSign}}", "a-signature");
+
+        notificationInboxService.addEpdqNotification(payload);
+
+        verify(notificationInboxDao).persist(notificationCaptor.capture());
+        assertThat(notificationCaptor.getValue().getPaymentProvider(), is(EPDQ));
+        assertThat(notificationCaptor.getValue().getOrderingKey(), is("a-pay-id"));
+    }
+
+    @Test
+    public void shouldAddStripeNotificationOrderedByItsObjectId() {
+        String payload = load(STRIPE_NOTIFICATION_3DS_SOURCE)
+                .replace("{{id}}", "a-source-id")
+                .replace("{{type}}", "source.chargeable");
+
+        notificationInboxService.addStripeNotification(payload);
+
+        verify(notificationInboxDao).persist(notificationCaptor.capture());
+        assertThat(notificationCaptor.getValue().getPaymentProvider(), is(STRIPE));
+        assertThat(notificationCaptor.getValue().getOrderingKey(), is("a-source-id"));
+    }
+
+    @Test
+    public void shouldAddEachSmartpayNotificationItemSeparatelyOrderedByItsOriginalReference() {
+        String payload = load(SMARTPAY_MULTIPLE_NOTIFICATIONS)
+                .replace("{{pspReference1}}", "psp-reference-1")
+                .replace("{{pspReference2}}", "psp-reference-2");
+
+        notificationInboxService.addSmartpayNotifications(payload);
+
+        verify(notificationInboxDao, times(2)).persist(notificationCaptor.capture());
+        List<NotificationInboxEntity> notifications = notificationCaptor.getAllValues();
+        assertThat(notifications.get(0).getPaymentProvider(), is(SMARTPAY));
+        assertThat(notifications.get(0).getOrderingKey(), is("psp-reference-1"));
+        assertThat(notifications.get(0).getPayload(), containsString("\"eventCode\":\"CAPTURE\""));
+        assertThat(notifications.get(0).getPayload(), not(containsString("psp-reference-2")));
+        assertThat(notifications.get(1).getOrderingKey(), is("psp-reference-2"));
+        assertThat(notifications.get(1).getPayload(), containsString("\"eventCode\":\"AUTHORISATION\""));
+    }
+
+    @Test
+    public void shouldAddUnreadableSmartpayNotificationAsItIs() {
+        notificationInboxService.addSmartpayNotifications("not json");
+
+        verify(notificationInboxDao).persist(notificationCaptor.capture());
+        assertThat(notificationCaptor.getValue().getOrderingKey(), is(nullValue()));
+        assertThat(notificationCaptor.getValue().getPayload(), is("not json"));
+    }
+}
@@ -0,0 +1,202 @@
+package uk.gov.pay.connector.workpartition.service;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import uk.gov.pay.connector.app.config.WorkPartitionConfig;
+import uk.gov.pay.connector.workpartition.dao.WorkShardDao;
+import uk.gov.pay.connector.workpartition.model.WorkShardEntity;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static uk.gov.pay.connector.workpartition.model.WorkShardStatus.CLAIMED;
+import static uk.gov.pay.connector.workpartition.model.WorkShardStatus.COMPLETED;
+
+@RunWith(MockitoJUnitRunner.class)
+public class WorkPartitionServiceTest {
+
+    private static final String LEASE_OWNER = "node-1";
+    private static final long LEASE_IN_MILLISECONDS = 300000L;
+
+    @Mock
+    private WorkShardDao workShardDao;
+    @Mock
+    private WorkPartitionConfig workPartitionConfig;
+    @Mock
+    private ScheduledExecutorService leaseRenewalExecutor;
+    @Mock
+    private ScheduledFuture<?> leaseRenewal;
+
+    private final AtomicLong nanoTime = new AtomicLong();
+    private WorkPartitionService workPartitionService;
+
+    @Before
+    public void setUp() {
+        when(workPartitionConfig.getLeaseDurationInSeconds()).thenReturn(300L);
+        when(workPartitionConfig.getShardSize()).thenReturn(100L);
+        when(workPartitionConfig.getCompletedJobRetentionInDays()).thenReturn(7L);
+        doReturn(leaseRenewal).when(leaseRenewalExecutor).scheduleAtFixedRate(any(), anyLong(), anyLong(), any());
+        workPartitionService = new WorkPartitionService(workShardDao, workPartitionConfig, leaseRenewalExecutor, LEASE_OWNER,
+                nanoTime::get);
+    }
+
+    @Test
+    public void shouldProcessAndCompleteEveryShardItClaims() {
+        WorkShardEntity firstShard = aClaimedShard(1L, "job", 1, 100);
+        WorkShardEntity secondShard = aClaimedShard(2L, "job", 101, 150);
+        when(workShardDao.claim("job", LEASE_OWNER, LEASE_IN_MILLISECONDS))
+                .thenReturn(Optional.of(firstShard), Optional.of(secondShard), Optional.empty());
+        List<String> processedRanges = new ArrayList<>();
+
+        int shardsProcessed = workPartitionService.processInShards("job", 1, 150,
+                (rangeStart, rangeEnd) -> processedRanges.add(rangeStart + "-" + rangeEnd));
+
+        assertThat(shardsProcessed, is(2));
+        assertThat(processedRanges, contains("1-100", "101-150"));
+        verify(workShardDao).deleteCompletedJobs(7L);
+        verify(workShardDao).createShards("job", 1, 150, 100L);
+        verify(workShardDao).complete(1L, LEASE_OWNER);
+        verify(workShardDao).complete(2L, LEASE_OWNER);
+        verify(leaseRenewal, times(2)).cancel(false);
+    }
+
+    @Test
+    public void shouldReleaseTheShardWhenProcessingFails() {
+        WorkShardEntity shard = aClaimedShard(1L, "job", 1, 100);
+        when(workShardDao.claim("job", LEASE_OWNER, LEASE_IN_MILLISECONDS)).thenReturn(Optional.of(shard));
+
+        try {
+            workPartitionService.processInShards("job", 1, 100, (rangeStart, rangeEnd) -> {
+                throw new IllegalStateException("processing failed");
+            });
+            fail("Expected the processing failure to be rethrown");
+        } catch (IllegalStateException e) {
+            assertThat(e.getMessage(), is("processing failed"));
+        }
+
+        verify(workShardDao).release(1L, LEASE_OWNER);
+        verify(workShardDao, never()).complete(any(), any());
+        verify(leaseRenewal).cancel(false);
+    }
+
+    @Test
+    public void shouldNotProcessAJobThatHasAlreadyBeenCompleted() {
+        WorkShardEntity completedShard = new WorkShardEntity("job", 1, 100, COMPLETED, LEASE_OWNER);
+        when(workShardDao.claim("job", LEASE_OWNER, LEASE_IN_MILLISECONDS)).thenReturn(Optional.empty());
+        when(workShardDao.findByJobName("job")).thenReturn(List.of(completedShard));
+
+        int shardsProcessed = workPartitionService.processInShards("job", 1, 100,
+                (rangeStart, rangeEnd) -> fail("Completed job should not have been processed"));
+
+        assertThat(shardsProcessed, is(0));
+    }
+
+    @Test
+    public void shouldRunTheTaskAndKeepTheLeaseBetweenRunsWhenNoOtherNodeIsRunningIt() {
+        WorkShardEntity lease = aClaimedShard(1L, "sweep", 0, 0);
+        when(workShardDao.claim("sweep", LEASE_OWNER, LEASE_IN_MILLISECONDS)).thenReturn(Optional.of(lease));
+
+        Optional<String> firstResult = workPartitionService.callExclusively("sweep", () -> "swept");
+        Optional<String> secondResult = workPartitionService.callExclusively("sweep", () -> "swept again");
+
+        assertThat(firstResult, is(Optional.of("swept")));
+        assertThat(secondResult, is(Optional.of("swept again")));
+        verify(workShardDao).createShards("sweep", 0, 0, 1);
+        verify(workShardDao, times(1)).claim("sweep", LEASE_OWNER, LEASE_IN_MILLISECONDS);
+        verify(workShardDao, never()).release(any(), any());
+    }
+
+    @Test
+    public void shouldReleaseTheLeasesItHoldsWhenStopped() {
+        WorkShardEntity lease = aClaimedShard(1L, "sweep", 0, 0);
+        when(workShardDao.claim("sweep", LEASE_OWNER, LEASE_IN_MILLISECONDS)).thenReturn(Optional.of(lease));
+        workPartitionService.runExclusively("sweep", () -> {});
+
+        workPartitionService.stop();
+
+        verify(leaseRenewal).cancel(false);
+        verify(workShardDao).release(1L, LEASE_OWNER);
+    }
+
+    @Test
+    public void shouldClaimTheLeaseAgainOnceItHasRunOutWithoutBeingRenewed() {
+        WorkShardEntity lease = aClaimedShard(1L, "sweep", 0, 0);
+        when(workShardDao.claim("sweep", LEASE_OWNER, LEASE_IN_MILLISECONDS))
+                .thenReturn(Optional.of(lease), Optional.empty());
+        workPartitionService.runExclusively("sweep", () -> {});
+
+        nanoTime.addAndGet(TimeUnit.MILLISECONDS.toNanos(LEASE_IN_MILLISECONDS));
+        boolean ran = workPartitionService.runExclusively("sweep", () -> fail("Task should not have been run"));
+
+        assertThat(ran, is(false));
+        verify(workShardDao, times(2)).claim("sweep", LEASE_OWNER, LEASE_IN_MILLISECONDS);
+        verify(leaseRenewal).cancel(false);
+    }
+
+    @Test
+    public void shouldClaimTheLeaseAgainAfterLosingIt() {
+        WorkShardEntity lease = aClaimedShard(1L, "sweep", 0, 0);
+        when(workShardDao.claim("sweep", LEASE_OWNER, LEASE_IN_MILLISECONDS)).thenReturn(Optional.of(lease));
+        when(workShardDao.renew(1L, LEASE_OWNER, LEASE_IN_MILLISECONDS)).thenReturn(false);
+        workPartitionService.runExclusively("sweep", () -> {});
+        ArgumentCaptor<Runnable> renewal = ArgumentCaptor.forClass(Runnable.class);
+        verify(leaseRenewalExecutor).scheduleAtFixedRate(renewal.capture(), anyLong(), anyLong(), any());
+
+        renewal.getValue().run();
+        workPartitionService.runExclusively("sweep", () -> {});
+
+        verify(leaseRenewal).cancel(false);
+        verify(workShardDao, times(2)).claim("sweep", LEASE_OWNER, LEASE_IN_MILLISECONDS);
+    }
+
+    @Test
+    public void shouldReleaseTheLeaseAfterEachRunSoOtherNodesGetATurn() {
+        WorkShardEntity lease = aClaimedShard(1L, "wheel", 0, 0);
+        when(workShardDao.claim("wheel", LEASE_OWNER, LEASE_IN_MILLISECONDS)).thenReturn(Optional.of(lease));
+
+        boolean firstRan = workPartitionService.runInTurn("wheel", () -> {});
+        boolean secondRan = workPartitionService.runInTurn("wheel", () -> {});
+
+        assertThat(firstRan, is(true));
+        assertThat(secondRan, is(true));
+        verify(workShardDao, times(2)).claim("wheel", LEASE_OWNER, LEASE_IN_MILLISECONDS);
+        verify(workShardDao, times(2)).release(1L, LEASE_OWNER);
+        verify(leaseRenewal, times(2)).cancel(false);
+    }
+
+    @Test
+    public void shouldNotRunTheTaskWhenAnotherNodeIsRunningIt() {
+        when(workShardDao.claim("sweep", LEASE_OWNER, LEASE_IN_MILLISECONDS)).thenReturn(Optional.empty());
+
+        boolean ran = workPartitionService.runExclusively("sweep", () -> fail("Task should not have been run"));
+
+        assertThat(ran, is(false));
+        verify(workShardDao, never()).release(any(), any());
+    }
+
+    private static WorkShardEntity aClaimedShard(Long id, String jobName, long rangeStart, long rangeEnd) {
+        WorkShardEntity shard = new WorkShardEntity(jobName, rangeStart, rangeEnd, CLAIMED, LEASE_OWNER);
+        shard.setId(id);
+        return shard;
+    }
+}